@@ -2,8 +2,10 @@ package org.example.sistema_gestion_vitalexa;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 @SpringBootApplication
+@EnableScheduling
 public class SistemaGestionVitalexaApplication {
 
     @jakarta.annotation.PostConstruct
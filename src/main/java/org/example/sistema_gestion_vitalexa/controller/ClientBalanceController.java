@@ -15,7 +15,6 @@ import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.*;
 
-import java.io.IOException;
 import java.math.BigDecimal;
 import java.time.LocalDate;
 import java.util.List;
@@ -212,14 +211,14 @@ public class ClientBalanceController {
      * Exportar cartera por vendedor a Excel
      */
     @GetMapping("/export/excel")
-    public ResponseEntity<byte[]> exportBalanceToExcel(
+    public ResponseEntity<org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody> exportBalanceToExcel(
             @RequestParam(required = false) UUID vendedorId,
             @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate startDate,
             @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate endDate,
             @RequestParam(required = false, defaultValue = "false") Boolean onlyWithDebt,
-            Authentication auth) throws IOException {
+            Authentication auth) {
 
-        byte[] excelData = clientBalanceService.exportBalanceToExcel(
+        org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody excelData = clientBalanceService.streamBalanceToExcel(
                 vendedorId, startDate, endDate, onlyWithDebt, auth.getName());
 
         HttpHeaders headers = new HttpHeaders();
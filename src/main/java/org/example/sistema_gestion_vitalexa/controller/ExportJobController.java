@@ -0,0 +1,59 @@
+package org.example.sistema_gestion_vitalexa.controller;
+
+import jakarta.validation.Valid;
+import lombok.RequiredArgsConstructor;
+import org.example.sistema_gestion_vitalexa.dto.ExportJobFile;
+import org.example.sistema_gestion_vitalexa.dto.ExportJobRequest;
+import org.example.sistema_gestion_vitalexa.dto.ExportJobResponse;
+import org.example.sistema_gestion_vitalexa.service.ExportJobService;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.security.core.Authentication;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.UUID;
+
+/**
+ * Exportaciones en segundo plano.
+ * - POST devuelve 202 con el id; el avance llega por /topic/exports/{id}
+ *   o consultando GET /{id}.
+ * - GET /{id}/file descarga el archivo (admite Range para reanudar).
+ * Los endpoints de exportación directa siguen disponibles.
+ */
+@RestController
+@RequestMapping("/api/exports")
+@RequiredArgsConstructor
+@PreAuthorize("hasAnyRole('OWNER','ADMIN','VENDEDOR')")
+public class ExportJobController {
+
+    private final ExportJobService exportJobService;
+
+    @PostMapping
+    public ResponseEntity<ExportJobResponse> submit(@Valid @RequestBody ExportJobRequest request,
+            Authentication auth) {
+        return ResponseEntity.accepted().body(exportJobService.submit(request, auth.getName()));
+    }
+
+    @GetMapping("/{id}")
+    public ResponseEntity<ExportJobResponse> getJob(@PathVariable UUID id, Authentication auth) {
+        return ResponseEntity.ok(exportJobService.getJob(id, auth.getName()));
+    }
+
+    @GetMapping("/{id}/file")
+    public ResponseEntity<Resource> download(@PathVariable UUID id, Authentication auth) {
+        ExportJobFile file = exportJobService.getFile(id, auth.getName());
+
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.parseMediaType(file.contentType()));
+        headers.setContentDisposition(ContentDisposition.attachment().filename(file.filename()).build());
+
+        return ResponseEntity.ok()
+                .headers(headers)
+                .body(new FileSystemResource(file.path()));
+    }
+}
@@ -1,17 +1,28 @@
 package org.example.sistema_gestion_vitalexa.controller;
 
 import lombok.extern.slf4j.Slf4j;
+import org.example.sistema_gestion_vitalexa.service.ProductImageService;
+import org.example.sistema_gestion_vitalexa.util.ContentHashes;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.core.io.Resource;
 import org.springframework.core.io.UrlResource;
+import org.springframework.http.CacheControl;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.io.IOException;
+import java.io.InputStream;
 import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
 
 @RestController
 @RequestMapping("/api/images")
@@ -19,54 +30,132 @@ import java.nio.file.Paths;
 @Slf4j
 public class ImageController {
 
+    // {hash}.ext o {hash}-{size}.jpg: el nombre nunca cambia de contenido
+    private static final Pattern CONTENT_HASHED_NAME = Pattern.compile("^([0-9a-f]{32})(-[a-z]+)?\\.[A-Za-z0-9]+$");
+
+    private static final int MAX_CACHED_FILES = 10_000;
+
     @Value("${app.upload.dir:uploads/products}")
     private String uploadDir;
 
     /**
-     * Sirve imágenes de productos públicamente
+     * Tipo de contenido y ETag por archivo; se recalculan si cambia la fecha
+     * de modificación o el tamaño del archivo.
+     */
+    private final Map<Path, FileInfo> fileInfoCache = new ConcurrentHashMap<>();
+
+    private record FileInfo(MediaType contentType, String etag, long lastModified, long length) {
+    }
+
+    /**
+     * Sirve imágenes de productos públicamente.
+     *
+     * @param size original (default), medium o thumb. Si el derivado no existe
+     *             (imágenes anteriores o formatos sin derivados) se sirve el original.
+     *
+     * Responde con ETag fuerte y Last-Modified; Spring contesta 304 sin cuerpo
+     * cuando If-None-Match / If-Modified-Since coinciden. Los nombres con hash
+     * de contenido se cachean un año como inmutables.
      */
     @GetMapping("/products/{filename:.+}")
-    public ResponseEntity<Resource> getProductImage(@PathVariable String filename) {
+    public ResponseEntity<Resource> getProductImage(@PathVariable String filename,
+            @RequestParam(defaultValue = "original") String size) {
         try {
-            // Resolver la ruta del archivo
-            Path filePath = Paths.get(uploadDir)
-                    .toAbsolutePath()
-                    .normalize()
-                    .resolve(filename);
-
-            log.debug("Buscando imagen en: {}", filePath);
+            Path root = Paths.get(uploadDir).toAbsolutePath().normalize();
+            Path original = root.resolve(filename).normalize();
+            if (!original.startsWith(root)) {
+                return ResponseEntity.badRequest().build();
+            }
 
-            // Verificar que el archivo existe y es legible
-            if (!Files.exists(filePath)) {
+            Path filePath = original;
+            BasicFileAttributes attributes = null;
+            String sizeKey = size.toLowerCase();
+            if (!"original".equals(sizeKey)) {
+                if (!ProductImageService.DERIVATIVE_SIZES.containsKey(sizeKey)) {
+                    return ResponseEntity.badRequest().build();
+                }
+                Path derivative = root.resolve(ProductImageService.derivativeName(original.getFileName().toString(), sizeKey));
+                attributes = readAttributes(derivative);
+                if (attributes != null) {
+                    filePath = derivative;
+                }
+            }
+            if (attributes == null) {
+                attributes = readAttributes(original);
+            }
+            if (attributes == null) {
                 log.warn("⚠️ Imagen no encontrada: {}", filename);
                 return ResponseEntity.notFound().build();
             }
 
-            if (!Files.isReadable(filePath)) {
-                log.error("Imagen no legible: {}", filename);
-                return ResponseEntity.status(403).build();
-            }
-
-            // Crear recurso
-            Resource resource = new UrlResource(filePath.toUri());
+            FileInfo info = fileInfo(filePath, attributes);
+            CacheControl cacheControl = CONTENT_HASHED_NAME.matcher(filePath.getFileName().toString()).matches()
+                    ? CacheControl.maxAge(365, TimeUnit.DAYS).cachePublic().immutable()
+                    : CacheControl.maxAge(1, TimeUnit.HOURS).cachePublic();
 
-            // Determinar tipo de contenido
-            String contentType = Files.probeContentType(filePath);
-            if (contentType == null) {
-                contentType = "application/octet-stream";
-            }
-
-            log.debug("Sirviendo imagen: {} (tipo: {})", filename, contentType);
+            log.debug("Sirviendo imagen: {} (tipo: {})", filePath.getFileName(), info.contentType());
 
-            // Retornar imagen
             return ResponseEntity.ok()
-                    .contentType(MediaType.parseMediaType(contentType))
-                    .header(HttpHeaders.CONTENT_DISPOSITION, "inline; filename=\"" + resource.getFilename() + "\"")
-                    .body(resource);
+                    .contentType(info.contentType())
+                    .contentLength(info.length())
+                    .eTag(info.etag())
+                    .lastModified(info.lastModified())
+                    .cacheControl(cacheControl)
+                    .header(HttpHeaders.CONTENT_DISPOSITION, "inline; filename=\"" + filePath.getFileName() + "\"")
+                    .body(new UrlResource(filePath.toUri()));
 
         } catch (Exception e) {
             log.error("Error sirviendo imagen: {}", filename, e);
             return ResponseEntity.internalServerError().build();
         }
     }
+
+    /**
+     * Una sola lectura de atributos (en lugar de exists + isReadable).
+     *
+     * @return null si el archivo no existe
+     */
+    private static BasicFileAttributes readAttributes(Path path) throws IOException {
+        try {
+            BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+            return attributes.isRegularFile() ? attributes : null;
+        } catch (NoSuchFileException e) {
+            return null;
+        }
+    }
+
+    private FileInfo fileInfo(Path path, BasicFileAttributes attributes) throws IOException {
+        long lastModified = attributes.lastModifiedTime().toMillis();
+        FileInfo cached = fileInfoCache.get(path);
+        if (cached != null && cached.lastModified() == lastModified && cached.length() == attributes.size()) {
+            return cached;
+        }
+
+        String contentType = Files.probeContentType(path);
+        FileInfo info = new FileInfo(
+                contentType != null ? MediaType.parseMediaType(contentType) : MediaType.APPLICATION_OCTET_STREAM,
+                etag(path),
+                lastModified,
+                attributes.size());
+
+        if (fileInfoCache.size() >= MAX_CACHED_FILES) {
+            fileInfoCache.clear();
+        }
+        fileInfoCache.put(path, info);
+        return info;
+    }
+
+    /**
+     * ETag fuerte: el hash del nombre si lo tiene (más el tamaño del derivado),
+     * o el SHA-256 del contenido para los archivos con nombre aleatorio.
+     */
+    private static String etag(Path path) throws IOException {
+        var matcher = CONTENT_HASHED_NAME.matcher(path.getFileName().toString());
+        if (matcher.matches()) {
+            return "\"" + matcher.group(1) + (matcher.group(2) != null ? matcher.group(2) : "") + "\"";
+        }
+        try (InputStream in = Files.newInputStream(path)) {
+            return "\"" + ContentHashes.shortSha256Hex(in) + "\"";
+        }
+    }
 }
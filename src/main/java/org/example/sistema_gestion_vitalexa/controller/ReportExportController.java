@@ -13,6 +13,7 @@ import org.springframework.http.*;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.time.LocalDate;
 import java.util.UUID;
@@ -59,7 +60,7 @@ public class ReportExportController {
         // =============================================
 
         @GetMapping("/complete/pdf")
-        public ResponseEntity<byte[]> exportCompleteReportPdf(
+        public ResponseEntity<StreamingResponseBody> exportCompleteReportPdf(
                         @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate startDate,
                         @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate endDate,
                         Authentication authentication) {
@@ -76,17 +77,17 @@ public class ReportExportController {
                         report = reportService.getCompleteReport(startDate, endDate);
                 }
 
-                byte[] pdfBytes = exportService.exportReportToPdf(report, startDate, endDate);
+                StreamingResponseBody pdfBody = exportService.streamReportToPdf(report, startDate, endDate);
 
                 HttpHeaders headers = baseDownloadHeaders(
                                 "reporte_completo_" + LocalDate.now() + ".pdf",
                                 MediaType.APPLICATION_PDF);
 
-                return new ResponseEntity<>(pdfBytes, headers, HttpStatus.OK);
+                return new ResponseEntity<>(pdfBody, headers, HttpStatus.OK);
         }
 
         @GetMapping("/complete/excel")
-        public ResponseEntity<byte[]> exportCompleteReportExcel(
+        public ResponseEntity<StreamingResponseBody> exportCompleteReportExcel(
                         @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate startDate,
                         @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate endDate,
                         Authentication authentication) {
@@ -97,22 +98,22 @@ public class ReportExportController {
                                 .orElseThrow(() -> new BusinessExeption("Usuario no encontrado"));
 
                 ReportDTO report;
-                byte[] excelBytes;
+                StreamingResponseBody excelBody;
                 String filename;
 
                 if (currentUser.getRole() == Role.VENDEDOR) {
                         // La vendedora solo ve su propio reporte
                         report = reportService.getCompleteReport(startDate, endDate, currentUser.getId());
-                        excelBytes = exportService.exportReportToExcel(report, startDate, endDate, currentUser.getId());
+                        excelBody = exportService.streamReportToExcel(report, startDate, endDate, currentUser.getId());
                         filename = "reporte_" + currentUser.getUsername() + "_" + LocalDate.now() + ".xlsx";
                 } else {
                         report = reportService.getCompleteReport(startDate, endDate);
-                        excelBytes = exportService.exportReportToExcel(report, startDate, endDate);
+                        excelBody = exportService.streamReportToExcel(report, startDate, endDate, null);
                         filename = "reporte_completo_" + LocalDate.now() + ".xlsx";
                 }
 
                 HttpHeaders headers = baseDownloadHeaders(filename, XLSX_MEDIA_TYPE);
-                return new ResponseEntity<>(excelBytes, headers, HttpStatus.OK);
+                return new ResponseEntity<>(excelBody, headers, HttpStatus.OK);
         }
 
         @GetMapping("/complete/csv")
@@ -153,14 +154,14 @@ public class ReportExportController {
         }
 
         @GetMapping("/products/excel")
-        public ResponseEntity<byte[]> exportProductReportExcel() {
-                byte[] excelBytes = exportService.exportProductReportToExcel();
+        public ResponseEntity<StreamingResponseBody> exportProductReportExcel() {
+                StreamingResponseBody excelBody = exportService.streamProductReportToExcel();
 
                 HttpHeaders headers = baseDownloadHeaders(
                                 "reporte_productos_" + LocalDate.now() + ".xlsx",
                                 XLSX_MEDIA_TYPE);
 
-                return new ResponseEntity<>(excelBytes, headers, HttpStatus.OK);
+                return new ResponseEntity<>(excelBody, headers, HttpStatus.OK);
         }
 
         @GetMapping("/clients/csv")
@@ -185,7 +186,7 @@ public class ReportExportController {
          * - Vendedor: solo puede descargar su propio reporte
          */
         @GetMapping("/vendor/{vendedorId}/excel")
-        public ResponseEntity<byte[]> exportVendorReportExcel(
+        public ResponseEntity<StreamingResponseBody> exportVendorReportExcel(
                         @PathVariable UUID vendedorId,
                         @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate startDate,
                         @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate endDate,
@@ -205,7 +206,8 @@ public class ReportExportController {
                 ReportDTO report = reportService.getCompleteReport(startDate, endDate, vendedorId);
 
                 // Usamos el método de exportación que soporta el filtro (para hojas como Saldos)
-                byte[] excelBytes = exportService.exportReportToExcel(report, startDate, endDate, vendedorId);
+                StreamingResponseBody excelBody = exportService.streamReportToExcel(report, startDate, endDate,
+                                vendedorId);
 
                 // Obtener nombre del vendedor para el archivo
                 String vendorName = "Vendedor";
@@ -220,7 +222,7 @@ public class ReportExportController {
                 HttpHeaders headers = baseDownloadHeaders(
                                 "reporte_completo_" + vendorName + "_" + LocalDate.now() + ".xlsx",
                                 XLSX_MEDIA_TYPE);
-                return new ResponseEntity<>(excelBytes, headers, HttpStatus.OK);
+                return new ResponseEntity<>(excelBody, headers, HttpStatus.OK);
         }
 
         /**
@@ -274,7 +276,7 @@ public class ReportExportController {
          */
         @GetMapping("/my/excel")
         @PreAuthorize("hasAnyRole('VENDEDOR', 'ADMIN', 'OWNER')")
-        public ResponseEntity<byte[]> exportMyReportExcel(
+        public ResponseEntity<StreamingResponseBody> exportMyReportExcel(
                         @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate startDate,
                         @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate endDate,
                         Authentication authentication) {
@@ -285,11 +287,12 @@ public class ReportExportController {
                                 .orElseThrow(() -> new BusinessExeption("Usuario no encontrado"));
 
                 ReportDTO report = reportService.getCompleteReport(startDate, endDate, currentUser.getId());
-                byte[] excelBytes = exportService.exportReportToExcel(report, startDate, endDate, currentUser.getId());
+                StreamingResponseBody excelBody = exportService.streamReportToExcel(report, startDate, endDate,
+                                currentUser.getId());
 
                 String filename = "reporte_" + currentUser.getUsername() + "_" + LocalDate.now() + ".xlsx";
                 HttpHeaders headers = baseDownloadHeaders(filename, XLSX_MEDIA_TYPE);
-                return new ResponseEntity<>(excelBytes, headers, HttpStatus.OK);
+                return new ResponseEntity<>(excelBody, headers, HttpStatus.OK);
         }
 
         /**
@@ -1,6 +1,7 @@
 package org.example.sistema_gestion_vitalexa.controller.admin;
 
 import lombok.RequiredArgsConstructor;
+import org.example.sistema_gestion_vitalexa.dto.CursorPage;
 import org.example.sistema_gestion_vitalexa.dto.InventoryMovementResponseDTO;
 import lombok.extern.slf4j.Slf4j;
 import org.example.sistema_gestion_vitalexa.entity.InventoryMovement;
@@ -14,6 +15,7 @@ import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.time.LocalDateTime;
 import java.util.List;
@@ -39,8 +41,29 @@ public class InventoryHistoryController {
                 return ResponseEntity.ok(movementService.getHistory(productId, type, startDate, endDate, pageable));
         }
 
+        /**
+         * GET /api/admin/inventory/history/cursor?size=20&cursor=...
+         * Variante por cursor de GET /api/admin/inventory/history: el costo de
+         * una página no crece con la profundidad. nextCursor se envía tal cual
+         * para pedir la siguiente; withTotal=true incluye el total en la primera.
+         */
+        @GetMapping("/cursor")
+        public ResponseEntity<CursorPage<InventoryMovementResponseDTO>> getHistoryByCursor(
+                        @RequestParam(required = false) UUID productId,
+                        @RequestParam(required = false) InventoryMovementType type,
+                        @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime startDate,
+                        @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime endDate,
+                        @RequestParam(required = false) String cursor,
+                        @RequestParam(defaultValue = "20") int size,
+                        @RequestParam(defaultValue = "false") boolean withTotal) {
+
+                int safeSize = Math.max(1, Math.min(size, 100));
+                return ResponseEntity.ok(movementService.getHistoryByCursor(productId, type, startDate, endDate,
+                                cursor, safeSize, withTotal));
+        }
+
         @GetMapping("/export")
-        public ResponseEntity<byte[]> exportHistory(
+        public ResponseEntity<StreamingResponseBody> exportHistory(
                         @RequestParam(required = false) UUID productId,
                         @RequestParam(required = false) InventoryMovementType type,
                         @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime startDate,
@@ -48,7 +71,6 @@ public class InventoryHistoryController {
                         org.springframework.security.core.Authentication authentication) {
 
                 String username = authentication != null ? authentication.getName() : "Unknown";
-                List<InventoryMovement> movements = movementService.getAllHistory(productId, type, startDate, endDate);
 
                 String filterDesc = "Filtros: " +
                                 (productId != null ? "Producto ID=" + productId + " " : "") +
@@ -56,14 +78,15 @@ public class InventoryHistoryController {
                                 (startDate != null ? "Desde=" + startDate + " " : "") +
                                 (endDate != null ? "Hasta=" + endDate : "");
 
-                byte[] pdfBytes = movementService.generateHistoryPdf(movements, username, filterDesc);
+                StreamingResponseBody pdfBody = movementService.streamHistoryPdf(productId, type, startDate,
+                                endDate, username, filterDesc);
 
                 return ResponseEntity.ok()
                                 .header("Content-Disposition",
                                                 "attachment; filename=historial_inventario_"
                                                                 + System.currentTimeMillis() + ".pdf")
                                 .header("Content-Type", "application/pdf")
-                                .body(pdfBytes);
+                                .body(pdfBody);
         }
 
         @GetMapping("/{id}/export")
@@ -2,7 +2,10 @@ package org.example.sistema_gestion_vitalexa.controller.admin;
 
 import lombok.RequiredArgsConstructor;
 import org.example.sistema_gestion_vitalexa.dto.AddAssortmentItemRequest;
+import org.example.sistema_gestion_vitalexa.dto.BulkCompleteOrdersRequest;
+import org.example.sistema_gestion_vitalexa.dto.BulkCompleteOrdersResult;
 import org.example.sistema_gestion_vitalexa.dto.CompleteOrderRequest;
+import org.example.sistema_gestion_vitalexa.dto.CursorPage;
 import org.example.sistema_gestion_vitalexa.dto.OrderCreationResult;
 import org.example.sistema_gestion_vitalexa.dto.OrderRequestDto;
 import org.example.sistema_gestion_vitalexa.dto.OrderResponse;
@@ -62,6 +65,26 @@ public class OrderAdminController {
         return ResponseEntity.ok(resultado);
     }
 
+    /**
+     * GET /api/admin/orders/cursor?size=20&status=pending&cursor=...
+     * Igual que /paginated pero por cursor, siempre de la más reciente a la más
+     * antigua: enviar el nextCursor recibido para pedir la siguiente página.
+     *
+     * @param withTotal si true, la primera página incluye estimatedTotal
+     */
+    @GetMapping("/cursor")
+    public ResponseEntity<CursorPage<OrderResponse>> findAllByCursor(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "20") int size,
+            @RequestParam(defaultValue = "all") String status,
+            @RequestParam(required = false) String search,
+            @RequestParam(required = false) String vendedor,
+            @RequestParam(required = false) String cliente,
+            @RequestParam(defaultValue = "false") boolean withTotal) {
+        int safeSize = Math.max(1, Math.min(size, 100));
+        return ResponseEntity.ok(ordenService.findAllByCursor(cursor, safeSize, status, search, vendedor, cliente, withTotal));
+    }
+
     @GetMapping("/{id}")
     public ResponseEntity<OrderResponse> findById(@PathVariable UUID id) {
 
@@ -240,6 +263,30 @@ public class OrderAdminController {
         return ResponseEntity.ok(response);
     }
 
+    /**
+     * POST /api/admin/orders/complete
+     * Completar varias órdenes de una vez (cierre del día). Misma fecha y nota
+     * de auditoría para todas; facturas consecutivas en el orden de orderIds.
+     * Devuelve el resultado de cada orden (las ya completadas o inexistentes
+     * se reportan como fallidas sin afectar a las demás).
+     *
+     * <pre>
+     * {
+     *   "orderIds": ["...", "..."],
+     *   "completedAt": "2026-01-15",
+     *   "auditNote": "Cierre del día"
+     * }
+     * </pre>
+     */
+    @PostMapping("/complete")
+    public ResponseEntity<BulkCompleteOrdersResult> completeOrders(
+            @RequestBody BulkCompleteOrdersRequest request,
+            Authentication authentication) {
+
+        BulkCompleteOrdersResult result = ordenService.completeOrdersBulk(request, authentication.getName());
+        return ResponseEntity.ok(result);
+    }
+
     /**
      * POST /api/admin/orders/{id}/annul
      * Anular orden con motivo.
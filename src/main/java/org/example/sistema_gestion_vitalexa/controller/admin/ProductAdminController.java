@@ -37,6 +37,7 @@ public class ProductAdminController {
 
     private final ProductService productService;
     private final ProductImageService imageService;
+    private final org.example.sistema_gestion_vitalexa.service.ProductImageIngestionService imageIngestionService;
     private final ProductAuditService auditService;
     private final SpecialProductRepository specialProductRepository;
     private final org.example.sistema_gestion_vitalexa.service.InventoryMovementService movementService;
@@ -452,6 +453,16 @@ public class ProductAdminController {
                 sp.getId());
     }
 
+    /**
+     * Estado de subida de una imagen enviada en Base64 (pendingImageId del
+     * producto): PENDING, UPLOADING, READY (con url) o FAILED (con error)
+     */
+    @GetMapping("/images/{imageId}")
+    public ResponseEntity<org.example.sistema_gestion_vitalexa.dto.ProductImageStatusResponse> getImageStatus(
+            @PathVariable UUID imageId) {
+        return ResponseEntity.ok(imageIngestionService.getStatus(imageId));
+    }
+
     /**
      * Obtener producto por ID
      */
@@ -628,9 +639,10 @@ public class ProductAdminController {
      * Descargar inventario actual en PDF
      */
     @GetMapping("/inventory/export/pdf")
-    public ResponseEntity<byte[]> downloadInventoryPdf() {
+    public ResponseEntity<org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody> downloadInventoryPdf() {
         try {
-            byte[] pdfContent = productService.exportInventoryToPdf();
+            org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody pdfContent = productService
+                    .streamInventoryToPdf();
 
             return ResponseEntity.ok()
                     .header(HttpHeaders.CONTENT_DISPOSITION,
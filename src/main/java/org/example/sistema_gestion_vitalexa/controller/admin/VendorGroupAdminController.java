@@ -0,0 +1,46 @@
+package org.example.sistema_gestion_vitalexa.controller.admin;
+
+import jakarta.validation.Valid;
+import lombok.RequiredArgsConstructor;
+import org.example.sistema_gestion_vitalexa.dto.VendorGroupRequest;
+import org.example.sistema_gestion_vitalexa.dto.VendorGroupResponse;
+import org.example.sistema_gestion_vitalexa.service.VendorGroupService;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+
+/**
+ * Grupos de vendedores que comparten clientes, órdenes, metas y nómina
+ * (p. ej. NinaTorres / YicelaSandoval).
+ */
+@RestController
+@RequestMapping("/api/admin/vendor-groups")
+@RequiredArgsConstructor
+@PreAuthorize("hasAnyRole('ADMIN', 'OWNER')")
+public class VendorGroupAdminController {
+
+    private final VendorGroupService vendorGroupService;
+
+    @GetMapping
+    public ResponseEntity<List<VendorGroupResponse>> findAll() {
+        return ResponseEntity.ok(vendorGroupService.findAll());
+    }
+
+    /**
+     * Crear o reemplazar un grupo. El primer vendedor es la cuenta principal.
+     */
+    @PutMapping("/{name}")
+    public ResponseEntity<VendorGroupResponse> save(
+            @PathVariable String name,
+            @Valid @RequestBody VendorGroupRequest request) {
+        return ResponseEntity.ok(vendorGroupService.save(name, request));
+    }
+
+    @DeleteMapping("/{name}")
+    public ResponseEntity<Void> delete(@PathVariable String name) {
+        vendorGroupService.delete(name);
+        return ResponseEntity.noContent().build();
+    }
+}
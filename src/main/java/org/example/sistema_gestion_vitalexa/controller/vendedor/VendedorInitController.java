@@ -2,17 +2,13 @@ package org.example.sistema_gestion_vitalexa.controller.vendedor;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.example.sistema_gestion_vitalexa.dto.CatalogSnapshotDTO;
 import org.example.sistema_gestion_vitalexa.dto.ProductResponse;
-import org.example.sistema_gestion_vitalexa.dto.PromotionResponse;
-import org.example.sistema_gestion_vitalexa.dto.SpecialProductResponse;
 import org.example.sistema_gestion_vitalexa.dto.SpecialPromotionResponse;
 import org.example.sistema_gestion_vitalexa.dto.VendedorInitDTO;
-import org.example.sistema_gestion_vitalexa.entity.SpecialProduct;
 import org.example.sistema_gestion_vitalexa.entity.User;
-import org.example.sistema_gestion_vitalexa.repository.SpecialProductRepository;
 import org.example.sistema_gestion_vitalexa.repository.UserRepository;
-import org.example.sistema_gestion_vitalexa.service.ProductService;
-import org.example.sistema_gestion_vitalexa.service.PromotionService;
+import org.example.sistema_gestion_vitalexa.service.CatalogSnapshotService;
 import org.example.sistema_gestion_vitalexa.service.SpecialPromotionService;
 import org.springframework.http.CacheControl;
 import org.springframework.http.ResponseEntity;
@@ -22,11 +18,11 @@ import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 
-import java.math.BigDecimal;
 import java.util.ArrayList;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.UUID;
 import java.util.concurrent.TimeUnit;
 
@@ -45,6 +41,10 @@ import java.util.concurrent.TimeUnit;
  *   la vendedora recarga la página no tiene que volver a pedir los datos.
  * - El backend usa FETCH JOIN (una sola query a la BD para las promociones),
  *   reduciendo la latencia del servidor también.
+ * - El catálogo común sale de una foto en memoria (CatalogSnapshotService)
+ *   que solo se reconstruye cuando cambian productos o promociones.
+ * - ETag: si nada cambió, el navegador recibe un 304 sin cuerpo y reutiliza
+ *   su copia (ideal con señal débil).
  */
 @RestController
 @RequestMapping("/api/vendedor/init")
@@ -53,11 +53,9 @@ import java.util.concurrent.TimeUnit;
 @Slf4j
 public class VendedorInitController {
 
-    private final ProductService productService;
-    private final PromotionService promotionService;
+    private final CatalogSnapshotService catalogSnapshotService;
     private final SpecialPromotionService specialPromotionService;
     private final UserRepository userRepository;
-    private final SpecialProductRepository specialProductRepository;
 
     /**
      * GET /api/vendedor/init
@@ -68,6 +66,7 @@ public class VendedorInitController {
      *  - promociones especiales del vendedor
      *
      * Cache-Control: max-age=120 (2 minutos en el navegador)
+     * ETag / If-None-Match: 304 cuando la vendedora ya tiene esta versión
      */
     @GetMapping
     public ResponseEntity<VendedorInitDTO> init(Authentication authentication) {
@@ -75,25 +74,23 @@ public class VendedorInitController {
         String username = authentication.getName();
         log.info("[INIT] Cargando datos de inicio para vendedor: {}", username);
 
+        // Foto del catálogo común (solo consulta la BD si algo cambió)
+        CatalogSnapshotDTO snapshot = catalogSnapshotService.getSnapshot();
+
         // --- 1. Productos (regulares + especiales del vendedor, sin duplicados) ---
         Map<UUID, ProductResponse> productosMap = new LinkedHashMap<>();
 
-        List<ProductResponse> regulares = productService.findAllActive();
-        for (ProductResponse p : regulares) {
+        for (ProductResponse p : snapshot.productos()) {
             productosMap.put(p.id(), p);
         }
 
         User vendor = userRepository.findByUsername(username).orElse(null);
         if (vendor != null) {
-            List<SpecialProduct> especiales = specialProductRepository.findActiveByVendorId(vendor.getId());
-            for (SpecialProduct sp : especiales) {
-                productosMap.put(sp.getId(), toProductResponse(sp));
+            for (ProductResponse sp : catalogSnapshotService.getVendorSpecialProducts(snapshot, vendor.getId())) {
+                productosMap.put(sp.id(), sp);
             }
         }
 
-        // --- 2. Promociones válidas (query optimizada con FETCH JOIN) ---
-        List<PromotionResponse> promociones = promotionService.findValidPromotionsEager();
-
         // --- 3. Promociones especiales del vendedor ---
         List<SpecialPromotionResponse> promosEspeciales = new ArrayList<>();
         if (vendor != null) {
@@ -102,10 +99,15 @@ public class VendedorInitController {
 
         VendedorInitDTO response = new VendedorInitDTO(
                 new ArrayList<>(productosMap.values()),
-                promociones,
+                snapshot.promociones(),
                 promosEspeciales
         );
 
+        // Versión de la foto + vendedora + sus promociones especiales (éstas no
+        // están en la foto, así que entran por su hash)
+        String etag = "\"" + snapshot.version() + "-"
+                + Integer.toHexString(Objects.hash(vendor != null ? vendor.getId() : null, promosEspeciales)) + "\"";
+
         long ms = System.currentTimeMillis() - inicio;
         log.info("[INIT] Datos de inicio listos en {}ms → {} productos, {} promo, {} promoEspeciales",
                 ms, response.productos().size(), response.promociones().size(),
@@ -115,24 +117,8 @@ public class VendedorInitController {
                 // 2 minutos de caché en el navegador: si la señal falla,
                 // el browser usa la versión guardada sin pedir al servidor
                 .cacheControl(CacheControl.maxAge(2, TimeUnit.MINUTES).noTransform())
+                // Spring responde 304 sin cuerpo si coincide con If-None-Match
+                .eTag(etag)
                 .body(response);
     }
-
-    private ProductResponse toProductResponse(SpecialProduct sp) {
-        return new ProductResponse(
-                sp.getId(),
-                sp.getNombre(),
-                sp.getDescripcion(),
-                sp.getPrecio(),
-                sp.getEffectiveStock(),
-                sp.getImageUrl(),
-                sp.isActive(),
-                sp.getReorderPoint(),
-                sp.getTag() != null ? sp.getTag().getId() : null,
-                sp.getTag() != null ? sp.getTag().getName() : null,
-                0,
-                true,
-                sp.getId());
-    }
 }
-
@@ -0,0 +1,15 @@
+package org.example.sistema_gestion_vitalexa.dto;
+
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Request para completar varias órdenes de una vez (cierre del día).
+ * completedAt y auditNote se aplican a todas, con las mismas reglas que
+ * {@link CompleteOrderRequest}.
+ */
+public record BulkCompleteOrdersRequest(
+        List<UUID> orderIds,
+        String completedAt,
+        String auditNote) {
+}
@@ -0,0 +1,13 @@
+package org.example.sistema_gestion_vitalexa.dto;
+
+import java.util.List;
+import java.util.UUID;
+
+public record BulkCompleteOrdersResult(
+        int completed,
+        int failed,
+        List<OrderResult> results) {
+
+    public record OrderResult(UUID orderId, boolean completed, Long invoiceNumber, String message) {
+    }
+}
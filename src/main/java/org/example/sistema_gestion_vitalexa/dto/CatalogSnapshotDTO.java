@@ -0,0 +1,15 @@
+package org.example.sistema_gestion_vitalexa.dto;
+
+import java.util.List;
+
+/**
+ * Foto inmutable del catálogo común a todas las vendedoras (productos activos y
+ * promociones válidas). La versión cambia cada vez que la foto se reconstruye,
+ * por lo que sirve directamente como ETag.
+ */
+public record CatalogSnapshotDTO(
+        String version,
+        List<ProductResponse> productos,
+        List<PromotionResponse> promociones
+) {
+}
@@ -0,0 +1,18 @@
+package org.example.sistema_gestion_vitalexa.dto;
+
+import java.math.BigDecimal;
+import java.util.UUID;
+
+/**
+ * Fila agregada de compras por cliente y vendedor (GROUP BY en SQL).
+ */
+public record ClientSalesAggregateDTO(
+        UUID clientId,
+        String clientName,
+        String clientPhone,
+        Boolean clientActive,
+        UUID vendedorId,
+        String vendedorUsername,
+        BigDecimal totalSpent,
+        Long orders
+) {}
@@ -0,0 +1,17 @@
+package org.example.sistema_gestion_vitalexa.dto;
+
+import java.util.List;
+
+/**
+ * Página por cursor (keyset).
+ *
+ * @param nextCursor     token opaco para pedir la página siguiente; null si no hay más
+ * @param estimatedTotal total de filas del filtro, solo si se pidió y en la
+ *                       primera página (no se recalcula al avanzar); null si no
+ */
+public record CursorPage<T>(
+        List<T> content,
+        String nextCursor,
+        boolean hasNext,
+        Long estimatedTotal) {
+}
@@ -0,0 +1,9 @@
+package org.example.sistema_gestion_vitalexa.dto;
+
+import java.nio.file.Path;
+
+/**
+ * Archivo de una exportación terminada, listo para servir
+ */
+public record ExportJobFile(Path path, String filename, String contentType) {
+}
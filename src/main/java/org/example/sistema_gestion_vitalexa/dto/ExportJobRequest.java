@@ -0,0 +1,25 @@
+package org.example.sistema_gestion_vitalexa.dto;
+
+import jakarta.validation.constraints.NotNull;
+import org.example.sistema_gestion_vitalexa.enums.ExportJobType;
+
+import java.time.LocalDate;
+import java.util.UUID;
+
+/**
+ * Pedido de exportación en segundo plano. Cada tipo usa solo sus parámetros:
+ * - REPORT_*: startDate, endDate (default: último mes), vendedorId opcional
+ * - PAYROLL_*: month, year (obligatorios), vendedorId opcional
+ * - CLIENT_BALANCE_EXCEL: vendedorId, startDate, endDate, onlyWithDebt
+ * - INVENTORY_*: sin parámetros
+ * Para una vendedora, vendedorId siempre es ella misma.
+ */
+public record ExportJobRequest(
+        @NotNull ExportJobType type,
+        LocalDate startDate,
+        LocalDate endDate,
+        Integer month,
+        Integer year,
+        UUID vendedorId,
+        Boolean onlyWithDebt) {
+}
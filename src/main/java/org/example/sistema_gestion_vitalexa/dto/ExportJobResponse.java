@@ -0,0 +1,20 @@
+package org.example.sistema_gestion_vitalexa.dto;
+
+import org.example.sistema_gestion_vitalexa.enums.ExportJobStatus;
+import org.example.sistema_gestion_vitalexa.enums.ExportJobType;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+public record ExportJobResponse(
+        UUID id,
+        ExportJobType type,
+        ExportJobStatus status,
+        String filename,
+        Long sizeBytes,
+        String error,
+        LocalDateTime createdAt,
+        LocalDateTime finishedAt,
+        LocalDateTime expiresAt,
+        String downloadUrl) {
+}
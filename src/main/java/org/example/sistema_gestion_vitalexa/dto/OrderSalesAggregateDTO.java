@@ -0,0 +1,18 @@
+package org.example.sistema_gestion_vitalexa.dto;
+
+import java.math.BigDecimal;
+import java.util.UUID;
+
+/**
+ * Fila agregada de ventas COMPLETADAS por vendedor y día efectivo
+ * (completedAt, o fecha para órdenes históricas). Se arma en SQL con GROUP BY.
+ */
+public record OrderSalesAggregateDTO(
+        UUID vendedorId,
+        String vendedorUsername,
+        Integer year,
+        Integer month,
+        Integer day,
+        BigDecimal revenue,
+        Long orders
+) {}
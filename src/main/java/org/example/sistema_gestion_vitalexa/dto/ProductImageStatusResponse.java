@@ -0,0 +1,15 @@
+package org.example.sistema_gestion_vitalexa.dto;
+
+import org.example.sistema_gestion_vitalexa.enums.ImageUploadStatus;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+public record ProductImageStatusResponse(
+        UUID id,
+        ImageUploadStatus status,
+        String url,
+        String error,
+        Integer attempts,
+        LocalDateTime updatedAt) {
+}
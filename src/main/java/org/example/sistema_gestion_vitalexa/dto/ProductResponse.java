@@ -1,5 +1,8 @@
 package org.example.sistema_gestion_vitalexa.dto;
 
+import com.fasterxml.jackson.annotation.JsonProperty;
+import org.example.sistema_gestion_vitalexa.service.ProductImageService;
+
 import java.math.BigDecimal;
 import java.util.UUID;
 
@@ -16,14 +19,41 @@ public record ProductResponse(
         String tagName,
         Integer linkedSpecialCount,
         Boolean isSpecialProduct,
-        UUID specialProductId) {
+        UUID specialProductId,
+        UUID pendingImageId) {
+
+    /**
+     * Derivado de 200 px para listados (Cloudinary WebP o ?size=thumb local)
+     */
+    @JsonProperty("thumbUrl")
+    public String thumbUrl() {
+        return ProductImageService.derivativeUrl(imageUrl, "thumb");
+    }
+
+    /**
+     * Derivado de 800 px para el detalle del producto
+     */
+    @JsonProperty("mediumUrl")
+    public String mediumUrl() {
+        return ProductImageService.derivativeUrl(imageUrl, "medium");
+    }
+
+    /**
+     * Constructor sin imagen pendiente (productos especiales)
+     */
+    public ProductResponse(UUID id, String nombre, String descripcion, BigDecimal precio, Integer stock,
+            String imageUrl, Boolean active, Integer reorderPoint, UUID tagId, String tagName,
+            Integer linkedSpecialCount, Boolean isSpecialProduct, UUID specialProductId) {
+        this(id, nombre, descripcion, precio, stock, imageUrl, active, reorderPoint, tagId, tagName,
+                linkedSpecialCount, isSpecialProduct, specialProductId, null);
+    }
 
     /**
      * Constructor sin tag (backward compatibility)
      */
     public ProductResponse(UUID id, String nombre, String descripcion, BigDecimal precio, Integer stock,
             String imageUrl, Boolean active) {
-        this(id, nombre, descripcion, precio, stock, imageUrl, active, null, null, null, 0, false, null);
+        this(id, nombre, descripcion, precio, stock, imageUrl, active, null, null, null, 0, false, null, null);
     }
 
     /**
@@ -33,6 +63,6 @@ public record ProductResponse(
             String imageUrl, Boolean active, Integer reorderPoint, UUID tagId, String tagName,
             Integer linkedSpecialCount) {
         this(id, nombre, descripcion, precio, stock, imageUrl, active, reorderPoint, tagId, tagName,
-                linkedSpecialCount, false, null);
+                linkedSpecialCount, false, null, null);
     }
 }
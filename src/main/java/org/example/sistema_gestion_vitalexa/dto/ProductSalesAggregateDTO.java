@@ -0,0 +1,17 @@
+package org.example.sistema_gestion_vitalexa.dto;
+
+import java.math.BigDecimal;
+import java.util.UUID;
+
+/**
+ * Fila agregada de unidades vendidas por producto y vendedor (GROUP BY en SQL).
+ */
+public record ProductSalesAggregateDTO(
+        UUID productId,
+        String productName,
+        String imageUrl,
+        UUID vendedorId,
+        String vendedorUsername,
+        Long quantitySold,
+        BigDecimal revenue
+) {}
@@ -0,0 +1,17 @@
+package org.example.sistema_gestion_vitalexa.dto;
+
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.Size;
+
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Miembros de un grupo de vendedores, en orden: el primero es la cuenta
+ * principal (titular de la nómina y nombre que se muestra en reportes).
+ */
+public record VendorGroupRequest(
+        @NotEmpty(message = "El grupo debe tener miembros")
+        @Size(min = 2, message = "Un grupo necesita al menos 2 vendedores")
+        List<UUID> memberIds
+) {}
@@ -0,0 +1,14 @@
+package org.example.sistema_gestion_vitalexa.dto;
+
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Grupo de vendedores que comparten clientes, órdenes, metas y nómina. Las
+ * listas van en el mismo orden, la cuenta principal primero.
+ */
+public record VendorGroupResponse(
+        String name,
+        List<UUID> memberIds,
+        List<String> usernames
+) {}
@@ -0,0 +1,12 @@
+package org.example.sistema_gestion_vitalexa.dto;
+
+import java.math.BigDecimal;
+import java.util.UUID;
+
+/**
+ * Total de transferencias activas recibidas por un vendedor en un rango.
+ */
+public record VendorTransferTotalDTO(
+        UUID vendedorId,
+        BigDecimal amount
+) {}
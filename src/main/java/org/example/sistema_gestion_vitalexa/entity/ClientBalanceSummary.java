@@ -0,0 +1,51 @@
+package org.example.sistema_gestion_vitalexa.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * Resumen materializado de cartera de un cliente (una fila por cliente).
+ *
+ * Se escribe solo con SQL nativo desde
+ * {@link org.example.sistema_gestion_vitalexa.repository.ClientBalanceSummaryRepository},
+ * recalculando la fila a partir de la vista client_balance_computed. Los días
+ * de mora no se guardan: se derivan de oldestPendingInvoiceDate al leer.
+ */
+@Entity
+@Table(name = "client_balance_summary")
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class ClientBalanceSummary {
+
+    @Id
+    @Column(name = "client_id")
+    private UUID clientId;
+
+    /** Total de órdenes completadas (con descuento si aplica) */
+    @Column(name = "total_orders", nullable = false, precision = 14, scale = 2)
+    private BigDecimal totalOrders;
+
+    /** Total de pagos activos sobre esas órdenes */
+    @Column(name = "total_paid", nullable = false, precision = 14, scale = 2)
+    private BigDecimal totalPaid;
+
+    @Column(name = "pending_orders_count", nullable = false)
+    private Integer pendingOrdersCount;
+
+    @Column(name = "last_payment_date")
+    private LocalDate lastPaymentDate;
+
+    @Column(name = "oldest_pending_invoice_date")
+    private LocalDate oldestPendingInvoiceDate;
+
+    @Column(name = "updated_at", nullable = false)
+    private LocalDateTime updatedAt;
+}
@@ -97,6 +97,17 @@ public class Order {
     @Builder.Default
     private List<OrderDiscount> discounts = new ArrayList<>();
 
+    // ── Totales incrementales (no persistidos) ──────────────────────────────────
+    // Suma acumulada de los items ya contados y precio de pack contado por cada
+    // instancia de promoción. Se reconstruyen desde items la primera vez que se
+    // usan (orden recién cargada) o si la lista se modificó por fuera de
+    // addItem/removeItem.
+    // Campo final inicializado: @Builder y @AllArgsConstructor lo omiten, así
+    // que no se puede fijar desde fuera un acumulado inconsistente con items.
+    @Transient
+    @Getter(AccessLevel.NONE)
+    private final RunningTotals running = new RunningTotals();
+
     public Order(User vendedor, Client cliente) {
         this.vendedor = vendedor;
         this.cliente = cliente;
@@ -107,53 +118,153 @@ public class Order {
         this.items = new ArrayList<>();
     }
 
-    // Agregar item y recalcular
+    // Agregar item y actualizar el total (O(1), sin recorrer los demás items)
     public void addItem(OrderItem item) {
+        ensureRunningTotals();
         items.add(item);
         item.setOrder(this);
-        recalculateTotal(); // ← Corregido el typo
+        accumulate(item);
+        running.trackedItemCount++;
+        this.total = running.total;
     }
 
-    // Remover item y recalcular
+    // Agregar varios items y fijar el total una sola vez
+    public void addItems(java.util.Collection<OrderItem> newItems) {
+        ensureRunningTotals();
+        for (OrderItem item : newItems) {
+            items.add(item);
+            item.setOrder(this);
+            accumulate(item);
+            running.trackedItemCount++;
+        }
+        this.total = running.total;
+    }
+
+    // Remover item y actualizar el total
     public void removeItem(OrderItem item) {
-        items.remove(item);
-        item.setOrder(null);
-        recalculateTotal();
+        removeItems(List.of(item));
+    }
+
+    // Remover varios items y fijar el total una sola vez
+    public void removeItems(java.util.Collection<OrderItem> removedItems) {
+        ensureRunningTotals();
+        boolean rebuild = false;
+        for (OrderItem item : List.copyOf(removedItems)) {
+            if (items.remove(item)) {
+                running.trackedItemCount--;
+                rebuild |= !discount(item);
+            }
+            item.setOrder(null);
+        }
+        if (rebuild) {
+            recalculateTotal();
+        } else {
+            this.total = running.total;
+        }
     }
 
     // Recalcular total respetando precios fijos de promociones
     public void recalculateTotal() {
-        java.util.Set<UUID> processedPromoInstances = new java.util.HashSet<>();
-        BigDecimal total = BigDecimal.ZERO;
-
+        running.total = BigDecimal.ZERO;
+        running.promoInstances = new java.util.HashMap<>();
         for (OrderItem item : items) {
-            // ✅ CRÍTICO: Si es item de promoción con instancia ID y precio fijo,
-            // solo agregarlo una vez (evitar duplicación de precios)
-            if (Boolean.TRUE.equals(item.getIsPromotionItem()) &&
-                    item.getPromotionInstanceId() != null &&
-                    item.getPromotionPackPrice() != null) {
-
-                // Si ya procesamos esta instancia de promoción, no agregar de nuevo
-                if (!processedPromoInstances.contains(item.getPromotionInstanceId())) {
-                    total = total.add(item.getPromotionPackPrice());
-                    processedPromoInstances.add(item.getPromotionInstanceId());
-                }
-            } else {
-                // Items normales o items de regalo sin precio fijo: suma normal
-                total = total.add(item.getSubTotal());
-            }
+            accumulate(item);
         }
-
-        this.total = total;
+        running.trackedItemCount = items.size();
+        this.total = running.total;
     }
 
     // Limpiar items (para edición)
     public void clearItems() {
         items.forEach(item -> item.setOrder(null));
         items.clear();
+        running.total = BigDecimal.ZERO;
+        running.promoInstances = new java.util.HashMap<>();
+        running.trackedItemCount = 0;
         this.total = BigDecimal.ZERO;
     }
 
+    /**
+     * Suma un item al total acumulado.
+     * ✅ CRÍTICO: un item de promoción con instancia ID y precio fijo cuenta el
+     * precio del pack solo la primera vez que aparece su instancia (evitar
+     * duplicación de precios). Items normales o de regalo sin precio fijo:
+     * suma normal de su subtotal.
+     */
+    private void accumulate(OrderItem item) {
+        if (isPackPricedPromoItem(item)) {
+            PromoInstanceTotal instance = running.promoInstances.get(item.getPromotionInstanceId());
+            if (instance == null) {
+                running.promoInstances.put(item.getPromotionInstanceId(),
+                        new PromoInstanceTotal(item.getPromotionPackPrice()));
+                running.total = running.total.add(item.getPromotionPackPrice());
+            } else {
+                instance.add(item.getPromotionPackPrice());
+            }
+        } else {
+            running.total = running.total.add(item.getSubTotal());
+        }
+    }
+
+    /**
+     * Descuenta un item del total acumulado. Devuelve false si no se puede
+     * hacer de forma exacta (instancia de promoción con precios de pack
+     * distintos entre sus items) y hay que recalcular.
+     */
+    private boolean discount(OrderItem item) {
+        if (!isPackPricedPromoItem(item)) {
+            running.total = running.total.subtract(item.getSubTotal());
+            return true;
+        }
+        PromoInstanceTotal instance = running.promoInstances.get(item.getPromotionInstanceId());
+        if (instance == null || !instance.uniformPrice) {
+            return false;
+        }
+        instance.itemCount--;
+        if (instance.itemCount == 0) {
+            running.promoInstances.remove(item.getPromotionInstanceId());
+            running.total = running.total.subtract(instance.packPrice);
+        }
+        return true;
+    }
+
+    private void ensureRunningTotals() {
+        if (items == null) {
+            items = new ArrayList<>();
+        }
+        if (running.total == null || running.promoInstances == null || running.trackedItemCount != items.size()) {
+            recalculateTotal();
+        }
+    }
+
+    private static boolean isPackPricedPromoItem(OrderItem item) {
+        return Boolean.TRUE.equals(item.getIsPromotionItem()) &&
+                item.getPromotionInstanceId() != null &&
+                item.getPromotionPackPrice() != null;
+    }
+
+    private static final class RunningTotals {
+        private BigDecimal total;
+        private java.util.Map<UUID, PromoInstanceTotal> promoInstances;
+        private int trackedItemCount;
+    }
+
+    // Precio de pack contado para una instancia de promoción y cuántos items la forman
+    private static final class PromoInstanceTotal {
+        private final BigDecimal packPrice;
+        private int itemCount = 1;
+        private boolean uniformPrice = true;
+
+        private PromoInstanceTotal(BigDecimal packPrice) {
+            this.packPrice = packPrice;
+        }
+
+        private void add(BigDecimal itemPackPrice) {
+            itemCount++;
+            uniformPrice &= packPrice.compareTo(itemPackPrice) == 0;
+        }
+    }
+
     // Verificar si la orden tiene productos sin stock
     public boolean hasOutOfStockItems() {
         return items.stream().anyMatch(item -> Boolean.TRUE.equals(item.getOutOfStock()));
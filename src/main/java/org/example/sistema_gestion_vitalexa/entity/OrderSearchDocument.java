@@ -0,0 +1,36 @@
+package org.example.sistema_gestion_vitalexa.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * Texto de búsqueda desnormalizado de una orden (factura, id, datos del
+ * cliente, vendedor y nombres de productos, en minúsculas), con índice
+ * trigram. Lo usa el buscador de órdenes como subconsulta de ids.
+ *
+ * La mantienen triggers de la base (V41) a partir de la vista
+ * order_search_source: al commit para órdenes e items, y con
+ * OrderSearchIndexService para renombres. Desde Java solo se lee.
+ */
+@Entity
+@Table(name = "order_search_documents")
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class OrderSearchDocument {
+
+    @Id
+    @Column(name = "order_id")
+    private UUID orderId;
+
+    @Column(nullable = false, columnDefinition = "TEXT")
+    private String document;
+
+    @Column(name = "updated_at", nullable = false)
+    private LocalDateTime updatedAt;
+}
@@ -30,10 +30,31 @@ public class Product {
 
     private BigDecimal precio;
 
+    /**
+     * Solo se escribe al insertar; después cambia únicamente por el ledger
+     * atómico (ProductService.decreaseStock/increaseStock), así un valor
+     * viejo en memoria nunca pisa una venta concurrente en el flush.
+     */
+    @Column(updatable = false)
     private Integer stock;
 
+    /**
+     * Unidades en pedidos activos (no finales). Lo mantienen los triggers de
+     * la base (V48); Hibernate nunca lo escribe para no pisar el valor con
+     * uno viejo. Ver CommittedStockService.
+     */
+    @Column(name = "committed_stock", insertable = false, updatable = false)
+    private Integer committedStock;
+
     private String imageUrl;
 
+    /**
+     * Imagen enviada que aún se está subiendo; al terminar reemplaza a
+     * imageUrl y vuelve a null. Ver ProductImageIngestionService.
+     */
+    @Column(name = "pending_image_id")
+    private UUID pendingImageId;
+
     private boolean active = true;
 
     @Column(name = "is_hidden")
@@ -57,26 +78,6 @@ public class Product {
         updatedAt = LocalDateTime.now();
     }
 
-    // reducir stock metodo
-    public void decreaseStock(int cantidad) {
-        if (cantidad <= 0) {
-            throw new IllegalArgumentException("Cantidad inválida");
-        }
-        // PERMITIMOS STOCK NEGATIVO - SE ELIMINA LA VALIDACIÓN DE STOCK INSUFICIENTE
-        this.stock -= cantidad;
-    }
-
-    // aumentar stock metodo
-    public void increaseStock(int cantidad) {
-        if (cantidad <= 0) {
-            throw new IllegalArgumentException("Cantidad inválida");
-        }
-        if (this.stock == null) {
-            this.stock = 0;
-        }
-        this.stock += cantidad;
-    }
-
     @Column(name = "reorder_point")
     private Integer reorderPoint;
 
@@ -0,0 +1,58 @@
+package org.example.sistema_gestion_vitalexa.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+import org.example.sistema_gestion_vitalexa.enums.ImageUploadStatus;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * Imagen de producto recibida en Base64, única por hash de contenido. Se sube
+ * fuera de la transacción del producto (ver ProductImageIngestionService); el
+ * contenido se guarda en data solo hasta que la subida termina.
+ */
+@Entity
+@Table(name = "product_images")
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class ProductImage {
+
+    @Id
+    private UUID id;
+
+    /** SHA-256 del contenido, en hexadecimal */
+    @Column(name = "content_hash", nullable = false, unique = true, length = 64)
+    private String contentHash;
+
+    @Column(name = "original_filename")
+    private String originalFilename;
+
+    @Column(name = "size_bytes", nullable = false)
+    private Long sizeBytes;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 20)
+    private ImageUploadStatus status;
+
+    @Column(length = 500)
+    private String url;
+
+    @Column(columnDefinition = "TEXT")
+    private String error;
+
+    @Column(nullable = false)
+    @Builder.Default
+    private Integer attempts = 0;
+
+    private byte[] data;
+
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+
+    @Column(name = "updated_at", nullable = false)
+    private LocalDateTime updatedAt;
+}
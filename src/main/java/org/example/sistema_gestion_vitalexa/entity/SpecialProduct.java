@@ -31,8 +31,10 @@ public class SpecialProduct {
     /**
      * Stock propio — solo se utiliza cuando parentProduct es null (standalone).
      * Cuando hay padre, el stock efectivo es parentProduct.stock.
+     * Igual que Product.stock, solo cambia por el ledger
+     * (SpecialProductService.decreaseOwnStock/increaseOwnStock).
      */
-    @Column(name = "own_stock")
+    @Column(name = "own_stock", updatable = false)
     private Integer ownStock;
 
     private String imageUrl;
@@ -106,38 +108,4 @@ public class SpecialProduct {
         }
         return ownStock;
     }
-
-    /**
-     * Disminuye stock. Delega al padre si está vinculado.
-     */
-    public void decreaseStock(int cantidad) {
-        if (isLinked()) {
-            parentProduct.decreaseStock(cantidad);
-        } else {
-            if (cantidad <= 0) {
-                throw new IllegalArgumentException("Cantidad inválida");
-            }
-            if (this.ownStock == null) {
-                this.ownStock = 0;
-            }
-            this.ownStock -= cantidad;
-        }
-    }
-
-    /**
-     * Aumenta stock. Delega al padre si está vinculado.
-     */
-    public void increaseStock(int cantidad) {
-        if (isLinked()) {
-            parentProduct.increaseStock(cantidad);
-        } else {
-            if (cantidad <= 0) {
-                throw new IllegalArgumentException("Cantidad inválida");
-            }
-            if (this.ownStock == null) {
-                this.ownStock = 0;
-            }
-            this.ownStock += cantidad;
-        }
-    }
 }
@@ -12,6 +12,9 @@ import java.util.UUID;
 
 @Entity
 @Table(name = "users")
+@EntityListeners({
+        org.example.sistema_gestion_vitalexa.security.jwt.UserPrincipalEvictionListener.class,
+        org.example.sistema_gestion_vitalexa.service.impl.UserGroupInvalidationListener.class })
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
@@ -34,4 +37,14 @@ public class User {
     private boolean active = true;
 
     private LocalDateTime createdAt = LocalDateTime.now();
+
+    /**
+     * Username con el que se cargó o guardó la entidad por última vez. Lo
+     * mantiene UserPrincipalEvictionListener para invalidar también las
+     * sesiones del nombre anterior cuando el usuario se renombra.
+     */
+    @Transient
+    @lombok.EqualsAndHashCode.Exclude
+    @lombok.ToString.Exclude
+    private String loadedUsername;
 }
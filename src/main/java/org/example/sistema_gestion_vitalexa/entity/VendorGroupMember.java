@@ -0,0 +1,33 @@
+package org.example.sistema_gestion_vitalexa.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.util.UUID;
+
+/**
+ * Pertenencia de un vendedor a un grupo que comparte datos (un usuario está
+ * en a lo sumo un grupo). Se lee a través de
+ * {@link org.example.sistema_gestion_vitalexa.service.UserGroupResolver}.
+ */
+@Entity
+@Table(name = "vendor_group_members")
+@EntityListeners(org.example.sistema_gestion_vitalexa.service.impl.UserGroupInvalidationListener.class)
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class VendorGroupMember {
+
+    @Id
+    @Column(name = "user_id")
+    private UUID userId;
+
+    @Column(name = "group_name", nullable = false, length = 100)
+    private String groupName;
+
+    /** 0 = cuenta principal del grupo */
+    @Column(nullable = false)
+    private Integer position;
+}
@@ -0,0 +1,11 @@
+package org.example.sistema_gestion_vitalexa.enums;
+
+/**
+ * Estado de una exportación en segundo plano
+ */
+public enum ExportJobStatus {
+    QUEUED, // En cola, esperando un hilo libre
+    RUNNING, // Generando el archivo
+    READY, // Archivo listo para descargar
+    FAILED // Error al generar (ver error)
+}
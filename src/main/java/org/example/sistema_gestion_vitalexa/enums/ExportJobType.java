@@ -0,0 +1,37 @@
+package org.example.sistema_gestion_vitalexa.enums;
+
+/**
+ * Exportaciones que se pueden pedir en segundo plano (/api/exports)
+ */
+public enum ExportJobType {
+    REPORT_PDF("reporte_completo", "pdf"),
+    REPORT_EXCEL("reporte_completo", "xlsx"),
+    PAYROLL_PDF("nomina", "pdf"),
+    PAYROLL_EXCEL("nomina", "xlsx"),
+    INVENTORY_PDF("inventario_vitalexa", "pdf"),
+    INVENTORY_EXCEL("inventario_vitalexa", "xlsx"),
+    CLIENT_BALANCE_EXCEL("cartera_clientes", "xlsx");
+
+    private static final String XLSX_CONTENT_TYPE =
+            "application/vnd.openxmlformats-officedocument.spreadsheetml.sheet";
+
+    private final String filePrefix;
+    private final String extension;
+
+    ExportJobType(String filePrefix, String extension) {
+        this.filePrefix = filePrefix;
+        this.extension = extension;
+    }
+
+    public String getFilePrefix() {
+        return filePrefix;
+    }
+
+    public String getExtension() {
+        return extension;
+    }
+
+    public String getContentType() {
+        return "pdf".equals(extension) ? "application/pdf" : XLSX_CONTENT_TYPE;
+    }
+}
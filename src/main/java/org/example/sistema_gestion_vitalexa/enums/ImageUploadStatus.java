@@ -0,0 +1,11 @@
+package org.example.sistema_gestion_vitalexa.enums;
+
+/**
+ * Estado de subida de una imagen de producto
+ */
+public enum ImageUploadStatus {
+    PENDING, // Guardada, esperando subida
+    UPLOADING, // Un hilo la está subiendo
+    READY, // Subida; url disponible
+    FAILED // Falló tras agotar los reintentos
+}
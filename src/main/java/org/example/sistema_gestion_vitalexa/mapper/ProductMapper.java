@@ -20,6 +20,8 @@ import java.util.stream.Collectors;
 @Mapper(componentModel = "spring")
 public interface ProductMapper {
 
+    @Mapping(target = "pendingImageId", ignore = true) // solo por la cola de imágenes
+    @Mapping(target = "committedStock", ignore = true) // solo por los triggers de order_items
     Product toEntity(CreateProductRequest dto);
 
     @Mapping(target = "id", source = "id")
@@ -42,8 +44,10 @@ public interface ProductMapper {
     @Mapping(target = "nombre", source = "nombre")
     @Mapping(target = "descripcion", source = "descripcion")
     @Mapping(target = "precio", source = "precio")
-    @Mapping(target = "stock", source = "stock")
+    @Mapping(target = "stock", ignore = true) // solo por el ledger (ProductService)
     @Mapping(target = "imageUrl", source = "imageUrl")
+    @Mapping(target = "pendingImageId", ignore = true)
+    @Mapping(target = "committedStock", ignore = true)
     void updateEntity(UpdateProductRequest dto, @MappingTarget Product product);
 
     @BeanMapping(nullValuePropertyMappingStrategy = NullValuePropertyMappingStrategy.IGNORE)
@@ -51,9 +55,11 @@ public interface ProductMapper {
     @Mapping(target = "nombre", source = "nombre")
     @Mapping(target = "descripcion", source = "descripcion")
     @Mapping(target = "precio", source = "precio")
-    @Mapping(target = "stock", source = "stock")
+    @Mapping(target = "stock", ignore = true) // solo por el ledger (ProductService)
     @Mapping(target = "imageUrl", source = "imageUrl")
     @Mapping(target = "reorderPoint", source = "reorderPoint")
+    @Mapping(target = "pendingImageId", ignore = true)
+    @Mapping(target = "committedStock", ignore = true)
     void updateEntity(UpdateProductBulkRequest dto, @MappingTarget Product product);
 
     @Mapping(target = "empacadorUsername", source = "empacador.username")
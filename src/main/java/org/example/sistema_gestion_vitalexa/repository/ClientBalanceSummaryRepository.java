@@ -0,0 +1,90 @@
+package org.example.sistema_gestion_vitalexa.repository;
+
+import org.example.sistema_gestion_vitalexa.entity.ClientBalanceSummary;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+
+public interface ClientBalanceSummaryRepository extends JpaRepository<ClientBalanceSummary, UUID> {
+
+  // ──── LECTURA (pantalla de cartera) ─────────────────────────────────────────
+
+  /**
+   * Clientes con su resumen de cartera en una sola consulta. Cada fila es
+   * [Client, ClientBalanceSummary]; el resumen es null si el cliente aún no
+   * tiene fila (cliente nuevo sin órdenes completadas).
+   */
+  @Query("""
+      SELECT c, s FROM Client c
+      LEFT JOIN FETCH c.vendedorAsignado
+      LEFT JOIN ClientBalanceSummary s ON s.clientId = c.id
+      ORDER BY c.nombre
+      """)
+  List<Object[]> findAllWithSummary();
+
+  @Query("""
+      SELECT c, s FROM Client c
+      LEFT JOIN FETCH c.vendedorAsignado v
+      LEFT JOIN ClientBalanceSummary s ON s.clientId = c.id
+      WHERE v.username IN :usernames
+      ORDER BY c.nombre
+      """)
+  List<Object[]> findWithSummaryByVendedorUsernameIn(@Param("usernames") Collection<String> usernames);
+
+  @Query("""
+      SELECT c, s FROM Client c
+      LEFT JOIN FETCH c.vendedorAsignado
+      LEFT JOIN ClientBalanceSummary s ON s.clientId = c.id
+      WHERE c.id IN :clientIds
+      ORDER BY c.nombre
+      """)
+  List<Object[]> findWithSummaryByClientIdIn(@Param("clientIds") Collection<UUID> clientIds);
+
+  // ──── ESCRITURA (siempre a partir de client_balance_computed) ───────────────
+
+  /**
+   * Recalcula la fila de los clientes indicados dentro de la transacción
+   * actual. flushAutomatically asegura que el cálculo vea los cambios de
+   * órdenes y pagos aún no enviados a la base de datos.
+   */
+  @org.springframework.transaction.annotation.Transactional
+  @Modifying(flushAutomatically = true)
+  @Query(value = """
+      INSERT INTO client_balance_summary (client_id, total_orders, total_paid, pending_orders_count,
+                                          last_payment_date, oldest_pending_invoice_date, updated_at)
+      SELECT client_id, total_orders, total_paid, pending_orders_count,
+             last_payment_date, oldest_pending_invoice_date, NOW()
+      FROM client_balance_computed
+      WHERE client_id IN (:clientIds)
+      ON CONFLICT (client_id) DO UPDATE SET
+          total_orders = EXCLUDED.total_orders,
+          total_paid = EXCLUDED.total_paid,
+          pending_orders_count = EXCLUDED.pending_orders_count,
+          last_payment_date = EXCLUDED.last_payment_date,
+          oldest_pending_invoice_date = EXCLUDED.oldest_pending_invoice_date,
+          updated_at = EXCLUDED.updated_at
+      """, nativeQuery = true)
+  int refreshClients(@Param("clientIds") Collection<UUID> clientIds);
+
+  /**
+   * Clientes cuya fila no coincide con el cálculo de referencia (o no existe).
+   * Usado por el job de verificación.
+   */
+  @Query(value = """
+      SELECT CAST(v.client_id AS VARCHAR)
+      FROM client_balance_computed v
+      LEFT JOIN client_balance_summary s ON s.client_id = v.client_id
+      WHERE s.client_id IS NULL
+         OR s.total_orders <> v.total_orders
+         OR s.total_paid <> v.total_paid
+         OR s.pending_orders_count <> v.pending_orders_count
+         OR s.last_payment_date IS DISTINCT FROM v.last_payment_date
+         OR s.oldest_pending_invoice_date IS DISTINCT FROM v.oldest_pending_invoice_date
+      """, nativeQuery = true)
+  List<String> findDriftedClientIds();
+}
@@ -24,6 +24,8 @@ public interface ClientRepository extends JpaRepository<Client, UUID> {
 
     boolean existsByNit(@NotBlank(message = "El NIT es obligatorio") String nit);
 
+    long countByActiveTrue();
+
     // Para filtrar clientes por vendedora asignada
     List<Client> findByVendedorAsignado(User vendedor);
 
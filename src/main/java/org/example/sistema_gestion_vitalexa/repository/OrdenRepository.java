@@ -81,14 +81,62 @@ public interface OrdenRepository extends JpaRepository<Order, UUID>, JpaSpecific
                         """)
         Page<Order> findCompletedOrdersSortedByEffectiveDate(Pageable pageable);
 
-        @Query(value = "SELECT nextval('invoice_number_seq')", nativeQuery = true)
-        Long nextInvoiceNumber();
+        /**
+         * Segunda fase de los listados paginados: carga en UNA consulta todas las
+         * asociaciones que lee OrderMapper (vendedor, cliente, items con producto,
+         * producto especial, sus etiquetas y promociones) para las órdenes de la
+         * página, en lugar de un SELECT por asociación y por orden.
+         */
+        @Query("""
+                        SELECT DISTINCT o FROM Order o
+                        LEFT JOIN FETCH o.vendedor
+                        LEFT JOIN FETCH o.cliente
+                        LEFT JOIN FETCH o.items i
+                        LEFT JOIN FETCH i.product p
+                        LEFT JOIN FETCH p.tag
+                        LEFT JOIN FETCH i.specialProduct sp
+                        LEFT JOIN FETCH sp.tag
+                        LEFT JOIN FETCH i.promotion
+                        LEFT JOIN FETCH i.specialPromotion
+                        WHERE o.id IN :ids
+                        """)
+        List<Order> findAllForResponseByIdIn(@Param("ids") java.util.Collection<UUID> ids);
 
-        @Query(value = "SELECT COALESCE(MAX(invoice_number), 0) FROM orders", nativeQuery = true)
-        Long findMaxInvoiceNumber();
+        /**
+         * Bloquea las órdenes (SELECT ... FOR UPDATE) en una sola consulta.
+         * Ordenadas por id para que dos cierres simultáneos tomen los
+         * bloqueos en el mismo orden.
+         */
+        @org.springframework.data.jpa.repository.Lock(jakarta.persistence.LockModeType.PESSIMISTIC_WRITE)
+        @Query("SELECT o FROM Order o WHERE o.id IN :ids ORDER BY o.id")
+        List<Order> findAllByIdInForUpdate(@Param("ids") Collection<UUID> ids);
 
-        @Query(value = "SELECT setval('invoice_number_seq', ?1, false)", nativeQuery = true)
-        Long syncInvoiceSequence(Long nextValue);
+        // ──── NUMERACIÓN DE FACTURAS (invoice_counter, ver InvoiceNumberAllocator) ────
+
+        /**
+         * Avanza el contador en count números. Bloquea la fila hasta el fin de
+         * la transacción; si esta se revierte, el contador vuelve atrás.
+         */
+        @org.springframework.transaction.annotation.Transactional
+        @org.springframework.data.jpa.repository.Modifying
+        @Query(value = "UPDATE invoice_counter SET next_value = next_value + :count WHERE id = 1", nativeQuery = true)
+        int advanceInvoiceCounter(@Param("count") int count);
+
+        @Query(value = "SELECT next_value FROM invoice_counter WHERE id = 1", nativeQuery = true)
+        Long findNextInvoiceNumber();
+
+        /**
+         * Lleva el contador por delante de la factura más alta (facturas
+         * históricas con número manual). Nunca lo hace retroceder.
+         */
+        @org.springframework.transaction.annotation.Transactional
+        @org.springframework.data.jpa.repository.Modifying(flushAutomatically = true)
+        @Query(value = """
+                        UPDATE invoice_counter
+                        SET next_value = GREATEST(next_value, (SELECT COALESCE(MAX(invoice_number), 0) + 1 FROM orders))
+                        WHERE id = 1
+                        """, nativeQuery = true)
+        int syncInvoiceCounter();
 
         /**
          * Buscar órdenes completadas de un vendedor en un mes/año específico.
@@ -96,40 +144,46 @@ public interface OrdenRepository extends JpaRepository<Order, UUID>, JpaSpecific
          * Fallback: si completedAt es null (órdenes históricas), usa o.fecha.
          * Consistente con findCompletedByCompletedAtBetween usado en reportes Excel.
          */
+        default List<Order> findCompletedOrdersByVendedorAndMonthYear(UUID vendedorId, int month, int year) {
+                LocalDateTime start = java.time.YearMonth.of(year, month).atDay(1).atStartOfDay();
+                return findCompletedOrdersByVendedorBetween(vendedorId, start, start.plusMonths(1));
+        }
+
+        /**
+         * Buscar órdenes completadas de MÚLTIPLES vendedores en un mes/año específico.
+         * Filtra por completedAt (fallback a fecha para históricas).
+         * Útil para usuarios compartidos como NinaTorres/YicelaSandoval.
+         */
+        default List<Order> findCompletedOrdersByVendedorIdsAndMonthYear(List<UUID> vendedorIds, int month, int year) {
+                LocalDateTime start = java.time.YearMonth.of(year, month).atDay(1).atStartOfDay();
+                return findCompletedOrdersByVendedorIdsBetween(vendedorIds, start, start.plusMonths(1));
+        }
+
+        /**
+         * Rango [start, end) sobre COALESCE(completedAt, fecha) en lugar de
+         * MONTH()/YEAR(), para que use idx_orders_vendedor_estado_effective_date.
+         */
         @Query("""
                         SELECT o FROM Order o
                         WHERE o.vendedor.id = :vendedorId
                         AND o.estado = 'COMPLETADO'
-                        AND (
-                            (o.completedAt IS NOT NULL AND MONTH(o.completedAt) = :month AND YEAR(o.completedAt) = :year)
-                            OR
-                            (o.completedAt IS NULL AND MONTH(o.fecha) = :month AND YEAR(o.fecha) = :year)
-                        )
+                        AND COALESCE(o.completedAt, o.fecha) >= :start AND COALESCE(o.completedAt, o.fecha) < :end
                         """)
-        List<Order> findCompletedOrdersByVendedorAndMonthYear(
+        List<Order> findCompletedOrdersByVendedorBetween(
                         @Param("vendedorId") UUID vendedorId,
-                        @Param("month") int month,
-                        @Param("year") int year);
+                        @Param("start") LocalDateTime start,
+                        @Param("end") LocalDateTime end);
 
-        /**
-         * Buscar órdenes completadas de MÚLTIPLES vendedores en un mes/año específico.
-         * Filtra por completedAt (fallback a fecha para históricas).
-         * Útil para usuarios compartidos como NinaTorres/YicelaSandoval.
-         */
         @Query("""
                         SELECT o FROM Order o
                         WHERE o.vendedor.id IN :vendedorIds
                         AND o.estado = 'COMPLETADO'
-                        AND (
-                            (o.completedAt IS NOT NULL AND MONTH(o.completedAt) = :month AND YEAR(o.completedAt) = :year)
-                            OR
-                            (o.completedAt IS NULL AND MONTH(o.fecha) = :month AND YEAR(o.fecha) = :year)
-                        )
+                        AND COALESCE(o.completedAt, o.fecha) >= :start AND COALESCE(o.completedAt, o.fecha) < :end
                         """)
-        List<Order> findCompletedOrdersByVendedorIdsAndMonthYear(
+        List<Order> findCompletedOrdersByVendedorIdsBetween(
                         @Param("vendedorIds") List<UUID> vendedorIds,
-                        @Param("month") int month,
-                        @Param("year") int year);
+                        @Param("start") LocalDateTime start,
+                        @Param("end") LocalDateTime end);
 
         /**
          * Para reportes: órdenes en un rango de fechas (por fecha de creación)
@@ -147,16 +201,82 @@ public interface OrdenRepository extends JpaRepository<Order, UUID>, JpaSpecific
         @Query("""
                         SELECT o FROM Order o
                         WHERE o.estado = 'COMPLETADO'
-                        AND (
-                            (o.completedAt IS NOT NULL AND o.completedAt BETWEEN :start AND :end)
-                            OR
-                            (o.completedAt IS NULL AND o.fecha BETWEEN :start AND :end)
-                        )
+                        AND COALESCE(o.completedAt, o.fecha) BETWEEN :start AND :end
                         """)
         List<Order> findCompletedByCompletedAtBetween(
                         @Param("start") LocalDateTime start,
                         @Param("end") LocalDateTime end);
 
+        // ──── AGREGADOS PARA REPORTES ─────────────────────────────────────────────────
+
+        /**
+         * Ventas COMPLETADAS agrupadas por vendedor y día efectivo (completedAt,
+         * fallback a fecha). Mismo filtro de fechas que
+         * findCompletedByCompletedAtBetween, pero devuelve una fila por
+         * vendedor/día en lugar de todas las órdenes.
+         */
+        @Query("""
+                        SELECT new org.example.sistema_gestion_vitalexa.dto.OrderSalesAggregateDTO(
+                            v.id,
+                            v.username,
+                            YEAR(COALESCE(o.completedAt, o.fecha)),
+                            MONTH(COALESCE(o.completedAt, o.fecha)),
+                            DAY(COALESCE(o.completedAt, o.fecha)),
+                            SUM(o.total),
+                            COUNT(o)
+                        )
+                        FROM Order o
+                        LEFT JOIN o.vendedor v
+                        WHERE o.estado = 'COMPLETADO'
+                        AND COALESCE(o.completedAt, o.fecha) BETWEEN :start AND :end
+                        GROUP BY v.id, v.username,
+                            YEAR(COALESCE(o.completedAt, o.fecha)),
+                            MONTH(COALESCE(o.completedAt, o.fecha)),
+                            DAY(COALESCE(o.completedAt, o.fecha))
+                        """)
+        List<org.example.sistema_gestion_vitalexa.dto.OrderSalesAggregateDTO> aggregateCompletedSalesByVendorAndDay(
+                        @Param("start") LocalDateTime start,
+                        @Param("end") LocalDateTime end);
+
+        /**
+         * Compras por cliente y vendedor de TODAS las órdenes (cualquier estado).
+         */
+        @Query("""
+                        SELECT new org.example.sistema_gestion_vitalexa.dto.ClientSalesAggregateDTO(
+                            c.id, c.nombre, c.telefono, c.active,
+                            v.id, v.username,
+                            SUM(o.total),
+                            COUNT(o)
+                        )
+                        FROM Order o
+                        JOIN o.cliente c
+                        LEFT JOIN o.vendedor v
+                        GROUP BY c.id, c.nombre, c.telefono, c.active, v.id, v.username
+                        """)
+        List<org.example.sistema_gestion_vitalexa.dto.ClientSalesAggregateDTO> aggregateSalesByClientAndVendor();
+
+        /**
+         * Compras por cliente y vendedor de órdenes COMPLETADAS en el rango
+         * (mismo filtro de fechas que findCompletedByCompletedAtBetween).
+         */
+        @Query("""
+                        SELECT new org.example.sistema_gestion_vitalexa.dto.ClientSalesAggregateDTO(
+                            c.id, c.nombre, c.telefono, c.active,
+                            v.id, v.username,
+                            SUM(o.total),
+                            COUNT(o)
+                        )
+                        FROM Order o
+                        JOIN o.cliente c
+                        LEFT JOIN o.vendedor v
+                        WHERE o.estado = 'COMPLETADO'
+                        AND COALESCE(o.completedAt, o.fecha) BETWEEN :start AND :end
+                        GROUP BY c.id, c.nombre, c.telefono, c.active, v.id, v.username
+                        """)
+        List<org.example.sistema_gestion_vitalexa.dto.ClientSalesAggregateDTO> aggregateCompletedSalesByClientAndVendor(
+                        @Param("start") LocalDateTime start,
+                        @Param("end") LocalDateTime end);
+
         @Query("""
                         SELECT o FROM Order o
                         WHERE o.vendedor.id = :vendedorId
@@ -203,11 +323,7 @@ public interface OrdenRepository extends JpaRepository<Order, UUID>, JpaSpecific
                         ), 0)
                         FROM Order o
                         WHERE o.estado = 'COMPLETADO'
-                        AND (
-                            (o.completedAt IS NOT NULL AND o.completedAt >= :startDate AND o.completedAt < :endDate)
-                            OR
-                            (o.completedAt IS NULL AND o.fecha >= :startDate AND o.fecha < :endDate)
-                        )
+                        AND COALESCE(o.completedAt, o.fecha) >= :startDate AND COALESCE(o.completedAt, o.fecha) < :endDate
                         """)
         BigDecimal getTotalRevenueBetween(@Param("startDate") LocalDateTime startDate,
                         @Param("endDate") LocalDateTime endDate);
@@ -217,11 +333,7 @@ public interface OrdenRepository extends JpaRepository<Order, UUID>, JpaSpecific
                         FROM Order o
                         WHERE o.estado = 'COMPLETADO'
                         AND (o.vendedor IS NULL OR LOWER(TRIM(o.vendedor.username)) NOT IN :excludedVendorUsernames)
-                        AND (
-                            (o.completedAt IS NOT NULL AND o.completedAt >= :startDate AND o.completedAt < :endDate)
-                            OR
-                            (o.completedAt IS NULL AND o.fecha >= :startDate AND o.fecha < :endDate)
-                        )
+                        AND COALESCE(o.completedAt, o.fecha) >= :startDate AND COALESCE(o.completedAt, o.fecha) < :endDate
                         """)
         BigDecimal getTotalGrossRevenueBetweenExcludingVendors(
                         @Param("startDate") LocalDateTime startDate,
@@ -243,28 +355,6 @@ public interface OrdenRepository extends JpaRepository<Order, UUID>, JpaSpecific
                         """)
         Optional<Order> findByIdWithPromotions(@Param("orderId") UUID orderId);
 
-        /**
-         * Para nómina: suma total EFECTIVO (con descuento) de órdenes COMPLETADAS
-         * de un vendedor en un rango de fechas.
-         * Filtra por completedAt (igual que el Excel del vendedor).
-         * Fallback a o.fecha para órdenes históricas sin completedAt.
-         */
-        @Query("""
-                        SELECT COALESCE(SUM(o.total), 0)
-                        FROM Order o
-                        WHERE o.vendedor.id = :vendedorId
-                        AND o.estado = 'COMPLETADO'
-                        AND (
-                            (o.completedAt IS NOT NULL AND o.completedAt >= :start AND o.completedAt < :end)
-                            OR
-                            (o.completedAt IS NULL AND o.fecha >= :start AND o.fecha < :end)
-                        )
-                        """)
-        BigDecimal sumTotalSoldByVendedorBetween(
-                        @Param("vendedorId") UUID vendedorId,
-                        @Param("start") LocalDateTime start,
-                        @Param("end") LocalDateTime end);
-
         /**
          * Para nómina con usuarios compartidos (NinaTorres/YicelaSandoval).
          * Ventas brutas (sin descuento).
@@ -274,11 +364,7 @@ public interface OrdenRepository extends JpaRepository<Order, UUID>, JpaSpecific
                         FROM Order o
                         WHERE o.vendedor.id IN :vendedorIds
                         AND o.estado = 'COMPLETADO'
-                        AND (
-                            (o.completedAt IS NOT NULL AND o.completedAt >= :start AND o.completedAt < :end)
-                            OR
-                            (o.completedAt IS NULL AND o.fecha >= :start AND o.fecha < :end)
-                        )
+                        AND COALESCE(o.completedAt, o.fecha) >= :start AND COALESCE(o.completedAt, o.fecha) < :end
                         """)
         BigDecimal sumTotalSoldByVendedorIdsBetween(
                         @Param("vendedorIds") List<UUID> vendedorIds,
@@ -287,135 +373,59 @@ public interface OrdenRepository extends JpaRepository<Order, UUID>, JpaSpecific
 
         /**
          * Para cálculo de porcentaje de recaudo: suma total NETO (con descuento)
-         * de órdenes COMPLETADAS de un vendedor.
+         * de órdenes COMPLETADAS con usuarios compartidos.
          */
         @Query("""
                         SELECT COALESCE(SUM(
                             CASE WHEN o.discountedTotal IS NOT NULL THEN o.discountedTotal ELSE o.total END
                         ), 0)
                         FROM Order o
-                        WHERE o.vendedor.id = :vendedorId
+                        WHERE o.vendedor.id IN :vendedorIds
                         AND o.estado = 'COMPLETADO'
-                        AND (
-                            (o.completedAt IS NOT NULL AND o.completedAt >= :start AND o.completedAt < :end)
-                            OR
-                            (o.completedAt IS NULL AND o.fecha >= :start AND o.fecha < :end)
-                        )
+                        AND COALESCE(o.completedAt, o.fecha) >= :start AND COALESCE(o.completedAt, o.fecha) < :end
                         """)
-        BigDecimal sumNetTotalSoldByVendedorBetween(
-                        @Param("vendedorId") UUID vendedorId,
+        BigDecimal sumNetTotalSoldByVendedorIdsBetween(
+                        @Param("vendedorIds") List<UUID> vendedorIds,
                         @Param("start") LocalDateTime start,
                         @Param("end") LocalDateTime end);
 
         /**
-         * Para cálculo de porcentaje de recaudo: suma total NETO (con descuento)
-         * de órdenes COMPLETADAS con usuarios compartidos.
+         * Para nómina de todos los vendedores: ventas brutas y netas de órdenes
+         * COMPLETADAS del rango, agrupadas por vendedor.
+         * Cada fila es [vendedorId, username, bruto, neto].
          */
         @Query("""
-                        SELECT COALESCE(SUM(
-                            CASE WHEN o.discountedTotal IS NOT NULL THEN o.discountedTotal ELSE o.total END
-                        ), 0)
+                        SELECT v.id, v.username,
+                               COALESCE(SUM(o.total), 0),
+                               COALESCE(SUM(
+                                   CASE WHEN o.discountedTotal IS NOT NULL THEN o.discountedTotal ELSE o.total END
+                               ), 0)
                         FROM Order o
-                        WHERE o.vendedor.id IN :vendedorIds
-                        AND o.estado = 'COMPLETADO'
-                        AND (
-                            (o.completedAt IS NOT NULL AND o.completedAt >= :start AND o.completedAt < :end)
-                            OR
-                            (o.completedAt IS NULL AND o.fecha >= :start AND o.fecha < :end)
-                        )
+                        JOIN o.vendedor v
+                        WHERE o.estado = 'COMPLETADO'
+                        AND COALESCE(o.completedAt, o.fecha) >= :start AND COALESCE(o.completedAt, o.fecha) < :end
+                        GROUP BY v.id, v.username
                         """)
-        BigDecimal sumNetTotalSoldByVendedorIdsBetween(
-                        @Param("vendedorIds") List<UUID> vendedorIds,
+        List<Object[]> sumSoldGroupedByVendedorBetween(
                         @Param("start") LocalDateTime start,
                         @Param("end") LocalDateTime end);
 
         List<Order> findByClienteInAndEstado(Collection<Client> clients, OrdenStatus estado);
 
-    /**
-     * Suma total sold (gross) excluding specific vendors by username.
-     */
-    @Query("""
-            SELECT COALESCE(SUM(o.total), 0)
-            FROM Order o
-            WHERE o.vendedor.id = :vendedorId
-            AND o.estado = 'COMPLETADO'
-            AND (o.vendedor IS NULL OR LOWER(TRIM(o.vendedor.username)) NOT IN :excludedVendorUsernames)
-            AND (
-                (o.completedAt IS NOT NULL AND o.completedAt >= :start AND o.completedAt < :end)
-                OR
-                (o.completedAt IS NULL AND o.fecha >= :start AND o.fecha < :end)
-            )
-            """)
-    BigDecimal sumTotalSoldByVendedorBetweenExcludingVendors(
-            @Param("vendedorId") UUID vendedorId,
-            @Param("start") LocalDateTime start,
-            @Param("end") LocalDateTime end,
-            @Param("excludedVendorUsernames") List<String> excludedVendorUsernames);
-
-    /**
-     * Suma total sold (gross) for shared vendors, excluding specific vendors by username.
-     */
-    @Query("""
-            SELECT COALESCE(SUM(o.total), 0)
-            FROM Order o
-            WHERE o.vendedor.id IN :vendedorIds
-            AND o.estado = 'COMPLETADO'
-            AND (o.vendedor IS NULL OR LOWER(TRIM(o.vendedor.username)) NOT IN :excludedVendorUsernames)
-            AND (
-                (o.completedAt IS NOT NULL AND o.completedAt >= :start AND o.completedAt < :end)
-                OR
-                (o.completedAt IS NULL AND o.fecha >= :start AND o.fecha < :end)
-            )
-            """)
-    BigDecimal sumTotalSoldByVendedorIdsBetweenExcludingVendors(
-            @Param("vendedorIds") List<UUID> vendedorIds,
-            @Param("start") LocalDateTime start,
-            @Param("end") LocalDateTime end,
-            @Param("excludedVendorUsernames") List<String> excludedVendorUsernames);
-
-    /**
-     * Suma net total sold (discounted) excluding specific vendors by username.
-     */
-    @Query("""
-            SELECT COALESCE(SUM(
-                CASE WHEN o.discountedTotal IS NOT NULL THEN o.discountedTotal ELSE o.total END
-            ), 0)
-            FROM Order o
-            WHERE o.vendedor.id = :vendedorId
-            AND o.estado = 'COMPLETADO'
-            AND (o.vendedor IS NULL OR LOWER(TRIM(o.vendedor.username)) NOT IN :excludedVendorUsernames)
-            AND (
-                (o.completedAt IS NOT NULL AND o.completedAt >= :start AND o.completedAt < :end)
-                OR
-                (o.completedAt IS NULL AND o.fecha >= :start AND o.fecha < :end)
-            )
-            """)
-    BigDecimal sumNetTotalSoldByVendedorBetweenExcludingVendors(
-            @Param("vendedorId") UUID vendedorId,
-            @Param("start") LocalDateTime start,
-            @Param("end") LocalDateTime end,
-            @Param("excludedVendorUsernames") List<String> excludedVendorUsernames);
-
-    /**
-     * Suma net total sold (discounted) for shared vendors, excluding specific vendors by username.
-     */
-    @Query("""
-            SELECT COALESCE(SUM(
-                CASE WHEN o.discountedTotal IS NOT NULL THEN o.discountedTotal ELSE o.total END
-            ), 0)
-            FROM Order o
-            WHERE o.vendedor.id IN :vendedorIds
-            AND o.estado = 'COMPLETADO'
-            AND (o.vendedor IS NULL OR LOWER(TRIM(o.vendedor.username)) NOT IN :excludedVendorUsernames)
-            AND (
-                (o.completedAt IS NOT NULL AND o.completedAt >= :start AND o.completedAt < :end)
-                OR
-                (o.completedAt IS NULL AND o.fecha >= :start AND o.fecha < :end)
-            )
-            """)
-    BigDecimal sumNetTotalSoldByVendedorIdsBetweenExcludingVendors(
-            @Param("vendedorIds") List<UUID> vendedorIds,
-            @Param("start") LocalDateTime start,
-            @Param("end") LocalDateTime end,
-            @Param("excludedVendorUsernames") List<String> excludedVendorUsernames);
+        /**
+         * Órdenes de los clientes indicados en el estado dado, con sus pagos
+         * (incluidos los anulados) y los usuarios que los registraron/anularon,
+         * en una sola consulta.
+         */
+        @Query("""
+                        SELECT DISTINCT o FROM Order o
+                        LEFT JOIN FETCH o.payments p
+                        LEFT JOIN FETCH p.registeredBy
+                        LEFT JOIN FETCH p.cancelledBy
+                        WHERE o.cliente.id IN :clientIds
+                        AND o.estado = :estado
+                        """)
+        List<Order> findWithPaymentsByClienteIdInAndEstado(
+                        @Param("clientIds") Collection<UUID> clientIds,
+                        @Param("estado") OrdenStatus estado);
 }
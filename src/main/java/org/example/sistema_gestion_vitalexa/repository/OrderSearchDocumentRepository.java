@@ -0,0 +1,20 @@
+package org.example.sistema_gestion_vitalexa.repository;
+
+import org.example.sistema_gestion_vitalexa.entity.OrderSearchDocument;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.util.UUID;
+
+public interface OrderSearchDocumentRepository extends JpaRepository<OrderSearchDocument, UUID> {
+
+  /**
+   * Rearma los documentos de hasta :limit orígenes renombrados (cliente,
+   * producto o vendedor) encolados por los triggers de V41 y los saca de la
+   * cola. Devuelve cuántos orígenes procesó.
+   */
+  @org.springframework.transaction.annotation.Transactional
+  @Query(value = "SELECT process_order_search_stale_sources(:limit)", nativeQuery = true)
+  int processStaleSources(@Param("limit") int limit);
+}
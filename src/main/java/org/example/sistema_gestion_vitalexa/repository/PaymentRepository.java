@@ -57,9 +57,10 @@ public interface PaymentRepository extends JpaRepository<Payment, UUID> {
     List<Payment> findActivePaymentsByOrderId(@Param("orderId") UUID orderId);
 
     /**
-     * Suma TODOS los pagos activos de órdenes cuya fecha (o.fecha) cae en el mes
-     * anterior (orderStart..orderEnd), SIEMPRE QUE el pago real (actualPaymentDate)
-     * haya ocurrido antes del fin del mes de nómina (payEndDate).
+     * Para nómina: suma, por vendedor, TODOS los pagos activos de órdenes cuya
+     * fecha (o.fecha) cae en el mes anterior (orderStart..orderEnd), SIEMPRE QUE
+     * el pago real (actualPaymentDate) haya ocurrido antes del fin del mes de
+     * nómina (payEndDate). Cada fila es [vendedorId, recaudado].
      *
      * Regla:
      *   - Factura de enero pagada en enero   → recaudo de febrero ✔
@@ -67,31 +68,17 @@ public interface PaymentRepository extends JpaRepository<Payment, UUID> {
      *   - Factura de enero pagada en marzo    → NO entra en ningún recaudo ❌
      */
     @Query("""
-            SELECT COALESCE(SUM(p.amount), 0)
+            SELECT o.vendedor.id, COALESCE(SUM(p.amount), 0)
             FROM Payment p
-            WHERE p.order.vendedor.id = :vendedorId
+            JOIN p.order o
+            WHERE o.vendedor IS NOT NULL
             AND (p.isCancelled = false OR p.isCancelled IS NULL)
-            AND p.order.fecha >= :orderStart
-            AND p.order.fecha < :orderEnd
+            AND o.fecha >= :orderStart
+            AND o.fecha < :orderEnd
             AND (p.actualPaymentDate IS NULL OR p.actualPaymentDate < :payEndDate)
+            GROUP BY o.vendedor.id
             """)
-    BigDecimal sumCollectedByVendedorBetween(
-            @Param("vendedorId") UUID vendedorId,
-            @Param("orderStart") LocalDateTime orderStart,
-            @Param("orderEnd") LocalDateTime orderEnd,
-            @Param("payEndDate") java.time.LocalDate payEndDate);
-
-    @Query("""
-            SELECT COALESCE(SUM(p.amount), 0)
-            FROM Payment p
-            WHERE p.order.vendedor.id IN :vendedorIds
-            AND (p.isCancelled = false OR p.isCancelled IS NULL)
-            AND p.order.fecha >= :orderStart
-            AND p.order.fecha < :orderEnd
-            AND (p.actualPaymentDate IS NULL OR p.actualPaymentDate < :payEndDate)
-            """)
-    BigDecimal sumCollectedByVendedorIdsBetween(
-            @Param("vendedorIds") List<UUID> vendedorIds,
+    List<Object[]> sumCollectedGroupedByVendedorBetween(
             @Param("orderStart") LocalDateTime orderStart,
             @Param("orderEnd") LocalDateTime orderEnd,
             @Param("payEndDate") java.time.LocalDate payEndDate);
@@ -24,35 +24,36 @@ public interface PaymentTransferRepository extends JpaRepository<PaymentTransfer
     BigDecimal sumActiveTransfersByPaymentId(@Param("paymentId") UUID paymentId);
 
     /**
-     * Suma de transferencias ACTIVAS destinadas a un vendedor en un mes/año.
-     * Usado en calculateTotalSold() para sumar al vendedor destino.
+     * Suma de transferencias ACTIVAS destinadas a uno o varios vendedores (p. ej.
+     * un grupo compartido) en un mes/año.
      */
     @Query("""
             SELECT COALESCE(SUM(t.amount), 0)
             FROM PaymentTransfer t
-            WHERE t.destVendedor.id = :vendedorId
+            WHERE t.destVendedor.id IN :vendedorIds
               AND t.targetMonth = :month
               AND t.targetYear  = :year
               AND t.isRevoked   = false
             """)
-    BigDecimal sumActiveTransfersToVendedorInMonth(
-            @Param("vendedorId") UUID vendedorId,
+    BigDecimal sumActiveTransfersToVendedorIdsInMonth(
+            @Param("vendedorIds") List<UUID> vendedorIds,
             @Param("month") int month,
             @Param("year") int year);
 
     /**
-     * Igual que el anterior pero para usuarios compartidos (ej: Nina/Yicela).
+     * Transferencias ACTIVAS del mes/año agrupadas por vendedor destino (nómina
+     * de todos los vendedores). Cada fila es [vendedorId, username, monto].
      */
     @Query("""
-            SELECT COALESCE(SUM(t.amount), 0)
+            SELECT d.id, d.username, COALESCE(SUM(t.amount), 0)
             FROM PaymentTransfer t
-            WHERE t.destVendedor.id IN :vendedorIds
-              AND t.targetMonth = :month
+            JOIN t.destVendedor d
+            WHERE t.targetMonth = :month
               AND t.targetYear  = :year
               AND t.isRevoked   = false
+            GROUP BY d.id, d.username
             """)
-    BigDecimal sumActiveTransfersToVendedorIdsInMonth(
-            @Param("vendedorIds") List<UUID> vendedorIds,
+    List<Object[]> sumActiveTransfersGroupedByVendedorInMonth(
             @Param("month") int month,
             @Param("year") int year);
 
@@ -102,6 +103,25 @@ public interface PaymentTransferRepository extends JpaRepository<PaymentTransfer
     /** Transferencias donde este vendedor es el DESTINO */
     List<PaymentTransfer> findByDestVendedorIdOrderByCreatedAtDesc(UUID destVendedorId);
 
+    /**
+     * Transferencias ACTIVAS recibidas por los vendedores indicados (más
+     * recientes primero), con destino, origen, pago/orden y autor cargados
+     * para imprimirlas sin más consultas.
+     */
+    @Query("""
+            SELECT t FROM PaymentTransfer t
+            JOIN FETCH t.destVendedor d
+            LEFT JOIN FETCH t.originVendedor
+            LEFT JOIN FETCH t.payment p
+            LEFT JOIN FETCH p.order
+            LEFT JOIN FETCH t.createdBy
+            WHERE d.username IN :usernames
+              AND (t.isRevoked = false OR t.isRevoked IS NULL)
+            ORDER BY t.createdAt DESC NULLS LAST
+            """)
+    List<PaymentTransfer> findActiveReceivedByDestUsernameIn(
+            @Param("usernames") java.util.Collection<String> usernames);
+
     /**
      * Suma de transferencias ACTIVAS destinadas a un vendedor,
      * excluyendo aquellas cuyo vendedor ORIGEN está en la lista.
@@ -139,4 +159,24 @@ public interface PaymentTransferRepository extends JpaRepository<PaymentTransfer
             @Param("month") int month,
             @Param("year") int year,
             @Param("excludedVendorUsernames") List<String> excludedVendorUsernames);
+
+    /**
+     * Suma de transferencias ACTIVAS por vendedor destino en un rango de
+     * meses/años (una fila por vendedor, en lugar de una consulta por vendedor).
+     */
+    @Query("""
+            SELECT new org.example.sistema_gestion_vitalexa.dto.VendorTransferTotalDTO(t.destVendedor.id, SUM(t.amount))
+            FROM PaymentTransfer t
+            WHERE t.isRevoked = false
+              AND (
+                    (t.targetYear > :startYear OR (t.targetYear = :startYear AND t.targetMonth >= :startMonth))
+                AND (t.targetYear < :endYear OR (t.targetYear = :endYear AND t.targetMonth <= :endMonth))
+              )
+            GROUP BY t.destVendedor.id
+            """)
+    List<org.example.sistema_gestion_vitalexa.dto.VendorTransferTotalDTO> sumActiveTransfersByVendedorInRange(
+            @Param("startMonth") int startMonth,
+            @Param("startYear") int startYear,
+            @Param("endMonth") int endMonth,
+            @Param("endYear") int endYear);
 }
@@ -0,0 +1,149 @@
+package org.example.sistema_gestion_vitalexa.repository;
+
+import org.example.sistema_gestion_vitalexa.dto.ProductImageStatusResponse;
+import org.example.sistema_gestion_vitalexa.entity.ProductImage;
+import org.example.sistema_gestion_vitalexa.enums.ImageUploadStatus;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+public interface ProductImageRepository extends JpaRepository<ProductImage, UUID> {
+
+  /**
+   * Registra la imagen si su hash no existe. Si otra transacción la está
+   * registrando al mismo tiempo, espera a que termine en lugar de fallar por
+   * la clave única.
+   */
+  @org.springframework.transaction.annotation.Transactional
+  @Modifying
+  @Query(value = """
+      INSERT INTO product_images (id, content_hash, original_filename, size_bytes, status, attempts, data,
+                                  created_at, updated_at)
+      VALUES (:id, :hash, :filename, :size, 'PENDING', 0, :data, NOW(), NOW())
+      ON CONFLICT (content_hash) DO NOTHING
+      """, nativeQuery = true)
+  int insertIfAbsent(@Param("id") UUID id, @Param("hash") String hash, @Param("filename") String filename,
+      @Param("size") long size, @Param("data") byte[] data);
+
+  /**
+   * Estado de la imagen con ese hash, sin cargar el contenido. Cada fila es
+   * [id, status, url].
+   */
+  @Query("""
+      SELECT i.id, i.status, i.url
+      FROM ProductImage i
+      WHERE i.contentHash = :hash
+      """)
+  List<Object[]> findStateByContentHash(@Param("hash") String hash);
+
+  /**
+   * Contenido a subir. Cada fila es [data, originalFilename, attempts].
+   */
+  @Query("""
+      SELECT i.data, i.originalFilename, i.attempts
+      FROM ProductImage i
+      WHERE i.id = :id
+      """)
+  List<Object[]> findContentById(@Param("id") UUID id);
+
+  @Query("""
+      SELECT new org.example.sistema_gestion_vitalexa.dto.ProductImageStatusResponse(
+          i.id, i.status, i.url, i.error, i.attempts, i.updatedAt)
+      FROM ProductImage i
+      WHERE i.id = :id
+      """)
+  Optional<ProductImageStatusResponse> findStatusById(@Param("id") UUID id);
+
+  @Query("""
+      SELECT i.id
+      FROM ProductImage i
+      WHERE i.status = :status
+      ORDER BY i.updatedAt
+      """)
+  List<UUID> findIdsByStatus(@Param("status") ImageUploadStatus status, Pageable pageable);
+
+  /**
+   * Toma la imagen para subirla (PENDING -> UPLOADING). Devuelve 0 si otro
+   * hilo o instancia ya la tomó o si ya no está pendiente.
+   */
+  @org.springframework.transaction.annotation.Transactional
+  @Modifying
+  @Query("""
+      UPDATE ProductImage i
+      SET i.status = org.example.sistema_gestion_vitalexa.enums.ImageUploadStatus.UPLOADING,
+          i.attempts = i.attempts + 1,
+          i.updatedAt = LOCAL DATETIME
+      WHERE i.id = :id
+        AND i.status = org.example.sistema_gestion_vitalexa.enums.ImageUploadStatus.PENDING
+      """)
+  int claim(@Param("id") UUID id);
+
+  /**
+   * Subida terminada: guarda la url y libera el contenido.
+   */
+  @org.springframework.transaction.annotation.Transactional
+  @Modifying
+  @Query("""
+      UPDATE ProductImage i
+      SET i.status = org.example.sistema_gestion_vitalexa.enums.ImageUploadStatus.READY,
+          i.url = :url,
+          i.error = NULL,
+          i.data = NULL,
+          i.updatedAt = LOCAL DATETIME
+      WHERE i.id = :id
+      """)
+  int markReady(@Param("id") UUID id, @Param("url") String url);
+
+  /**
+   * Subida fallida: PENDING para reintentar más tarde o FAILED si se agotaron
+   * los intentos.
+   */
+  @org.springframework.transaction.annotation.Transactional
+  @Modifying
+  @Query("""
+      UPDATE ProductImage i
+      SET i.status = :status,
+          i.error = :error,
+          i.updatedAt = LOCAL DATETIME
+      WHERE i.id = :id
+      """)
+  int markFailed(@Param("id") UUID id, @Param("status") ImageUploadStatus status, @Param("error") String error);
+
+  /**
+   * La misma imagen se volvió a enviar: una fallida vuelve a la cola con los
+   * intentos en cero.
+   */
+  @org.springframework.transaction.annotation.Transactional
+  @Modifying
+  @Query("""
+      UPDATE ProductImage i
+      SET i.status = org.example.sistema_gestion_vitalexa.enums.ImageUploadStatus.PENDING,
+          i.attempts = 0,
+          i.updatedAt = LOCAL DATETIME
+      WHERE i.id = :id
+        AND i.status = org.example.sistema_gestion_vitalexa.enums.ImageUploadStatus.FAILED
+      """)
+  int retry(@Param("id") UUID id);
+
+  /**
+   * Subidas que quedaron en UPLOADING (reinicio del servidor a mitad de la
+   * subida) vuelven a PENDING.
+   */
+  @org.springframework.transaction.annotation.Transactional
+  @Modifying
+  @Query("""
+      UPDATE ProductImage i
+      SET i.status = org.example.sistema_gestion_vitalexa.enums.ImageUploadStatus.PENDING,
+          i.updatedAt = LOCAL DATETIME
+      WHERE i.status = org.example.sistema_gestion_vitalexa.enums.ImageUploadStatus.UPLOADING
+        AND i.updatedAt < :before
+      """)
+  int releaseStuckUploads(@Param("before") LocalDateTime before);
+}
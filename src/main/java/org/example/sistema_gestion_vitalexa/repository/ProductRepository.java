@@ -15,6 +15,13 @@ public interface ProductRepository extends JpaRepository<Product, UUID> {
   // Listas (para endpoints existentes)
   List<Product> findByActiveTrue();
 
+  /**
+   * Stock actual de los productos activos, sin el resto de columnas. Cada
+   * fila es [id, stock].
+   */
+  @Query("SELECT p.id, p.stock FROM Product p WHERE p.active = true")
+  List<Object[]> findActiveStockLevels();
+
   List<Product> findByStockLessThanAndActiveTrue(int threshold);
 
   // Paginación (nuevo)
@@ -44,6 +51,192 @@ public interface ProductRepository extends JpaRepository<Product, UUID> {
       """)
   Page<Product> searchByTagId(@Param("q") String q, @Param("tagId") UUID tagId, Pageable pageable);
 
+  // Reporte de productos (conteos y valor de inventario calculados en SQL)
+  long countByActiveTrue();
+
+  long countByActiveTrueAndStockLessThan(int threshold);
+
+  List<Product> findTop10ByActiveTrueAndStockLessThanOrderByStockAsc(int threshold);
+
+  @Query("SELECT COALESCE(SUM(p.precio * p.stock), 0) FROM Product p WHERE p.active = true")
+  java.math.BigDecimal sumActiveInventoryValue();
+
   // System Product Lookup
   java.util.Optional<Product> findByNombreAndIsHiddenTrue(String nombre);
+
+  /**
+   * Carga en lote productos junto con su etiqueta (una sola consulta para todos
+   * los items de una orden, en lugar de un SELECT por item).
+   */
+  @Query("""
+      SELECT p FROM Product p
+      LEFT JOIN FETCH p.tag
+      WHERE p.id IN :ids
+      """)
+  List<Product> findAllWithTagByIdIn(@Param("ids") java.util.Collection<UUID> ids);
+
+  /**
+   * Carga en lote para la actualización masiva: etiqueta y especiales
+   * vinculados (linkedSpecialCount de la respuesta) en la misma consulta.
+   */
+  @Query("""
+      SELECT DISTINCT p FROM Product p
+      LEFT JOIN FETCH p.tag
+      LEFT JOIN FETCH p.specialProducts
+      WHERE p.id IN :ids
+      """)
+  List<Product> findAllForBulkUpdateByIdIn(@Param("ids") java.util.Collection<UUID> ids);
+
+  // ──── LEDGER DE STOCK (ventas concurrentes) ─────────────────────────────────
+
+  /**
+   * Bloquea (SELECT ... FOR UPDATE) las filas de los productos indicados,
+   * siempre en orden de id. Dos órdenes concurrentes toman los bloqueos en el
+   * mismo orden, así que no se producen deadlocks entre ellas.
+   */
+  @org.springframework.transaction.annotation.Transactional
+  @Query(value = "SELECT id FROM products WHERE id IN (:ids) ORDER BY id FOR UPDATE", nativeQuery = true)
+  List<UUID> lockStockRows(@Param("ids") java.util.Collection<UUID> ids);
+
+  /**
+   * Igual que lockStockRows, devolviendo el stock ya bloqueado para
+   * sincronizar entidades que se cargaron antes del bloqueo.
+   *
+   * @return [id, stock]
+   */
+  @org.springframework.transaction.annotation.Transactional
+  @Query(value = "SELECT id, stock FROM products WHERE id IN (:ids) ORDER BY id FOR UPDATE", nativeQuery = true)
+  List<Object[]> lockStockRowsWithStock(@Param("ids") java.util.Collection<UUID> ids);
+
+  /**
+   * Ajusta el stock en una sola sentencia atómica. delta negativo = venta,
+   * positivo = devolución o llegada. El UPDATE bloquea la fila hasta el
+   * commit, por lo que no hay updates perdidos entre vendedoras que venden
+   * el mismo producto a la vez. Con adjustStockBatch, es la única escritura
+   * de products.stock (la columna no es updatable en la entidad).
+   *
+   * @return filas afectadas (0 si el producto no existe)
+   */
+  @org.springframework.transaction.annotation.Transactional
+  @org.springframework.data.jpa.repository.Modifying
+  @Query(value = "UPDATE products SET stock = COALESCE(stock, 0) + :delta WHERE id = :id", nativeQuery = true)
+  int adjustStock(@Param("id") UUID id, @Param("delta") int delta);
+
+  /**
+   * Varios ajustes de stock en una sola sentencia, con el mismo efecto que un
+   * adjustStock por producto. ids y deltas van en paralelo (un delta por id).
+   */
+  @org.springframework.transaction.annotation.Transactional
+  @org.springframework.data.jpa.repository.Modifying
+  @Query(value = """
+      UPDATE products p SET stock = COALESCE(p.stock, 0) + d.delta
+      FROM unnest(CAST(:ids AS uuid[]), CAST(:deltas AS integer[])) AS d(id, delta)
+      WHERE p.id = d.id
+      """, nativeQuery = true)
+  int adjustStockBatch(@Param("ids") UUID[] ids, @Param("deltas") Integer[] deltas);
+
+  /**
+   * Stock vigente leído de la base (no del contexto de persistencia). Tras
+   * adjustStock la fila sigue bloqueada, así que es el valor que dejó ese
+   * UPDATE.
+   */
+  @Query("SELECT p.stock FROM Product p WHERE p.id = :id")
+  Integer findStockById(@Param("id") UUID id);
+
+  // ──── STOCK COMPROMETIDO ─────────────────────────────────────────────────────
+
+  /**
+   * Reporte de stock: lectura directa de products, el comprometido lo
+   * mantienen los triggers de V48.
+   */
+  @Query("""
+      SELECT new org.example.sistema_gestion_vitalexa.dto.StockSummaryDTO(
+          p.id,
+          p.nombre,
+          p.stock,
+          p.committedStock,
+          p.stock + p.committedStock
+      )
+      FROM Product p
+      WHERE (p.isHidden = false OR p.isHidden IS NULL)
+      ORDER BY p.nombre ASC
+      """)
+  List<org.example.sistema_gestion_vitalexa.dto.StockSummaryDTO> findStockSummary();
+
+  /**
+   * Productos cuyo contador no coincide con la suma real de sus items en
+   * órdenes no finales: [id (texto), nombre, guardado, real].
+   */
+  @Query(value = """
+      SELECT CAST(p.id AS VARCHAR), p.nombre, p.committed_stock, COALESCE(s.committed, 0)
+      FROM products p
+      LEFT JOIN committed_stock_source s ON s.product_id = p.id
+      WHERE p.committed_stock <> COALESCE(s.committed, 0)
+      """, nativeQuery = true)
+  List<Object[]> findCommittedStockDrift();
+
+  /**
+   * Igual que findCommittedStockDrift, solo para los productos indicados. El
+   * filtro va también en el ON para que PostgreSQL lo lleve dentro de la
+   * vista y sume solo los items de esos productos
+   * (idx_order_items_product_order) en lugar de agrupar toda order_items.
+   */
+  @Query(value = """
+      SELECT CAST(p.id AS VARCHAR), p.nombre, p.committed_stock, COALESCE(s.committed, 0)
+      FROM products p
+      LEFT JOIN committed_stock_source s ON s.product_id = p.id AND s.product_id IN (:ids)
+      WHERE p.id IN (:ids)
+        AND p.committed_stock <> COALESCE(s.committed, 0)
+      """, nativeQuery = true)
+  List<Object[]> findCommittedStockDriftIn(@Param("ids") java.util.Collection<UUID> ids);
+
+  /**
+   * Recalcula el contador desde cero. Llamar con las filas ya bloqueadas
+   * (lockStockRows) para que la suma vea los cambios ya confirmados.
+   */
+  @org.springframework.transaction.annotation.Transactional
+  @org.springframework.data.jpa.repository.Modifying
+  @Query(value = """
+      UPDATE products p
+      SET committed_stock = COALESCE(
+          (SELECT s.committed FROM committed_stock_source s WHERE s.product_id = p.id), 0)
+      WHERE p.id IN (:ids)
+      """, nativeQuery = true)
+  int recalculateCommittedStock(@Param("ids") java.util.Collection<UUID> ids);
+
+  // ──── IMÁGENES EN COLA DE SUBIDA ─────────────────────────────────────────────
+
+  @Query("SELECT p.id FROM Product p WHERE p.pendingImageId = :imageId")
+  List<UUID> findIdsByPendingImageId(@Param("imageId") UUID imageId);
+
+  /**
+   * Reemplaza la imagen de los productos que esperaban la imagen indicada.
+   */
+  @org.springframework.transaction.annotation.Transactional
+  @org.springframework.data.jpa.repository.Modifying
+  @Query("""
+      UPDATE Product p
+      SET p.imageUrl = :url,
+          p.pendingImageId = NULL,
+          p.updatedAt = LOCAL DATETIME
+      WHERE p.pendingImageId = :imageId
+      """)
+  int applyPendingImage(@Param("imageId") UUID imageId, @Param("url") String url);
+
+  /**
+   * Productos que siguen apuntando a una imagen ya subida (el producto se
+   * confirmó después de que terminó la subida).
+   */
+  @org.springframework.transaction.annotation.Transactional
+  @org.springframework.data.jpa.repository.Modifying
+  @Query("""
+      UPDATE Product p
+      SET p.imageUrl = (SELECT i.url FROM ProductImage i WHERE i.id = p.pendingImageId),
+          p.pendingImageId = NULL,
+          p.updatedAt = LOCAL DATETIME
+      WHERE p.pendingImageId IN (
+          SELECT i.id FROM ProductImage i
+          WHERE i.status = org.example.sistema_gestion_vitalexa.enums.ImageUploadStatus.READY)
+      """)
+  int applyReadyImages();
 }
@@ -38,4 +38,14 @@ public interface PromotionRepository extends JpaRepository<Promotion, UUID> {
 
     // Encontrar por producto principal
     List<Promotion> findByMainProductId(UUID productId);
+
+    /**
+     * Carga en lote promociones con sus giftItems. Los productos (principal y
+     * regalos) quedan como proxies para poder bloquear su stock antes de
+     * cargarlos.
+     */
+    @Query("SELECT DISTINCT p FROM Promotion p " +
+            "LEFT JOIN FETCH p.giftItems " +
+            "WHERE p.id IN :ids")
+    List<Promotion> findAllWithGiftItemsByIdIn(@Param("ids") java.util.Collection<UUID> ids);
 }
@@ -3,8 +3,13 @@ package org.example.sistema_gestion_vitalexa.repository;
 import org.example.sistema_gestion_vitalexa.entity.SaleGoal;
 import org.example.sistema_gestion_vitalexa.entity.User;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.math.BigDecimal;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
@@ -36,4 +41,44 @@ public interface SaleGoalRepository extends JpaRepository<SaleGoal, UUID> {
      * Buscar todas las metas ordenadas por fecha
      */
     List<SaleGoal> findAllByOrderByYearDescMonthDesc();
+
+    /**
+     * Suma delta al avance de las metas del mes de los vendedores indicados,
+     * en la base de datos (sin leer la meta): dos ventas simultáneas no se
+     * pisan. Si no hay meta para ese mes, no hace nada.
+     */
+    @org.springframework.transaction.annotation.Transactional
+    @Modifying
+    @Query("""
+            UPDATE SaleGoal g
+            SET g.currentAmount = g.currentAmount + :delta,
+                g.updatedAt = LOCAL DATETIME
+            WHERE g.vendedor.id IN :vendedorIds
+              AND g.month = :month
+              AND g.year = :year
+            """)
+    int addToCurrentAmount(
+            @Param("vendedorIds") Collection<UUID> vendedorIds,
+            @Param("month") int month,
+            @Param("year") int year,
+            @Param("delta") BigDecimal delta);
+
+    /**
+     * Fija el avance (recálculo desde cero).
+     */
+    @org.springframework.transaction.annotation.Transactional
+    @Modifying
+    @Query("""
+            UPDATE SaleGoal g
+            SET g.currentAmount = :amount,
+                g.updatedAt = LOCAL DATETIME
+            WHERE g.vendedor.id IN :vendedorIds
+              AND g.month = :month
+              AND g.year = :year
+            """)
+    int setCurrentAmount(
+            @Param("vendedorIds") Collection<UUID> vendedorIds,
+            @Param("month") int month,
+            @Param("year") int year,
+            @Param("amount") BigDecimal amount);
 }
@@ -49,4 +49,53 @@ public interface SpecialProductRepository extends JpaRepository<SpecialProduct,
       WHERE sp.active = true AND v.id = :vendorId
       """)
   Page<SpecialProduct> findActiveByVendorId(@Param("vendorId") UUID vendorId, Pageable pageable);
+
+  /**
+   * Carga en lote productos especiales con su etiqueta, para resolver una
+   * orden completa en una sola consulta. El producto padre queda como proxy
+   * (solo se lee su id) para poder bloquear su stock antes de cargarlo.
+   */
+  @Query("""
+      SELECT sp FROM SpecialProduct sp
+      LEFT JOIN FETCH sp.tag
+      WHERE sp.id IN :ids
+      """)
+  List<SpecialProduct> findAllWithTagByIdIn(@Param("ids") java.util.Collection<UUID> ids);
+
+  /**
+   * Cuáles de los ids son productos especiales (actualización masiva).
+   */
+  @Query("SELECT sp.id FROM SpecialProduct sp WHERE sp.id IN :ids")
+  List<UUID> findExistingIdsIn(@Param("ids") java.util.Collection<UUID> ids);
+
+  // ──── STOCK PROPIO (standalone) ──────────────────────────────────────────────
+
+  /**
+   * Bloquea (FOR UPDATE) las filas de los productos especiales indicados en
+   * orden de id. Se llama después de ProductRepository.lockStockRows: el
+   * orden global products → special_products evita deadlocks.
+   *
+   * @return [id, own_stock] ya bloqueados, para sincronizar entidades que
+   *         se cargaron antes del bloqueo
+   */
+  @org.springframework.transaction.annotation.Transactional
+  @Query(value = "SELECT id, own_stock FROM special_products WHERE id IN (:ids) ORDER BY id FOR UPDATE", nativeQuery = true)
+  List<Object[]> lockOwnStockRows(@Param("ids") java.util.Collection<UUID> ids);
+
+  /**
+   * Ajusta own_stock en una sola sentencia atómica (equivalente a
+   * ProductRepository.adjustStock para especiales independientes).
+   *
+   * @return filas afectadas (0 si no existe o está vinculado a un padre)
+   */
+  @org.springframework.transaction.annotation.Transactional
+  @org.springframework.data.jpa.repository.Modifying
+  @Query(value = """
+      UPDATE special_products SET own_stock = COALESCE(own_stock, 0) + :delta
+      WHERE id = :id AND parent_product_id IS NULL
+      """, nativeQuery = true)
+  int adjustOwnStock(@Param("id") UUID id, @Param("delta") int delta);
+
+  @Query("SELECT sp.ownStock FROM SpecialProduct sp WHERE sp.id = :id")
+  Integer findOwnStockById(@Param("id") UUID id);
 }
@@ -33,4 +33,10 @@ public interface SpecialPromotionRepository extends JpaRepository<SpecialPromoti
 
     @Query("SELECT sp FROM SpecialPromotion sp JOIN sp.allowedVendors u WHERE u.id = :vendorId AND sp.active = true")
     Page<SpecialPromotion> findActiveByVendorId(@Param("vendorId") UUID vendorId, Pageable pageable);
+
+    /**
+     * Carga en lote promociones especiales junto con su promoción padre.
+     */
+    @Query("SELECT sp FROM SpecialPromotion sp LEFT JOIN FETCH sp.parentPromotion WHERE sp.id IN :ids")
+    List<SpecialPromotion> findAllWithParentByIdIn(@Param("ids") java.util.Collection<UUID> ids);
 }
@@ -0,0 +1,25 @@
+package org.example.sistema_gestion_vitalexa.repository;
+
+import org.example.sistema_gestion_vitalexa.entity.VendorGroupMember;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+
+import java.util.List;
+import java.util.UUID;
+
+public interface VendorGroupMemberRepository extends JpaRepository<VendorGroupMember, UUID> {
+
+  /**
+   * Todos los miembros con su username, ordenados por grupo y posición. Cada
+   * fila es [groupName, userId, username].
+   */
+  @Query("""
+      SELECT m.groupName, u.id, u.username
+      FROM VendorGroupMember m
+      JOIN User u ON u.id = m.userId
+      ORDER BY m.groupName, m.position, u.username
+      """)
+  List<Object[]> findAllMembersWithUsername();
+
+  List<VendorGroupMember> findByGroupName(String groupName);
+}
@@ -0,0 +1,139 @@
+package org.example.sistema_gestion_vitalexa.security.jwt;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Cache de usuarios autenticados por token, para no consultar la base de
+ * datos en cada request. La llave es el hash SHA-256 del token (el token
+ * nunca se guarda en memoria).
+ *
+ * - Cada entrada vive como máximo el TTL configurado, y nunca más allá de la
+ *   expiración del propio token.
+ * - Tamaño acotado: al llenarse se descartan primero las vencidas y luego las
+ *   más antiguas.
+ * - {@link #evictUser(String)} invalida todas las entradas de un usuario
+ *   cuando éste cambia (rol, contraseña, estado); se llama después del commit.
+ * - Cada invalidación avanza {@link #generation()}. Quien carga un usuario de
+ *   la base toma la generación ANTES de consultar y la pasa a put(): si entre
+ *   medio hubo una invalidación, lo leído puede ser el usuario viejo y no se
+ *   guarda. Así un request concurrente nunca vuelve a cachear un rol o un
+ *   estado ya revocados.
+ */
+@Component
+public class AuthenticatedPrincipalCache {
+
+    private static final Logger log = LoggerFactory.getLogger(AuthenticatedPrincipalCache.class);
+
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    private final AtomicLong generation = new AtomicLong();
+
+    @Value("${jwt.principal-cache.ttl:300000}")
+    private long ttlMillis;
+
+    @Value("${jwt.principal-cache.max-size:10000}")
+    private int maxSize;
+
+    private record Entry(UserDetails user, long createdAt, long expiresAt) {
+    }
+
+    public UserDetails get(String token) {
+        String key = hash(token);
+        Entry entry = entries.get(key);
+        if (entry == null) {
+            return null;
+        }
+        if (entry.expiresAt() <= System.currentTimeMillis()) {
+            entries.remove(key, entry);
+            return null;
+        }
+        return entry.user();
+    }
+
+    /**
+     * Marca a tomar antes de cargar el usuario de la base (ver put).
+     */
+    public long generation() {
+        return generation.get();
+    }
+
+    /**
+     * Guarda el usuario salvo que haya habido una invalidación desde que se
+     * tomó loadedAtGeneration.
+     */
+    public void put(String token, UserDetails user, Date tokenExpiration, long loadedAtGeneration) {
+        long now = System.currentTimeMillis();
+        long expiresAt = now + ttlMillis;
+        if (tokenExpiration != null) {
+            expiresAt = Math.min(expiresAt, tokenExpiration.getTime());
+        }
+        if (entries.size() >= maxSize) {
+            evictForSpace(now);
+        }
+        String key = hash(token);
+        entries.put(key, new Entry(user, now, expiresAt));
+        // Una invalidación pudo llegar entre la carga y el put: deshacer
+        if (generation.get() != loadedAtGeneration) {
+            entries.remove(key);
+        }
+    }
+
+    /**
+     * Invalida todas las sesiones cacheadas de un usuario.
+     */
+    public void evictUser(String username) {
+        if (username == null) {
+            return;
+        }
+        generation.incrementAndGet();
+        boolean removed = entries.values().removeIf(e -> username.equals(e.user().getUsername()));
+        if (removed) {
+            log.debug("🔑 Cache de autenticación invalidado para usuario={}", username);
+        }
+    }
+
+    public void clear() {
+        generation.incrementAndGet();
+        entries.clear();
+    }
+
+    private void evictForSpace(long now) {
+        entries.values().removeIf(e -> e.expiresAt() <= now);
+        int overflow = entries.size() - maxSize + 1;
+        if (overflow <= 0) {
+            return;
+        }
+        // Sin espacio: descartar las entradas más antiguas (al menos un 10% para no
+        // repetir esto en cada put)
+        int toRemove = Math.max(overflow, maxSize / 10);
+        entries.entrySet().stream()
+                .sorted(Comparator.comparingLong(e -> e.getValue().createdAt()))
+                .limit(toRemove)
+                .map(Map.Entry::getKey)
+                .toList()
+                .forEach(entries::remove);
+    }
+
+    private static String hash(String token) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            byte[] bytes = digest.digest(token.getBytes(StandardCharsets.UTF_8));
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 no disponible", e);
+        }
+    }
+}
@@ -1,5 +1,6 @@
 package org.example.sistema_gestion_vitalexa.security.jwt;
 
+import io.jsonwebtoken.Claims;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
@@ -25,6 +26,7 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
 
     private final JwtService jwtService;
     private final CustomUserDetailsService userDetailsService;
+    private final AuthenticatedPrincipalCache principalCache;
 
     @Override
     protected void doFilterInternal(
@@ -41,12 +43,20 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
 
         if (authHeader != null && authHeader.startsWith("Bearer ")) {
             String token = authHeader.substring(7);
-            String username = jwtService.extractUsername(token);
+            // Una sola verificación de firma por request
+            Claims claims = jwtService.parseToken(token);
+            String username = claims.getSubject();
 
             if (username != null && SecurityContextHolder.getContext().getAuthentication() == null) {
-                UserDetails user = userDetailsService.loadUserByUsername(username);
+                // Cache hit = cero consultas a la base de datos
+                UserDetails user = principalCache.get(token);
+                if (user == null) {
+                    long generation = principalCache.generation();
+                    user = userDetailsService.loadUserByUsername(username);
+                    principalCache.put(token, user, claims.getExpiration(), generation);
+                }
 
-                if (jwtService.isTokenValid(token, user)) {
+                if (jwtService.isTokenValid(claims, user)) {
                     UsernamePasswordAuthenticationToken authToken =
                             new UsernamePasswordAuthenticationToken(user, null, user.getAuthorities());
                     authToken.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
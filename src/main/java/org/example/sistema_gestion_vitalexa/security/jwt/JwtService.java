@@ -1,10 +1,12 @@
 package org.example.sistema_gestion_vitalexa.security.jwt;
 
 import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtParser;
 import io.jsonwebtoken.Jwts;
 import io.jsonwebtoken.SignatureAlgorithm;
 import io.jsonwebtoken.security.Keys;
 
+import jakarta.annotation.PostConstruct;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.stereotype.Service;
@@ -22,6 +24,18 @@ public class JwtService {
     @Value("${jwt.expiration}")
     private long expiration;
 
+    // La llave y el parser se construyen una sola vez (ambos son thread-safe)
+    private Key signingKey;
+    private JwtParser parser;
+
+    @PostConstruct
+    void init() {
+        signingKey = Keys.hmacShaKeyFor(secretKey.getBytes(StandardCharsets.UTF_8));
+        parser = Jwts.parserBuilder()
+                .setSigningKey(signingKey)
+                .build();
+    }
+
     public String generateToken(UserDetails user) {
         return Jwts.builder()
                 .setSubject(user.getUsername())
@@ -31,29 +45,32 @@ public class JwtService {
                         .toList())
                 .setIssuedAt(new Date())
                 .setExpiration(new Date(System.currentTimeMillis() + expiration))
-                .signWith(getKey(), SignatureAlgorithm.HS256)
+                .signWith(signingKey, SignatureAlgorithm.HS256)
                 .compact();
     }
 
+    /**
+     * Verifica la firma y la expiración del token UNA sola vez y devuelve sus
+     * claims. Lanza JwtException si el token es inválido o está vencido.
+     */
+    public Claims parseToken(String token) {
+        return parser.parseClaimsJws(token).getBody();
+    }
+
     public String extractUsername(String token) {
 
-        return getClaims(token).getSubject();
+        return parseToken(token).getSubject();
     }
 
     public boolean isTokenValid(String token, UserDetails user) {
-        return extractUsername(token).equals(user.getUsername())
-                && !getClaims(token).getExpiration().before(new Date());
-    }
-
-    private Claims getClaims(String token) {
-        return Jwts.parserBuilder()
-                .setSigningKey(getKey())
-                .build()
-                .parseClaimsJws(token)
-                .getBody();
+        return isTokenValid(parseToken(token), user);
     }
 
-    private Key getKey() {
-        return Keys.hmacShaKeyFor(secretKey.getBytes(StandardCharsets.UTF_8));
+    /**
+     * Valida claims ya verificados contra el usuario, sin volver a parsear.
+     */
+    public boolean isTokenValid(Claims claims, UserDetails user) {
+        return claims.getSubject().equals(user.getUsername())
+                && !claims.getExpiration().before(new Date());
     }
 }
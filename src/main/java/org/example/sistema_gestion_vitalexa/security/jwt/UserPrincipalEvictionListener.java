@@ -0,0 +1,60 @@
+package org.example.sistema_gestion_vitalexa.security.jwt;
+
+import jakarta.persistence.PostLoad;
+import jakarta.persistence.PostPersist;
+import jakarta.persistence.PostRemove;
+import jakarta.persistence.PostUpdate;
+import lombok.RequiredArgsConstructor;
+import org.example.sistema_gestion_vitalexa.entity.User;
+import org.example.sistema_gestion_vitalexa.util.TransactionCallbacks;
+import org.springframework.stereotype.Component;
+
+/**
+ * Listener JPA de {@link User}: cualquier cambio (rol, contraseña, estado) o
+ * eliminación del usuario invalida sus entradas en el cache de autenticación,
+ * así el siguiente request vuelve a cargarlo desde la base de datos.
+ *
+ * Los callbacks JPA corren en el flush, antes del commit: hasta el commit
+ * otro request todavía lee el usuario viejo. Por eso se invalida también
+ * después del commit; esa segunda invalidación avanza la generación del
+ * cache y descarta cualquier carga que haya empezado antes.
+ *
+ * Las entradas se buscan por username. Si el cambio es un renombre, también
+ * se invalidan las del nombre anterior (User.loadedUsername, que se anota al
+ * cargar o guardar la entidad): los tokens emitidos con ese nombre no deben
+ * seguir autenticando hasta que venza el TTL.
+ *
+ * Los UPDATE masivos (JPQL o nativos) sobre users no pasan por aquí: quien
+ * los haga debe llamar a {@link #evictAfterCommit(String)}.
+ */
+@Component
+@RequiredArgsConstructor
+public class UserPrincipalEvictionListener {
+
+    private static final Object EVICTIONS_KEY = UserPrincipalEvictionListener.class.getName() + ".evictions";
+
+    private final AuthenticatedPrincipalCache principalCache;
+
+    @PostLoad
+    @PostPersist
+    public void remember(User user) {
+        user.setLoadedUsername(user.getUsername());
+    }
+
+    @PostUpdate
+    @PostRemove
+    public void evict(User user) {
+        evictAfterCommit(user.getUsername());
+        String previous = user.getLoadedUsername();
+        if (previous != null && !previous.equals(user.getUsername())) {
+            evictAfterCommit(previous);
+        }
+        user.setLoadedUsername(user.getUsername());
+    }
+
+    public void evictAfterCommit(String username) {
+        principalCache.evictUser(username);
+        TransactionCallbacks.afterCommit(EVICTIONS_KEY, username,
+                usernames -> usernames.stream().distinct().forEach(principalCache::evictUser));
+    }
+}
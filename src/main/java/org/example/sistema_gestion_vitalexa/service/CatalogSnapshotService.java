@@ -0,0 +1,40 @@
+package org.example.sistema_gestion_vitalexa.service;
+
+import org.example.sistema_gestion_vitalexa.dto.CatalogSnapshotDTO;
+import org.example.sistema_gestion_vitalexa.dto.ProductResponse;
+
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Cache en memoria del catálogo que consume GET /api/vendedor/init.
+ * Se reconstruye solo cuando algo cambió (o al vencer su antigüedad máxima),
+ * en lugar de en cada llamada.
+ */
+public interface CatalogSnapshotService {
+
+    /**
+     * Foto actual del catálogo común (productos activos + promociones válidas).
+     */
+    CatalogSnapshotDTO getSnapshot();
+
+    /**
+     * Productos especiales de una vendedora, como capa sobre la foto indicada.
+     * Se cachean junto con la foto y se descartan con ella.
+     */
+    List<ProductResponse> getVendorSpecialProducts(CatalogSnapshotDTO snapshot, UUID vendorId);
+
+    /**
+     * Marca el catálogo como modificado. Dentro de una transacción surte efecto
+     * al hacer commit, para no reconstruir la foto con datos sin confirmar.
+     */
+    void invalidate();
+
+    /**
+     * Marca que cambió el stock (ventas, devoluciones, llegadas). No reconstruye
+     * la foto: la siguiente lectura solo vuelve a leer el stock de los
+     * productos, como mucho una vez cada catalog.snapshot.stock-refresh-ms.
+     * Dentro de una transacción surte efecto al hacer commit.
+     */
+    void stockChanged();
+}
@@ -16,12 +16,15 @@ import java.util.UUID;
 public interface ClientBalanceService {
 
     /**
-     * Obtiene el saldo de un cliente específico
+     * Obtiene el saldo de un cliente específico (incluye el detalle de facturas)
      */
     ClientBalanceDTO getClientBalance(UUID clientId);
 
     /**
-     * Obtiene todos los saldos (Owner/Admin)
+     * Obtiene todos los saldos (Owner/Admin).
+     * Los listados se leen del resumen materializado de cartera y no incluyen
+     * el detalle de facturas (pendingOrders vacío); para el detalle usar
+     * getClientBalance o los endpoints de facturas por cliente.
      */
     List<ClientBalanceDTO> getAllClientBalances();
 
@@ -71,6 +74,18 @@ public interface ClientBalanceService {
             String requestingUsername
     ) throws IOException;
 
+    /**
+     * Exportar cartera a Excel escribiendo directo a la respuesta HTTP
+     * (valida permisos y carga los datos antes de empezar a escribir)
+     */
+    org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody streamBalanceToExcel(
+            UUID vendedorId,
+            LocalDate startDate,
+            LocalDate endDate,
+            Boolean onlyWithDebt,
+            String requestingUsername
+    );
+
     /**
      * Obtener facturas pendientes de un cliente con filtros de fecha
      */
@@ -0,0 +1,24 @@
+package org.example.sistema_gestion_vitalexa.service;
+
+import java.util.UUID;
+
+/**
+ * Mantiene la tabla client_balance_summary (resumen de cartera por cliente)
+ * sincronizada con órdenes, descuentos y pagos.
+ */
+public interface ClientBalanceSummaryService {
+
+    /**
+     * Marca el saldo de un cliente como modificado. Dentro de una transacción
+     * la fila se recalcula una sola vez justo antes del commit (en la misma
+     * transacción), sin importar cuántas órdenes o pagos del cliente cambien.
+     * Sin transacción se recalcula de inmediato. clientId null se ignora.
+     */
+    void refreshOnCommit(UUID clientId);
+
+    /**
+     * Compara la tabla con el cálculo de referencia y corrige las filas que
+     * no coinciden. Devuelve la cantidad de clientes corregidos.
+     */
+    int verifyAndRepair();
+}
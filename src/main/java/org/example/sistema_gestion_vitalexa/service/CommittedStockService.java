@@ -0,0 +1,15 @@
+package org.example.sistema_gestion_vitalexa.service;
+
+/**
+ * Conciliación de products.committed_stock (unidades en pedidos activos),
+ * que mantienen los triggers de la base.
+ */
+public interface CommittedStockService {
+
+    /**
+     * Recalcula el contador desde los items de órdenes no finales y corrige
+     * los productos que no coinciden. Devuelve la cantidad de productos
+     * corregidos.
+     */
+    int verifyAndRepair();
+}
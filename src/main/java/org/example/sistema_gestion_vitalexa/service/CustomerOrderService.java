@@ -59,27 +59,28 @@ public class CustomerOrderService {
             order.setNotas(request.notas());
         }
 
+        // Bloquear el stock en orden de id antes de descontar
+        productService.lockStock(request.items().stream().map(i -> i.productId()).toList());
+
         request.items().forEach(itemReq -> {
             Product product = productService.findEntityById(itemReq.productId());
             if (!product.isActive()) throw new BusinessExeption("Producto inactivo: " + product.getNombre());
-            if (product.getStock() < itemReq.cantidad()) {
+
+            // Ledger atómico; si no alcanzaba, el rollback deshace toda la orden
+            int stockActual = productService.decreaseStock(product, itemReq.cantidad());
+            if (stockActual < 0) {
                 throw new BusinessExeption("Stock insuficiente para: " + product.getNombre());
             }
 
-            Integer stockAnterior = product.getStock();
-            product.decreaseStock(itemReq.cantidad());
-
-            if (product.getStock() != null) {
-                movementService.logMovement(
-                        product,
-                        org.example.sistema_gestion_vitalexa.entity.enums.InventoryMovementType.SALE,
-                        itemReq.cantidad(),
-                        stockAnterior,
-                        product.getStock(),
-                        "Venta Orden (Cliente App)",
-                        username
-                );
-            }
+            movementService.logMovement(
+                    product,
+                    org.example.sistema_gestion_vitalexa.entity.enums.InventoryMovementType.SALE,
+                    itemReq.cantidad(),
+                    stockActual + itemReq.cantidad(),
+                    stockActual,
+                    "Venta Orden (Cliente App)",
+                    username
+            );
             notificationService.sendInventoryUpdate(product.getId().toString(), "STOCK_UPDATED");
 
             order.addItem(new OrderItem(product, itemReq.cantidad()));
@@ -112,22 +113,20 @@ public class CustomerOrderService {
         if (order.getEstado() == OrdenStatus.CANCELADO) return orderMapper.toResponse(order);
 
         // opcional: devolver stock si quieres comportamiento “pro”
+        productService.lockStock(order.getItems().stream().map(i -> i.getProduct().getId()).toList());
         order.getItems().forEach(i -> {
             Product product = i.getProduct();
-            Integer stockAnterior = product.getStock();
-            product.increaseStock(i.getCantidad());
-
-            if (product.getStock() != null) {
-                movementService.logMovement(
-                        product,
-                        org.example.sistema_gestion_vitalexa.entity.enums.InventoryMovementType.RESTOCK,
-                        i.getCantidad(),
-                        stockAnterior,
-                        product.getStock(),
-                        "Anulación Orden (Cliente App)",
-                        username
-                );
-            }
+            int stockActual = productService.increaseStock(product, i.getCantidad());
+
+            movementService.logMovement(
+                    product,
+                    org.example.sistema_gestion_vitalexa.entity.enums.InventoryMovementType.RESTOCK,
+                    i.getCantidad(),
+                    stockActual - i.getCantidad(),
+                    stockActual,
+                    "Anulación Orden (Cliente App)",
+                    username
+            );
             notificationService.sendInventoryUpdate(product.getId().toString(), "STOCK_UPDATED");
         });
 
@@ -146,27 +145,25 @@ public class CustomerOrderService {
         Order copy = new Order(vendedor, client);
         copy.setNotas("Reorden de: " + original.getId().toString().substring(0, 8));
 
+        productService.lockStock(original.getItems().stream().map(i -> i.getProduct().getId()).toList());
         original.getItems().forEach(oldItem -> {
             Product product = oldItem.getProduct();
             int qty = oldItem.getCantidad();
 
             if (!product.isActive()) throw new BusinessExeption("Producto inactivo: " + product.getNombre());
-            if (product.getStock() < qty) throw new BusinessExeption("Stock insuficiente para reordenar: " + product.getNombre());
-
-            Integer stockAnterior = product.getStock();
-            product.decreaseStock(qty);
-
-            if (product.getStock() != null) {
-                movementService.logMovement(
-                        product,
-                        org.example.sistema_gestion_vitalexa.entity.enums.InventoryMovementType.SALE,
-                        qty,
-                        stockAnterior,
-                        product.getStock(),
-                        "Reorden (Cliente App)",
-                        username
-                );
-            }
+
+            int stockActual = productService.decreaseStock(product, qty);
+            if (stockActual < 0) throw new BusinessExeption("Stock insuficiente para reordenar: " + product.getNombre());
+
+            movementService.logMovement(
+                    product,
+                    org.example.sistema_gestion_vitalexa.entity.enums.InventoryMovementType.SALE,
+                    qty,
+                    stockActual + qty,
+                    stockActual,
+                    "Reorden (Cliente App)",
+                    username
+            );
             notificationService.sendInventoryUpdate(product.getId().toString(), "STOCK_UPDATED");
 
             copy.addItem(new OrderItem(product, qty));
@@ -0,0 +1,28 @@
+package org.example.sistema_gestion_vitalexa.service;
+
+import org.example.sistema_gestion_vitalexa.dto.ExportJobFile;
+import org.example.sistema_gestion_vitalexa.dto.ExportJobRequest;
+import org.example.sistema_gestion_vitalexa.dto.ExportJobResponse;
+
+import java.util.UUID;
+
+/**
+ * Exportaciones (reportes, nómina, inventario, cartera) generadas en segundo
+ * plano: el pedido devuelve un id de inmediato y el archivo se descarga cuando
+ * está listo, sin ocupar un hilo de Tomcat mientras se arma.
+ */
+public interface ExportJobService {
+
+    /**
+     * Encola la exportación. Si ya hay una igual en curso (mismo tipo,
+     * parámetros y versión de datos) devuelve esa en lugar de crear otra.
+     */
+    ExportJobResponse submit(ExportJobRequest request, String username);
+
+    ExportJobResponse getJob(UUID jobId, String username);
+
+    /**
+     * Archivo de una exportación lista (solo para quien la pidió).
+     */
+    ExportJobFile getFile(UUID jobId, String username);
+}
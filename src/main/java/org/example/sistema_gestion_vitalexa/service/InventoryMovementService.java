@@ -21,8 +21,18 @@ public interface InventoryMovementService {
                         LocalDateTime startDate,
                         LocalDateTime endDate, Pageable pageable);
 
+        // Historial por cursor (keyset): sin OFFSET ni COUNT por página
+        org.example.sistema_gestion_vitalexa.dto.CursorPage<InventoryMovementResponseDTO> getHistoryByCursor(
+                        UUID productId, InventoryMovementType type, LocalDateTime startDate,
+                        LocalDateTime endDate, String cursor, int size, boolean withTotal);
+
         byte[] generateHistoryPdf(List<InventoryMovement> movements, String username, String filterDescription);
 
+        // Historial completo en PDF, leído por páginas y escrito directo a la respuesta HTTP
+        org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody streamHistoryPdf(UUID productId,
+                        InventoryMovementType type, LocalDateTime startDate, LocalDateTime endDate,
+                        String username, String filterDescription);
+
         byte[] generateStockEntryReport(List<InventoryMovement> movements, String username);
 
         // Para exportar todo (sin paginación)
@@ -6,6 +6,7 @@ import org.example.sistema_gestion_vitalexa.dto.NotificationType;
 public interface NotificationService {
     void sendNewOrderNotification(String orderId, String vendorName, String clientName);
     void sendOrderCompletedNotification(String orderId);
+    void sendOrdersCompletedNotification(java.util.List<String> orderIds);
     void sendLowStockAlert(String productId, String productName, int currentStock, int reorderPoint);
     void sendOutOfStockAlert(String productId, String productName);
     void sendInventoryUpdate(String productId, String action);
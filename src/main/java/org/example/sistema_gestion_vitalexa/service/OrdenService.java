@@ -33,6 +33,13 @@ public interface OrdenService {
      */
     OrderResponse completeOrder(UUID orderId, CompleteOrderRequest request, String username);
 
+    /**
+     * Completar varias órdenes en una sola transacción (cierre del día).
+     * Las que no se pueden completar se reportan sin detener a las demás.
+     */
+    org.example.sistema_gestion_vitalexa.dto.BulkCompleteOrdersResult completeOrdersBulk(
+            org.example.sistema_gestion_vitalexa.dto.BulkCompleteOrdersRequest request, String username);
+
     // 🔹 ADMIN / OWNER
     OrderResponse findById(UUID orderId);
 
@@ -52,6 +59,15 @@ public interface OrdenService {
      */
     Page<OrderResponse> findAllPaginated(int page, int size, String status, String search, String vendedor, String cliente, String sortBy, String sortOrder);
 
+    /**
+     * Órdenes por cursor (keyset), de la más reciente a la más antigua.
+     *
+     * @param cursor    nextCursor de la página anterior (null para la primera)
+     * @param withTotal si true, la primera página incluye el total estimado
+     */
+    org.example.sistema_gestion_vitalexa.dto.CursorPage<OrderResponse> findAllByCursor(
+            String cursor, int size, String status, String search, String vendedor, String cliente, boolean withTotal);
+
     // 🔹 VENDEDOR (solo sus órdenes)
     List<OrderResponse> findMyOrders(String username);
 
@@ -0,0 +1,16 @@
+package org.example.sistema_gestion_vitalexa.service;
+
+/**
+ * Documentos del buscador de órdenes (order_search_documents) que quedaron
+ * desactualizados por un renombre de cliente, producto o vendedor. Los
+ * cambios de órdenes e items los aplica la base al commit; los renombres
+ * solo se encolan y se procesan aquí, fuera de la transacción del renombre.
+ */
+public interface OrderSearchIndexService {
+
+    /**
+     * Procesa la cola completa, por tandas. Devuelve la cantidad de orígenes
+     * procesados.
+     */
+    int refreshStaleDocuments();
+}
@@ -0,0 +1,24 @@
+package org.example.sistema_gestion_vitalexa.service;
+
+import org.example.sistema_gestion_vitalexa.dto.ProductImageStatusResponse;
+import org.example.sistema_gestion_vitalexa.entity.Product;
+
+import java.util.UUID;
+
+/**
+ * Imágenes Base64 de productos subidas fuera de la transacción que guarda el
+ * producto, para no retener una conexión de la base durante la subida.
+ */
+public interface ProductImageIngestionService {
+
+    /**
+     * Decodifica la imagen y la deja en cola para subirla después del commit.
+     * Si la misma imagen (mismo contenido) ya está subida, se asigna su url de
+     * inmediato; si no, el producto queda con pendingImageId hasta que termine.
+     *
+     * @return false si la imagen no se pudo decodificar (el producto se guarda igual)
+     */
+    boolean stage(Product product, String base64Image, String originalFilename);
+
+    ProductImageStatusResponse getStatus(UUID imageId);
+}
@@ -1,28 +1,66 @@
 package org.example.sistema_gestion_vitalexa.service;
 
 import com.cloudinary.Cloudinary;
+import com.cloudinary.EagerTransformation;
+import com.cloudinary.Transformation;
 import com.cloudinary.utils.ObjectUtils;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.example.sistema_gestion_vitalexa.util.ContentHashes;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
 
-import java.io.File;
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.nio.file.StandardCopyOption;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
-import java.util.UUID;
 
+/**
+ * Imágenes de productos en Cloudinary (prod) o disco local (resto).
+ *
+ * En disco local el archivo se nombra con el hash de su contenido, así un
+ * nombre nunca cambia de contenido y se puede cachear como inmutable. Al
+ * guardar se generan derivados reducidos (thumb y medium, en JPEG) que
+ * ImageController sirve con ?size=. En Cloudinary los mismos tamaños se piden
+ * como transformaciones eager en WebP. derivativeUrl arma la URL de cada
+ * derivado (ProductResponse la expone como thumbUrl / mediumUrl).
+ */
 @Service
 @Slf4j
 @RequiredArgsConstructor
 public class ProductImageService {
 
+    /** Derivados: nombre -> lado mayor en píxeles */
+    public static final Map<String, Integer> DERIVATIVE_SIZES;
+
+    static {
+        Map<String, Integer> sizes = new LinkedHashMap<>();
+        sizes.put("thumb", 200);
+        sizes.put("medium", 800);
+        DERIVATIVE_SIZES = java.util.Collections.unmodifiableMap(sizes);
+    }
+
+    private static final float DERIVATIVE_JPEG_QUALITY = 0.82f;
+
+    private static final String LOCAL_URL_PREFIX = "/uploads/products/";
+    private static final String CLOUDINARY_UPLOAD_SEGMENT = "/upload/";
+
     @Value("${spring.profiles.active:default}")
     private String activeProfile;
 
@@ -59,7 +97,9 @@ public class ProductImageService {
                             "resource_type", "auto",
                             "use_filename", true,
                             "unique_filename", true,
-                            "filename", originalFilename // Hint to Cloudinary about name
+                            "filename", originalFilename, // Hint to Cloudinary about name
+                            "eager", eagerDerivatives(),
+                            "eager_async", true
                     ));
 
             String imageUrl = (String) uploadResult.get("secure_url");
@@ -87,15 +127,20 @@ public class ProductImageService {
                 log.debug("Directorio creado: {}", uploadPath);
             }
 
-            // Generar nombre único
+            // Nombre = hash del contenido (la misma imagen reutiliza el archivo)
             String extension = originalFilename != null && originalFilename.contains(".")
-                    ? originalFilename.substring(originalFilename.lastIndexOf("."))
+                    ? originalFilename.substring(originalFilename.lastIndexOf(".")).toLowerCase()
                     : ".jpg";
-            String filename = UUID.randomUUID().toString() + extension;
+            String filename = ContentHashes.shortSha256Hex(data) + extension;
 
-            // Guardar archivo
+            // Guardar archivo (vía temporal: nunca se sirve a medio escribir)
             Path filePath = uploadPath.resolve(filename);
-            Files.write(filePath, data);
+            if (!Files.exists(filePath)) {
+                Path temp = Files.createTempFile(uploadPath, "upload-", ".tmp");
+                Files.write(temp, data);
+                Files.move(temp, filePath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            }
+            writeDerivatives(uploadPath, filename, data);
 
             String relativePath = "/uploads/products/" + filename;
             log.info("Imagen guardada localmente: {}", relativePath);
@@ -142,7 +187,9 @@ public class ProductImageService {
                             "folder", "vitalexa/products",
                             "resource_type", "auto",
                             "use_filename", true,
-                            "unique_filename", true));
+                            "unique_filename", true,
+                            "eager", eagerDerivatives(),
+                            "eager_async", true));
 
             String imageUrl = (String) uploadResult.get("secure_url");
             String publicId = (String) uploadResult.get("public_id");
@@ -162,38 +209,144 @@ public class ProductImageService {
      * Guardar en disco local (DESARROLLO)
      */
     private String saveToLocalDisk(MultipartFile file) throws IOException {
-        try {
-            log.info("Guardando imagen localmente: {}", file.getOriginalFilename());
-
-            // Crear directorio si no existe
-            Path uploadPath = Paths.get(uploadDir);
-            if (!Files.exists(uploadPath)) {
-                Files.createDirectories(uploadPath);
-                log.debug("Directorio creado: {}", uploadPath);
-            }
+        return saveToLocalDisk(file.getBytes(), file.getOriginalFilename());
+    }
 
-            // Generar nombre único
-            String originalFilename = file.getOriginalFilename();
-            String extension = originalFilename != null && originalFilename.contains(".")
-                    ? originalFilename.substring(originalFilename.lastIndexOf("."))
-                    : ".jpg";
-            String filename = UUID.randomUUID().toString() + extension;
+    /**
+     * Nombre del derivado de un archivo local: {base}-{size}.jpg
+     */
+    public static String derivativeName(String filename, String size) {
+        int dot = filename.lastIndexOf('.');
+        String base = dot > 0 ? filename.substring(0, dot) : filename;
+        return base + "-" + size + ".jpg";
+    }
 
-            // Guardar archivo
-            Path filePath = uploadPath.resolve(filename);
-            Files.copy(file.getInputStream(), filePath, StandardCopyOption.REPLACE_EXISTING);
+    /**
+     * URL del derivado de una imagen ya guardada:
+     * - Cloudinary: la misma transformación que se pidió eager al subir
+     *   (.../upload/c_limit,h_200,q_auto,w_200/v123/carpeta/id.webp), así se
+     *   sirve el derivado ya generado.
+     * - Disco local: ImageController con ?size=, que cae al original si el
+     *   derivado no existe.
+     * - Otras URLs externas se devuelven sin cambios.
+     */
+    public static String derivativeUrl(String imageUrl, String size) {
+        Integer side = DERIVATIVE_SIZES.get(size);
+        if (side == null) {
+            throw new IllegalArgumentException("Tamaño de imagen no soportado: " + size);
+        }
+        if (imageUrl == null || imageUrl.isBlank()) {
+            return null;
+        }
 
-            String relativePath = "/uploads/products/" + filename;
-            log.info("Imagen guardada localmente: {}", relativePath);
+        int upload = imageUrl.indexOf(CLOUDINARY_UPLOAD_SEGMENT);
+        if (imageUrl.contains("cloudinary.com") && upload >= 0) {
+            String prefix = imageUrl.substring(0, upload + CLOUDINARY_UPLOAD_SEGMENT.length());
+            String asset = imageUrl.substring(prefix.length());
+            int dot = asset.lastIndexOf('.');
+            String withoutExtension = dot > asset.lastIndexOf('/') ? asset.substring(0, dot) : asset;
+            return prefix + limitTo(new Transformation<>(), side).generate() + "/" + withoutExtension + ".webp";
+        }
+        if (imageUrl.startsWith(LOCAL_URL_PREFIX)) {
+            return "/api/images/products/" + imageUrl.substring(LOCAL_URL_PREFIX.length()) + "?size=" + size;
+        }
+        return imageUrl;
+    }
 
-            return relativePath;
+    /**
+     * Genera los derivados reducidos de una imagen local. Los formatos que
+     * ImageIO no lee (p. ej. WebP o SVG) se quedan sin derivados y se sirve
+     * el original.
+     */
+    private void writeDerivatives(Path uploadPath, String filename, byte[] data) {
+        boolean allExist = DERIVATIVE_SIZES.keySet().stream()
+                .allMatch(size -> Files.exists(uploadPath.resolve(derivativeName(filename, size))));
+        if (allExist) {
+            return;
+        }
 
+        BufferedImage source;
+        try {
+            source = ImageIO.read(new ByteArrayInputStream(data));
         } catch (IOException e) {
-            log.error("Error al guardar imagen localmente", e);
-            throw new IOException("Error al guardar imagen: " + e.getMessage(), e);
+            source = null;
+        }
+        if (source == null) {
+            log.debug("Sin derivados para {}: formato no soportado", filename);
+            return;
+        }
+
+        for (Map.Entry<String, Integer> size : DERIVATIVE_SIZES.entrySet()) {
+            Path target = uploadPath.resolve(derivativeName(filename, size.getKey()));
+            if (Files.exists(target)) {
+                continue;
+            }
+            try {
+                Path temp = Files.createTempFile(uploadPath, "derivative-", ".tmp");
+                writeJpeg(scaleDown(source, size.getValue()), temp);
+                Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (IOException e) {
+                log.warn("No se pudo generar el derivado {} de {}: {}", size.getKey(), filename, e.getMessage());
+            }
         }
     }
 
+    /**
+     * Reduce la imagen para que su lado mayor no pase de maxSide (nunca la
+     * amplía). Reduce a la mitad por pasos para no perder nitidez y aplana la
+     * transparencia sobre blanco (JPEG no tiene canal alfa).
+     */
+    private static BufferedImage scaleDown(BufferedImage source, int maxSide) {
+        double scale = Math.min(1.0, (double) maxSide / Math.max(source.getWidth(), source.getHeight()));
+        int targetWidth = Math.max(1, (int) Math.round(source.getWidth() * scale));
+        int targetHeight = Math.max(1, (int) Math.round(source.getHeight() * scale));
+
+        BufferedImage current = source;
+        int width = source.getWidth();
+        int height = source.getHeight();
+        do {
+            width = Math.max(targetWidth, width / 2);
+            height = Math.max(targetHeight, height / 2);
+            BufferedImage step = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+            Graphics2D g = step.createGraphics();
+            g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            g.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            g.setColor(Color.WHITE);
+            g.fillRect(0, 0, width, height);
+            g.drawImage(current, 0, 0, width, height, null);
+            g.dispose();
+            current = step;
+        } while (width != targetWidth || height != targetHeight);
+        return current;
+    }
+
+    private static void writeJpeg(BufferedImage image, Path target) throws IOException {
+        ImageWriter writer = ImageIO.getImageWritersByFormatName("jpeg").next();
+        ImageWriteParam param = writer.getDefaultWriteParam();
+        param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+        param.setCompressionQuality(DERIVATIVE_JPEG_QUALITY);
+        try (ImageOutputStream out = ImageIO.createImageOutputStream(target.toFile())) {
+            writer.setOutput(out);
+            writer.write(null, new IIOImage(image, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+    }
+
+    /**
+     * Mismos tamaños que los derivados locales, generados por Cloudinary en
+     * WebP al subir (se piden con la misma transformación en la url).
+     */
+    private static List<EagerTransformation> eagerDerivatives() {
+        return DERIVATIVE_SIZES.values().stream()
+                .map(side -> limitTo(new EagerTransformation(), side).format("webp"))
+                .toList();
+    }
+
+    private static <T extends Transformation<T>> T limitTo(T transformation, int side) {
+        return transformation.width(side).height(side).crop("limit").quality("auto");
+    }
+
     /**
      * Eliminar imagen (funciona tanto para Cloudinary como local)
      */
@@ -252,6 +405,9 @@ public class ProductImageService {
                 Files.delete(filePath);
                 log.info("Imagen eliminada localmente: {}", filePath);
             }
+            for (String size : DERIVATIVE_SIZES.keySet()) {
+                Files.deleteIfExists(Paths.get(uploadDir, derivativeName(filename, size)));
+            }
         } catch (IOException e) {
             log.error("Error al eliminar archivo local: {}", imagePath, e);
         }
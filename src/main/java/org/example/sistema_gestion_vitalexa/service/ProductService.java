@@ -58,6 +58,45 @@ public interface ProductService {
         /** Agrega stock a un producto (Llegada de mercancía) */
         InventoryMovement addStock(UUID productId, int quantity, String reason, String username);
 
+        /**
+         * Descuenta stock con un UPDATE atómico en BD y sincroniza la entidad.
+         * Permite stock negativo (igual que Product.decreaseStock).
+         *
+         * @return stock resultante
+         */
+        int decreaseStock(Product product, int quantity);
+
+        /** Aumenta stock con un UPDATE atómico en BD y sincroniza la entidad. */
+        int increaseStock(Product product, int quantity);
+
+        /**
+         * Descuenta stock de un producto cuya fila ya está bloqueada en esta
+         * transacción y cuya entidad tiene el stock bloqueado (ver
+         * OrderResolutionContext). El ajuste se aplica a la entidad y los de
+         * toda la transacción se escriben juntos, en UNA sentencia, antes del
+         * commit. decreaseStock/increaseStock escriben antes los ajustes
+         * pendientes, así que pueden usarse después en la misma transacción.
+         *
+         * @return stock resultante
+         */
+        int decreaseLockedStock(Product product, int quantity);
+
+        /** Igual que decreaseLockedStock, aumentando el stock. */
+        int increaseLockedStock(Product product, int quantity);
+
+        /**
+         * Escribe ya los ajustes pendientes de decreaseLockedStock /
+         * increaseLockedStock de la transacción actual. Llamar antes de leer
+         * stock desde la BD (bloqueos con lectura, consultas nativas).
+         */
+        void flushLockedStock();
+
+        /**
+         * Bloquea el stock de los productos indicados en orden de id, antes de
+         * tocar varios a la vez (evita deadlocks entre órdenes concurrentes).
+         */
+        void lockStock(java.util.Collection<UUID> productIds);
+
         /** Carga masiva de stock */
         List<InventoryMovement> addStockBulk(BulkStockArrivalRequestDTO request, String username);
 
@@ -67,6 +106,9 @@ public interface ProductService {
         /** Exportar inventario actual a PDF */
         byte[] exportInventoryToPdf();
 
+        /** Inventario actual en PDF escrito directo a la respuesta HTTP */
+        org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody streamInventoryToPdf();
+
         /**
          * Reporte completo: stock real vs stock comprometido en pedidos activos.
          * stockDisponible = stockReal - stockComprometido (puede ser negativo)
@@ -53,5 +53,11 @@ public interface ProductTagService {
      * Obtener etiqueta como entidad por UUID
      */
     ProductTag findEntityById(UUID id);
+
+    /**
+     * Etiquetas como entidades, en una sola consulta (cargas masivas). Los ids
+     * inexistentes no aparecen en el mapa.
+     */
+    java.util.Map<UUID, ProductTag> findEntitiesByIds(java.util.Collection<UUID> ids);
 }
 
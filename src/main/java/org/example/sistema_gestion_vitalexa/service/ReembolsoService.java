@@ -23,6 +23,7 @@ public class ReembolsoService {
     private final ProductMapper productMapper;
     private final NotificationService notificationService;
     private final InventoryMovementService movementService;
+    private final ProductService productService;
 
     @Transactional
     public ReembolsoResponse crearReembolso(ReembolsoRequest request, String username) {
@@ -43,26 +44,29 @@ public class ReembolsoService {
 
         reembolso = reembolsoRepository.save(reembolso);
 
+        // Bloquear el stock en orden de id antes de descontar
+        productService.lockStock(request.getItems().stream()
+                .map(ReembolsoRequest.ReembolsoItemRequest::getProductoId)
+                .filter(java.util.Objects::nonNull)
+                .toList());
+
         for (ReembolsoRequest.ReembolsoItemRequest itemRequest : request.getItems()) {
             Product producto = productRepository.findById(itemRequest.getProductoId())
                     .orElseThrow(() -> new RuntimeException("Producto no encontrado: " + itemRequest.getProductoId()));
 
             // Permitir stock negativo eliminando la validación estricta
-            Integer stockAnterior = producto.getStock();
-            producto.decreaseStock(itemRequest.getCantidad());
-            productRepository.save(producto);
-
-            if (producto.getStock() != null) {
-                movementService.logMovement(
-                        producto,
-                        org.example.sistema_gestion_vitalexa.entity.enums.InventoryMovementType.STOCK_ADJUSTMENT,
-                        itemRequest.getCantidad(),
-                        stockAnterior,
-                        producto.getStock(),
-                        "Reembolso a Empacador",
-                        username
-                );
-            }
+            // (ledger atómico; también avisa al catálogo)
+            int stockActual = productService.decreaseStock(producto, itemRequest.getCantidad());
+
+            movementService.logMovement(
+                    producto,
+                    org.example.sistema_gestion_vitalexa.entity.enums.InventoryMovementType.STOCK_ADJUSTMENT,
+                    itemRequest.getCantidad(),
+                    stockActual + itemRequest.getCantidad(),
+                    stockActual,
+                    "Reembolso a Empacador",
+                    username
+            );
 
             // NOTIFICAR CAMBIO DE STOCK POR REEMBOLSO
             notificationService.sendInventoryUpdate(producto.getId().toString(), "STOCK_UPDATED");
@@ -5,6 +5,7 @@ import org.apache.poi.ss.usermodel.Workbook;
 import org.example.sistema_gestion_vitalexa.dto.ReportDTO;
 import org.example.sistema_gestion_vitalexa.dto.VendorDailySalesDTO;
 import org.springframework.http.ResponseEntity;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.time.LocalDate;
 import java.util.List;
@@ -33,4 +34,16 @@ public interface ReportExportService {
     byte[] exportVendorReportExcel(VendorDailySalesDTO vendorReport);
 
     byte[] exportVendorReportPdf(VendorDailySalesDTO vendorReport);
+
+    // Exportaciones Excel en streaming: los datos se cargan al llamar el método
+    // y el archivo se escribe directo a la respuesta HTTP
+    StreamingResponseBody streamReportToExcel(ReportDTO report, LocalDate startDate, LocalDate endDate,
+            java.util.UUID vendorId);
+
+    StreamingResponseBody streamProductReportToExcel();
+
+    StreamingResponseBody streamVendorReportExcel(VendorDailySalesDTO vendorReport);
+
+    // PDF en streaming, escrito directo a la respuesta HTTP
+    StreamingResponseBody streamReportToPdf(ReportDTO report, LocalDate startDate, LocalDate endDate);
 }
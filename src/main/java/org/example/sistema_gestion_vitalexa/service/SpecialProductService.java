@@ -34,4 +34,18 @@ public interface SpecialProductService {
     void softDelete(UUID id);
 
     void changeStatus(UUID id, boolean active);
+
+    /**
+     * Descuenta el stock propio de un especial independiente con un UPDATE
+     * atómico en BD y sincroniza la entidad. Permite stock negativo.
+     *
+     * @return stock resultante
+     */
+    int decreaseOwnStock(SpecialProduct specialProduct, int quantity);
+
+    /**
+     * Bloquea el stock propio de los especiales indicados en orden de id.
+     * Llamar después de ProductService.lockStock.
+     */
+    void lockOwnStock(java.util.Collection<UUID> specialProductIds);
 }
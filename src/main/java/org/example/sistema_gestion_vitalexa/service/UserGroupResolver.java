@@ -0,0 +1,45 @@
+package org.example.sistema_gestion_vitalexa.service;
+
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Grupos de vendedores que comparten datos (tabla vendor_group_members).
+ * Se resuelve en memoria; el mapa se recarga cuando cambia un usuario o al
+ * vencer su antigüedad máxima. Los usernames se comparan sin distinguir
+ * mayúsculas.
+ */
+public interface UserGroupResolver {
+
+    boolean isGrouped(String username);
+
+    /**
+     * Usernames del grupo (la cuenta principal primero), o solo el indicado si
+     * no pertenece a ningún grupo.
+     */
+    List<String> usernamesOf(String username);
+
+    /**
+     * Ids del grupo (la cuenta principal primero), o solo el indicado. Lista
+     * vacía si userId es null.
+     */
+    List<UUID> idsOf(UUID userId);
+
+    /**
+     * Cuenta principal del grupo (nombre que se muestra y titular de la
+     * nómina), o el mismo username si no pertenece a ningún grupo.
+     */
+    String primaryUsername(String username);
+
+    /**
+     * true si pertenece a un grupo y no es su cuenta principal.
+     */
+    boolean isSecondaryMember(String username);
+
+    boolean sameGroup(String username, String otherUsername);
+
+    /**
+     * Descarta el mapa. Dentro de una transacción surte efecto al hacer commit.
+     */
+    void invalidate();
+}
@@ -0,0 +1,23 @@
+package org.example.sistema_gestion_vitalexa.service;
+
+import org.example.sistema_gestion_vitalexa.dto.VendorGroupRequest;
+import org.example.sistema_gestion_vitalexa.dto.VendorGroupResponse;
+
+import java.util.List;
+
+/**
+ * Administración de los grupos de vendedores (tabla vendor_group_members).
+ * La lectura en caliente la hace {@link UserGroupResolver}.
+ */
+public interface VendorGroupService {
+
+    List<VendorGroupResponse> findAll();
+
+    /**
+     * Crea o reemplaza el grupo con los vendedores indicados, en ese orden.
+     * Un vendedor que estaba en otro grupo se mueve a éste.
+     */
+    VendorGroupResponse save(String name, VendorGroupRequest request);
+
+    void delete(String name);
+}
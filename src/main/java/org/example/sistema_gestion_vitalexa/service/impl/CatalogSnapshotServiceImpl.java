@@ -0,0 +1,213 @@
+package org.example.sistema_gestion_vitalexa.service.impl;
+
+import lombok.RequiredArgsConstructor;
+import org.example.sistema_gestion_vitalexa.dto.CatalogSnapshotDTO;
+import org.example.sistema_gestion_vitalexa.dto.ProductResponse;
+import org.example.sistema_gestion_vitalexa.dto.PromotionResponse;
+import org.example.sistema_gestion_vitalexa.entity.SpecialProduct;
+import org.example.sistema_gestion_vitalexa.mapper.ProductMapper;
+import org.example.sistema_gestion_vitalexa.mapper.PromotionMapper;
+import org.example.sistema_gestion_vitalexa.repository.ProductRepository;
+import org.example.sistema_gestion_vitalexa.repository.PromotionRepository;
+import org.example.sistema_gestion_vitalexa.repository.SpecialProductRepository;
+import org.example.sistema_gestion_vitalexa.service.CatalogSnapshotService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.example.sistema_gestion_vitalexa.util.TransactionCallbacks;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Foto versionada del catálogo para el endpoint de inicio de vendedoras.
+ *
+ * - Las escrituras de productos, promociones y productos especiales llaman a
+ *   {@link #invalidate()}; la siguiente lectura reconstruye la foto UNA vez y
+ *   todas las vendedoras comparten el resultado (en la hora pico de la mañana
+ *   la misma lista se armaba decenas de veces).
+ * - La foto también se reconstruye al superar su antigüedad máxima, porque la
+ *   vigencia de las promociones depende de la hora.
+ * - Los productos especiales de cada vendedora se guardan como capa aparte
+ *   dentro de la foto y se descartan junto con ella.
+ * - Las ventas no reconstruyen la foto: {@link #stockChanged()} solo hace que
+ *   la siguiente lectura cambie el stock de los productos por el actual (una
+ *   consulta de [id, stock]), como mucho una vez cada stock-refresh-ms. El
+ *   stock servido puede ir ese tiempo por detrás; la venta lo valida igual.
+ */
+@Service
+@RequiredArgsConstructor
+public class CatalogSnapshotServiceImpl implements CatalogSnapshotService {
+
+    private static final Logger log = LoggerFactory.getLogger(CatalogSnapshotServiceImpl.class);
+
+    private static final Object INVALIDATION_KEY = CatalogSnapshotServiceImpl.class.getName() + ".invalidation";
+    private static final Object STOCK_CHANGE_KEY = CatalogSnapshotServiceImpl.class.getName() + ".stock";
+
+    // Distingue las versiones de este proceso de las de un arranque anterior
+    private static final String INSTANCE_ID = Long.toString(System.currentTimeMillis(), 36);
+
+    private final ProductRepository productRepository;
+    private final PromotionRepository promotionRepository;
+    private final SpecialProductRepository specialProductRepository;
+    private final ProductMapper productMapper;
+    private final PromotionMapper promotionMapper;
+
+    @Value("${catalog.snapshot.max-age-ms:60000}")
+    private long maxAgeMillis;
+
+    @Value("${catalog.snapshot.stock-refresh-ms:2000}")
+    private long stockRefreshMillis;
+
+    private final AtomicLong changeCounter = new AtomicLong();
+    private final AtomicLong stockChangeCounter = new AtomicLong();
+    private final AtomicLong buildCounter = new AtomicLong();
+    private final Object rebuildLock = new Object();
+
+    private volatile Snapshot current;
+
+    /**
+     * Foto + capas por vendedora. changeMark y stockMark son los valores de
+     * changeCounter y stockChangeCounter leídos ANTES de consultar la base de
+     * datos; builtAt es la hora de la foto completa y stockAt la del stock.
+     */
+    private record Snapshot(CatalogSnapshotDTO data, long changeMark, long builtAt, long stockMark, long stockAt,
+            Map<UUID, List<ProductResponse>> vendorOverlays) {
+    }
+
+    @Override
+    public CatalogSnapshotDTO getSnapshot() {
+        Snapshot snapshot = current;
+        if (isFresh(snapshot) && hasCurrentStock(snapshot)) {
+            return snapshot.data();
+        }
+
+        // Una sola reconstrucción a la vez; el resto espera y reutiliza el resultado
+        synchronized (rebuildLock) {
+            snapshot = current;
+            if (!isFresh(snapshot)) {
+                snapshot = build();
+                current = snapshot;
+            } else if (!hasCurrentStock(snapshot)) {
+                snapshot = refreshStock(snapshot);
+                current = snapshot;
+            }
+            return snapshot.data();
+        }
+    }
+
+    @Override
+    @jakarta.transaction.Transactional
+    public List<ProductResponse> getVendorSpecialProducts(CatalogSnapshotDTO snapshot, UUID vendorId) {
+        Snapshot holder = current;
+        if (holder == null || holder.data() != snapshot) {
+            // La foto cambió mientras tanto: no cachear la capa sobre una foto vieja
+            return loadVendorSpecialProducts(vendorId);
+        }
+        return holder.vendorOverlays().computeIfAbsent(vendorId, this::loadVendorSpecialProducts);
+    }
+
+    @Override
+    public void invalidate() {
+        // Un solo registro por transacción, aunque se modifiquen muchos productos
+        TransactionCallbacks.afterCommit(INVALIDATION_KEY, Boolean.TRUE, marks -> changeCounter.incrementAndGet());
+    }
+
+    @Override
+    public void stockChanged() {
+        TransactionCallbacks.afterCommit(STOCK_CHANGE_KEY, Boolean.TRUE, marks -> stockChangeCounter.incrementAndGet());
+    }
+
+    private boolean isFresh(Snapshot snapshot) {
+        return snapshot != null
+                && snapshot.changeMark() == changeCounter.get()
+                && System.currentTimeMillis() - snapshot.builtAt() < maxAgeMillis;
+    }
+
+    private boolean hasCurrentStock(Snapshot snapshot) {
+        return snapshot.stockMark() == stockChangeCounter.get()
+                || System.currentTimeMillis() - snapshot.stockAt() < stockRefreshMillis;
+    }
+
+    /**
+     * Misma foto con el stock actual de los productos. Las capas por vendedora
+     * se vuelven a armar porque los especiales vinculados muestran el stock
+     * del producto padre.
+     */
+    private Snapshot refreshStock(Snapshot snapshot) {
+        long inicio = System.currentTimeMillis();
+        long stockMark = stockChangeCounter.get();
+
+        Map<UUID, Integer> stockById = new java.util.HashMap<>();
+        for (Object[] row : productRepository.findActiveStockLevels()) {
+            stockById.put((UUID) row[0], (Integer) row[1]);
+        }
+        List<ProductResponse> productos = snapshot.data().productos()
+                .stream()
+                .map(p -> stockById.containsKey(p.id()) ? withStock(p, stockById.get(p.id())) : p)
+                .toList();
+
+        String version = INSTANCE_ID + "." + buildCounter.incrementAndGet();
+        log.debug("📦 Stock del catálogo actualizado (v{}) en {}ms", version, System.currentTimeMillis() - inicio);
+
+        return new Snapshot(new CatalogSnapshotDTO(version, productos, snapshot.data().promociones()),
+                snapshot.changeMark(), snapshot.builtAt(), stockMark, inicio, new ConcurrentHashMap<>());
+    }
+
+    private static ProductResponse withStock(ProductResponse p, Integer stock) {
+        return new ProductResponse(p.id(), p.nombre(), p.descripcion(), p.precio(), stock, p.imageUrl(),
+                p.active(), p.reorderPoint(), p.tagId(), p.tagName(), p.linkedSpecialCount(),
+                p.isSpecialProduct(), p.specialProductId(), p.pendingImageId());
+    }
+
+    private Snapshot build() {
+        long inicio = System.currentTimeMillis();
+        long changeMark = changeCounter.get();
+        long stockMark = stockChangeCounter.get();
+
+        List<ProductResponse> productos = productRepository.findByActiveTrue()
+                .stream()
+                .map(productMapper::toResponse)
+                .toList();
+        List<PromotionResponse> promociones = promotionRepository.findValidPromotionsEager(LocalDateTime.now())
+                .stream()
+                .map(promotionMapper::toResponse)
+                .toList();
+
+        String version = INSTANCE_ID + "." + buildCounter.incrementAndGet();
+        log.info("📦 Catálogo reconstruido (v{}) en {}ms → {} productos, {} promociones",
+                version, System.currentTimeMillis() - inicio, productos.size(), promociones.size());
+
+        return new Snapshot(new CatalogSnapshotDTO(version, productos, promociones),
+                changeMark, inicio, stockMark, inicio, new ConcurrentHashMap<>());
+    }
+
+    private List<ProductResponse> loadVendorSpecialProducts(UUID vendorId) {
+        return specialProductRepository.findActiveByVendorId(vendorId)
+                .stream()
+                .map(this::toProductResponse)
+                .toList();
+    }
+
+    private ProductResponse toProductResponse(SpecialProduct sp) {
+        return new ProductResponse(
+                sp.getId(),
+                sp.getNombre(),
+                sp.getDescripcion(),
+                sp.getPrecio(),
+                sp.getEffectiveStock(),
+                sp.getImageUrl(),
+                sp.isActive(),
+                sp.getReorderPoint(),
+                sp.getTag() != null ? sp.getTag().getId() : null,
+                sp.getTag() != null ? sp.getTag().getName() : null,
+                0,
+                true,
+                sp.getId());
+    }
+}
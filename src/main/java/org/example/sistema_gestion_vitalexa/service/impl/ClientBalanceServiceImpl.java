@@ -20,7 +20,6 @@ import org.example.sistema_gestion_vitalexa.repository.OrdenRepository;
 import org.example.sistema_gestion_vitalexa.repository.PaymentRepository;
 import org.example.sistema_gestion_vitalexa.repository.UserRepository;
 import org.example.sistema_gestion_vitalexa.service.ClientBalanceService;
-import org.example.sistema_gestion_vitalexa.util.UserUnificationUtil;
 import org.springframework.stereotype.Service;
 
 import java.math.BigDecimal;
@@ -40,6 +39,11 @@ public class ClientBalanceServiceImpl implements ClientBalanceService {
         private final OrdenRepository ordenRepository;
         private final PaymentRepository paymentRepository;
         private final UserRepository userRepository;
+        private final org.example.sistema_gestion_vitalexa.service.UserGroupResolver userGroupResolver;
+        private final org.example.sistema_gestion_vitalexa.repository.ClientBalanceSummaryRepository summaryRepository;
+
+        // Clientes por consulta al cargar el detalle de facturas de un listado
+        private static final int INVOICE_LOOKUP_CHUNK = 1000;
 
         @Override
         public ClientBalanceDTO getClientBalance(UUID clientId) {
@@ -50,14 +54,13 @@ public class ClientBalanceServiceImpl implements ClientBalanceService {
 
         @Override
         public List<ClientBalanceDTO> getAllClientBalances() {
-                List<Client> clients = clientRepository.findAll();
-                return calculateBalancesInBulk(clients);
+                return toSummaryBalances(summaryRepository.findAllWithSummary());
         }
 
         @Override
         public List<ClientBalanceDTO> searchClientBalances(String search) {
                 List<Client> clients = clientRepository.findByNombreContainingIgnoreCase(search);
-                return calculateBalancesInBulk(clients);
+                return summaryBalancesOf(clients);
         }
 
         @Override
@@ -66,16 +69,15 @@ public class ClientBalanceServiceImpl implements ClientBalanceService {
                 User vendedor = userRepository.findById(vendedorId)
                                 .orElseThrow(() -> new RuntimeException("Vendedor no encontrado"));
 
-                List<Client> clients;
-                if (UserUnificationUtil.isSharedUser(vendedor.getUsername())) {
+                List<String> usernames;
+                if (userGroupResolver.isGrouped(vendedor.getUsername())) {
                         // Get clients for both shared usernames
-                        List<String> sharedUsernames = UserUnificationUtil.getSharedUsernames(vendedor.getUsername());
-                        clients = clientRepository.findByVendedorAsignadoUsernameIn(sharedUsernames);
+                        usernames = userGroupResolver.usernamesOf(vendedor.getUsername());
                 } else {
-                        clients = clientRepository.findByVendedorAsignadoId(vendedorId);
+                        usernames = List.of(vendedor.getUsername());
                 }
 
-                return calculateBalancesInBulk(clients);
+                return toSummaryBalances(summaryRepository.findWithSummaryByVendedorUsernameIn(usernames));
         }
 
         @Override
@@ -84,11 +86,10 @@ public class ClientBalanceServiceImpl implements ClientBalanceService {
                                 .orElseThrow(() -> new BusinessExeption("Vendedor no encontrado"));
 
                 // Check if this is a shared user (NinaTorres/Yicela Sandoval)
-                if (UserUnificationUtil.isSharedUser(vendedorUsername)) {
+                if (userGroupResolver.isGrouped(vendedorUsername)) {
                         // Get clients for both shared usernames
-                        List<String> sharedUsernames = UserUnificationUtil.getSharedUsernames(vendedorUsername);
-                        List<Client> clients = clientRepository.findByVendedorAsignadoUsernameIn(sharedUsernames);
-                        return calculateBalancesInBulk(clients);
+                        List<String> sharedUsernames = userGroupResolver.usernamesOf(vendedorUsername);
+                        return toSummaryBalances(summaryRepository.findWithSummaryByVendedorUsernameIn(sharedUsernames));
                 }
 
                 return getClientBalancesByVendedor(vendedor.getId());
@@ -159,37 +160,83 @@ public class ClientBalanceServiceImpl implements ClientBalanceService {
         }
 
         /**
-         * Calcula los saldos de múltiples clientes en bloque para optimizar rendimiento
+         * Saldos de los clientes indicados leídos del resumen de cartera.
          */
-        private List<ClientBalanceDTO> calculateBalancesInBulk(List<Client> clients) {
+        private List<ClientBalanceDTO> summaryBalancesOf(List<Client> clients) {
                 if (clients == null || clients.isEmpty()) {
                         return new ArrayList<>();
                 }
+                List<UUID> clientIds = clients.stream().map(Client::getId).toList();
+                return toSummaryBalances(summaryRepository.findWithSummaryByClientIdIn(clientIds));
+        }
 
-                // 1. Obtener todas las órdenes completadas de estos clientes
-                List<Order> allCompletedOrders = ordenRepository.findByClienteInAndEstado(clients, OrdenStatus.COMPLETADO);
+        /**
+         * Convierte filas [Client, ClientBalanceSummary] en saldos leyendo solo
+         * el resumen: pendingOrders queda vacío y el detalle de facturas se
+         * pide por cliente (getClientBalance, getAllInvoicesByClient). Un
+         * cliente sin fila de resumen no tiene órdenes completadas.
+         */
+        private List<ClientBalanceDTO> toSummaryBalances(List<Object[]> rows) {
+                LocalDate today = LocalDate.now();
+                List<ClientBalanceDTO> balances = new ArrayList<>(rows.size());
+                for (Object[] row : rows) {
+                        Client client = (Client) row[0];
+                        org.example.sistema_gestion_vitalexa.entity.ClientBalanceSummary summary = (org.example.sistema_gestion_vitalexa.entity.ClientBalanceSummary) row[1];
+
+                        BigDecimal totalOrders = summary != null ? summary.getTotalOrders() : BigDecimal.ZERO;
+                        BigDecimal totalPaid = summary != null ? summary.getTotalPaid() : BigDecimal.ZERO;
+                        BigDecimal initialBalance = client.getInitialBalance() != null
+                                        ? client.getInitialBalance()
+                                        : BigDecimal.ZERO;
+
+                        Integer daysOverdue = 0;
+                        if (summary != null && summary.getOldestPendingInvoiceDate() != null) {
+                                long daysBetween = java.time.temporal.ChronoUnit.DAYS
+                                                .between(summary.getOldestPendingInvoiceDate(), today);
+                                daysOverdue = (int) Math.max(0, daysBetween);
+                        }
 
-                // 2. Obtener todos los pagos activos de esas órdenes
-                java.util.Map<UUID, List<Payment>> paymentsByOrderId = new java.util.HashMap<>();
-                if (!allCompletedOrders.isEmpty()) {
-                        List<Payment> allPayments = paymentRepository.findByOrderInAndNotCancelled(allCompletedOrders);
-                        paymentsByOrderId = allPayments.stream()
-                                        .collect(Collectors.groupingBy(p -> p.getOrder().getId()));
+                        balances.add(new ClientBalanceDTO(
+                                        client.getId(),
+                                        client.getNombre(),
+                                        client.getTelefono(),
+                                        client.getRepresentanteLegal(),
+                                        client.getVendedorAsignado() != null
+                                                        ? client.getVendedorAsignado().getUsername()
+                                                        : null,
+                                        client.getCreditLimit(),
+                                        initialBalance,
+                                        totalOrders,
+                                        totalPaid,
+                                        totalOrders.subtract(totalPaid).add(initialBalance),
+                                        client.getBalanceFavor(),
+                                        summary != null ? summary.getPendingOrdersCount() : 0,
+                                        List.of(),
+                                        summary != null ? summary.getLastPaymentDate() : null,
+                                        daysOverdue));
                 }
+                return balances;
+        }
 
-                // 3. Organizar órdenes por cliente
-                java.util.Map<UUID, List<Order>> ordersByClientId = allCompletedOrders.stream()
-                                .collect(Collectors.groupingBy(o -> o.getCliente().getId()));
-
-                // 4. Calcular saldo para cada cliente usando los datos precargados
-                final java.util.Map<UUID, List<Payment>> finalPaymentsByOrderId = paymentsByOrderId;
-                final java.util.Map<UUID, List<Order>> finalOrdersByClientId = ordersByClientId;
-
-                return clients.stream()
-                                .map(client -> calculateSingleClientBalance(client,
-                                                finalOrdersByClientId.getOrDefault(client.getId(), new ArrayList<>()),
-                                                finalPaymentsByOrderId))
-                                .collect(Collectors.toList());
+        /**
+         * Facturas (órdenes completadas) de cada cliente con sus pagos activos,
+         * igual que el detalle de calculateSingleClientBalance. Una consulta por
+         * bloque de clientes, sin consultas por orden ni por pago. La usan la
+         * exportación y el detalle de un cliente; los listados no la cargan.
+         */
+        private java.util.Map<UUID, List<OrderPendingDTO>> completedInvoicesByClient(List<UUID> clientIds) {
+                java.util.Map<UUID, List<OrderPendingDTO>> invoicesByClient = new java.util.HashMap<>();
+                for (int from = 0; from < clientIds.size(); from += INVOICE_LOOKUP_CHUNK) {
+                        List<UUID> chunk = clientIds.subList(from, Math.min(from + INVOICE_LOOKUP_CHUNK, clientIds.size()));
+                        for (Order order : ordenRepository.findWithPaymentsByClienteIdInAndEstado(chunk, OrdenStatus.COMPLETADO)) {
+                                List<Payment> activePayments = order.getPayments().stream()
+                                                .filter(p -> !Boolean.TRUE.equals(p.getIsCancelled()))
+                                                .toList();
+                                invoicesByClient.computeIfAbsent(order.getCliente().getId(), id -> new ArrayList<>())
+                                                .add(toOrderPendingDTOWithPreloadedPayments(order, activePayments));
+                        }
+                }
+                return invoicesByClient;
         }
 
         private ClientBalanceDTO calculateSingleClientBalance(Client client, List<Order> completedOrders,
@@ -462,25 +509,32 @@ public class ClientBalanceServiceImpl implements ClientBalanceService {
                 Client client = clientRepository.findById(clientId)
                                 .orElseThrow(() -> new BusinessExeption("Cliente no encontrado"));
 
-                List<Order> completedOrders = ordenRepository.findByCliente(client).stream()
-                                .filter(o -> o.getEstado() == OrdenStatus.COMPLETADO)
-                                .filter(o -> {
-                                        LocalDate orderDate = getInvoiceDate(o).toLocalDate();
+                // Órdenes y pagos en una sola consulta (antes, una de pagos por factura)
+                return completedInvoicesByClient(List.of(client.getId()))
+                                .getOrDefault(client.getId(), List.of()).stream()
+                                .filter(invoice -> {
+                                        LocalDate orderDate = invoice.fecha().toLocalDate();
                                         boolean afterStart = startDate == null || !orderDate.isBefore(startDate);
                                         boolean beforeEnd = endDate == null || !orderDate.isAfter(endDate);
                                         return afterStart && beforeEnd;
                                 })
-                                .sorted((o1, o2) -> getInvoiceDate(o2).compareTo(getInvoiceDate(o1))) // Más recientes primero
-                                .collect(Collectors.toList());
-
-                return completedOrders.stream()
-                                .map(this::toOrderPendingDTO)
+                                .sorted(java.util.Comparator.comparing(OrderPendingDTO::fecha).reversed()) // Más recientes primero
                                 .collect(Collectors.toList());
         }
 
         @Override
         public byte[] exportBalanceToExcel(UUID vendedorId, LocalDate startDate, LocalDate endDate,
                         Boolean onlyWithDebt, String requestingUsername) throws java.io.IOException {
+                java.io.ByteArrayOutputStream outputStream = new java.io.ByteArrayOutputStream();
+                streamBalanceToExcel(vendedorId, startDate, endDate, onlyWithDebt, requestingUsername)
+                                .writeTo(outputStream);
+                return outputStream.toByteArray();
+        }
+
+        @Override
+        public org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody streamBalanceToExcel(
+                        UUID vendedorId, LocalDate startDate, LocalDate endDate,
+                        Boolean onlyWithDebt, String requestingUsername) {
 
                 // Validar permisos
                 User user = userRepository.findByUsername(requestingUsername)
@@ -500,6 +554,10 @@ public class ClientBalanceServiceImpl implements ClientBalanceService {
                         throw new BusinessExeption("No tienes permisos para exportar cartera");
                 }
 
+                // El Excel lista cada factura: los totales ya vienen del resumen,
+                // solo falta el detalle de los clientes del listado
+                balances = withInvoiceDetail(balances);
+
                 // Filtrar por fechas si se especifican
                 if (startDate != null || endDate != null) {
                         balances = balances.stream()
@@ -514,8 +572,35 @@ public class ClientBalanceServiceImpl implements ClientBalanceService {
                                         .toList();
                 }
 
-                // Crear Excel con Apache POI
-                return createExcelReport(balances);
+                // Crear Excel con Apache POI (en streaming, directo a la respuesta)
+                List<ClientBalanceDTO> filteredBalances = balances;
+                return outputStream -> writeExcelReport(filteredBalances, outputStream);
+        }
+
+        private List<ClientBalanceDTO> withInvoiceDetail(List<ClientBalanceDTO> balances) {
+                if (balances.isEmpty()) {
+                        return balances;
+                }
+                java.util.Map<UUID, List<OrderPendingDTO>> invoicesByClient = completedInvoicesByClient(
+                                balances.stream().map(ClientBalanceDTO::clientId).toList());
+                return balances.stream()
+                                .map(b -> new ClientBalanceDTO(
+                                                b.clientId(),
+                                                b.clientName(),
+                                                b.clientPhone(),
+                                                b.clientRepresentative(),
+                                                b.vendedorAsignadoName(),
+                                                b.creditLimit(),
+                                                b.initialBalance(),
+                                                b.totalOrders(),
+                                                b.totalPaid(),
+                                                b.pendingBalance(),
+                                                b.balanceFavor(),
+                                                b.pendingOrdersCount(),
+                                                invoicesByClient.getOrDefault(b.clientId(), List.of()),
+                                                b.lastPaymentDate(),
+                                                b.daysOverdue()))
+                                .toList();
         }
 
         private boolean filterByDateRange(ClientBalanceDTO balance, LocalDate startDate, LocalDate endDate) {
@@ -539,50 +624,47 @@ public class ClientBalanceServiceImpl implements ClientBalanceService {
                 return afterStart && beforeEnd;
         }
 
-        private byte[] createExcelReport(List<ClientBalanceDTO> balances) throws java.io.IOException {
-                org.apache.poi.ss.usermodel.Workbook workbook = new org.apache.poi.xssf.usermodel.XSSFWorkbook();
-                org.apache.poi.ss.usermodel.Sheet sheetDeben = workbook.createSheet("Facturas - Clientes que Deben");
-                org.apache.poi.ss.usermodel.Sheet sheetNoDeben = workbook.createSheet("Facturas - Clientes al Día");
+        private void writeExcelReport(List<ClientBalanceDTO> balances, java.io.OutputStream outputStream)
+                        throws java.io.IOException {
+                try (org.example.sistema_gestion_vitalexa.util.StreamingExcelWorkbook workbook = new org.example.sistema_gestion_vitalexa.util.StreamingExcelWorkbook()) {
+                        org.apache.poi.ss.usermodel.Sheet sheetDeben = workbook.createSheet("Facturas - Clientes que Deben");
+                        org.apache.poi.ss.usermodel.Sheet sheetNoDeben = workbook.createSheet("Facturas - Clientes al Día");
 
-                // Separar clientes
-                List<ClientBalanceDTO> conDeuda = balances.stream()
-                                .filter(b -> b.pendingBalance().compareTo(BigDecimal.ZERO) > 0)
-                                .sorted(java.util.Comparator
-                                                .comparing((ClientBalanceDTO b) -> b.vendedorAsignadoName() != null
-                                                                ? b.vendedorAsignadoName()
-                                                                : "")
-                                                .thenComparing(ClientBalanceDTO::clientName))
-                                .toList();
+                        // Separar clientes
+                        List<ClientBalanceDTO> conDeuda = balances.stream()
+                                        .filter(b -> b.pendingBalance().compareTo(BigDecimal.ZERO) > 0)
+                                        .sorted(java.util.Comparator
+                                                        .comparing((ClientBalanceDTO b) -> b.vendedorAsignadoName() != null
+                                                                        ? b.vendedorAsignadoName()
+                                                                        : "")
+                                                        .thenComparing(ClientBalanceDTO::clientName))
+                                        .toList();
 
-                List<ClientBalanceDTO> sinDeuda = balances.stream()
-                                .filter(b -> b.pendingBalance().compareTo(BigDecimal.ZERO) <= 0)
-                                .sorted(java.util.Comparator
-                                                .comparing((ClientBalanceDTO b) -> b.vendedorAsignadoName() != null
-                                                                ? b.vendedorAsignadoName()
-                                                                : "")
-                                                .thenComparing(ClientBalanceDTO::clientName))
-                                .toList();
+                        List<ClientBalanceDTO> sinDeuda = balances.stream()
+                                        .filter(b -> b.pendingBalance().compareTo(BigDecimal.ZERO) <= 0)
+                                        .sorted(java.util.Comparator
+                                                        .comparing((ClientBalanceDTO b) -> b.vendedorAsignadoName() != null
+                                                                        ? b.vendedorAsignadoName()
+                                                                        : "")
+                                                        .thenComparing(ClientBalanceDTO::clientName))
+                                        .toList();
 
-                // Crear headers
-                createDetailedHeaderRow(sheetDeben, workbook);
-                createDetailedHeaderRow(sheetNoDeben, workbook);
+                        // Crear headers
+                        createDetailedHeaderRow(sheetDeben, workbook);
+                        createDetailedHeaderRow(sheetNoDeben, workbook);
 
-                // Llenar datos detallados por factura
-                fillDetailedInvoiceSheet(sheetDeben, conDeuda, workbook);
-                fillDetailedInvoiceSheet(sheetNoDeben, sinDeuda, workbook);
+                        // Llenar datos detallados por factura
+                        fillDetailedInvoiceSheet(sheetDeben, conDeuda, workbook);
+                        fillDetailedInvoiceSheet(sheetNoDeben, sinDeuda, workbook);
 
-                // Auto-size columns
-                for (int i = 0; i < 10; i++) {
-                        sheetDeben.autoSizeColumn(i);
-                        sheetNoDeben.autoSizeColumn(i);
-                }
-
-                // Convertir a bytes
-                java.io.ByteArrayOutputStream outputStream = new java.io.ByteArrayOutputStream();
-                workbook.write(outputStream);
-                workbook.close();
+                        // Auto-size columns (se aplica al escribir, con el largo máximo de cada columna)
+                        for (int i = 0; i < 10; i++) {
+                                org.example.sistema_gestion_vitalexa.util.StreamingExcelWorkbook.autoSizeColumn(sheetDeben, i);
+                                org.example.sistema_gestion_vitalexa.util.StreamingExcelWorkbook.autoSizeColumn(sheetNoDeben, i);
+                        }
 
-                return outputStream.toByteArray();
+                        workbook.write(outputStream);
+                }
         }
 
         private void createDetailedHeaderRow(org.apache.poi.ss.usermodel.Sheet sheet,
@@ -833,8 +915,8 @@ public class ClientBalanceServiceImpl implements ClientBalanceService {
                         return new ArrayList<>();
                 }
 
-                // Reusar la lógica de cálculo masivo ya existente para evitar duplicar queries
-                List<ClientBalanceDTO> balances = calculateBalancesInBulk(clients);
+                // Totales leídos del resumen de cartera (no hace falta el detalle de facturas)
+                List<ClientBalanceDTO> balances = summaryBalancesOf(clients);
 
                 return balances.stream()
                         .map(b -> new ClientDebtSummaryDTO(
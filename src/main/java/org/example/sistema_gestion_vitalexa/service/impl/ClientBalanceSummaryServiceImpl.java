@@ -0,0 +1,69 @@
+package org.example.sistema_gestion_vitalexa.service.impl;
+
+import jakarta.transaction.Transactional;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.example.sistema_gestion_vitalexa.repository.ClientBalanceSummaryRepository;
+import org.example.sistema_gestion_vitalexa.service.ClientBalanceSummaryService;
+import org.example.sistema_gestion_vitalexa.util.TransactionCallbacks;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Resumen materializado de cartera.
+ *
+ * - Las escrituras de órdenes, descuentos y pagos llaman a
+ *   {@link #refreshOnCommit(UUID)}. Los clientes marcados se acumulan por
+ *   transacción y se recalculan con un solo UPSERT antes del commit, así la
+ *   fila nunca queda desalineada con los datos confirmados.
+ * - El recálculo siempre sale de la vista client_balance_computed, que es el
+ *   mismo cálculo que hacía ClientBalanceServiceImpl en Java.
+ * - Un job nocturno compara la tabla completa contra la vista y corrige las
+ *   diferencias (por ejemplo, cambios hechos directamente en la base).
+ */
+@Service
+@RequiredArgsConstructor
+@Transactional
+@Slf4j
+public class ClientBalanceSummaryServiceImpl implements ClientBalanceSummaryService {
+
+    private static final Object DIRTY_CLIENTS_KEY = ClientBalanceSummaryServiceImpl.class.getName() + ".dirtyClients";
+
+    private final ClientBalanceSummaryRepository summaryRepository;
+
+    @Override
+    public void refreshOnCommit(UUID clientId) {
+        if (clientId == null) {
+            return;
+        }
+        // Todavía dentro de la transacción: si falla, se revierte todo
+        TransactionCallbacks.beforeCommit(DIRTY_CLIENTS_KEY, clientId, clientIds -> {
+            Set<UUID> clients = new LinkedHashSet<>(clientIds);
+            summaryRepository.refreshClients(clients);
+            log.debug("Saldo recalculado para {} cliente(s)", clients.size());
+        });
+    }
+
+    @Override
+    @Scheduled(cron = "${client-balance.verify.cron:0 30 3 * * *}", zone = "America/Bogota")
+    public int verifyAndRepair() {
+        List<UUID> drifted = summaryRepository.findDriftedClientIds().stream()
+                .map(UUID::fromString)
+                .toList();
+
+        if (drifted.isEmpty()) {
+            log.info("✅ Resumen de cartera verificado: sin diferencias");
+            return 0;
+        }
+
+        summaryRepository.refreshClients(drifted);
+        log.warn("⚠️ Resumen de cartera: {} cliente(s) no coincidían con el cálculo y fueron corregidos",
+                drifted.size());
+        return drifted.size();
+    }
+}
@@ -9,7 +9,6 @@ import org.example.sistema_gestion_vitalexa.exceptions.BusinessExeption;
 import org.example.sistema_gestion_vitalexa.repository.ClientRepository;
 import org.example.sistema_gestion_vitalexa.repository.UserRepository;
 import org.example.sistema_gestion_vitalexa.service.ClientExportService;
-import org.example.sistema_gestion_vitalexa.util.UserUnificationUtil;
 import org.springframework.stereotype.Service;
 
 import java.io.ByteArrayOutputStream;
@@ -23,6 +22,7 @@ public class ClientExportServiceImpl implements ClientExportService {
 
     private final ClientRepository clientRepository;
     private final UserRepository userRepository;
+    private final org.example.sistema_gestion_vitalexa.service.UserGroupResolver userGroupResolver;
 
     @Override
     public byte[] exportClientsByVendedor(UUID vendedorId) {
@@ -31,9 +31,9 @@ public class ClientExportServiceImpl implements ClientExportService {
                 .orElseThrow(() -> new BusinessExeption("Vendedor no encontrado"));
 
         List<Client> clients;
-        if (UserUnificationUtil.isSharedUser(vendedor.getUsername())) {
+        if (userGroupResolver.isGrouped(vendedor.getUsername())) {
             // Get clients for both shared usernames
-            List<String> sharedUsernames = UserUnificationUtil.getSharedUsernames(vendedor.getUsername());
+            List<String> sharedUsernames = userGroupResolver.usernamesOf(vendedor.getUsername());
             clients = clientRepository.findByVendedorAsignadoUsernameIn(sharedUsernames);
         } else {
             clients = clientRepository.findByVendedorAsignadoId(vendedorId);
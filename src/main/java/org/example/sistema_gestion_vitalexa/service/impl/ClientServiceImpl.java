@@ -14,7 +14,6 @@ import org.example.sistema_gestion_vitalexa.service.UserService; // Import UserS
 import org.example.sistema_gestion_vitalexa.entity.User; // Import User entity
 import org.example.sistema_gestion_vitalexa.repository.UserRepository; // Import UserRepository
 import org.example.sistema_gestion_vitalexa.enums.Role;
-import org.example.sistema_gestion_vitalexa.util.UserUnificationUtil;
 import org.springframework.stereotype.Service;
 
 import java.math.BigDecimal;
@@ -29,6 +28,7 @@ public class ClientServiceImpl implements ClientService {
     private final ClientMapper clientMapper;
     private final UserService userService;
     private final UserRepository userRepository;
+    private final org.example.sistema_gestion_vitalexa.service.UserGroupResolver userGroupResolver;
 
     @Override
     public Client findEntityById(UUID id) {
@@ -143,9 +143,9 @@ public class ClientServiceImpl implements ClientService {
         List<Client> clients;
         String username = vendedor.getUsername();
 
-        // If vendedor is Nina or Yicela, return shared clients from both
-        if (UserUnificationUtil.isSharedUser(username)) {
-            clients = repository.findByVendedorAsignadoUsernameIn(UserUnificationUtil.SHARED_USERNAMES);
+        // If vendedor belongs to a shared group (e.g. Nina/Yicela), return the clients of the whole group
+        if (userGroupResolver.isGrouped(username)) {
+            clients = repository.findByVendedorAsignadoUsernameIn(userGroupResolver.usernamesOf(username));
         } else {
             clients = repository.findByVendedorAsignado(vendedor);
         }
@@ -170,17 +170,8 @@ public class ClientServiceImpl implements ClientService {
             return true;
         }
 
-        // Get the vendedor making the request
-        User requestingVendedor = userRepository.findById(vendedorId).orElse(null);
-        if (requestingVendedor == null) {
-            return false;
-        }
-
-        // Nina/Yicela exception - they share all their clients
-        boolean vendedorIsShared = UserUnificationUtil.isSharedUser(requestingVendedor.getUsername());
-        boolean clientBelongsToShared = UserUnificationUtil.isSharedUser(clientVendedor.getUsername());
-
-        return vendedorIsShared && clientBelongsToShared;
+        // Shared group exception (e.g. Nina/Yicela) - members share all their clients
+        return userGroupResolver.idsOf(vendedorId).contains(clientVendedor.getId());
     }
 
     @Override
@@ -0,0 +1,66 @@
+package org.example.sistema_gestion_vitalexa.service.impl;
+
+import jakarta.transaction.Transactional;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.example.sistema_gestion_vitalexa.repository.ProductRepository;
+import org.example.sistema_gestion_vitalexa.service.CommittedStockService;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Stock comprometido por producto.
+ *
+ * - products.committed_stock lo mantienen los triggers de V48 en la misma
+ *   transacción que cada alta, cambio o baja de item y cada cambio de estado
+ *   de la orden, así el reporte de stock es una lectura directa de products.
+ * - Este job lo compara contra la vista committed_stock_source (la suma que
+ *   antes hacía el reporte en cada consulta) y corrige las diferencias, por
+ *   ejemplo cambios hechos con los triggers deshabilitados o restauraciones.
+ * - Antes de recalcular bloquea las filas en orden de id (igual que las
+ *   ventas), así la suma ve todo lo confirmado y una orden en curso aplica
+ *   su delta después, sobre el valor ya corregido.
+ */
+@Service
+@RequiredArgsConstructor
+@Transactional
+@Slf4j
+public class CommittedStockServiceImpl implements CommittedStockService {
+
+    private final ProductRepository productRepository;
+
+    @Override
+    @Scheduled(cron = "${committed-stock.verify.cron:0 45 3 * * *}", zone = "America/Bogota")
+    public int verifyAndRepair() {
+        List<UUID> candidates = productRepository.findCommittedStockDrift().stream()
+                .map(row -> UUID.fromString((String) row[0]))
+                .toList();
+
+        if (candidates.isEmpty()) {
+            log.info("✅ Stock comprometido verificado: sin diferencias");
+            return 0;
+        }
+
+        productRepository.lockStockRows(candidates);
+        List<Object[]> drifted = productRepository.findCommittedStockDriftIn(candidates);
+        if (drifted.isEmpty()) {
+            // Otra ejecución ya las corrigió mientras esperábamos el bloqueo
+            log.info("✅ Stock comprometido verificado: sin diferencias");
+            return 0;
+        }
+
+        for (Object[] row : drifted) {
+            log.warn("⚠️ Stock comprometido desfasado en '{}' ({}): guardado {}, real {}",
+                    row[1], row[0], row[2], row[3]);
+        }
+        productRepository.recalculateCommittedStock(drifted.stream()
+                .map(row -> UUID.fromString((String) row[0]))
+                .toList());
+        log.warn("⚠️ Stock comprometido: {} producto(s) no coincidían con los pedidos activos y fueron corregidos",
+                drifted.size());
+        return drifted.size();
+    }
+}
@@ -0,0 +1,81 @@
+package org.example.sistema_gestion_vitalexa.service.impl;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.persistence.EntityManagerFactory;
+import lombok.RequiredArgsConstructor;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.event.service.spi.EventListenerRegistry;
+import org.hibernate.event.spi.EventType;
+import org.hibernate.event.spi.PostCommitDeleteEventListener;
+import org.hibernate.event.spi.PostCommitInsertEventListener;
+import org.hibernate.event.spi.PostCommitUpdateEventListener;
+import org.hibernate.event.spi.PostDeleteEvent;
+import org.hibernate.event.spi.PostInsertEvent;
+import org.hibernate.event.spi.PostUpdateEvent;
+import org.hibernate.persister.entity.EntityPersister;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Versión de los datos: un contador que sube cada vez que se confirma un
+ * alta, cambio o baja de cualquier entidad. Dos lecturas con la misma versión
+ * vieron los mismos datos (salvo los UPDATE masivos/nativos, que Hibernate no
+ * notifica; quien use la versión como caché debe ponerle además un tope de
+ * antigüedad).
+ */
+@Component
+@RequiredArgsConstructor
+public class DataChangeTracker implements PostCommitInsertEventListener, PostCommitUpdateEventListener,
+        PostCommitDeleteEventListener {
+
+    private final EntityManagerFactory entityManagerFactory;
+
+    private final AtomicLong version = new AtomicLong();
+
+    @PostConstruct
+    void register() {
+        EventListenerRegistry registry = entityManagerFactory.unwrap(SessionFactoryImplementor.class)
+                .getServiceRegistry()
+                .getService(EventListenerRegistry.class);
+        registry.appendListeners(EventType.POST_COMMIT_INSERT, this);
+        registry.appendListeners(EventType.POST_COMMIT_UPDATE, this);
+        registry.appendListeners(EventType.POST_COMMIT_DELETE, this);
+    }
+
+    public long currentVersion() {
+        return version.get();
+    }
+
+    @Override
+    public void onPostInsert(PostInsertEvent event) {
+        version.incrementAndGet();
+    }
+
+    @Override
+    public void onPostUpdate(PostUpdateEvent event) {
+        version.incrementAndGet();
+    }
+
+    @Override
+    public void onPostDelete(PostDeleteEvent event) {
+        version.incrementAndGet();
+    }
+
+    @Override
+    public void onPostInsertCommitFailed(PostInsertEvent event) {
+    }
+
+    @Override
+    public void onPostUpdateCommitFailed(PostUpdateEvent event) {
+    }
+
+    @Override
+    public void onPostDeleteCommitFailed(PostDeleteEvent event) {
+    }
+
+    @Override
+    public boolean requiresPostCommitHandling(EntityPersister persister) {
+        return true;
+    }
+}
@@ -31,6 +31,7 @@ public class DiscountServiceImpl implements DiscountService {
     private final OrderDiscountRepository discountRepository;
     private final OrdenRepository ordenRepository;
     private final UserRepository userRepository;
+    private final org.example.sistema_gestion_vitalexa.service.ClientBalanceSummaryService clientBalanceSummaryService;
 
     @Override
     public DiscountResponse applyPresetDiscount(UUID orderId, DiscountType type, String adminUsername) {
@@ -119,6 +120,11 @@ public class DiscountServiceImpl implements DiscountService {
         order.setDiscountedTotal(discountedTotal);
         ordenRepository.save(order);
 
+        // El descuento cambia el saldo pendiente del cliente
+        if (order.getCliente() != null) {
+            clientBalanceSummaryService.refreshOnCommit(order.getCliente().getId());
+        }
+
         log.info("Orden {} recalculada: descuento {}%, total con descuento ${}",
                 orderId, totalDiscountPercentage, discountedTotal);
     }
@@ -0,0 +1,377 @@
+package org.example.sistema_gestion_vitalexa.service.impl;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.example.sistema_gestion_vitalexa.dto.ExportJobFile;
+import org.example.sistema_gestion_vitalexa.dto.ExportJobRequest;
+import org.example.sistema_gestion_vitalexa.dto.ExportJobResponse;
+import org.example.sistema_gestion_vitalexa.dto.ReportDTO;
+import org.example.sistema_gestion_vitalexa.entity.User;
+import org.example.sistema_gestion_vitalexa.enums.ExportJobStatus;
+import org.example.sistema_gestion_vitalexa.enums.ExportJobType;
+import org.example.sistema_gestion_vitalexa.enums.Role;
+import org.example.sistema_gestion_vitalexa.exceptions.BusinessExeption;
+import org.example.sistema_gestion_vitalexa.repository.UserRepository;
+import org.example.sistema_gestion_vitalexa.service.ClientBalanceService;
+import org.example.sistema_gestion_vitalexa.service.ExportJobService;
+import org.example.sistema_gestion_vitalexa.service.PayrollExportService;
+import org.example.sistema_gestion_vitalexa.service.ProductService;
+import org.example.sistema_gestion_vitalexa.service.ReportExportService;
+import org.example.sistema_gestion_vitalexa.service.ReportService;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Exportaciones en segundo plano.
+ *
+ * - submit() valida permisos y normaliza parámetros en el hilo del pedido;
+ *   la generación corre en un pool acotado ({@code workers} hilos, cola de
+ *   {@code queueCapacity}), dentro de una transacción de solo lectura.
+ * - Pedidos iguales (tipo + parámetros + alcance del usuario + versión de
+ *   datos de DataChangeTracker) se unen al mismo trabajo mientras está en
+ *   curso, y reutilizan su archivo hasta {@code reuseMs} después de terminar.
+ * - El archivo se escribe en {@code dir} y se borra al vencer {@code ttlMs}.
+ *   Los trabajos viven en memoria: tras un reinicio se limpia el directorio.
+ * - Al terminar se avisa por WebSocket en /topic/exports/{id}; también se
+ *   puede consultar GET /api/exports/{id}.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class ExportJobServiceImpl implements ExportJobService {
+
+    private static final String TOPIC_PREFIX = "/topic/exports/";
+
+    private final UserRepository userRepository;
+    private final ReportService reportService;
+    private final ReportExportService reportExportService;
+    private final PayrollExportService payrollExportService;
+    private final ProductService productService;
+    private final ClientBalanceService clientBalanceService;
+    private final NotificationDispatcher notificationDispatcher;
+    private final DataChangeTracker dataChangeTracker;
+    private final PlatformTransactionManager transactionManager;
+
+    @Value("${export-jobs.dir:exports}")
+    private String storeDir;
+
+    @Value("${export-jobs.workers:2}")
+    private int workers;
+
+    @Value("${export-jobs.queue-capacity:50}")
+    private int queueCapacity;
+
+    @Value("${export-jobs.ttl-ms:3600000}")
+    private long ttlMillis;
+
+    @Value("${export-jobs.reuse-ms:300000}")
+    private long reuseMillis;
+
+    private Path storePath;
+    private ThreadPoolExecutor executor;
+    private TransactionTemplate readOnlyTransaction;
+
+    private final Map<UUID, Job> jobs = new ConcurrentHashMap<>();
+    private final Map<JobKey, Job> jobsByKey = new ConcurrentHashMap<>();
+    private final Object submitLock = new Object();
+
+    /**
+     * Parámetros ya normalizados; scope es "*" para ADMIN/OWNER (ven lo mismo)
+     * o el username para quien solo ve sus propios datos.
+     */
+    private record JobParams(LocalDate startDate, LocalDate endDate, Integer month, Integer year,
+            UUID vendedorId, boolean onlyWithDebt, String scope) {
+    }
+
+    private record JobKey(ExportJobType type, JobParams params, long dataVersion) {
+    }
+
+    private static final class Job {
+        private final UUID id = UUID.randomUUID();
+        private final JobKey key;
+        private final String submittedBy;
+        private final Set<String> requesters = ConcurrentHashMap.newKeySet();
+        private final LocalDateTime createdAt = LocalDateTime.now();
+        private volatile ExportJobStatus status = ExportJobStatus.QUEUED;
+        private volatile Path file;
+        private volatile Long sizeBytes;
+        private volatile String error;
+        private volatile LocalDateTime finishedAt;
+
+        private Job(JobKey key, String submittedBy) {
+            this.key = key;
+            this.submittedBy = submittedBy;
+            this.requesters.add(submittedBy);
+        }
+
+        private String filename() {
+            return key.type().getFilePrefix() + "_" + createdAt.toLocalDate() + "." + key.type().getExtension();
+        }
+    }
+
+    @PostConstruct
+    void init() throws IOException {
+        storePath = Paths.get(storeDir).toAbsolutePath().normalize();
+        Files.createDirectories(storePath);
+        // Archivos de una ejecución anterior: sus trabajos ya no existen
+        try (Stream<Path> leftovers = Files.list(storePath)) {
+            leftovers.forEach(this::deleteQuietly);
+        }
+
+        executor = new ThreadPoolExecutor(workers, workers, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "export-job");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+
+        readOnlyTransaction = new TransactionTemplate(transactionManager);
+        readOnlyTransaction.setReadOnly(true);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        executor.shutdownNow();
+    }
+
+    @Override
+    public ExportJobResponse submit(ExportJobRequest request, String username) {
+        if (request == null || request.type() == null) {
+            throw new BusinessExeption("El tipo de exportación es obligatorio");
+        }
+        User user = userRepository.findByUsername(username)
+                .orElseThrow(() -> new BusinessExeption("Usuario no encontrado"));
+        JobParams params = normalize(request, user);
+
+        synchronized (submitLock) {
+            JobKey key = new JobKey(request.type(), params, dataChangeTracker.currentVersion());
+            Job existing = jobsByKey.get(key);
+            if (existing != null && isReusable(existing)) {
+                existing.requesters.add(username);
+                log.debug("Exportación {} reutilizada para {}", existing.id, username);
+                return toResponse(existing);
+            }
+
+            Job job = new Job(key, username);
+            jobs.put(job.id, job);
+            jobsByKey.put(key, job);
+            try {
+                executor.execute(() -> run(job));
+            } catch (RejectedExecutionException e) {
+                jobs.remove(job.id);
+                jobsByKey.remove(key, job);
+                throw new BusinessExeption("Hay demasiadas exportaciones en curso, intenta de nuevo en unos minutos");
+            }
+            log.info("📦 Exportación {} encolada: {} ({})", job.id, request.type(), username);
+            return toResponse(job);
+        }
+    }
+
+    @Override
+    public ExportJobResponse getJob(UUID jobId, String username) {
+        return toResponse(findOwnJob(jobId, username));
+    }
+
+    @Override
+    public ExportJobFile getFile(UUID jobId, String username) {
+        Job job = findOwnJob(jobId, username);
+        if (job.status != ExportJobStatus.READY || job.file == null || !Files.exists(job.file)) {
+            throw new BusinessExeption("La exportación no está lista para descargar");
+        }
+        return new ExportJobFile(job.file, job.filename(), job.key.type().getContentType());
+    }
+
+    /**
+     * Borra los archivos vencidos y olvida sus trabajos.
+     */
+    @Scheduled(fixedDelayString = "${export-jobs.cleanup-delay-ms:300000}")
+    public void cleanupExpired() {
+        LocalDateTime limit = LocalDateTime.now().minus(Duration.ofMillis(ttlMillis));
+        int removed = 0;
+        for (Job job : jobs.values()) {
+            if (job.finishedAt != null && job.finishedAt.isBefore(limit)) {
+                jobs.remove(job.id);
+                jobsByKey.remove(job.key, job);
+                if (job.file != null) {
+                    deleteQuietly(job.file);
+                }
+                removed++;
+            }
+        }
+        if (removed > 0) {
+            log.info("🧹 {} exportación(es) vencidas eliminadas", removed);
+        }
+    }
+
+    private JobParams normalize(ExportJobRequest request, User user) {
+        boolean privileged = user.getRole() == Role.ADMIN || user.getRole() == Role.OWNER;
+        boolean vendedor = user.getRole() == Role.VENDEDOR;
+        String scope = privileged ? "*" : user.getUsername();
+
+        switch (request.type()) {
+            case INVENTORY_PDF, INVENTORY_EXCEL -> {
+                if (!privileged) {
+                    throw new BusinessExeption("No tienes permiso para exportar el inventario");
+                }
+                return new JobParams(null, null, null, null, null, false, scope);
+            }
+            case REPORT_PDF, REPORT_EXCEL -> {
+                if (!privileged && !vendedor) {
+                    throw new BusinessExeption("No tienes permiso para exportar reportes");
+                }
+                LocalDate end = request.endDate() != null ? request.endDate() : LocalDate.now();
+                LocalDate start = request.startDate() != null ? request.startDate() : LocalDate.now().minusMonths(1);
+                UUID vendedorId = privileged ? request.vendedorId() : user.getId();
+                return new JobParams(start, end, null, null, vendedorId, false, scope);
+            }
+            case PAYROLL_PDF, PAYROLL_EXCEL -> {
+                if (!privileged && !vendedor) {
+                    throw new BusinessExeption("No tienes permiso para exportar nóminas");
+                }
+                if (request.month() == null || request.year() == null) {
+                    throw new BusinessExeption("Mes y año son obligatorios para exportar la nómina");
+                }
+                UUID vendedorId = privileged ? request.vendedorId() : user.getId();
+                return new JobParams(null, null, request.month(), request.year(), vendedorId, false, scope);
+            }
+            case CLIENT_BALANCE_EXCEL -> {
+                if (!privileged && !vendedor) {
+                    throw new BusinessExeption("No tienes permisos para exportar cartera");
+                }
+                UUID vendedorId = privileged ? request.vendedorId() : null;
+                return new JobParams(request.startDate(), request.endDate(), null, null, vendedorId,
+                        Boolean.TRUE.equals(request.onlyWithDebt()), scope);
+            }
+            default -> throw new BusinessExeption("Tipo de exportación no soportado: " + request.type());
+        }
+    }
+
+    private boolean isReusable(Job job) {
+        return switch (job.status) {
+            case QUEUED, RUNNING -> true;
+            case READY -> job.finishedAt != null
+                    && job.finishedAt.isAfter(LocalDateTime.now().minus(Duration.ofMillis(reuseMillis)));
+            case FAILED -> false;
+        };
+    }
+
+    private void run(Job job) {
+        job.status = ExportJobStatus.RUNNING;
+        Path temp = null;
+        try {
+            temp = Files.createTempFile(storePath, "export-", ".tmp");
+            try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(temp))) {
+                readOnlyTransaction.executeWithoutResult(status -> generate(job, out));
+            }
+
+            Path file = storePath.resolve(job.id + "." + job.key.type().getExtension());
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            job.file = file;
+            job.sizeBytes = Files.size(file);
+            // finishedAt antes que status: quien ve READY/FAILED ve también la hora
+            job.finishedAt = LocalDateTime.now();
+            job.status = ExportJobStatus.READY;
+            log.info("✅ Exportación {} lista ({} bytes)", job.id, job.sizeBytes);
+        } catch (Exception e) {
+            job.error = e instanceof BusinessExeption ? e.getMessage() : "Error generando la exportación";
+            job.finishedAt = LocalDateTime.now();
+            job.status = ExportJobStatus.FAILED;
+            if (temp != null) {
+                deleteQuietly(temp);
+            }
+            log.error("❌ Error en exportación {} ({})", job.id, job.key.type(), e);
+        }
+        notificationDispatcher.publish(TOPIC_PREFIX + job.id, null, toResponse(job));
+    }
+
+    private void generate(Job job, OutputStream out) {
+        JobParams p = job.key.params();
+        try {
+            switch (job.key.type()) {
+                case REPORT_PDF -> reportExportService
+                        .streamReportToPdf(completeReport(p), p.startDate(), p.endDate())
+                        .writeTo(out);
+                case REPORT_EXCEL -> reportExportService
+                        .streamReportToExcel(completeReport(p), p.startDate(), p.endDate(), p.vendedorId())
+                        .writeTo(out);
+                case PAYROLL_PDF -> out.write(p.vendedorId() != null
+                        ? payrollExportService.exportVendorPayrollToPdf(p.vendedorId(), p.month(), p.year())
+                        : payrollExportService.exportAllPayrollsToPdf(p.month(), p.year()));
+                case PAYROLL_EXCEL -> out.write(p.vendedorId() != null
+                        ? payrollExportService.exportVendorPayrollToExcel(p.vendedorId(), p.month(), p.year())
+                        : payrollExportService.exportAllPayrollsToExcel(p.month(), p.year()));
+                case INVENTORY_PDF -> productService.streamInventoryToPdf().writeTo(out);
+                case INVENTORY_EXCEL -> out.write(productService.exportInventoryToExcel());
+                case CLIENT_BALANCE_EXCEL -> clientBalanceService
+                        .streamBalanceToExcel(p.vendedorId(), p.startDate(), p.endDate(), p.onlyWithDebt(),
+                                job.submittedBy)
+                        .writeTo(out);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private ReportDTO completeReport(JobParams p) {
+        return p.vendedorId() != null
+                ? reportService.getCompleteReport(p.startDate(), p.endDate(), p.vendedorId())
+                : reportService.getCompleteReport(p.startDate(), p.endDate());
+    }
+
+    private Job findOwnJob(UUID jobId, String username) {
+        Job job = jobs.get(jobId);
+        if (job == null || !job.requesters.contains(username)) {
+            throw new BusinessExeption("Exportación no encontrada o vencida");
+        }
+        return job;
+    }
+
+    private ExportJobResponse toResponse(Job job) {
+        return new ExportJobResponse(
+                job.id,
+                job.key.type(),
+                job.status,
+                job.filename(),
+                job.sizeBytes,
+                job.error,
+                job.createdAt,
+                job.finishedAt,
+                job.finishedAt != null ? job.finishedAt.plus(Duration.ofMillis(ttlMillis)) : null,
+                job.status == ExportJobStatus.READY ? "/api/exports/" + job.id + "/file" : null);
+    }
+
+    private void deleteQuietly(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            log.warn("No se pudo borrar {}: {}", path, e.getMessage());
+        }
+    }
+}
@@ -22,28 +22,50 @@ import org.example.sistema_gestion_vitalexa.entity.enums.InventoryMovementType;
 import org.example.sistema_gestion_vitalexa.exceptions.BusinessExeption;
 import org.example.sistema_gestion_vitalexa.repository.InventoryMovementRepository;
 import org.example.sistema_gestion_vitalexa.service.InventoryMovementService;
+import org.example.sistema_gestion_vitalexa.util.KeysetCursor;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import org.example.sistema_gestion_vitalexa.util.TransactionCallbacks;
 
 import java.io.ByteArrayOutputStream;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.UUID;
 
+/**
+ * Movimientos de inventario.
+ *
+ * logMovement no inserta en el momento: dentro de una transacción los
+ * movimientos se acumulan y se persisten juntos antes del commit, así los
+ * ciclos por ítem (pedidos, llegadas de mercancía, devoluciones) terminan en
+ * un solo INSERT por lotes en vez de uno por ítem intercalado con los UPDATE
+ * de stock. Se escriben las mismas filas, con la hora del movimiento.
+ */
 @Service
 @RequiredArgsConstructor
 @Slf4j
 public class InventoryMovementServiceImpl implements InventoryMovementService {
 
+    private static final Object PENDING_MOVEMENTS_KEY = InventoryMovementServiceImpl.class.getName() + ".pending";
+
     private final InventoryMovementRepository repository;
 
+    @jakarta.persistence.PersistenceContext
+    private jakarta.persistence.EntityManager entityManager;
+
     private static final DateTimeFormatter DATE_FORMATTER = DateTimeFormatter.ofPattern("dd/MM/yyyy HH:mm");
     private static final DeviceRgb BRAND_COLOR = new DeviceRgb(52, 73, 94);
     private static final DeviceRgb HEADER_BG_COLOR = new DeviceRgb(240, 240, 240);
 
+    // Filas por página al recorrer el historial para el PDF
+    private static final int PDF_PAGE_SIZE = 500;
+
     @Override
     @Transactional
     public InventoryMovement logMovement(Product product, InventoryMovementType type, Integer quantity,
@@ -59,17 +81,52 @@ public class InventoryMovementServiceImpl implements InventoryMovementService {
                     .newStock(newStock)
                     .reason(reason)
                     .username(username != null ? username : "System")
+                    .timestamp(LocalDateTime.now())
                     .build();
 
-            InventoryMovement saved = repository.save(movement);
+            saveBeforeCommit(movement);
             log.info("Inventory movement logged: {} - Product: {} ({})", type, product.getNombre(), quantity);
-            return saved;
+            return movement;
         } catch (Exception e) {
             log.error("Failed to log inventory movement", e);
             throw e;
         }
     }
 
+    /**
+     * El movimiento devuelto recibe su id al persistirse (antes del commit).
+     */
+    private void saveBeforeCommit(InventoryMovement movement) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            repository.save(movement);
+            return;
+        }
+        TransactionCallbacks.beforeCommit(PENDING_MOVEMENTS_KEY, movement, movements -> {
+            movements.forEach(this::detachDeletedProduct);
+            // Un solo flush: los INSERT salen juntos (hibernate.jdbc.batch_size)
+            repository.saveAllAndFlush(movements);
+            log.debug("{} movimiento(s) de inventario guardados en lote", movements.size());
+        });
+    }
+
+    /**
+     * Si el producto se borró físicamente en la misma transacción (hardDelete),
+     * el movimiento queda sin producto, igual que haría ON DELETE SET NULL; el
+     * nombre ya está guardado en productName.
+     *
+     * contains() es false para entidades borradas (y para las desvinculadas);
+     * solo en ese caso se consulta find(), que no devuelve las borradas.
+     */
+    private void detachDeletedProduct(InventoryMovement movement) {
+        Product product = movement.getProduct();
+        if (product == null || entityManager.contains(product)) {
+            return;
+        }
+        if (product.getId() == null || entityManager.find(Product.class, product.getId()) == null) {
+            movement.setProduct(null);
+        }
+    }
+
     @Override
     public Page<org.example.sistema_gestion_vitalexa.dto.InventoryMovementResponseDTO> getHistory(UUID productId,
             InventoryMovementType type, LocalDateTime startDate,
@@ -78,6 +135,43 @@ public class InventoryMovementServiceImpl implements InventoryMovementService {
                 .map(this::mapToDTO);
     }
 
+    /**
+     * Historial por cursor (keyset) en orden (timestamp DESC, id DESC): cada
+     * página continúa después de la última fila entregada, sin OFFSET ni
+     * COUNT por página. El total solo se calcula si se pide, en la primera.
+     */
+    @Override
+    public org.example.sistema_gestion_vitalexa.dto.CursorPage<org.example.sistema_gestion_vitalexa.dto.InventoryMovementResponseDTO> getHistoryByCursor(
+            UUID productId, InventoryMovementType type, LocalDateTime startDate, LocalDateTime endDate,
+            String cursor, int size, boolean withTotal) {
+        KeysetCursor.Position after = KeysetCursor.decode(cursor);
+        org.springframework.data.jpa.domain.Specification<InventoryMovement> spec = createSpecification(productId,
+                type, startDate, endDate);
+
+        org.springframework.data.jpa.domain.Specification<InventoryMovement> keyset = (root, query, cb) -> {
+            query.orderBy(cb.desc(root.get("timestamp")), cb.desc(root.get("id")));
+            jakarta.persistence.criteria.Predicate filters = spec.toPredicate(root, query, cb);
+            return after != null
+                    ? cb.and(filters, KeysetCursor.after(cb, root.get("timestamp"), root.get("id"), after))
+                    : filters;
+        };
+
+        // Una fila de más indica si hay página siguiente
+        List<InventoryMovement> rows = repository.findBy(keyset, q -> q.limit(size + 1).all());
+        boolean hasNext = rows.size() > size;
+        List<InventoryMovement> content = hasNext ? rows.subList(0, size) : rows;
+
+        String nextCursor = null;
+        if (hasNext) {
+            InventoryMovement last = content.get(content.size() - 1);
+            nextCursor = KeysetCursor.encode(last.getTimestamp(), last.getId());
+        }
+        Long total = withTotal && after == null ? repository.count(spec) : null;
+
+        return new org.example.sistema_gestion_vitalexa.dto.CursorPage<>(
+                content.stream().map(this::mapToDTO).toList(), nextCursor, hasNext, total);
+    }
+
     private org.example.sistema_gestion_vitalexa.dto.InventoryMovementResponseDTO mapToDTO(InventoryMovement movement) {
         return org.example.sistema_gestion_vitalexa.dto.InventoryMovementResponseDTO.builder()
                 .id(movement.getId())
@@ -145,10 +239,12 @@ public class InventoryMovementServiceImpl implements InventoryMovementService {
             addHeader(document, username, filterDescription);
 
             // 2. Summary
-            addSummary(document, movements);
+            addSummary(document, countByType(movements));
 
             // 3. Table
-            addMovementsTable(document, movements);
+            Table table = createMovementsTable(false);
+            movements.forEach(m -> addMovementRow(table, m));
+            document.add(table);
 
             // 4. Footer
             addFooter(document);
@@ -161,6 +257,127 @@ public class InventoryMovementServiceImpl implements InventoryMovementService {
         }
     }
 
+    /**
+     * Historial completo en PDF escrito directo a la respuesta HTTP.
+     *
+     * Los movimientos se leen en páginas de PDF_PAGE_SIZE con un cursor
+     * (timestamp, id) y la tabla usa el modo de tablas grandes de iText: cada
+     * página se vuelca al PDF (flush) y se descarta, así la memoria no depende
+     * de cuántos movimientos haya. Los conteos del resumen salen de una
+     * consulta agrupada antes de empezar a escribir.
+     */
+    @Override
+    public StreamingResponseBody streamHistoryPdf(UUID productId, InventoryMovementType type,
+            LocalDateTime startDate, LocalDateTime endDate, String username, String filterDescription) {
+        org.springframework.data.jpa.domain.Specification<InventoryMovement> spec = createSpecification(productId,
+                type, startDate, endDate);
+        // Se consulta antes de devolver el cuerpo: un error aquí sigue siendo una respuesta HTTP normal
+        java.util.Map<InventoryMovementType, Long> counts = countByType(spec);
+
+        return outputStream -> {
+            try {
+                PdfWriter writer = new PdfWriter(outputStream);
+                // El stream es de la respuesta: lo cierra el contenedor, no iText
+                writer.setCloseStream(false);
+                PdfDocument pdf = new PdfDocument(writer);
+                Document document = new Document(pdf);
+
+                addHeader(document, username, filterDescription);
+                addSummary(document, counts);
+
+                Table table = createMovementsTable(true);
+                document.add(table);
+
+                List<InventoryMovement> page = findHistoryPage(spec, null);
+                while (!page.isEmpty()) {
+                    page.forEach(m -> addMovementRow(table, m));
+                    table.flush();
+                    InventoryMovement last = page.get(page.size() - 1);
+                    page = page.size() < PDF_PAGE_SIZE
+                            ? List.of()
+                            : findHistoryPage(spec, new KeysetCursor.Position(last.getTimestamp(), last.getId()));
+                }
+                table.complete();
+
+                addFooter(document);
+                document.close();
+            } catch (Exception e) {
+                log.error("Error generating inventory history PDF", e);
+                throw new RuntimeException("Error generating history PDF", e);
+            }
+        };
+    }
+
+    /**
+     * Una página del historial en orden (timestamp DESC, id DESC), a partir de
+     * la fila after (exclusiva) o desde el inicio si es null.
+     *
+     * Se leen solo las columnas que usa el PDF y se arman movimientos sueltos
+     * (no administrados): el contexto de persistencia no crece página a página.
+     */
+    private List<InventoryMovement> findHistoryPage(
+            org.springframework.data.jpa.domain.Specification<InventoryMovement> spec, KeysetCursor.Position after) {
+        jakarta.persistence.criteria.CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        jakarta.persistence.criteria.CriteriaQuery<Object[]> query = cb.createQuery(Object[].class);
+        jakarta.persistence.criteria.Root<InventoryMovement> root = query.from(InventoryMovement.class);
+
+        List<jakarta.persistence.criteria.Predicate> predicates = new ArrayList<>();
+        predicates.add(spec.toPredicate(root, query, cb));
+        if (after != null) {
+            predicates.add(KeysetCursor.after(cb, root.get("timestamp"), root.get("id"), after));
+        }
+
+        query.multiselect(root.get("id"), root.get("timestamp"), root.get("productName"), root.get("type"),
+                root.get("reason"), root.get("username"), root.get("quantity"), root.get("previousStock"),
+                root.get("newStock"))
+                .where(predicates.toArray(new jakarta.persistence.criteria.Predicate[0]))
+                .orderBy(cb.desc(root.get("timestamp")), cb.desc(root.get("id")));
+
+        return entityManager.createQuery(query)
+                .setMaxResults(PDF_PAGE_SIZE)
+                .getResultList().stream()
+                .map(row -> InventoryMovement.builder()
+                        .id((UUID) row[0])
+                        .timestamp((LocalDateTime) row[1])
+                        .productName((String) row[2])
+                        .type((InventoryMovementType) row[3])
+                        .reason((String) row[4])
+                        .username((String) row[5])
+                        .quantity((Integer) row[6])
+                        .previousStock((Integer) row[7])
+                        .newStock((Integer) row[8])
+                        .build())
+                .toList();
+    }
+
+    private java.util.Map<InventoryMovementType, Long> countByType(
+            org.springframework.data.jpa.domain.Specification<InventoryMovement> spec) {
+        jakarta.persistence.criteria.CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        jakarta.persistence.criteria.CriteriaQuery<Object[]> query = cb.createQuery(Object[].class);
+        jakarta.persistence.criteria.Root<InventoryMovement> root = query.from(InventoryMovement.class);
+        query.multiselect(root.get("type"), cb.count(root))
+                .where(spec.toPredicate(root, query, cb))
+                .groupBy(root.get("type"));
+
+        java.util.Map<InventoryMovementType, Long> counts = new java.util.EnumMap<>(InventoryMovementType.class);
+        for (Object[] row : entityManager.createQuery(query).getResultList()) {
+            if (row[0] != null) {
+                counts.put((InventoryMovementType) row[0], (Long) row[1]);
+            }
+        }
+        return counts;
+    }
+
+    private java.util.Map<InventoryMovementType, Long> countByType(List<InventoryMovement> movements) {
+        java.util.Map<InventoryMovementType, Long> counts = new java.util.EnumMap<>(InventoryMovementType.class);
+        for (InventoryMovement m : movements) {
+            if (m.getType() != null) {
+                counts.merge(m.getType(), 1L, Long::sum);
+            }
+        }
+        return counts;
+    }
+
     // --- PDF Helpers ---
 
     private void addHeader(Document document, String username, String filterDescription) {
@@ -198,11 +415,14 @@ public class InventoryMovementServiceImpl implements InventoryMovementService {
         document.add(infoTable);
     }
 
-    private void addSummary(Document document, List<InventoryMovement> movements) {
-        long totalMoves = movements.size();
-        long entries = movements.stream().filter(m -> isPositiveMove(m.getType())).count();
-        long exits = movements.stream()
-                .filter(m -> !isPositiveMove(m.getType()) && m.getType() != InventoryMovementType.UPDATE).count();
+    private void addSummary(Document document, java.util.Map<InventoryMovementType, Long> countsByType) {
+        long totalMoves = countsByType.values().stream().mapToLong(Long::longValue).sum();
+        long entries = countsByType.entrySet().stream()
+                .filter(e -> isPositiveMove(e.getKey()))
+                .mapToLong(java.util.Map.Entry::getValue).sum();
+        long exits = countsByType.entrySet().stream()
+                .filter(e -> !isPositiveMove(e.getKey()) && e.getKey() != InventoryMovementType.UPDATE)
+                .mapToLong(java.util.Map.Entry::getValue).sum();
 
         Table summaryTable = new Table(UnitValue.createPercentArray(new float[] { 1, 1, 1 }))
                 .useAllAvailableWidth()
@@ -224,8 +444,12 @@ public class InventoryMovementServiceImpl implements InventoryMovementService {
                 || type == InventoryMovementType.RETURN;
     }
 
-    private void addMovementsTable(Document document, List<InventoryMovement> movements) {
-        Table table = new Table(UnitValue.createPercentArray(new float[] { 2, 2, 3, 1.5f, 1, 1, 1, 2 }))
+    /**
+     * largeTable = modo de tablas grandes de iText: la tabla se agrega al
+     * documento antes de llenarla y se vuelca por partes con flush().
+     */
+    private Table createMovementsTable(boolean largeTable) {
+        Table table = new Table(UnitValue.createPercentArray(new float[] { 2, 2, 3, 1.5f, 1, 1, 1, 2 }), largeTable)
                 .useAllAvailableWidth()
                 .setFontSize(8);
 
@@ -239,26 +463,26 @@ public class InventoryMovementServiceImpl implements InventoryMovementService {
         addHeaderCell(table, "Nuevo");
         addHeaderCell(table, "ID Movimiento");
 
-        for (InventoryMovement m : movements) {
-            addCell(table, m.getTimestamp().format(DATE_FORMATTER), TextAlignment.LEFT);
-            addCell(table, m.getProductName(), TextAlignment.LEFT);
-            addCell(table, m.getType() + "\n" + (m.getReason() != null ? m.getReason() : ""), TextAlignment.LEFT);
-            addCell(table, m.getUsername(), TextAlignment.LEFT);
-            addCell(table, String.valueOf(m.getPreviousStock()), TextAlignment.CENTER);
-
-            // Highlight quantity (+/-)
-            String sign = isPositiveMove(m.getType()) ? "+" : "-";
-            if (m.getType() == InventoryMovementType.UPDATE)
-                sign = "~"; // Update might not change stock
-            if (m.getType() == InventoryMovementType.STOCK_ADJUSTMENT)
-                sign = m.getNewStock() > m.getPreviousStock() ? "+" : "-";
-
-            addCell(table, sign + m.getQuantity(), TextAlignment.CENTER);
-            addCell(table, String.valueOf(m.getNewStock()), TextAlignment.CENTER);
-            addCell(table, m.getId().toString().substring(0, 8), TextAlignment.CENTER);
-        }
+        return table;
+    }
 
-        document.add(table);
+    private void addMovementRow(Table table, InventoryMovement m) {
+        addCell(table, m.getTimestamp().format(DATE_FORMATTER), TextAlignment.LEFT);
+        addCell(table, m.getProductName(), TextAlignment.LEFT);
+        addCell(table, m.getType() + "\n" + (m.getReason() != null ? m.getReason() : ""), TextAlignment.LEFT);
+        addCell(table, m.getUsername(), TextAlignment.LEFT);
+        addCell(table, String.valueOf(m.getPreviousStock()), TextAlignment.CENTER);
+
+        // Highlight quantity (+/-)
+        String sign = isPositiveMove(m.getType()) ? "+" : "-";
+        if (m.getType() == InventoryMovementType.UPDATE)
+            sign = "~"; // Update might not change stock
+        if (m.getType() == InventoryMovementType.STOCK_ADJUSTMENT)
+            sign = m.getNewStock() > m.getPreviousStock() ? "+" : "-";
+
+        addCell(table, sign + m.getQuantity(), TextAlignment.CENTER);
+        addCell(table, String.valueOf(m.getNewStock()), TextAlignment.CENTER);
+        addCell(table, m.getId().toString().substring(0, 8), TextAlignment.CENTER);
     }
 
     @Override
@@ -0,0 +1,86 @@
+package org.example.sistema_gestion_vitalexa.service.impl;
+
+import jakarta.transaction.Transactional;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.example.sistema_gestion_vitalexa.entity.Order;
+import org.example.sistema_gestion_vitalexa.exceptions.BusinessExeption;
+import org.example.sistema_gestion_vitalexa.repository.OrdenRepository;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * Números de factura sin huecos.
+ *
+ * - Los números salen de la fila invoice_counter, que se avanza en la MISMA
+ *   transacción que guarda la orden: si esta se revierte, los números vuelven
+ *   al contador y los toma la siguiente factura.
+ * - Un rango de N números se reserva con un solo UPDATE, así un cierre que
+ *   completa varias órdenes recibe números consecutivos.
+ * - La fila queda bloqueada hasta el commit: dos facturaciones simultáneas se
+ *   esperan en lugar de intercalarse. Por eso conviene reservar lo más tarde
+ *   posible dentro de la transacción.
+ *
+ * MANDATORY: sin transacción el bloqueo (y la devolución en rollback) no
+ * tendría efecto.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class InvoiceNumberAllocator {
+
+    private final OrdenRepository ordenRepository;
+
+    @Transactional(Transactional.TxType.MANDATORY)
+    public long next() {
+        return reserve(1).first();
+    }
+
+    /**
+     * Reserva count números consecutivos.
+     */
+    @Transactional(Transactional.TxType.MANDATORY)
+    public Range reserve(int count) {
+        if (count <= 0) {
+            throw new BusinessExeption("La cantidad de facturas a reservar debe ser mayor a 0");
+        }
+        ordenRepository.advanceInvoiceCounter(count);
+        long end = ordenRepository.findNextInvoiceNumber();
+        Range range = new Range(end - count, end - 1);
+        log.debug("Facturas reservadas: {} - {}", range.first(), range.last());
+        return range;
+    }
+
+    /**
+     * Asigna números consecutivos, en el orden de la lista, a las órdenes que
+     * aún no tienen factura. Las que ya tienen número se dejan igual.
+     */
+    @Transactional(Transactional.TxType.MANDATORY)
+    public void assignTo(List<Order> orders) {
+        List<Order> pending = orders.stream()
+                .filter(order -> order.getInvoiceNumber() == null)
+                .toList();
+        if (pending.isEmpty()) {
+            return;
+        }
+
+        long number = reserve(pending.size()).first();
+        for (Order order : pending) {
+            order.setInvoiceNumber(number++);
+        }
+    }
+
+    /**
+     * Tras cargar facturas con número manual (históricas), deja el contador
+     * por delante de la más alta.
+     */
+    @Transactional(Transactional.TxType.MANDATORY)
+    public long syncWithExistingInvoices() {
+        ordenRepository.syncInvoiceCounter();
+        return ordenRepository.findNextInvoiceNumber();
+    }
+
+    public record Range(long first, long last) {
+    }
+}
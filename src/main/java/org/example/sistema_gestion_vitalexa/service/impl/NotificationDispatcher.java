@@ -0,0 +1,213 @@
+package org.example.sistema_gestion_vitalexa.service.impl;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.example.sistema_gestion_vitalexa.util.TransactionCallbacks;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Envío de notificaciones WebSocket fuera de la transacción que las origina.
+ *
+ * - Dentro de una transacción los mensajes se retienen y se liberan recién en
+ *   afterCommit; si la transacción se revierte, se descartan.
+ * - Los mensajes liberados esperan una ventana corta ({@code windowMs}) en la
+ *   que se fusionan: los que comparten clave se reemplazan por el último, y
+ *   todas las actualizaciones de inventario se envían como UN solo evento.
+ * - El envío real lo hace un único hilo con cola acotada. Si la cola se llena
+ *   el mensaje se descarta (y se cuenta) en lugar de frenar a quien escribe.
+ *
+ * Métricas: notifications.queue.depth, notifications.sent,
+ * notifications.coalesced, notifications.dropped, notifications.discarded.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class NotificationDispatcher {
+
+    static final String INVENTORY_DESTINATION = "/topic/inventory";
+
+    private static final Object PENDING_KEY = NotificationDispatcher.class.getName() + ".pending";
+
+    private final SimpMessagingTemplate messagingTemplate;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${notifications.dispatch.window-ms:250}")
+    private long windowMs;
+
+    @Value("${notifications.dispatch.queue-capacity:1000}")
+    private int queueCapacity;
+
+    private ThreadPoolExecutor sender;
+    private ScheduledExecutorService windowTimer;
+
+    private Counter sentCounter;
+    private Counter coalescedCounter;
+    private Counter droppedCounter;
+    private Counter discardedCounter;
+
+    // Ventana actual: clave -> mensaje (orden de llegada)
+    private final Object windowLock = new Object();
+    private final Map<String, OutgoingMessage> window = new LinkedHashMap<>();
+    // Inventario en la ventana actual: productId -> acción
+    private final Map<String, String> pendingInventory = new LinkedHashMap<>();
+    private boolean flushScheduled;
+
+    @PostConstruct
+    void init() {
+        sender = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                daemonThreads("notification-sender"),
+                (task, executor) -> {
+                    droppedCounter.increment();
+                    log.warn("⚠️ Cola de notificaciones llena ({}), mensaje descartado", queueCapacity);
+                });
+        windowTimer = Executors.newSingleThreadScheduledExecutor(daemonThreads("notification-window"));
+
+        sentCounter = meterRegistry.counter("notifications.sent");
+        coalescedCounter = meterRegistry.counter("notifications.coalesced");
+        droppedCounter = meterRegistry.counter("notifications.dropped");
+        discardedCounter = meterRegistry.counter("notifications.discarded");
+        Gauge.builder("notifications.queue.depth", this, NotificationDispatcher::queueDepth)
+                .description("Mensajes en la ventana de fusión más los que esperan envío")
+                .register(meterRegistry);
+    }
+
+    @PreDestroy
+    void shutdown() throws InterruptedException {
+        windowTimer.shutdownNow();
+        flushWindow();
+        sender.shutdown();
+        if (!sender.awaitTermination(5, TimeUnit.SECONDS)) {
+            sender.shutdownNow();
+        }
+    }
+
+    /**
+     * Publica un mensaje. coalesceKey null = nunca se fusiona con otro.
+     */
+    public void publish(String destination, String coalesceKey, Object payload) {
+        String key = coalesceKey != null ? destination + "|" + coalesceKey : UUID.randomUUID().toString();
+        afterCommit(new OutgoingMessage(key, destination, payload, false, null, null));
+    }
+
+    /**
+     * Publica una actualización de inventario. Las que caen en la misma ventana
+     * se envían juntas en un único evento.
+     */
+    public void publishInventoryUpdate(String productId, String action) {
+        afterCommit(new OutgoingMessage(null, INVENTORY_DESTINATION, null, true, productId, action));
+    }
+
+    private void afterCommit(OutgoingMessage message) {
+        TransactionCallbacks.afterCommit(PENDING_KEY, message,
+                messages -> messages.forEach(this::enqueue),
+                messages -> {
+                    discardedCounter.increment(messages.size());
+                    log.debug("{} notificación(es) descartadas por rollback", messages.size());
+                });
+    }
+
+    private void enqueue(OutgoingMessage message) {
+        synchronized (windowLock) {
+            if (message.inventory()) {
+                String key = message.productId() != null ? message.productId() : "";
+                if (pendingInventory.put(key, message.action()) != null) {
+                    coalescedCounter.increment();
+                }
+            } else if (window.put(message.key(), message) != null) {
+                coalescedCounter.increment();
+            }
+
+            if (!flushScheduled && !windowTimer.isShutdown()) {
+                flushScheduled = true;
+                windowTimer.schedule(this::flushWindow, windowMs, TimeUnit.MILLISECONDS);
+            }
+        }
+    }
+
+    private void flushWindow() {
+        List<OutgoingMessage> messages;
+        Map<String, String> inventory;
+        synchronized (windowLock) {
+            messages = new ArrayList<>(window.values());
+            inventory = new LinkedHashMap<>(pendingInventory);
+            window.clear();
+            pendingInventory.clear();
+            flushScheduled = false;
+        }
+
+        if (!inventory.isEmpty()) {
+            submit(INVENTORY_DESTINATION, toInventoryEvent(inventory));
+        }
+        for (OutgoingMessage message : messages) {
+            submit(message.destination(), message.payload());
+        }
+    }
+
+    private void submit(String destination, Object payload) {
+        sender.execute(() -> {
+            try {
+                messagingTemplate.convertAndSend(destination, payload);
+                sentCounter.increment();
+            } catch (Exception e) {
+                log.error("Error enviando notificación a {}: {}", destination, e.getMessage());
+            }
+        });
+    }
+
+    /**
+     * Un solo evento para todo el lote. Con un único producto es idéntico al
+     * evento individual; con varios, productId queda null y la lista completa
+     * va en productIds.
+     */
+    private NotificationServiceImpl.InventoryUpdateEvent toInventoryEvent(Map<String, String> inventory) {
+        List<String> productIds = inventory.keySet().stream()
+                .filter(id -> !id.isEmpty())
+                .toList();
+        long distinctActions = inventory.values().stream().distinct().count();
+        String action = distinctActions == 1 ? inventory.values().iterator().next() : "BATCH_UPDATE";
+        String productId = inventory.size() == 1 && !productIds.isEmpty() ? productIds.get(0) : null;
+
+        return new NotificationServiceImpl.InventoryUpdateEvent(
+                action,
+                productId,
+                System.currentTimeMillis(),
+                productIds);
+    }
+
+    private double queueDepth() {
+        synchronized (windowLock) {
+            return window.size() + pendingInventory.size() + (sender != null ? sender.getQueue().size() : 0);
+        }
+    }
+
+    private static java.util.concurrent.ThreadFactory daemonThreads(String name) {
+        return runnable -> {
+            Thread thread = new Thread(runnable, name);
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    private record OutgoingMessage(String key, String destination, Object payload,
+            boolean inventory, String productId, String action) {
+    }
+}
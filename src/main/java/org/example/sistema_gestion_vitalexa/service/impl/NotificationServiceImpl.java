@@ -4,10 +4,10 @@ import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.example.sistema_gestion_vitalexa.dto.*;
 import org.example.sistema_gestion_vitalexa.service.NotificationService;
-import org.springframework.messaging.simp.SimpMessagingTemplate;
 import org.springframework.stereotype.Service;
 
 import java.time.LocalDateTime;
+import java.util.List;
 import java.util.UUID;
 
 @Service
@@ -15,7 +15,8 @@ import java.util.UUID;
 @Slf4j
 public class NotificationServiceImpl implements NotificationService {
 
-        private final SimpMessagingTemplate messagingTemplate;
+        // Los mensajes salen después del commit, en otro hilo y agrupados
+        private final NotificationDispatcher dispatcher;
 
         @Override
         public void sendNewOrderNotification(String orderId, String vendorName, String clientName) {
@@ -32,7 +33,7 @@ public class NotificationServiceImpl implements NotificationService {
                                 targetUrl,
                                 data);
 
-                messagingTemplate.convertAndSend("/topic/admin-owner/notifications", notification);
+                dispatcher.publish("/topic/admin-owner/notifications", "NEW_ORDER:" + orderId, notification);
                 log.info("Notificación enviada: Nueva orden {}", orderId);
         }
 
@@ -51,10 +52,36 @@ public class NotificationServiceImpl implements NotificationService {
                                 data);
 
                 // ✅ ENVIAR A TODOS (incluyendo vendedores)
-                messagingTemplate.convertAndSend("/topic/notifications", notification);
+                dispatcher.publish("/topic/notifications", "ORDER_COMPLETED:" + orderId, notification);
                 log.info("Notificación enviada: Orden completada {}", orderId);
         }
 
+        /**
+         * Un solo aviso para un cierre con varias órdenes completadas.
+         */
+        @Override
+        public void sendOrdersCompletedNotification(List<String> orderIds) {
+                if (orderIds.size() == 1) {
+                        sendOrderCompletedNotification(orderIds.get(0));
+                        return;
+                }
+
+                String title = "Órdenes Completadas";
+                String message = String.format("%d órdenes han sido completadas exitosamente", orderIds.size());
+                String targetUrl = "/admin";
+
+                NotificationData data = new NotificationData(null, null, null, null, null);
+                NotificationDTO notification = createNotification(
+                                NotificationType.ORDER_COMPLETED,
+                                title,
+                                message,
+                                targetUrl,
+                                data);
+
+                dispatcher.publish("/topic/notifications", null, notification);
+                log.info("Notificación enviada: {} órdenes completadas", orderIds.size());
+        }
+
         @Override
         public void sendLowStockAlert(String productId, String productName, int currentStock, int reorderPoint) {
                 String title = "⚠️ Stock Bajo";
@@ -70,7 +97,8 @@ public class NotificationServiceImpl implements NotificationService {
                                 targetUrl,
                                 data);
 
-                messagingTemplate.convertAndSend("/topic/admin-owner/notifications", notification);
+                // Varias alertas del mismo producto en la ventana se reducen a la última
+                dispatcher.publish("/topic/admin-owner/notifications", "LOW_STOCK:" + productId, notification);
                 log.warn("Alerta de stock bajo: {} - Stock: {}/{}", productName, currentStock, reorderPoint);
         }
 
@@ -88,7 +116,7 @@ public class NotificationServiceImpl implements NotificationService {
                                 targetUrl,
                                 data);
 
-                messagingTemplate.convertAndSend("/topic/admin-owner/notifications", notification);
+                dispatcher.publish("/topic/admin-owner/notifications", "OUT_OF_STOCK:" + productId, notification);
                 log.info("Alerta: Producto sin stock - {}", productName);
         }
 
@@ -97,15 +125,10 @@ public class NotificationServiceImpl implements NotificationService {
         public void sendInventoryUpdate(String productId, String action) {
                 log.info("Notificando actualización de inventario: {} - Producto ID: {}", action, productId);
 
-                // Enviar evento simple para que todos los dashboards refresquen
-                InventoryUpdateEvent event = new InventoryUpdateEvent(
-                                action,
-                                productId,
-                                System.currentTimeMillis());
-
-                // ENVIAR A TOPIC DE INVENTARIO (todos los dashboards lo escuchan)
-                messagingTemplate.convertAndSend("/topic/inventory", event);
-                log.info("Evento de inventario enviado: {}", action);
+                // Evento simple para que todos los dashboards refresquen (TOPIC de
+                // inventario). Las actualizaciones de una misma ventana (p. ej. una
+                // llegada masiva de stock) salen juntas en un solo evento.
+                dispatcher.publishInventoryUpdate(productId, action);
         }
 
         // Notificar reembolso creado
@@ -125,7 +148,7 @@ public class NotificationServiceImpl implements NotificationService {
                                 data);
 
                 // SOLO PARA ADMIN Y OWNER
-                messagingTemplate.convertAndSend("/topic/admin-owner/notifications", notification);
+                dispatcher.publish("/topic/admin-owner/notifications", "REEMBOLSO_CREATED:" + reembolsoId, notification);
                 log.info("Notificación enviada: Nuevo reembolso {}", reembolsoId);
         }
 
@@ -143,7 +166,7 @@ public class NotificationServiceImpl implements NotificationService {
                                 (NotificationData) data);
         }
 
-        // DTO para eventos de inventario
-        public record InventoryUpdateEvent(String action, String productId, Long timestamp) {
+        // DTO para eventos de inventario (productIds: todos los productos del lote)
+        public record InventoryUpdateEvent(String action, String productId, Long timestamp, List<String> productIds) {
         }
 }
@@ -0,0 +1,201 @@
+package org.example.sistema_gestion_vitalexa.service.impl;
+
+import org.example.sistema_gestion_vitalexa.entity.Product;
+import org.example.sistema_gestion_vitalexa.entity.Promotion;
+import org.example.sistema_gestion_vitalexa.entity.SpecialProduct;
+import org.example.sistema_gestion_vitalexa.entity.SpecialPromotion;
+import org.example.sistema_gestion_vitalexa.exceptions.BusinessExeption;
+import org.example.sistema_gestion_vitalexa.repository.ProductRepository;
+import org.example.sistema_gestion_vitalexa.repository.PromotionRepository;
+import org.example.sistema_gestion_vitalexa.repository.SpecialProductRepository;
+import org.example.sistema_gestion_vitalexa.repository.SpecialPromotionRepository;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Contexto de resolución de una orden (vive solo durante una solicitud).
+ *
+ * Carga por adelantado, en pocas consultas IN, todos los Product,
+ * SpecialProduct (con etiqueta), Promotion (con regalos) y SpecialPromotion
+ * que referencia la solicitud, bloqueando antes el stock de los productos.
+ * Con las filas ya bloqueadas, los descuentos de stock de la orden se
+ * acumulan y se escriben en una sola sentencia antes del commit.
+ * Las pasadas posteriores (tope de crédito, clasificación S/R, bonificados,
+ * items, flete y promociones) leen de estos mapas en lugar de hacer un
+ * findById por item.
+ *
+ * Si se pide un ID que no fue precargado se consulta individualmente y se
+ * guarda en el mapa, con los mismos mensajes de error que los servicios.
+ */
+class OrderResolutionContext {
+
+    private final ProductRepository productRepository;
+    private final SpecialProductRepository specialProductRepository;
+    private final PromotionRepository promotionRepository;
+    private final SpecialPromotionRepository specialPromotionRepository;
+
+    private final Map<UUID, Product> products = new HashMap<>();
+    private final Map<UUID, SpecialProduct> specialProducts = new HashMap<>();
+    private final Map<UUID, Promotion> promotions = new HashMap<>();
+    // Un valor null significa "ya consultado y no es promoción especial"
+    private final Map<UUID, SpecialPromotion> specialPromotions = new HashMap<>();
+    // Productos con la fila de stock bloqueada y el stock de la entidad vigente
+    private final Set<UUID> lockedProductIds = new HashSet<>();
+
+    private OrderResolutionContext(ProductRepository productRepository,
+            SpecialProductRepository specialProductRepository,
+            PromotionRepository promotionRepository,
+            SpecialPromotionRepository specialPromotionRepository) {
+        this.productRepository = productRepository;
+        this.specialProductRepository = specialProductRepository;
+        this.promotionRepository = promotionRepository;
+        this.specialPromotionRepository = specialPromotionRepository;
+    }
+
+    /**
+     * Precarga los IDs indicados.
+     *
+     * Primero se cargan promociones y productos especiales dejando los
+     * productos como proxies (solo se necesita su id). Después se bloquean las
+     * filas de stock de todos los productos involucrados, en orden de id, y
+     * recién entonces se cargan los productos: así el stock leído es el vigente
+     * y dos órdenes concurrentes no se bloquean mutuamente.
+     *
+     * @param productIds   IDs de productos (items, bonificados y cualquier
+     *                     producto extra cuyo stock se vaya a tocar)
+     * @param promotionIds IDs de promociones tal como llegan en la solicitud
+     *                     (pueden ser normales o especiales)
+     */
+    static OrderResolutionContext load(ProductRepository productRepository,
+            SpecialProductRepository specialProductRepository,
+            PromotionRepository promotionRepository,
+            SpecialPromotionRepository specialPromotionRepository,
+            Collection<UUID> productIds,
+            Collection<UUID> specialProductIds,
+            Collection<UUID> promotionIds) {
+
+        OrderResolutionContext ctx = new OrderResolutionContext(productRepository, specialProductRepository,
+                promotionRepository, specialPromotionRepository);
+
+        Set<UUID> stockIds = new HashSet<>(productIds);
+
+        if (!promotionIds.isEmpty()) {
+            // 1. Cuáles son especiales (y su promoción padre)
+            Set<UUID> promotionsToLoad = new HashSet<>(promotionIds);
+            promotionIds.forEach(id -> ctx.specialPromotions.put(id, null));
+            for (SpecialPromotion sp : specialPromotionRepository.findAllWithParentByIdIn(promotionIds)) {
+                ctx.specialPromotions.put(sp.getId(), sp);
+                promotionsToLoad.remove(sp.getId());
+                if (sp.getParentPromotion() != null) {
+                    promotionsToLoad.add(sp.getParentPromotion().getId());
+                }
+            }
+
+            // 2. Promociones normales y padres con sus regalos
+            if (!promotionsToLoad.isEmpty()) {
+                for (Promotion p : promotionRepository.findAllWithGiftItemsByIdIn(promotionsToLoad)) {
+                    ctx.promotions.put(p.getId(), p);
+                    if (p.getMainProduct() != null) {
+                        stockIds.add(p.getMainProduct().getId());
+                    }
+                    if (p.getGiftItems() != null) {
+                        p.getGiftItems().forEach(gi -> stockIds.add(gi.getProduct().getId()));
+                    }
+                }
+            }
+        }
+
+        Set<UUID> standaloneIds = new HashSet<>();
+        if (!specialProductIds.isEmpty()) {
+            for (SpecialProduct sp : specialProductRepository.findAllWithTagByIdIn(specialProductIds)) {
+                ctx.specialProducts.put(sp.getId(), sp);
+                if (sp.getParentProduct() != null) {
+                    stockIds.add(sp.getParentProduct().getId());
+                } else {
+                    standaloneIds.add(sp.getId());
+                }
+            }
+        }
+
+        if (!stockIds.isEmpty()) {
+            Map<UUID, Integer> lockedStock = new HashMap<>();
+            for (Object[] row : productRepository.lockStockRowsWithStock(stockIds)) {
+                lockedStock.put((UUID) row[0], (Integer) row[1]);
+            }
+            // Una entidad cargada antes del bloqueo (p. ej. items de la orden en
+            // edición) puede traer un stock viejo: se toma el de la fila bloqueada
+            for (Product p : productRepository.findAllWithTagByIdIn(stockIds)) {
+                p.setStock(lockedStock.get(p.getId()));
+                ctx.products.put(p.getId(), p);
+                ctx.lockedProductIds.add(p.getId());
+            }
+        }
+
+        // Especiales independientes: se bloquean después de los productos
+        // (mismo orden global que SpecialProductService.lockOwnStock) y su
+        // stock propio se toma de la fila ya bloqueada
+        if (!standaloneIds.isEmpty()) {
+            for (Object[] row : specialProductRepository.lockOwnStockRows(standaloneIds)) {
+                ctx.specialProducts.get((UUID) row[0]).setOwnStock((Integer) row[1]);
+            }
+        }
+
+        return ctx;
+    }
+
+    /**
+     * true si la fila de stock del producto se bloqueó en {@link #load} y la
+     * entidad tiene ese stock: sus descuentos pueden ir por
+     * ProductService.decreaseLockedStock.
+     */
+    boolean holdsStockLock(UUID productId) {
+        return lockedProductIds.contains(productId);
+    }
+
+    Product product(UUID id) {
+        Product product = products.get(id);
+        if (product == null) {
+            product = productRepository.findById(id)
+                    .orElseThrow(() -> new BusinessExeption("Producto no encontrado"));
+            products.put(id, product);
+        }
+        return product;
+    }
+
+    SpecialProduct specialProduct(UUID id) {
+        SpecialProduct sp = specialProducts.get(id);
+        if (sp == null) {
+            sp = specialProductRepository.findById(id)
+                    .orElseThrow(() -> new RuntimeException("Producto especial no encontrado: " + id));
+            specialProducts.put(id, sp);
+        }
+        return sp;
+    }
+
+    Promotion promotion(UUID id) {
+        Promotion promotion = promotions.get(id);
+        if (promotion == null) {
+            promotion = promotionRepository.findById(id)
+                    .orElseThrow(() -> new BusinessExeption("Promoción no encontrada"));
+            promotions.put(id, promotion);
+        }
+        return promotion;
+    }
+
+    /**
+     * Busca una promoción especial sin lanzar excepción (para no marcar la
+     * transacción como rollback-only cuando el ID es de una promoción normal).
+     */
+    Optional<SpecialPromotion> findSpecialPromotion(UUID id) {
+        if (!specialPromotions.containsKey(id)) {
+            specialPromotions.put(id, specialPromotionRepository.findById(id).orElse(null));
+        }
+        return Optional.ofNullable(specialPromotions.get(id));
+    }
+}
@@ -0,0 +1,43 @@
+package org.example.sistema_gestion_vitalexa.service.impl;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.example.sistema_gestion_vitalexa.repository.OrderSearchDocumentRepository;
+import org.example.sistema_gestion_vitalexa.service.OrderSearchIndexService;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+/**
+ * Cada tanda corre en su propia transacción (la del repositorio): un
+ * producto con miles de órdenes no retiene los documentos de los demás
+ * orígenes hasta el final. El buscador refleja un renombre a los pocos
+ * segundos; mientras tanto sigue encontrando la orden por el nombre anterior.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class OrderSearchIndexServiceImpl implements OrderSearchIndexService {
+
+    private final OrderSearchDocumentRepository documentRepository;
+
+    @Value("${order-search.refresh.batch-size:20}")
+    private int batchSize;
+
+    @Override
+    @Scheduled(fixedDelayString = "${order-search.refresh.delay-ms:5000}",
+            initialDelayString = "${order-search.refresh.initial-delay-ms:30000}")
+    public int refreshStaleDocuments() {
+        int total = 0;
+        int processed;
+        do {
+            processed = documentRepository.processStaleSources(batchSize);
+            total += processed;
+        } while (processed == batchSize);
+
+        if (total > 0) {
+            log.info("🔎 Buscador de órdenes: documentos rearmados para {} renombre(s)", total);
+        }
+        return total;
+    }
+}
@@ -20,7 +20,6 @@ import org.example.sistema_gestion_vitalexa.repository.OrdenItemRepository;
 import org.example.sistema_gestion_vitalexa.repository.OrdenRepository;
 import org.example.sistema_gestion_vitalexa.repository.UserRepository;
 import org.example.sistema_gestion_vitalexa.service.*;
-import org.example.sistema_gestion_vitalexa.util.UserUnificationUtil;
 import org.springframework.stereotype.Service;
 
 import java.math.BigDecimal;
@@ -43,6 +42,7 @@ public class OrderServiceImpl implements OrdenService {
     private final ProductService productService;
     private final ClientService clientService;
     private final UserRepository userRepository;
+    private final org.example.sistema_gestion_vitalexa.service.UserGroupResolver userGroupResolver;
     private final OrderMapper orderMapper;
     private final NotificationService notificationService;
     private final SaleGoalService saleGoalService;
@@ -52,8 +52,12 @@ public class OrderServiceImpl implements OrdenService {
     private final org.example.sistema_gestion_vitalexa.repository.ClientRepository clientRepository;
     private final SpecialProductService specialProductService;
     private final InventoryMovementService movementService;
-    private final SpecialPromotionService specialPromotionService;
     private final org.example.sistema_gestion_vitalexa.repository.SpecialPromotionRepository specialPromotionRepository;
+    private final org.example.sistema_gestion_vitalexa.repository.ProductRepository productRepository;
+    private final org.example.sistema_gestion_vitalexa.repository.SpecialProductRepository specialProductRepository;
+    private final org.example.sistema_gestion_vitalexa.repository.PromotionRepository promotionRepository;
+    private final org.example.sistema_gestion_vitalexa.service.ClientBalanceSummaryService clientBalanceSummaryService;
+    private final InvoiceNumberAllocator invoiceNumberAllocator;
 
     // =========================
     // CREATE ORDER (VENDEDOR)
@@ -106,6 +110,9 @@ public class OrderServiceImpl implements OrdenService {
             }
         }
 
+        // Precargar en lote todos los productos/promociones referenciados por la solicitud
+        OrderResolutionContext ctx = loadResolutionContext(request);
+
         // Validar tope de crédito del cliente
         if (client != null && client.getCreditLimit() != null) {
             // Calcular el total de la venta antes de crearla
@@ -121,7 +128,7 @@ public class OrderServiceImpl implements OrdenService {
                             // Si es Special Product
                             if (item.specialProductId() != null) {
                                 try {
-                                    SpecialProduct sp = specialProductService.findEntityById(item.specialProductId());
+                                    SpecialProduct sp = ctx.specialProduct(item.specialProductId());
                                     return sp.getPrecio().multiply(BigDecimal.valueOf(item.cantidad()));
                                 } catch (Exception e) {
                                     return BigDecimal.ZERO;
@@ -130,7 +137,7 @@ public class OrderServiceImpl implements OrdenService {
 
                             // Si es Regular Product
                             if (item.productId() != null) {
-                                Product p = productService.findEntityById(item.productId());
+                                Product p = ctx.product(item.productId());
                                 return p.getPrecio().multiply(BigDecimal.valueOf(item.cantidad()));
                             }
 
@@ -188,7 +195,7 @@ public class OrderServiceImpl implements OrdenService {
                 if (itemReq.specialProductId() != null) {
                     SpecialProduct sp;
                     try {
-                        sp = specialProductService.findEntityById(itemReq.specialProductId());
+                        sp = ctx.specialProduct(itemReq.specialProductId());
                     } catch (RuntimeException e) {
                         // Diagnóstico: Verificar si el ID existe como producto regular
                         try {
@@ -210,7 +217,7 @@ public class OrderServiceImpl implements OrdenService {
                         isSRProduct = finalSrTag != null; // Se clasifica como S/R si la etiqueta existe
                         log.info("🏷️ Producto sin registro (sin ID) detectado en creación, se tratará como S/R");
                     } else {
-                        Product product = productService.findEntityById(itemReq.productId());
+                        Product product = ctx.product(itemReq.productId());
                         isSRProduct = finalSrTag != null && product.getTag() != null
                                 && product.getTag().getId().equals(finalSrTag.getId());
                     }
@@ -237,7 +244,7 @@ public class OrderServiceImpl implements OrdenService {
                 boolean isSRBonified = false;
                 if (finalSrTag != null && bItem.productId() != null) {
                     try {
-                        Product bProduct = productService.findEntityById(bItem.productId());
+                        Product bProduct = ctx.product(bItem.productId());
                         isSRBonified = bProduct.getTag() != null
                                 && bProduct.getTag().getId().equals(finalSrTag.getId());
                     } catch (Exception e) {
@@ -268,7 +275,7 @@ public class OrderServiceImpl implements OrdenService {
             if (hasSR && !hasNormalContent && !hasPromo) {
                 noteSuffix = " [S/R]";
             }
-            OrderResponse singleResponse = createSingleOrder(vendedor, client, request, username, noteSuffix);
+            OrderResponse singleResponse = createSingleOrder(vendedor, client, request, username, noteSuffix, ctx);
             return OrderCreationResult.single(singleResponse);
         } else {
             // Caso múltiple: Crear órdenes separadas
@@ -284,8 +291,63 @@ public class OrderServiceImpl implements OrdenService {
                     freightItems,
                     bonifiedNormalItems, // Bonificados normales (van a orden Standard)
                     bonifiedSRItems,     // Bonificados S/R (van a orden S/R)
-                    username);
+                    username,
+                    ctx);
+        }
+    }
+
+    /**
+     * Construye el {@link OrderResolutionContext} con todos los IDs que aparecen
+     * en la solicitud (items, bonificados, flete y promociones).
+     */
+    private OrderResolutionContext loadResolutionContext(OrderRequestDto request) {
+        return loadResolutionContext(request, Set.of());
+    }
+
+    /**
+     * Igual que {@link #loadResolutionContext(OrderRequestDto)}, bloqueando
+     * además el stock de productos que no vienen en la solicitud pero se van a
+     * restaurar (items actuales de una orden en edición).
+     */
+    private OrderResolutionContext loadResolutionContext(OrderRequestDto request,
+            java.util.Collection<UUID> extraProductIds) {
+        Set<UUID> productIds = new java.util.HashSet<>(extraProductIds);
+        Set<UUID> specialProductIds = new java.util.HashSet<>();
+        Set<UUID> promotionIds = new java.util.HashSet<>();
+
+        if (request.items() != null) {
+            for (OrderItemRequestDTO item : request.items()) {
+                if (item.productId() != null) {
+                    productIds.add(item.productId());
+                }
+                if (item.specialProductId() != null) {
+                    specialProductIds.add(item.specialProductId());
+                }
+                if (item.specialPromotionId() != null) {
+                    promotionIds.add(item.specialPromotionId());
+                }
+            }
+        }
+        if (request.bonifiedItems() != null) {
+            request.bonifiedItems().stream()
+                    .map(BonifiedItemRequestDTO::productId)
+                    .filter(java.util.Objects::nonNull)
+                    .forEach(productIds::add);
+        }
+        if (request.promotionIds() != null) {
+            promotionIds.addAll(request.promotionIds());
         }
+
+        return loadResolutionContext(productIds, specialProductIds, promotionIds);
+    }
+
+    private OrderResolutionContext loadResolutionContext(Set<UUID> productIds, Set<UUID> specialProductIds,
+            Set<UUID> promotionIds) {
+        // El contexto toma el stock de las filas bloqueadas: deben incluir los
+        // descuentos diferidos de un contexto anterior en esta transacción
+        productService.flushLockedStock();
+        return OrderResolutionContext.load(productRepository, specialProductRepository, promotionRepository,
+                specialPromotionRepository, productIds, specialProductIds, promotionIds);
     }
 
     /**
@@ -308,7 +370,8 @@ public class OrderServiceImpl implements OrdenService {
             List<OrderItemRequestDTO> freightItems,
             List<BonifiedItemRequestDTO> bonifiedNormalItems,
             List<BonifiedItemRequestDTO> bonifiedSRItems,
-            String username) {
+            String username,
+            OrderResolutionContext ctx) {
 
         List<OrderResponse> allCreatedOrders = new java.util.ArrayList<>();
         boolean hasSRSplit = false;
@@ -349,14 +412,14 @@ public class OrderServiceImpl implements OrdenService {
             // Procesar items de flete si existen y se aplicó flete a esta orden
             if (Boolean.TRUE.equals(standardOrder.getIncludeFreight()) && freightItems != null
                     && !freightItems.isEmpty()) {
-                processFreightItems(standardOrder, freightItems);
+                processFreightItems(standardOrder, freightItems, ctx);
             }
 
-            processOrderItems(standardOrder, normalItems);
+            processOrderItems(standardOrder, normalItems, ctx);
 
             // Procesar bonificados normales (no S/R) en esta orden
             if (bonifiedNormalItems != null && !bonifiedNormalItems.isEmpty()) {
-                processBonifiedItems(standardOrder, bonifiedNormalItems);
+                processBonifiedItems(standardOrder, bonifiedNormalItems, ctx);
             }
 
             Order saved = ordenRepository.save(standardOrder);
@@ -385,12 +448,12 @@ public class OrderServiceImpl implements OrdenService {
 
             // Procesar items S/R (también pueden dividirse en con/sin stock)
             if (!srItems.isEmpty()) {
-                processOrderItems(srOrder, srItems);
+                processOrderItems(srOrder, srItems, ctx);
             }
 
             // Procesar bonificados S/R (precio $0)
             if (bonifiedSRItems != null && !bonifiedSRItems.isEmpty()) {
-                processBonifiedItems(srOrder, bonifiedSRItems);
+                processBonifiedItems(srOrder, bonifiedSRItems, ctx);
             }
 
             if (!srOrder.getItems().isEmpty()) {
@@ -430,7 +493,7 @@ public class OrderServiceImpl implements OrdenService {
                     if (freightQuantity != null) promoOrder.setFreightQuantity(freightQuantity);
                     // Procesar items de flete (descuenta stock del producto de flete)
                     if (freightItems != null && !freightItems.isEmpty()) {
-                        processFreightItems(promoOrder, freightItems);
+                        processFreightItems(promoOrder, freightItems, ctx);
                     }
                     includeFreight = false; // ya aplicado, no aplicar en órdenes siguientes
                     log.info("Flete aplicado a orden de promoción: {}", promoOrder.getId());
@@ -440,7 +503,7 @@ public class OrderServiceImpl implements OrdenService {
             // Agregar items que pertenecen específicamente a la promo
             // NOTA: processOrderItems y processPromotions no son afectados por el flete
             if (!promoItems.isEmpty()) {
-                processOrderItems(promoOrder, promoItems);
+                processOrderItems(promoOrder, promoItems, ctx);
             }
 
             // Validar que la cantidad de items en ESTA orden cumpla con la promo
@@ -448,7 +511,7 @@ public class OrderServiceImpl implements OrdenService {
             int promoItemsCount = promoItems.stream().mapToInt(OrderItemRequestDTO::cantidad).sum();
 
             if (!promotionIds.isEmpty()) {
-                processPromotions(promoOrder, promotionIds, promoItemsCount);
+                processPromotions(promoOrder, promotionIds, promoItemsCount, ctx);
             }
 
             // Solo guardar si tiene items (evita crear órdenes vacías de promoción)
@@ -547,7 +610,7 @@ public class OrderServiceImpl implements OrdenService {
      * Crear una sola orden (sin split o solo S/R)
      */
     private OrderResponse createSingleOrder(User vendedor, Client client, OrderRequestDto request, String username,
-            String noteSuffix) {
+            String noteSuffix, OrderResolutionContext ctx) {
         Order order = new Order(vendedor, client);
 
         String finalNotes = request.notas() != null ? request.notas() : "";
@@ -584,7 +647,7 @@ public class OrderServiceImpl implements OrdenService {
                         .toList();
             }
             if (!freightItemsToProcess.isEmpty()) {
-                processFreightItems(order, freightItemsToProcess);
+                processFreightItems(order, freightItemsToProcess, ctx);
             }
         }
 
@@ -595,7 +658,7 @@ public class OrderServiceImpl implements OrdenService {
                     .toList();
 
             if (!itemsToProcess.isEmpty()) {
-                processOrderItems(order, itemsToProcess);
+                processOrderItems(order, itemsToProcess, ctx);
             }
         }
 
@@ -606,12 +669,12 @@ public class OrderServiceImpl implements OrdenService {
                     .filter(i -> !Boolean.TRUE.equals(i.getIsPromotionItem()))
                     .mapToInt(OrderItem::getCantidad)
                     .sum();
-            processPromotions(order, request.promotionIds(), totalNormalItemsCount);
+            processPromotions(order, request.promotionIds(), totalNormalItemsCount, ctx);
         }
 
         // Procesar productos bonificados si existen
         if (request.bonifiedItems() != null && !request.bonifiedItems().isEmpty()) {
-            processBonifiedItems(order, request.bonifiedItems());
+            processBonifiedItems(order, request.bonifiedItems(), ctx);
         }
 
         Order savedOrder = ordenRepository.save(order);
@@ -634,7 +697,7 @@ public class OrderServiceImpl implements OrdenService {
     /**
      * Procesar items de una orden (decrementar stock, etc)
      */
-    private void processOrderItems(Order order, List<OrderItemRequestDTO> items) {
+    private void processOrderItems(Order order, List<OrderItemRequestDTO> items, OrderResolutionContext ctx) {
         items.forEach(itemReq -> {
             // ✅ IMPORTANTE: NO procesar items de flete
             if (Boolean.TRUE.equals(itemReq.isFreightItem())) {
@@ -647,12 +710,12 @@ public class OrderServiceImpl implements OrdenService {
             SpecialProduct specialProduct = null;
 
             if (isSpecial) {
-                specialProduct = specialProductService.findEntityById(itemReq.specialProductId());
+                specialProduct = ctx.specialProduct(itemReq.specialProductId());
             }
 
             Product product = null;
             if (itemReq.productId() != null) {
-                product = productService.findEntityById(itemReq.productId());
+                product = ctx.product(itemReq.productId());
             } else if (specialProduct != null && specialProduct.getParentProduct() != null) {
                 product = specialProduct.getParentProduct();
             } else {
@@ -703,10 +766,8 @@ public class OrderServiceImpl implements OrdenService {
                 item.setPrecioUnitario(effectivePrice);
                 item.setSubTotal(effectivePrice.multiply(BigDecimal.valueOf(requestedQuantity)));
                 item.setSpecialProduct(specialProduct);
-                specialProduct.decreaseStock(requestedQuantity);
-            } else {
-                product.decreaseStock(requestedQuantity);
             }
+            decreaseItemStock(product, specialProduct, requestedQuantity, ctx);
 
             // Marcamos flags
             if (hasStock) {
@@ -752,9 +813,9 @@ public class OrderServiceImpl implements OrdenService {
      * Procesar items de flete (productos enviados como flete personalizado)
      * ✅ Los items de flete siempre tienen precio 0 y permiten stock negativo
      */
-    private void processFreightItems(Order order, List<OrderItemRequestDTO> items) {
+    private void processFreightItems(Order order, List<OrderItemRequestDTO> items, OrderResolutionContext ctx) {
         items.forEach(itemReq -> {
-            Product product = productService.findEntityById(itemReq.productId());
+            Product product = ctx.product(itemReq.productId());
             int requestedQuantity = itemReq.cantidad();
 
             // Crear item de flete
@@ -771,7 +832,7 @@ public class OrderServiceImpl implements OrdenService {
 
             // Descontar stock (permite negativo)
             Integer stockAnterior = product.getStock();
-            product.decreaseStock(requestedQuantity);
+            decreaseStock(product, requestedQuantity, ctx);
 
             try {
                 if (product.getStock() != null) {
@@ -803,7 +864,8 @@ public class OrderServiceImpl implements OrdenService {
      * @param contextTotalNormalItems Cantidad total de items normales en la
      *                                transacción (para validar surtidos globales)
      */
-    private void processPromotions(Order order, List<UUID> promotionIds, int contextTotalNormalItems) {
+    private void processPromotions(Order order, List<UUID> promotionIds, int contextTotalNormalItems,
+            OrderResolutionContext ctx) {
         log.info("Procesando promociones. IDs recibidos del request: {}", promotionIds);
 
         // Contar instancias de cada promoción para asignar índices
@@ -820,7 +882,7 @@ public class OrderServiceImpl implements OrdenService {
             boolean isSpecial = false;
 
             // ✅ Buscar primero en SpecialPromotion usando Optional (no lanza excepción)
-            java.util.Optional<SpecialPromotion> specialPromotionOpt = specialPromotionRepository.findById(id);
+            java.util.Optional<SpecialPromotion> specialPromotionOpt = ctx.findSpecialPromotion(id);
 
             if (specialPromotionOpt.isPresent()) {
                 specialPromotion = specialPromotionOpt.get();
@@ -858,7 +920,7 @@ public class OrderServiceImpl implements OrdenService {
 
             } else {
                 // ES UNA PROMOCIÓN NORMAL
-                promotion = promotionService.findEntityById(id);
+                promotion = ctx.promotion(id);
             }
 
             // Validaciones comunes de la promoción (Padre o Normal)
@@ -936,7 +998,7 @@ public class OrderServiceImpl implements OrdenService {
                     Integer stockAnterior = mainProduct.getStock();
 
                     // ✅ Descontar stock del mainProduct
-                    mainProduct.decreaseStock(promotion.getBuyQuantity());
+                    decreaseStock(mainProduct, promotion.getBuyQuantity(), ctx);
 
                     try {
                         if (mainProduct.getStock() != null) {
@@ -988,7 +1050,7 @@ public class OrderServiceImpl implements OrdenService {
                         Integer stockAnterior = freeProduct.getStock();
 
                         // ✅ DESCUENTO DE STOCK: Permitir stock negativo (sin restricción)
-                        freeProduct.decreaseStock(qty);
+                        decreaseStock(freeProduct, qty, ctx);
 
                         try {
                             if (freeProduct.getStock() != null) {
@@ -1040,7 +1102,7 @@ public class OrderServiceImpl implements OrdenService {
                     Integer stockAnterior = mainProduct.getStock();
 
                     // ✅ DESCUENTO DE STOCK: Permitir stock negativo
-                    mainProduct.decreaseStock(promotion.getBuyQuantity());
+                    decreaseStock(mainProduct, promotion.getBuyQuantity(), ctx);
 
                     try {
                         if (mainProduct.getStock() != null) {
@@ -1091,7 +1153,7 @@ public class OrderServiceImpl implements OrdenService {
                         Integer stockAnterior = freeProduct.getStock();
 
                         // ✅ DESCUENTO DE STOCK: Permitir stock negativo
-                        freeProduct.decreaseStock(qty);
+                        decreaseStock(freeProduct, qty, ctx);
 
                         try {
                             if (freeProduct.getStock() != null) {
@@ -1140,15 +1202,9 @@ public class OrderServiceImpl implements OrdenService {
 
     @Override
     public Page<OrderResponse> findAllPaginated(int page, int size, String status, String search, String vendedor, String cliente, String sortBy, String sortOrder) {
-        List<OrdenStatus> inStatuses = null;
+        List<OrdenStatus> inStatuses = statusGroup(status);
         String exactStatus = status;
 
-        if ("pending".equalsIgnoreCase(status)) {
-            inStatuses = List.of(OrdenStatus.PENDIENTE, OrdenStatus.CONFIRMADO, OrdenStatus.PENDING_PROMOTION_COMPLETION);
-        } else if ("cancelled".equalsIgnoreCase(status)) {
-            inStatuses = List.of(OrdenStatus.ANULADA, OrdenStatus.CANCELADO);
-        }
-
         boolean isDesc = sortOrder == null || "desc".equalsIgnoreCase(sortOrder);
 
         // Usamos PageRequest sin Sort porque el ordenamiento se aplica dentro del Specification
@@ -1159,7 +1215,87 @@ public class OrderServiceImpl implements OrdenService {
         );
 
         Page<Order> ordersPage = ordenRepository.findAll(spec, pageRequest);
-        return ordersPage.map(orderMapper::toResponse);
+        return toResponsePage(ordersPage);
+    }
+
+    /**
+     * Listado por cursor (keyset) en orden COALESCE(completed_at, fecha) DESC,
+     * id DESC: cada página continúa después de la última orden entregada, así
+     * una página profunda cuesta lo mismo que la primera y no hay COUNT por
+     * página (el total solo se calcula si se pide, en la primera).
+     */
+    @Override
+    public org.example.sistema_gestion_vitalexa.dto.CursorPage<OrderResponse> findAllByCursor(
+            String cursor, int size, String status, String search, String vendedor, String cliente, boolean withTotal) {
+        org.example.sistema_gestion_vitalexa.util.KeysetCursor.Position after =
+                org.example.sistema_gestion_vitalexa.util.KeysetCursor.decode(cursor);
+        org.springframework.data.jpa.domain.Specification<Order> spec = createOrderSpecification(
+            status, statusGroup(status), search, vendedor, cliente, null, null, "fecha", true
+        );
+
+        org.springframework.data.jpa.domain.Specification<Order> keyset = (root, query, cb) -> {
+            jakarta.persistence.criteria.Predicate filters = spec.toPredicate(root, query, cb);
+            jakarta.persistence.criteria.Expression<java.time.LocalDateTime> effectiveDate =
+                    cb.coalesce(root.get("completedAt"), root.get("fecha"));
+            // El id desempata órdenes con la misma fecha: sin él el cursor podría saltarlas
+            query.orderBy(cb.desc(effectiveDate), cb.desc(root.get("id")));
+            return after != null
+                    ? cb.and(filters, org.example.sistema_gestion_vitalexa.util.KeysetCursor.after(
+                            cb, effectiveDate, root.get("id"), after))
+                    : filters;
+        };
+
+        // Una fila de más indica si hay página siguiente
+        List<Order> rows = ordenRepository.findBy(keyset, q -> q.limit(size + 1).all());
+        boolean hasNext = rows.size() > size;
+        List<Order> content = hasNext ? rows.subList(0, size) : rows;
+
+        String nextCursor = null;
+        if (hasNext) {
+            Order last = content.get(content.size() - 1);
+            nextCursor = org.example.sistema_gestion_vitalexa.util.KeysetCursor.encode(
+                    last.getCompletedAt() != null ? last.getCompletedAt() : last.getFecha(), last.getId());
+        }
+        Long total = withTotal && after == null ? ordenRepository.count(spec) : null;
+
+        return new org.example.sistema_gestion_vitalexa.dto.CursorPage<>(toResponses(content), nextCursor, hasNext, total);
+    }
+
+    /**
+     * Grupos de estados del filtro "status": pending y cancelled agrupan
+     * varios estados; el resto se resuelve en el Specification.
+     */
+    private List<OrdenStatus> statusGroup(String status) {
+        if ("pending".equalsIgnoreCase(status)) {
+            return List.of(OrdenStatus.PENDIENTE, OrdenStatus.CONFIRMADO, OrdenStatus.PENDING_PROMOTION_COMPLETION);
+        } else if ("cancelled".equalsIgnoreCase(status)) {
+            return List.of(OrdenStatus.ANULADA, OrdenStatus.CANCELADO);
+        }
+        return null;
+    }
+
+    /**
+     * Mapea una página de órdenes en dos fases: la página (ya filtrada y ordenada
+     * por el Specification) solo trae las filas de orders; luego se cargan en
+     * lote, con una sola consulta, las asociaciones que usa OrderMapper. La
+     * cantidad de consultas queda fija sin importar el tamaño de la página.
+     */
+    private Page<OrderResponse> toResponsePage(Page<Order> ordersPage) {
+        return new org.springframework.data.domain.PageImpl<>(
+                toResponses(ordersPage.getContent()), ordersPage.getPageable(), ordersPage.getTotalElements());
+    }
+
+    private List<OrderResponse> toResponses(List<Order> orders) {
+        if (orders.isEmpty()) {
+            return List.of();
+        }
+        List<UUID> ids = orders.stream().map(Order::getId).toList();
+        java.util.Map<UUID, Order> loaded = ordenRepository.findAllForResponseByIdIn(ids).stream()
+                .collect(java.util.stream.Collectors.toMap(Order::getId, o -> o));
+        // Conservar el orden de la página
+        return orders.stream()
+                .map(o -> orderMapper.toResponse(loaded.getOrDefault(o.getId(), o)))
+                .toList();
     }
 
     private org.springframework.data.jpa.domain.Specification<Order> createOrderSpecification(
@@ -1188,12 +1324,6 @@ public class OrderServiceImpl implements OrdenService {
         return (root, query, cb) -> {
             java.util.List<jakarta.persistence.criteria.Predicate> predicates = new java.util.ArrayList<>();
 
-            // distinct se activa solo cuando hay un join con items (búsqueda de texto)
-            // para evitar duplicados. Sin ese join, distinct no es necesario y
-            // causaría problemas con PostgreSQL al hacer ORDER BY sobre expresiones
-            // no incluidas en el SELECT (ej: COALESCE).
-            boolean needsDistinct = false;
-
             if (exactStatus != null && !exactStatus.isEmpty() && !"all".equalsIgnoreCase(exactStatus)) {
                 if ("COMPLETADO".equalsIgnoreCase(exactStatus) || "completed".equalsIgnoreCase(exactStatus) || "historical".equalsIgnoreCase(exactStatus)) {
                     predicates.add(cb.equal(root.get("estado"), OrdenStatus.COMPLETADO));
@@ -1230,15 +1360,6 @@ public class OrderServiceImpl implements OrdenService {
 
             if (search != null && !search.isBlank()) {
                 String searchLike = "%" + search.trim().toLowerCase() + "%";
-                if (cJoin == null) cJoin = root.join("cliente", jakarta.persistence.criteria.JoinType.LEFT);
-                if (vJoin == null) vJoin = root.join("vendedor", jakarta.persistence.criteria.JoinType.LEFT);
-
-                // Join items y product para buscar por nombre de producto
-                // Este join produce duplicados, por eso activamos distinct
-                jakarta.persistence.criteria.Join<Object, Object> itemsJoin = root.join("items", jakarta.persistence.criteria.JoinType.LEFT);
-                jakarta.persistence.criteria.Join<Object, Object> productJoin = itemsJoin.join("product", jakarta.persistence.criteria.JoinType.LEFT);
-                needsDistinct = true;
-
                 java.util.List<jakarta.persistence.criteria.Predicate> orPredicates = new java.util.ArrayList<>();
 
                 // Safe invoice number search (exact match if numeric)
@@ -1249,40 +1370,29 @@ public class OrderServiceImpl implements OrdenService {
                     // Not a number, skip invoice search
                 }
                 
-                // UUID search support
-                orPredicates.add(cb.like(root.get("id").as(String.class), searchLike));
-
-                orPredicates.add(cb.like(cb.lower(cJoin.get("nombre")), searchLike));
-                orPredicates.add(cb.like(cb.lower(cJoin.get("representanteLegal")), searchLike));
-                orPredicates.add(cb.like(cb.lower(cJoin.get("telefono")), searchLike));
-                orPredicates.add(cb.like(cb.lower(cJoin.get("direccion")), searchLike));
-                orPredicates.add(cb.like(cb.lower(cJoin.get("nit")), searchLike));
-                orPredicates.add(cb.like(cb.lower(vJoin.get("username")), searchLike));
-                orPredicates.add(cb.like(cb.lower(productJoin.get("nombre")), searchLike));
+                // Id, cliente (nombre, representante, teléfono, dirección, NIT), vendedor y
+                // productos: un solo LIKE sobre order_search_documents (índice trigram).
+                // Al ser subconsulta de ids no hay joins a items ni DISTINCT.
+                jakarta.persistence.criteria.Subquery<UUID> matching = query.subquery(UUID.class);
+                jakarta.persistence.criteria.Root<OrderSearchDocument> doc = matching.from(OrderSearchDocument.class);
+                matching.select(doc.get("orderId"))
+                        .where(cb.like(doc.get("document"), searchLike));
+                orPredicates.add(root.get("id").in(matching));
 
                 predicates.add(cb.or(orPredicates.toArray(new jakarta.persistence.criteria.Predicate[0])));
             }
 
-            // Activar DISTINCT solo cuando hay join con items (evita conflicto con ORDER BY en PostgreSQL)
-            query.distinct(needsDistinct);
-
             // ── ORDENAMIENTO SEGURO CON NULLS LAST ──────────────────────────────────
             // Solo aplicar ORDER BY en consultas que NO sean COUNT (las de conteo no usan order)
             if (!query.getResultType().equals(Long.class) && !query.getResultType().equals(long.class)) {
 
                 if ("invoiceNumber".equalsIgnoreCase(sortBy)) {
                     // NULLS LAST: órdenes sin número de factura van al final
-                    // ⚠️ Con DISTINCT activo (búsqueda), PostgreSQL NO permite CASE WHEN en ORDER BY
-                    // si la expresión no está en el SELECT. Usamos solo el campo directo.
                     jakarta.persistence.criteria.Expression<Long> invNum = root.get("invoiceNumber");
-                    if (needsDistinct) {
-                        query.orderBy(isDesc ? cb.desc(invNum) : cb.asc(invNum));
-                    } else {
-                        query.orderBy(
-                            cb.asc(cb.selectCase().when(cb.isNull(invNum), 1).otherwise(0)),
-                            isDesc ? cb.desc(invNum) : cb.asc(invNum)
-                        );
-                    }
+                    query.orderBy(
+                        cb.asc(cb.selectCase().when(cb.isNull(invNum), 1).otherwise(0)),
+                        isDesc ? cb.desc(invNum) : cb.asc(invNum)
+                    );
                 } else if ("total".equalsIgnoreCase(sortBy)) {
                     jakarta.persistence.criteria.Expression<java.math.BigDecimal> total = root.get("total");
                     query.orderBy(isDesc ? cb.desc(total) : cb.asc(total));
@@ -1294,37 +1404,17 @@ public class OrderServiceImpl implements OrdenService {
                         sortClienteJoin = root.join("cliente", jakarta.persistence.criteria.JoinType.LEFT);
                     }
                     jakarta.persistence.criteria.Expression<String> clienteNombreExpr = sortClienteJoin.get("nombre");
-                    if (needsDistinct) {
-                        query.orderBy(isDesc ? cb.desc(clienteNombreExpr) : cb.asc(clienteNombreExpr));
-                    } else {
-                        query.orderBy(
-                            cb.asc(cb.selectCase().when(cb.isNull(clienteNombreExpr), 1).otherwise(0)),
-                            isDesc ? cb.desc(clienteNombreExpr) : cb.asc(clienteNombreExpr)
-                        );
-                    }
+                    query.orderBy(
+                        cb.asc(cb.selectCase().when(cb.isNull(clienteNombreExpr), 1).otherwise(0)),
+                        isDesc ? cb.desc(clienteNombreExpr) : cb.asc(clienteNombreExpr)
+                    );
                 } else {
-                    // DEFAULT: "fecha"
-                    // PostgreSQL con DISTINCT no acepta expresiones computadas (COALESCE, CASE) en ORDER BY
-                    // si no están en el SELECT. Cuando hay búsqueda (needsDistinct=true), ordenamos
-                    // únicamente por campos directos del entity.
+                    // DEFAULT: "fecha" — COALESCE devuelve siempre la mejor fecha
                     jakarta.persistence.criteria.Expression<java.time.LocalDateTime> completedAt = root.get("completedAt");
                     jakarta.persistence.criteria.Expression<java.time.LocalDateTime> fecha = root.get("fecha");
-
-                    if (needsDistinct) {
-                        // Con DISTINCT: solo campos directos del entity — seguros con PostgreSQL.
-                        // completedAt como primario (null = sin completar, va después de completadas)
-                        // fecha como secundario de respaldo.
-                        query.orderBy(
-                            isDesc ? cb.desc(completedAt) : cb.asc(completedAt),
-                            isDesc ? cb.desc(fecha) : cb.asc(fecha)
-                        );
-                    } else {
-                        // Sin DISTINCT: COALESCE funciona bien para devolver siempre la mejor fecha
-                        @SuppressWarnings("unchecked")
-                        jakarta.persistence.criteria.Expression<java.time.LocalDateTime> effectiveDate =
-                                cb.function("COALESCE", java.time.LocalDateTime.class, completedAt, fecha);
-                        query.orderBy(isDesc ? cb.desc(effectiveDate) : cb.asc(effectiveDate));
-                    }
+                    jakarta.persistence.criteria.Expression<java.time.LocalDateTime> effectiveDate =
+                            cb.function("COALESCE", java.time.LocalDateTime.class, completedAt, fecha);
+                    query.orderBy(isDesc ? cb.desc(effectiveDate) : cb.asc(effectiveDate));
                 }
             }
 
@@ -1355,8 +1445,7 @@ public class OrderServiceImpl implements OrdenService {
         if (nuevoEstado == OrdenStatus.COMPLETADO && oldStatus != OrdenStatus.COMPLETADO) {
 
             if (order.getInvoiceNumber() == null) {
-                Long nextInvoice = ordenRepository.nextInvoiceNumber();
-                order.setInvoiceNumber(nextInvoice);
+                order.setInvoiceNumber(invoiceNumberAllocator.next());
             }
 
             order.setEstado(OrdenStatus.COMPLETADO);
@@ -1404,6 +1493,11 @@ public class OrderServiceImpl implements OrdenService {
         // Guardar cambios
         Order updated = ordenRepository.save(order);
 
+        // Entrar o salir de COMPLETADO cambia la cartera del cliente
+        if (oldStatus == OrdenStatus.COMPLETADO || nuevoEstado == OrdenStatus.COMPLETADO) {
+            refreshClientBalance(order.getCliente());
+        }
+
         // Notificar cambio de inventario/estado (una sola vez)
         notificationService.sendInventoryUpdate(order.getId().toString(), "ORDER_STATUS_CHANGED");
 
@@ -1427,9 +1521,133 @@ public class OrderServiceImpl implements OrdenService {
                 orderId, username, rawDate, request != null ? request.auditNote() : null);
 
         boolean isCustomDate = rawDate != null && !rawDate.isBlank();
+        java.time.LocalDateTime completedAt = parseCompletedAt(rawDate);
+
+        // ── Número de factura ────────────────────────────────────────────────────
+        if (order.getInvoiceNumber() == null) {
+            order.setInvoiceNumber(invoiceNumberAllocator.next());
+        }
+
+        order.setEstado(OrdenStatus.COMPLETADO);
+        order.setCompletedAt(completedAt);
+
+        // ── Auditoría en notas ───────────────────────────────────────────────────
+        appendCompletionAudit(order, completedAt, isCustomDate, username,
+                request != null ? request.auditNote() : null);
+
+        // ── Meta de venta ────────────────────────────────────────────────────────
+        LocalDate fechaMeta = completedAt.toLocalDate();
+        BigDecimal montoMeta = order.getDiscountedTotal() != null
+                ? order.getDiscountedTotal()
+                : order.getTotal();
+        saleGoalService.updateGoalProgress(
+                order.getVendedor().getId(),
+                montoMeta,
+                fechaMeta.getMonthValue(),
+                fechaMeta.getYear());
+
+        // ── Notificaciones ───────────────────────────────────────────────────────
+        notificationService.sendOrderCompletedNotification(order.getId().toString());
+        Order updated = ordenRepository.save(order);
+        refreshClientBalance(order.getCliente());
+        notificationService.sendInventoryUpdate(order.getId().toString(), "ORDER_STATUS_CHANGED");
+
+        log.info("Orden {} completada con fecha={} (manual={}) por {}",
+                order.getId(), completedAt.toLocalDate(), isCustomDate, username);
+
+        return orderMapper.toResponse(updated);
+    }
+
+    @Override
+    public org.example.sistema_gestion_vitalexa.dto.BulkCompleteOrdersResult completeOrdersBulk(
+            org.example.sistema_gestion_vitalexa.dto.BulkCompleteOrdersRequest request, String username) {
+        if (request == null || request.orderIds() == null || request.orderIds().isEmpty()) {
+            throw new BusinessExeption("Debe seleccionar al menos una orden");
+        }
+
+        // Misma fecha y nota para todo el cierre (se valida antes de bloquear nada)
+        String rawDate = request.completedAt();
+        boolean isCustomDate = rawDate != null && !rawDate.isBlank();
+        java.time.LocalDateTime completedAt = parseCompletedAt(rawDate);
+
+        // 1. Bloquear las órdenes seleccionadas en una sola consulta
+        List<UUID> orderIds = request.orderIds().stream().distinct().toList();
+        java.util.Map<UUID, Order> lockedById = ordenRepository.findAllByIdInForUpdate(orderIds).stream()
+                .collect(java.util.stream.Collectors.toMap(Order::getId, o -> o));
+
+        java.util.Map<UUID, String> failures = new java.util.LinkedHashMap<>();
+        List<Order> toComplete = new java.util.ArrayList<>();
+        for (UUID orderId : orderIds) {
+            Order order = lockedById.get(orderId);
+            if (order == null) {
+                failures.put(orderId, "Orden no encontrada");
+            } else if (order.getEstado() == OrdenStatus.COMPLETADO) {
+                failures.put(orderId, "La orden ya está completada");
+            } else {
+                toComplete.add(order);
+            }
+        }
+
+        // 2. Facturas consecutivas, en el orden en que llegaron los ids
+        if (!toComplete.isEmpty()) {
+            invoiceNumberAllocator.assignTo(toComplete);
+        }
+
+        // 3. Completar y acumular la meta por vendedor/mes
+        java.util.Map<GoalMonthKey, BigDecimal> goalDeltas = new java.util.LinkedHashMap<>();
+        LocalDate fechaMeta = completedAt.toLocalDate();
+        for (Order order : toComplete) {
+            order.setEstado(OrdenStatus.COMPLETADO);
+            order.setCompletedAt(completedAt);
+            appendCompletionAudit(order, completedAt, isCustomDate, username, request.auditNote());
+
+            BigDecimal montoMeta = order.getDiscountedTotal() != null
+                    ? order.getDiscountedTotal()
+                    : order.getTotal();
+            goalDeltas.merge(
+                    new GoalMonthKey(order.getVendedor().getId(), fechaMeta.getMonthValue(), fechaMeta.getYear()),
+                    montoMeta,
+                    BigDecimal::add);
+        }
+
+        ordenRepository.saveAll(toComplete);
+        toComplete.forEach(order -> refreshClientBalance(order.getCliente()));
+
+        // 4. Una actualización de meta por vendedor/mes
+        goalDeltas.forEach((key, amount) -> saleGoalService.updateGoalProgress(
+                key.vendedorId(), amount, key.month(), key.year()));
+
+        // 5. Un solo aviso para todo el cierre
+        if (!toComplete.isEmpty()) {
+            List<String> completedIds = toComplete.stream().map(o -> o.getId().toString()).toList();
+            notificationService.sendOrdersCompletedNotification(completedIds);
+            completedIds.forEach(id -> notificationService.sendInventoryUpdate(id, "ORDER_STATUS_CHANGED"));
+        }
+
+        // 6. Resultado por orden, en el orden del request
+        List<org.example.sistema_gestion_vitalexa.dto.BulkCompleteOrdersResult.OrderResult> results = orderIds.stream()
+                .map(orderId -> failures.containsKey(orderId)
+                        ? new org.example.sistema_gestion_vitalexa.dto.BulkCompleteOrdersResult.OrderResult(
+                                orderId, false, null, failures.get(orderId))
+                        : new org.example.sistema_gestion_vitalexa.dto.BulkCompleteOrdersResult.OrderResult(
+                                orderId, true, lockedById.get(orderId).getInvoiceNumber(), null))
+                .toList();
+
+        log.info("Cierre por {}: {} orden(es) completadas, {} rechazadas, fecha={} (manual={})",
+                username, toComplete.size(), failures.size(), fechaMeta, isCustomDate);
+
+        return new org.example.sistema_gestion_vitalexa.dto.BulkCompleteOrdersResult(
+                toComplete.size(), failures.size(), results);
+    }
+
+    /**
+     * Fecha de completado enviada por el frontend ("yyyy-MM-dd" o
+     * "yyyy-MM-dd'T'HH:mm:ss"); null o vacío = ahora.
+     */
+    private java.time.LocalDateTime parseCompletedAt(String rawDate) {
         java.time.LocalDateTime completedAt;
 
-        if (isCustomDate) {
+        if (rawDate != null && !rawDate.isBlank()) {
             try {
                 // Intentar primero formato date-only: "2026-01-15"
                 if (rawDate.length() <= 10) {
@@ -1451,17 +1669,11 @@ public class OrderServiceImpl implements OrdenService {
             completedAt = java.time.LocalDateTime.now();
             log.info("completeOrder - usando fecha actual: {}", completedAt);
         }
+        return completedAt;
+    }
 
-        // ── Número de factura ────────────────────────────────────────────────────
-        if (order.getInvoiceNumber() == null) {
-            Long nextInvoice = ordenRepository.nextInvoiceNumber();
-            order.setInvoiceNumber(nextInvoice);
-        }
-
-        order.setEstado(OrdenStatus.COMPLETADO);
-        order.setCompletedAt(completedAt);
-
-        // ── Auditoría en notas ───────────────────────────────────────────────────
+    private void appendCompletionAudit(Order order, java.time.LocalDateTime completedAt, boolean isCustomDate,
+            String username, String auditNote) {
         java.time.format.DateTimeFormatter fmtFull = java.time.format.DateTimeFormatter.ofPattern("dd/MM/yyyy HH:mm");
         java.time.format.DateTimeFormatter fmtDate = java.time.format.DateTimeFormatter.ofPattern("dd/MM/yyyy");
         String fechaReal = java.time.LocalDateTime.now().format(fmtFull);
@@ -1473,33 +1685,15 @@ public class OrderServiceImpl implements OrdenService {
                 : String.format("[COMPLETADO el %s por %s]",
                         fechaReal, username);
 
-        if (request != null && request.auditNote() != null && !request.auditNote().isBlank()) {
-            auditMsg += " " + request.auditNote().trim();
+        if (auditNote != null && !auditNote.isBlank()) {
+            auditMsg += " " + auditNote.trim();
         }
 
         String existingNotes = order.getNotas() != null ? order.getNotas() + "\n" : "";
         order.setNotas(existingNotes + auditMsg);
+    }
 
-        // ── Meta de venta ────────────────────────────────────────────────────────
-        LocalDate fechaMeta = completedAt.toLocalDate();
-        BigDecimal montoMeta = order.getDiscountedTotal() != null
-                ? order.getDiscountedTotal()
-                : order.getTotal();
-        saleGoalService.updateGoalProgress(
-                order.getVendedor().getId(),
-                montoMeta,
-                fechaMeta.getMonthValue(),
-                fechaMeta.getYear());
-
-        // ── Notificaciones ───────────────────────────────────────────────────────
-        notificationService.sendOrderCompletedNotification(order.getId().toString());
-        Order updated = ordenRepository.save(order);
-        notificationService.sendInventoryUpdate(order.getId().toString(), "ORDER_STATUS_CHANGED");
-
-        log.info("Orden {} completada con fecha={} (manual={}) por {}",
-                order.getId(), fechaCompletado, isCustomDate, username);
-
-        return orderMapper.toResponse(updated);
+    private record GoalMonthKey(UUID vendedorId, int month, int year) {
     }
 
     // =========================
@@ -1512,9 +1706,9 @@ public class OrderServiceImpl implements OrdenService {
                 .orElseThrow(() -> new BusinessExeption("Usuario no encontrado"));
 
         // Check if this is a shared user (NinaTorres/YicelaSandoval)
-        if (UserUnificationUtil.isSharedUser(username)) {
+        if (userGroupResolver.isGrouped(username)) {
             // Get orders for both shared usernames
-            List<String> sharedUsernames = UserUnificationUtil.getSharedUsernames(username);
+            List<String> sharedUsernames = userGroupResolver.usernamesOf(username);
             return ordenRepository.findByVendedorUsernameIn(sharedUsernames)
                     .stream()
                     .map(orderMapper::toResponse)
@@ -1549,8 +1743,8 @@ public class OrderServiceImpl implements OrdenService {
         List<String> sharedUsernames = null;
         User exactVendedorObj = null;
 
-        if (UserUnificationUtil.isSharedUser(username)) {
-            sharedUsernames = UserUnificationUtil.getSharedUsernames(username);
+        if (userGroupResolver.isGrouped(username)) {
+            sharedUsernames = userGroupResolver.usernamesOf(username);
         } else {
             exactVendedorObj = vendedor;
         }
@@ -1570,7 +1764,7 @@ public class OrderServiceImpl implements OrdenService {
 
         Page<Order> ordersPage = ordenRepository.findAll(spec, pageRequest);
 
-        return ordersPage.map(orderMapper::toResponse);
+        return toResponsePage(ordersPage);
     }
 
     @Override
@@ -1604,6 +1798,10 @@ public class OrderServiceImpl implements OrdenService {
                     "La orden debe tener al menos un producto, una promoción o productos bonificados");
         }
 
+        // Precargar en lote todos los productos/promociones referenciados por la
+        // solicitud, bloqueando también el stock de los items actuales (se restauran)
+        OrderResolutionContext ctx = loadResolutionContext(request, stockIdsToRestore(order.getItems()));
+
         // CAPTURAR IDs DE PROMOCIONES ACTUALES **ANTES** DE LIMPIAR ITEMS
         // Esto es CRÍTICO para comparar correctamente si las promociones cambiaron
         // ✅ CORRECCIÓN: Usar List y agrupar por InstanceId para soportar múltiples
@@ -1685,7 +1883,7 @@ public class OrderServiceImpl implements OrdenService {
             }
 
             if (stockToRestore > 0) {
-                increaseStockAndLog(product, stockToRestore, "Edición Orden: Restauración", order.getVendedor() != null ? order.getVendedor().getUsername() : "System");
+                increaseStockAndLog(product, stockToRestore, "Edición Orden: Restauración", order.getVendedor() != null ? order.getVendedor().getUsername() : "System", ctx);
 
                 if (Boolean.TRUE.equals(item.getIsBonified())) {
                     log.info("✅ Stock restaurado (BONIFICADO) en edición para '{}': +{}", product.getNombre(),
@@ -1718,18 +1916,16 @@ public class OrderServiceImpl implements OrdenService {
         order.clearItems();
 
         // ✅ ACTUALIZADO: Re-agregar items de promoción preservando precios y IDs únicos
+        // (los promocionPackPrice y promotionInstanceId ya están guardados en el item)
+        order.addItems(promotionItems);
         for (OrderItem promoItem : promotionItems) {
-            // Los promocionPackPrice y promotionInstanceId ya están guardados en el item
-            order.addItem(promoItem);
             log.info("✅ Item de promoción re-agregado - Instancia: {} - Precio: ${}",
                     promoItem.getPromotionInstanceId(), promoItem.getPromotionPackPrice());
         }
 
         // Re-agregar items de flete para preservar configuración (solo si NO hay
         // nuevos)
-        for (OrderItem freightItem : freightItems) {
-            order.addItem(freightItem);
-        }
+        order.addItems(freightItems);
 
         // DETECTAR TIPO DE ORDEN - Usar items de promoción REALES, no solo notas
         // Las notas pueden estar vacías o ser modificadas por el usuario
@@ -1792,10 +1988,10 @@ public class OrderServiceImpl implements OrdenService {
                 boolean itemIsSR = false;
                 try {
                     if (itemReq.specialProductId() != null) {
-                        SpecialProduct sp = specialProductService.findEntityById(itemReq.specialProductId());
+                        SpecialProduct sp = ctx.specialProduct(itemReq.specialProductId());
                         itemIsSR = sp.getTag() != null && sp.getTag().getId().equals(srTagFinal.getId());
                     } else if (itemReq.productId() != null) {
-                        Product p = productService.findEntityById(itemReq.productId());
+                        Product p = ctx.product(itemReq.productId());
                         itemIsSR = p.getTag() != null && p.getTag().getId().equals(srTagFinal.getId());
                     } else {
                         // Producto sin registro (sin productId ni specialProductId) → siempre S/R
@@ -1819,7 +2015,7 @@ public class OrderServiceImpl implements OrdenService {
 
             // Procesar items de flete (PRIMERO, antes que los items normales)
             if (!freightItemsReq.isEmpty()) {
-                processFreightItems(order, freightItemsReq);
+                processFreightItems(order, freightItemsReq, ctx);
                 log.info("Items de flete procesados en edición de orden {}: {} items", orderId, freightItemsReq.size());
             }
 
@@ -1837,12 +2033,12 @@ public class OrderServiceImpl implements OrdenService {
                 SpecialProduct specialProduct = null;
 
                 if (isSpecial) {
-                    specialProduct = specialProductService.findEntityById(itemReq.specialProductId());
+                    specialProduct = ctx.specialProduct(itemReq.specialProductId());
                 }
 
                 Product product = null;
                 if (itemReq.productId() != null) {
-                    product = productService.findEntityById(itemReq.productId());
+                    product = ctx.product(itemReq.productId());
                 } else if (specialProduct != null && specialProduct.getParentProduct() != null) {
                     product = specialProduct.getParentProduct();
                 } else {
@@ -1880,12 +2076,10 @@ public class OrderServiceImpl implements OrdenService {
                     item.setPrecioUnitario(effectivePrice);
                     item.setSubTotal(effectivePrice.multiply(BigDecimal.valueOf(requestedQuantity)));
                     item.setSpecialProduct(specialProduct);
-                    specialProduct.decreaseStock(requestedQuantity);
                     log.info("✅ Producto especial procesado en edición: {} (precio: {}, cantidad: {})",
                             specialProduct.getNombre(), effectivePrice, requestedQuantity);
-                } else {
-                    product.decreaseStock(requestedQuantity);
                 }
+                decreaseItemStock(product, specialProduct, requestedQuantity, ctx);
 
                 try {
                     if (product.getStock() != null) {
@@ -1915,8 +2109,9 @@ public class OrderServiceImpl implements OrdenService {
                 // Vincular specialPromotionId si viene en el request
                 if (itemReq.specialPromotionId() != null) {
                     try {
-                        org.example.sistema_gestion_vitalexa.entity.SpecialPromotion specialPromo = specialPromotionService
-                                .findEntityById(itemReq.specialPromotionId());
+                        org.example.sistema_gestion_vitalexa.entity.SpecialPromotion specialPromo = ctx
+                                .findSpecialPromotion(itemReq.specialPromotionId())
+                                .orElseThrow(() -> new BusinessExeption("Promoción especial no encontrada"));
                         item.setSpecialPromotion(specialPromo);
                     } catch (Exception e) {
                         log.warn("⚠️ No se pudo vincular specialPromotionId {} al item: {}",
@@ -1946,7 +2141,7 @@ public class OrderServiceImpl implements OrdenService {
                 boolean itemIsSR = false;
                 if (srTagFinal != null && bItem.productId() != null) {
                     try {
-                        Product p = productService.findEntityById(bItem.productId());
+                        Product p = ctx.product(bItem.productId());
                         itemIsSR = p.getTag() != null && p.getTag().getId().equals(srTagFinal.getId());
                     } catch (Exception e) {}
                 }
@@ -1959,7 +2154,7 @@ public class OrderServiceImpl implements OrdenService {
                 }
             }
             
-            processBonifiedItems(order, normalBonified);
+            processBonifiedItems(order, normalBonified, ctx);
         }
 
         // PROCESAR PROMOCIONES - Solo si están cambiando
@@ -1980,13 +2175,13 @@ public class OrderServiceImpl implements OrdenService {
 
             // 4. ✅ RESTAURAR STOCK de las promociones que se van a eliminar
             if (!promoItemsToRemove.isEmpty()) {
-                restoreStockForItems(promoItemsToRemove, order.getItems());
+                restoreStockForItems(promoItemsToRemove, order.getItems(), ctx);
                 log.info("Stock restaurado para {} items de promoción eliminados", promoItemsToRemove.size());
             }
 
-            // 5. Eliminar items de la orden
-            // Usar removeAll para borrar la colección exacta
-            order.getItems().removeAll(promoItemsToRemove);
+            // 5. Eliminar items de la orden (la colección exacta, con el total
+            // actualizado una sola vez)
+            order.removeItems(promoItemsToRemove);
 
             // 6. Agregar nuevas promociones (si hay)
             if (!requestedPromotionIds.isEmpty()) {
@@ -1994,7 +2189,7 @@ public class OrderServiceImpl implements OrdenService {
                         .filter(i -> !Boolean.TRUE.equals(i.getIsPromotionItem()))
                         .mapToInt(OrderItem::getCantidad)
                         .sum();
-                processPromotions(order, requestedPromotionIds, totalNormalItemsCount);
+                processPromotions(order, requestedPromotionIds, totalNormalItemsCount, ctx);
                 log.info("Promociones actualizadas en edición de orden {}: {} items de promo creados",
                         orderId, requestedPromotionIds.size());
             }
@@ -2087,11 +2282,11 @@ public class OrderServiceImpl implements OrdenService {
             srOrder.setIncludeFreight(false);
 
             if (hasSrItems) {
-                processOrderItems(srOrder, srItemsForSplit);
+                processOrderItems(srOrder, srItemsForSplit, ctx);
             }
             
             if (hasSrBonified) {
-                processBonifiedItems(srOrder, srBonifiedItemsForSplit);
+                processBonifiedItems(srOrder, srBonifiedItemsForSplit, ctx);
             }
 
             if (!srOrder.getItems().isEmpty()) {
@@ -2185,7 +2380,7 @@ public class OrderServiceImpl implements OrdenService {
             // Decrementar stock si hay disponible
             if (hasStock) {
                 Integer stockAnterior = product.getStock();
-                product.decreaseStock(itemReq.cantidad());
+                productService.decreaseStock(product, itemReq.cantidad());
                 
                 try {
                     if (product.getStock() != null) {
@@ -2254,11 +2449,13 @@ public class OrderServiceImpl implements OrdenService {
         }
 
         // ✅ Restaurar Stock de TODOS los items usando método reutilizable
+        // (bloquea antes las filas en orden de id)
         restoreStockForItems(order.getItems(), order.getItems());
 
         order.setEstado(OrdenStatus.ANULADA);
         order.setCancellationReason(reason);
         ordenRepository.save(order);
+        refreshClientBalance(order.getCliente());
 
         // ✅ Recalcular progreso de la meta del vendedor para el mes de la orden
         // Esto actualiza currentAmount descontando la venta anulada en tiempo real,
@@ -2276,23 +2473,82 @@ public class OrderServiceImpl implements OrdenService {
     }
 
     private void increaseStockAndLog(Product product, int quantity, String reason, String username) {
+        increaseStockAndLog(product, quantity, reason, username, null);
+    }
+
+    /**
+     * Con ctx, los productos que el contexto ya bloqueó se restauran igual que
+     * se descuentan (ver decreaseStock), sin mezclar ambos caminos.
+     */
+    private void increaseStockAndLog(Product product, int quantity, String reason, String username,
+            OrderResolutionContext ctx) {
         if (quantity <= 0) return;
-        Integer stockAnterior = product.getStock();
-        product.increaseStock(quantity);
+        // Ledger atómico: el stock anterior se deriva del valor devuelto por BD
+        int stockActual = ctx != null && ctx.holdsStockLock(product.getId())
+                ? productService.increaseLockedStock(product, quantity)
+                : productService.increaseStock(product, quantity);
         try {
-            if (product.getStock() != null) {
-                movementService.logMovement(
-                        product,
-                        org.example.sistema_gestion_vitalexa.entity.enums.InventoryMovementType.RETURN,
-                        quantity,
-                        stockAnterior,
-                        product.getStock(),
-                        reason,
-                        username);
-            }
+            movementService.logMovement(
+                    product,
+                    org.example.sistema_gestion_vitalexa.entity.enums.InventoryMovementType.RETURN,
+                    quantity,
+                    stockActual - quantity,
+                    stockActual,
+                    reason,
+                    username);
         } catch (Exception e) {}
     }
 
+    /**
+     * Descuenta el stock de una línea de venta por el ledger atómico.
+     * Un producto especial vinculado descuenta del padre; uno independiente
+     * descuenta su stock propio, también con un UPDATE atómico.
+     */
+    private void decreaseItemStock(Product product, SpecialProduct specialProduct, int quantity,
+            OrderResolutionContext ctx) {
+        if (specialProduct != null && !specialProduct.isLinked()) {
+            specialProductService.decreaseOwnStock(specialProduct, quantity);
+        } else {
+            decreaseStock(specialProduct != null ? specialProduct.getParentProduct() : product, quantity, ctx);
+        }
+    }
+
+    /**
+     * Si el contexto ya bloqueó la fila del producto, el descuento se acumula
+     * y sale junto con los demás en una sola sentencia antes del commit; si
+     * no, se aplica de inmediato.
+     */
+    private int decreaseStock(Product product, int quantity, OrderResolutionContext ctx) {
+        return ctx.holdsStockLock(product.getId())
+                ? productService.decreaseLockedStock(product, quantity)
+                : productService.decreaseStock(product, quantity);
+    }
+
+    /**
+     * Productos cuyo stock toca restoreStockForItems para estos items: el
+     * producto de cada item y los regalos por referencia (giftItems) de la
+     * promoción de cada item principal de promo.
+     */
+    private Set<UUID> stockIdsToRestore(List<OrderItem> items) {
+        Set<UUID> ids = new java.util.HashSet<>();
+        for (OrderItem item : items) {
+            if (item.getProduct() == null) {
+                continue;
+            }
+            ids.add(item.getProduct().getId());
+            if (Boolean.TRUE.equals(item.getIsPromotionItem()) && !Boolean.TRUE.equals(item.getIsFreeItem())) {
+                org.example.sistema_gestion_vitalexa.entity.Promotion promo = item.getSpecialPromotion() != null
+                        && item.getSpecialPromotion().getParentPromotion() != null
+                                ? item.getSpecialPromotion().getParentPromotion()
+                                : item.getPromotion();
+                if (promo != null && promo.getGiftItems() != null) {
+                    promo.getGiftItems().forEach(gift -> ids.add(gift.getProduct().getId()));
+                }
+            }
+        }
+        return ids;
+    }
+
     /**
      * Restaura el stock de una lista de items.
      * Útil para anulación de órdenes y para edición (cuando se eliminan
@@ -2303,6 +2559,20 @@ public class OrderServiceImpl implements OrdenService {
      *                       buscar items relacionados, como regalos separados)
      */
     private void restoreStockForItems(List<OrderItem> itemsToRestore, List<OrderItem> contextItems) {
+        restoreStockForItems(itemsToRestore, contextItems, null);
+    }
+
+    /**
+     * @param ctx contexto de la edición en curso (null fuera de una edición):
+     *            los productos que ya bloqueó se restauran por su camino
+     */
+    private void restoreStockForItems(List<OrderItem> itemsToRestore, List<OrderItem> contextItems,
+            OrderResolutionContext ctx) {
+        // Bloquear en orden de id todo lo que se va a restaurar (incluidos los
+        // regalos por referencia) antes del primer UPDATE: restaurar en el
+        // orden de los items podría cruzarse con otra orden y hacer deadlock
+        productService.lockStock(stockIdsToRestore(itemsToRestore));
+
         String defaultUsername = "System";
         if (!contextItems.isEmpty() && contextItems.get(0).getOrder() != null && contextItems.get(0).getOrder().getVendedor() != null) {
             defaultUsername = contextItems.get(0).getOrder().getVendedor().getUsername();
@@ -2324,7 +2594,7 @@ public class OrderServiceImpl implements OrdenService {
                 if (!Boolean.TRUE.equals(item.getIsPromotionItem()) &&
                         !Boolean.TRUE.equals(item.getIsBonified()) &&
                         !Boolean.TRUE.equals(item.getIsFreightItem())) {
-                    increaseStockAndLog(product, item.getCantidad(), "Restauración de Item (Normal)", defaultUsername);
+                    increaseStockAndLog(product, item.getCantidad(), "Restauración de Item (Normal)", defaultUsername, ctx);
                     log.info("✅ Stock restaurado (NORMAL) para '{}': +{}", product.getNombre(), item.getCantidad());
                 }
 
@@ -2333,7 +2603,7 @@ public class OrderServiceImpl implements OrdenService {
                         !Boolean.TRUE.equals(item.getIsPromotionItem())) {
                     Integer cantidadDescontada = item.getCantidadDescontada() != null ? item.getCantidadDescontada()
                             : item.getCantidad();
-                    increaseStockAndLog(product, cantidadDescontada, "Restauración de Item (Bonificado)", defaultUsername);
+                    increaseStockAndLog(product, cantidadDescontada, "Restauración de Item (Bonificado)", defaultUsername, ctx);
                     log.info("✅ Stock restaurado (BONIFICADO) para '{}': +{}", product.getNombre(), cantidadDescontada);
                 }
 
@@ -2342,7 +2612,7 @@ public class OrderServiceImpl implements OrdenService {
                 else if (Boolean.TRUE.equals(item.getIsPromotionItem()) &&
                         Boolean.TRUE.equals(item.getIsFreeItem())) {
                     // Los regalos siempre se venden a precio 0, restaurar cantidad completa
-                    increaseStockAndLog(product, item.getCantidad(), "Restauración de Item (Promo Regalo)", defaultUsername);
+                    increaseStockAndLog(product, item.getCantidad(), "Restauración de Item (Promo Regalo)", defaultUsername, ctx);
                     log.info("✅ Stock restaurado (PROMO GIFT - Instancia {}) para '{}': +{}",
                             item.getPromotionInstanceId(), product.getNombre(), item.getCantidad());
                 }
@@ -2352,7 +2622,7 @@ public class OrderServiceImpl implements OrdenService {
                         !Boolean.TRUE.equals(item.getIsFreeItem())) {
 
                     // 4A. Restaurar mainProduct de ESTA instancia
-                    increaseStockAndLog(product, item.getCantidad(), "Restauración de Item (Promo Principal)", defaultUsername);
+                    increaseStockAndLog(product, item.getCantidad(), "Restauración de Item (Promo Principal)", defaultUsername, ctx);
                     log.info("✅ Stock restaurado (PROMO MAIN - Instancia {}) para '{}': +{}",
                             item.getPromotionInstanceId(), product.getNombre(), item.getCantidad());
 
@@ -2390,7 +2660,7 @@ public class OrderServiceImpl implements OrdenService {
                                              (item.getPromotionInstanceId() == null && i.getPromotionInstanceId() == null)));
 
                             if (!hasSeparateGiftItem) {
-                                increaseStockAndLog(giftProduct, giftQty, "Restauración de Item (Promo Gift ref)", defaultUsername);
+                                increaseStockAndLog(giftProduct, giftQty, "Restauración de Item (Promo Gift ref)", defaultUsername, ctx);
                                 log.info("✅ Stock restaurado (PROMO GIFT ref - Instancia {}) para '{}': +{}",
                                         item.getPromotionInstanceId(), giftProduct.getNombre(), giftQty);
                             } else {
@@ -2408,7 +2678,7 @@ public class OrderServiceImpl implements OrdenService {
                             : item.getCantidad();
 
                     if (cantidadDescontada > 0) {
-                        increaseStockAndLog(product, cantidadDescontada, "Restauración de Item (Flete)", defaultUsername);
+                        increaseStockAndLog(product, cantidadDescontada, "Restauración de Item (Flete)", defaultUsername, ctx);
                         log.info("✅ Stock restaurado (FLETE) para '{}': +{}",
                                 product.getNombre(), cantidadDescontada);
                     }
@@ -2421,13 +2691,14 @@ public class OrderServiceImpl implements OrdenService {
      * Procesar productos bonificados (regalos) de una orden
      * ✅ Los bonificados siempre tienen precio 0 y permiten stock negativo
      */
-    private void processBonifiedItems(Order order, List<BonifiedItemRequestDTO> bonifiedItems) {
+    private void processBonifiedItems(Order order, List<BonifiedItemRequestDTO> bonifiedItems,
+            OrderResolutionContext ctx) {
         if (bonifiedItems == null || bonifiedItems.isEmpty()) {
             return;
         }
 
         bonifiedItems.forEach(itemReq -> {
-            Product product = productService.findEntityById(itemReq.productId());
+            Product product = ctx.product(itemReq.productId());
             int requestedQuantity = itemReq.cantidad();
 
             // Crear item bonificado
@@ -2446,7 +2717,7 @@ public class OrderServiceImpl implements OrdenService {
             Integer stockAnterior = product.getStock();
 
             // Descontar stock (permite negativo)
-            product.decreaseStock(requestedQuantity);
+            decreaseStock(product, requestedQuantity, ctx);
 
             // Loggear movimiento
             try {
@@ -2532,7 +2803,10 @@ public class OrderServiceImpl implements OrdenService {
             // Cliente sin vendedor -> Owner
         }
 
-        // Actualizar cliente y vendedor en orden
+        // Actualizar cliente y vendedor en orden (si cambia el cliente, ambas
+        // carteras se recalculan)
+        refreshClientBalance(order.getCliente());
+        refreshClientBalance(client);
         order.setCliente(client);
         order.setVendedor(vendedor);
 
@@ -2654,13 +2928,15 @@ public class OrderServiceImpl implements OrdenService {
         // Restaurar stock del producto
         Product product = itemToDelete.getProduct();
 
-        // ✅ CRÍTICO: Guardar stock ANTES de restaurar
+        // ✅ CRÍTICO: Guardar stock ANTES de restaurar (se corrige con el valor
+        // que devuelve el ledger, por si otra transacción lo cambió entretanto)
         Integer stockAnterior = product.getStock();
 
         // ✅ CASO 1: Items normales (no promoción, no bonificado)
         if (!Boolean.TRUE.equals(itemToDelete.getIsFreeItem()) &&
                 !Boolean.TRUE.equals(itemToDelete.getIsPromotionItem())) {
-            product.increaseStock(itemToDelete.getCantidad());
+            stockAnterior = productService.increaseStock(product, itemToDelete.getCantidad())
+                    - itemToDelete.getCantidad();
             log.info("✅ Stock restaurado para item normal '{}': +{}", product.getNombre(), itemToDelete.getCantidad());
         }
 
@@ -2669,7 +2945,8 @@ public class OrderServiceImpl implements OrdenService {
                 !Boolean.TRUE.equals(itemToDelete.getIsPromotionItem()) &&
                 itemToDelete.getCantidadDescontada() != null &&
                 itemToDelete.getCantidadDescontada() > 0) {
-            product.increaseStock(itemToDelete.getCantidadDescontada());
+            stockAnterior = productService.increaseStock(product, itemToDelete.getCantidadDescontada())
+                    - itemToDelete.getCantidadDescontada();
             log.info("✅ Stock restaurado para bonificado '{}': +{}",
                     product.getNombre(),
                     itemToDelete.getCantidadDescontada());
@@ -2678,7 +2955,7 @@ public class OrderServiceImpl implements OrdenService {
         // ✅ CASO 3: Items de promoción (mainProduct o giftItems)
         else if (Boolean.TRUE.equals(itemToDelete.getIsPromotionItem())) {
             Integer qtyToRestore = itemToDelete.getCantidad();
-            product.increaseStock(qtyToRestore);
+            stockAnterior = productService.increaseStock(product, qtyToRestore) - qtyToRestore;
             log.info("✅ Stock restaurado para item de promoción '{}': +{}", product.getNombre(), qtyToRestore);
 
             // ✅ CRÍTICO: Si es mainProduct de una promoción, también restaurar los
@@ -2705,7 +2982,7 @@ public class OrderServiceImpl implements OrdenService {
                                      (itemToDelete.getPromotionInstanceId() == null && i.getPromotionInstanceId() == null)));
 
                     if (!hasSeparateGiftItem) {
-                        giftProduct.increaseStock(giftQty);
+                        productService.increaseStock(giftProduct, giftQty);
                         log.info("✅ Stock restaurado para regalo '{}': +{}",
                                 giftProduct.getNombre(), giftQty);
                     } else {
@@ -2842,6 +3119,7 @@ public class OrderServiceImpl implements OrdenService {
 
         // Guardar orden
         Order savedOrder = ordenRepository.save(order);
+        refreshClientBalance(client);
 
         // 💳 Registrar el pago (si el cliente pagó algo)
         if (request.amountPaid().compareTo(BigDecimal.ZERO) > 0) {
@@ -2859,14 +3137,11 @@ public class OrderServiceImpl implements OrdenService {
             log.info("Pago registrado: ${} para factura histórica {}", request.amountPaid(), request.invoiceNumber());
         }
 
-        // 🔄 SINCRONIZAR SECUENCIA DE FACTURAS
-        // Asegurar que la secuencia esté siempre por delante de la factura más alta
+        // 🔄 SINCRONIZAR CONTADOR DE FACTURAS
+        // Asegurar que el contador esté siempre por delante de la factura más alta
         try {
-            Long maxInvoice = ordenRepository.findMaxInvoiceNumber();
-            // setval(..., val, false) hace que el siguiene nextval devuelva 'val'
-            // Queremos que el siguiente sea max + 1
-            ordenRepository.syncInvoiceSequence(maxInvoice + 1);
-            log.info("Secuencia de facturas sincronizada. Próxima factura será: {}", maxInvoice + 1);
+            long nextInvoice = invoiceNumberAllocator.syncWithExistingInvoices();
+            log.info("Contador de facturas sincronizado. Próxima factura será: {}", nextInvoice);
         } catch (Exception e) {
             log.error("Error sincronizando secuencia de facturas", e);
             // No fallamos la transacción por esto, pero es importante loguearlo
@@ -2940,7 +3215,8 @@ public class OrderServiceImpl implements OrdenService {
                 .sum();
 
         // Procesar las nuevas promociones (se agregan sin eliminar las existentes)
-        processPromotions(order, promotionIds, currentNormalItemsCount);
+        OrderResolutionContext ctx = loadResolutionContext(Set.of(), Set.of(), new java.util.HashSet<>(promotionIds));
+        processPromotions(order, promotionIds, currentNormalItemsCount, ctx);
 
         // Asegurar que la nota tiene el sufijo [Promoción]
         String notes = order.getNotas() != null ? order.getNotas() : "";
@@ -2972,4 +3248,15 @@ public class OrderServiceImpl implements OrdenService {
 
         return orderMapper.toResponse(updatedOrder);
     }
+
+    /**
+     * Marca para recálculo (antes del commit) el resumen de cartera del
+     * cliente. Solo hace falta cuando cambia una orden COMPLETADA o una orden
+     * entra/sale de ese estado.
+     */
+    private void refreshClientBalance(Client client) {
+        if (client != null) {
+            clientBalanceSummaryService.refreshOnCommit(client.getId());
+        }
+    }
 }
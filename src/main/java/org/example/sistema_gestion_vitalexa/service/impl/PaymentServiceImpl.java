@@ -32,6 +32,7 @@ public class PaymentServiceImpl implements PaymentService {
     private final PaymentRepository paymentRepository;
     private final OrdenRepository ordenRepository;
     private final UserRepository userRepository;
+    private final org.example.sistema_gestion_vitalexa.service.ClientBalanceSummaryService clientBalanceSummaryService;
 
     @Override
     public PaymentResponse registerPayment(CreatePaymentRequest request, String ownerUsername) {
@@ -235,6 +236,11 @@ public class PaymentServiceImpl implements PaymentService {
 
         order.setPaymentStatus(newStatus);
         ordenRepository.save(order);
+
+        // Actualizar el resumen de cartera del cliente (antes del commit)
+        if (order.getCliente() != null) {
+            clientBalanceSummaryService.refreshOnCommit(order.getCliente().getId());
+        }
     }
 
     private PaymentResponse toPaymentResponse(Payment payment) {
@@ -8,7 +8,6 @@ import org.example.sistema_gestion_vitalexa.enums.Role;
 import org.example.sistema_gestion_vitalexa.exceptions.BusinessExeption;
 import org.example.sistema_gestion_vitalexa.repository.*;
 import org.example.sistema_gestion_vitalexa.service.PayrollService;
-import org.example.sistema_gestion_vitalexa.util.UserUnificationUtil;
 import org.example.sistema_gestion_vitalexa.repository.PaymentTransferRepository;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
@@ -36,6 +35,7 @@ public class PayrollServiceImpl implements PayrollService {
         private final PaymentRepository paymentRepository;
         private final SaleGoalRepository saleGoalRepository;
         private final PaymentTransferRepository paymentTransferRepository;
+        private final org.example.sistema_gestion_vitalexa.service.UserGroupResolver userGroupResolver;
 
         // ─────────────────────────────────────────────────────────────────────────
         // CONSTANTES DE NEGOCIO (COMISIÓN ESPECIAL)
@@ -92,10 +92,11 @@ public class PayrollServiceImpl implements PayrollService {
         @Override
         @Transactional(readOnly = true)
         public List<VendorPayrollConfigResponse> getAllConfigs() {
-                List<User> vendedores = userRepository.findAll().stream()
-                                .filter(u -> u.getRole() == Role.VENDEDOR && u.isActive())
-                                // Yicela comparte nómina con Nina — no mostrar config duplicada
-                                .filter(u -> !u.getUsername().equals(UserUnificationUtil.YICELA_SANDOVAL))
+                List<User> vendedores = userRepository.findByRole(Role.VENDEDOR).stream()
+                                .filter(User::isActive)
+                                // Los miembros secundarios de un grupo comparten nómina con el
+                                // principal — no mostrar config duplicada
+                                .filter(u -> !userGroupResolver.isSecondaryMember(u.getUsername()))
                                 .toList();
 
                 return vendedores.stream().map(v -> {
@@ -114,18 +115,31 @@ public class PayrollServiceImpl implements PayrollService {
                 User vendedor = findVendedor(request.vendedorId());
                 VendorPayrollConfig config = configRepository.findByVendedor(vendedor)
                                 .orElse(defaultConfig(vendedor));
+                Payroll existing = payrollRepository
+                                .findByVendedorAndMonthAndYear(vendedor, request.month(), request.year())
+                                .orElse(null);
 
+                PayrollMonthTotals totals = loadMonthTotals(request.month(), request.year());
+                Payroll saved = payrollRepository.save(
+                                buildPayroll(request, calculatedBy, vendedor, config, existing, totals));
+                return toResponse(saved);
+        }
+
+        /**
+         * Arma (sin guardar) la nómina de un vendedor a partir de los totales del
+         * mes ya cargados: no hace consultas, todo se resuelve en memoria.
+         */
+        private Payroll buildPayroll(CalculatePayrollRequest request, UUID calculatedBy, User vendedor,
+                        VendorPayrollConfig config, Payroll existing, PayrollMonthTotals totals) {
                 int month = request.month();
                 int year = request.year();
 
                 // ── 1. Ventas del mes actual ──────────────────────────────────────────
-                BigDecimal totalSold = calculateTotalSold(vendedor, month, year);
+                BigDecimal totalSold = calculateTotalSold(vendedor, totals, month, year);
 
                 // ── 2. Meta de ventas ─────────────────────────────────────────────────
-                BigDecimal salesGoalTarget = saleGoalRepository
-                                .findByVendedorAndMonthAndYear(vendedor, month, year)
-                                .map(SaleGoal::getTargetAmount)
-                                .orElse(BigDecimal.ZERO);
+                BigDecimal salesGoalTarget = totals.goalTargets()
+                                .getOrDefault(vendedor.getId(), BigDecimal.ZERO);
 
                 boolean salesByGoal = Boolean.TRUE.equals(config.getSalesCommissionByGoal());
                 boolean salesGoalMet = salesGoalTarget.compareTo(BigDecimal.ZERO) > 0
@@ -145,19 +159,17 @@ public class PayrollServiceImpl implements PayrollService {
                 }
 
                 // ── 3. Recaudo del mes anterior ───────────────────────────────────────
-                // prevMonth/prevYear = mes cuyas FACTURAS se deben cobrar ahora
-                YearMonth prevYearMonth = YearMonth.of(year, month).minusMonths(1);
-                int prevMonth = prevYearMonth.getMonthValue();
-                int prevYear = prevYearMonth.getYear();
+                // El mes anterior es el mes cuyas FACTURAS se deben cobrar ahora
+                // (sus totales ya vienen en PayrollMonthTotals)
 
                 // Total vendido el mes ANTERIOR (base para calcular el % de recaudo)
                 // Se usa el valor NETO por instrucción de negocio.
-                BigDecimal prevMonthTotalSold = calculateNetTotalSold(vendedor, prevMonth, prevYear);
+                BigDecimal prevMonthTotalSold = calculateNetTotalSold(vendedor, totals);
 
-                // Total recaudado de facturas del MES ANTERIOR (prevMonth/prevYear).
+                // Total recaudado de facturas del MES ANTERIOR.
                 // Solo se cuentan pagos cuya fecha real (actualPaymentDate) sea antes
                 // del fin del mes de nómina (month/year), para excluir pagos tardíos.
-                BigDecimal totalCollected = calculateTotalCollected(vendedor, prevMonth, prevYear, month, year);
+                BigDecimal totalCollected = calculateTotalCollected(vendedor, totals);
 
                 BigDecimal collectionPct = BigDecimal.ZERO;
                 if (prevMonthTotalSold.compareTo(BigDecimal.ZERO) > 0) {
@@ -202,9 +214,7 @@ public class PayrollServiceImpl implements PayrollService {
 
                 if (generalEnabled) {
                         // Suma de todas las metas del mes (siempre se calcula para auditoría)
-                        totalGlobalGoals = saleGoalRepository.findByMonthAndYear(month, year).stream()
-                                        .map(SaleGoal::getTargetAmount)
-                                        .reduce(BigDecimal.ZERO, BigDecimal::add);
+                        totalGlobalGoals = totals.totalGlobalGoals();
 
                         // Usar umbral personalizado si el Owner lo proveyó, sino la suma de metas
                         if (request.generalCommissionThreshold() != null
@@ -217,7 +227,7 @@ public class PayrollServiceImpl implements PayrollService {
 
                         // Ventas totales de empresa = suma del Total Base de Nomina
                         // de todos los vendedores (ventas brutas + transferencias), excluyendo bodegas
-                        totalCompanySales = calculateTotalCompanyBaseNomina(month, year);
+                        totalCompanySales = totals.companyBaseNomina();
 
                         // La comisión general aplica si las ventas supera el umbral efectivo
                         generalGoalMet = effectiveThreshold.compareTo(BigDecimal.ZERO) > 0
@@ -226,7 +236,7 @@ public class PayrollServiceImpl implements PayrollService {
                         if (SPECIAL_COMMISSION_VENDORS.contains(vendedor.getUsername())) {
                                 // Para vendedores especiales, la comisión es % sobre SU "Total Base de Nómina"
                                 // (ventas brutas + transferencias, excluyendo bodegas)
-                                BigDecimal totalBaseNomina = calculateTotalBaseNomina(vendedor, month, year);
+                                BigDecimal totalBaseNomina = calculateTotalBaseNomina(vendedor, totals);
                                 generalCommissionAmount = generalGoalMet
                                                 ? totalBaseNomina.multiply(generalCommissionPct).setScale(2,
                                                                 RoundingMode.HALF_UP)
@@ -256,10 +266,10 @@ public class PayrollServiceImpl implements PayrollService {
                                 .add(generalCommissionAmount);
                 BigDecimal totalPayout = config.getBaseSalary().add(totalCommissions);
 
-                // ── 6. Persistir ──────────────────────────────────────────────────────
-                Payroll payroll = payrollRepository
-                                .findByVendedorAndMonthAndYear(vendedor, month, year)
-                                .orElse(Payroll.builder().vendedor(vendedor).month(month).year(year).build());
+                // ── 6. Volcar en la nómina (existente o nueva) ───────────────────────
+                Payroll payroll = existing != null
+                                ? existing
+                                : Payroll.builder().vendedor(vendedor).month(month).year(year).build();
 
                 payroll.setBaseSalary(config.getBaseSalary());
                 payroll.setSalesGoalTarget(salesGoalTarget);
@@ -288,13 +298,12 @@ public class PayrollServiceImpl implements PayrollService {
                 payroll.setNotes(request.notes());
                 payroll.setCalculatedBy(calculatedBy);
 
-                Payroll saved = payrollRepository.save(payroll);
                 log.info("Nómina calculada para {} {}/{}: base={}, ventas={}, recaudo={}, general={}, TOTAL={}",
                                 vendedor.getUsername(), month, year,
                                 config.getBaseSalary(), salesCommissionAmount,
                                 collectionCommissionAmount, generalCommissionAmount, totalPayout);
 
-                return toResponse(saved);
+                return payroll;
         }
 
         @Override
@@ -302,19 +311,38 @@ public class PayrollServiceImpl implements PayrollService {
                 return calculateAllPayrolls(month, year, calculatedBy, null);
         }
 
+        /**
+         * Cierre de mes: los totales de TODOS los vendedores se leen una sola vez
+         * (consultas agrupadas), igual que las configuraciones y las nóminas ya
+         * existentes; cada nómina se arma en memoria y se guardan todas juntas.
+         * El número de consultas ya no crece con la cantidad de vendedores.
+         */
         @Override
         public List<PayrollResponse> calculateAllPayrolls(int month, int year, UUID calculatedBy,
                         BigDecimal generalCommissionThreshold) {
-                List<User> vendedores = userRepository.findAll().stream()
-                                .filter(u -> u.getRole() == Role.VENDEDOR && u.isActive())
-                                .filter(u -> !u.getUsername().equals(UserUnificationUtil.YICELA_SANDOVAL))
+                List<User> vendedores = userRepository.findByRole(Role.VENDEDOR).stream()
+                                .filter(User::isActive)
+                                .filter(u -> !userGroupResolver.isSecondaryMember(u.getUsername()))
                                 .toList();
 
-                return vendedores.stream()
-                                .map(v -> calculatePayroll(
+                PayrollMonthTotals totals = loadMonthTotals(month, year);
+                java.util.Map<UUID, VendorPayrollConfig> configs = configRepository.findAll().stream()
+                                .collect(Collectors.toMap(c -> c.getVendedor().getId(), c -> c));
+                java.util.Map<UUID, Payroll> existing = payrollRepository.findByMonthAndYear(month, year).stream()
+                                .collect(Collectors.toMap(p -> p.getVendedor().getId(), p -> p, (a, b) -> a));
+
+                List<Payroll> payrolls = vendedores.stream()
+                                .map(v -> buildPayroll(
                                                 new CalculatePayrollRequest(v.getId(), month, year, null,
                                                                 generalCommissionThreshold),
-                                                calculatedBy))
+                                                calculatedBy, v,
+                                                configs.getOrDefault(v.getId(), defaultConfig(v)),
+                                                existing.get(v.getId()),
+                                                totals))
+                                .toList();
+
+                return payrollRepository.saveAll(payrolls).stream()
+                                .map(this::toResponse)
                                 .collect(Collectors.toList());
         }
 
@@ -344,9 +372,9 @@ public class PayrollServiceImpl implements PayrollService {
         public List<PayrollResponse> findByMonthAndYear(int month, int year) {
                 return payrollRepository.findByMonthAndYear(month, year)
                                 .stream()
-                                // Nunca habrá nómina de Yicela (se calcula bajo Nina),
-                                // pero por si acaso filtrar para no mostrar duplicado
-                                .filter(p -> !p.getVendedor().getUsername().equals(UserUnificationUtil.YICELA_SANDOVAL))
+                                // Nunca habrá nómina de un miembro secundario (se calcula bajo
+                                // el principal), pero por si acaso filtrar para no mostrar duplicado
+                                .filter(p -> !userGroupResolver.isSecondaryMember(p.getVendedor().getUsername()))
                                 .map(this::toResponse)
                                 .collect(Collectors.toList());
         }
@@ -389,15 +417,14 @@ public class PayrollServiceImpl implements PayrollService {
         }
 
         /**
-         * Para usuarios compartidos (NinaTorres / YicelaSandoval), siempre
-         * retorna el usuario CANÓNICO (NinaTorres) como titular de la nómina.
-         * Así una sola nómina representa a ambas, sin duplicados.
+         * Para usuarios compartidos (p. ej. NinaTorres / YicelaSandoval), siempre
+         * retorna el usuario PRINCIPAL del grupo como titular de la nómina.
+         * Así una sola nómina representa a todo el grupo, sin duplicados.
          */
         private User resolveCanonicalVendedor(User user) {
-                if (UserUnificationUtil.isSharedUser(user.getUsername())
-                                && user.getUsername().equals(UserUnificationUtil.YICELA_SANDOVAL)) {
-                        return userRepository.findByUsername(UserUnificationUtil.NINA_TORRES)
-                                        .orElse(user); // fallback: si no existe Nina, usar Yicela
+                if (userGroupResolver.isSecondaryMember(user.getUsername())) {
+                        return userRepository.findByUsername(userGroupResolver.primaryUsername(user.getUsername()))
+                                        .orElse(user); // fallback: si no existe el principal, usar el mismo
                 }
                 return user;
         }
@@ -407,187 +434,182 @@ public class PayrollServiceImpl implements PayrollService {
         }
 
         /**
-         * Calcula el total vendido por el vendedor en un mes/año dado usando rango
-         * de fechas calendario exacto (1ro al último día del mes).
-         * Cuenta todas las órdenes NO ANULADAS cuya fecha (o.fecha) cae en ese mes.
-         * Además suma las transferencias de pago ACTIVAS recibidas por este vendedor
-         * en el mes/año dado, afectando también el cumplimiento de meta y comisiones.
+         * Totales de un mes de nómina para TODOS los vendedores, por id de
+         * vendedor. Se leen con consultas agrupadas (ver loadMonthTotals) y cada
+         * nómina suma las entradas de sus ids: uno, o todos los de su grupo
+         * compartido.
+         *
+         * @param sold          ventas brutas del mes
+         * @param transfers     transferencias activas recibidas en el mes
+         * @param prevNetSold   ventas netas del mes anterior (base del % de recaudo)
+         * @param prevTransfers transferencias activas recibidas en el mes anterior
+         * @param collected     recaudo de las facturas del mes anterior
+         * @param bodegaIds     ids de los vendedores bodega (EXCLUDED_BODEGA_VENDORS)
+         * @param goalTargets   meta del mes por vendedor
          */
-        private BigDecimal calculateTotalSold(User vendedor, int month, int year) {
-                LocalDateTime start = LocalDateTime.of(year, month, 1, 0, 0, 0);
-                LocalDateTime end = start.plusMonths(1); // exclusivo: primer día del mes siguiente
-
-                BigDecimal sold;
-                BigDecimal incomingTransfers;
-
-                boolean isSpecial = SPECIAL_COMMISSION_VENDORS.contains(vendedor.getUsername());
-
-                if (UserUnificationUtil.isSharedUser(vendedor.getUsername())) {
-                        List<String> sharedUsernames = UserUnificationUtil.getSharedUsernames(vendedor.getUsername());
-                        List<UUID> sharedIds = userRepository.findAll().stream()
-                                        .filter(u -> sharedUsernames.contains(u.getUsername()))
-                                        .map(User::getId)
-                                        .collect(Collectors.toList());
-
-                        if (isSpecial) {
-                                sold = ordenRepository.sumTotalSoldByVendedorIdsBetweenExcludingVendors(
-                                                sharedIds, start, end, EXCLUDED_BODEGA_VENDORS);
-                                incomingTransfers = paymentTransferRepository
-                                                .sumActiveTransfersToVendedorIdsInMonth(sharedIds, month, year);
-                        } else {
-                                sold = ordenRepository.sumTotalSoldByVendedorIdsBetween(sharedIds, start, end);
-                                incomingTransfers = paymentTransferRepository
-                                                .sumActiveTransfersToVendedorIdsInMonth(sharedIds, month, year);
-                        }
-                } else {
-                        if (isSpecial) {
-                                sold = ordenRepository.sumTotalSoldByVendedorBetweenExcludingVendors(
-                                                vendedor.getId(), start, end, EXCLUDED_BODEGA_VENDORS);
-                                incomingTransfers = paymentTransferRepository
-                                                .sumActiveTransfersToVendedorInMonth(vendedor.getId(), month, year);
-                        } else {
-                                sold = ordenRepository.sumTotalSoldByVendedorBetween(vendedor.getId(), start, end);
-                                incomingTransfers = paymentTransferRepository
-                                                .sumActiveTransfersToVendedorInMonth(vendedor.getId(), month, year);
+        private record PayrollMonthTotals(
+                        java.util.Map<UUID, BigDecimal> sold,
+                        java.util.Map<UUID, BigDecimal> transfers,
+                        java.util.Map<UUID, BigDecimal> prevNetSold,
+                        java.util.Map<UUID, BigDecimal> prevTransfers,
+                        java.util.Map<UUID, BigDecimal> collected,
+                        Set<UUID> bodegaIds,
+                        java.util.Map<UUID, BigDecimal> goalTargets,
+                        BigDecimal totalGlobalGoals) {
+
+                /**
+                 * Suma los montos de los ids; con excludeBodegas omite los de las
+                 * bodegas (mismo filtro que las consultas ...ExcludingVendors).
+                 */
+                BigDecimal sum(java.util.Map<UUID, BigDecimal> amounts, List<UUID> ids, boolean excludeBodegas) {
+                        BigDecimal total = BigDecimal.ZERO;
+                        for (UUID id : ids) {
+                                if (excludeBodegas && bodegaIds.contains(id)) {
+                                        continue;
+                                }
+                                total = total.add(amounts.getOrDefault(id, BigDecimal.ZERO));
                         }
+                        return total;
                 }
 
-                BigDecimal totalSold = sold.add(incomingTransfers);
-                if (incomingTransfers.compareTo(BigDecimal.ZERO) > 0 || isSpecial) {
-                        log.info("[Transferencias] Vendedor={} {}/{}: ventas propias=${} + transferencias=${} = total=${} (Special={})",
-                                        vendedor.getUsername(), month, year, sold, incomingTransfers, totalSold,
-                                        isSpecial);
+                /**
+                 * Ventas empresa = suma del Total Base de Nomina de todos los vendedores
+                 * (ventas brutas + transferencias), excluyendo bodegas.
+                 */
+                BigDecimal companyBaseNomina() {
+                        BigDecimal total = BigDecimal.ZERO;
+                        for (var entry : sold.entrySet()) {
+                                if (!bodegaIds.contains(entry.getKey())) {
+                                        total = total.add(entry.getValue());
+                                }
+                        }
+                        for (var entry : transfers.entrySet()) {
+                                if (!bodegaIds.contains(entry.getKey())) {
+                                        total = total.add(entry.getValue());
+                                }
+                        }
+                        return total;
                 }
-                return totalSold;
         }
 
         /**
-         * Total Base de Nómina = ventas BRUTAS + transferencias.
-         * Para vendedores especiales, excluye vendedores bodegas tanto en ventas
-         * como en transferencias para evitar doble conteo.
+         * Carga los totales del mes de nómina (month/year) para todos los vendedores:
+         *   - ventas brutas del mes y netas del mes anterior, por rango calendario
+         *     exacto [1ro del mes, 1ro del mes siguiente)
+         *   - transferencias activas del mes y del mes anterior
+         *   - recaudo de facturas del mes anterior pagadas antes del fin del mes
+         *     de nómina (ver calculateTotalCollected)
+         *   - metas del mes
          */
-        private BigDecimal calculateTotalBaseNomina(User vendedor, int month, int year) {
+        private PayrollMonthTotals loadMonthTotals(int month, int year) {
                 LocalDateTime start = LocalDateTime.of(year, month, 1, 0, 0, 0);
-                LocalDateTime end = start.plusMonths(1);
-
-                BigDecimal sold;
-                BigDecimal incomingTransfers;
+                LocalDateTime end = start.plusMonths(1); // exclusivo: primer día del mes siguiente
+                LocalDateTime prevStart = start.minusMonths(1);
+                YearMonth prev = YearMonth.of(year, month).minusMonths(1);
+                // Límite superior del pago: primer día del mes SIGUIENTE al mes de nómina
+                java.time.LocalDate payEndDate = end.toLocalDate();
+
+                Set<UUID> bodegaIds = new HashSet<>();
+
+                // [vendedorId, username, bruto, neto]
+                java.util.Map<UUID, BigDecimal> sold = new java.util.HashMap<>();
+                for (Object[] row : ordenRepository.sumSoldGroupedByVendedorBetween(start, end)) {
+                        sold.put((UUID) row[0], (BigDecimal) row[2]);
+                        markBodega(bodegaIds, (UUID) row[0], (String) row[1]);
+                }
+                java.util.Map<UUID, BigDecimal> prevNetSold = new java.util.HashMap<>();
+                for (Object[] row : ordenRepository.sumSoldGroupedByVendedorBetween(prevStart, start)) {
+                        prevNetSold.put((UUID) row[0], (BigDecimal) row[3]);
+                        markBodega(bodegaIds, (UUID) row[0], (String) row[1]);
+                }
 
-                boolean isSpecial = SPECIAL_COMMISSION_VENDORS.contains(vendedor.getUsername());
+                // [vendedorId, username, monto]
+                java.util.Map<UUID, BigDecimal> transfers = new java.util.HashMap<>();
+                for (Object[] row : paymentTransferRepository.sumActiveTransfersGroupedByVendedorInMonth(month, year)) {
+                        transfers.put((UUID) row[0], (BigDecimal) row[2]);
+                        markBodega(bodegaIds, (UUID) row[0], (String) row[1]);
+                }
+                java.util.Map<UUID, BigDecimal> prevTransfers = new java.util.HashMap<>();
+                for (Object[] row : paymentTransferRepository.sumActiveTransfersGroupedByVendedorInMonth(
+                                prev.getMonthValue(), prev.getYear())) {
+                        prevTransfers.put((UUID) row[0], (BigDecimal) row[2]);
+                        markBodega(bodegaIds, (UUID) row[0], (String) row[1]);
+                }
 
-                if (UserUnificationUtil.isSharedUser(vendedor.getUsername())) {
-                        List<String> sharedUsernames = UserUnificationUtil.getSharedUsernames(vendedor.getUsername());
-                        List<UUID> sharedIds = userRepository.findAll().stream()
-                                        .filter(u -> sharedUsernames.contains(u.getUsername()))
-                                        .map(User::getId)
-                                        .collect(Collectors.toList());
-
-                        if (isSpecial) {
-                                sold = ordenRepository.sumTotalSoldByVendedorIdsBetweenExcludingVendors(
-                                                sharedIds, start, end, EXCLUDED_BODEGA_VENDORS);
-                                incomingTransfers = paymentTransferRepository
-                                                .sumActiveTransfersToVendedorIdsInMonth(sharedIds, month, year);
-                        } else {
-                                sold = ordenRepository.sumTotalSoldByVendedorIdsBetween(sharedIds, start, end);
-                                incomingTransfers = paymentTransferRepository
-                                                .sumActiveTransfersToVendedorIdsInMonth(sharedIds, month, year);
-                        }
-                } else {
-                        if (isSpecial) {
-                                sold = ordenRepository.sumTotalSoldByVendedorBetweenExcludingVendors(
-                                                vendedor.getId(), start, end, EXCLUDED_BODEGA_VENDORS);
-                                incomingTransfers = paymentTransferRepository
-                                                .sumActiveTransfersToVendedorInMonth(vendedor.getId(), month, year);
-                        } else {
-                                sold = ordenRepository.sumTotalSoldByVendedorBetween(vendedor.getId(), start, end);
-                                incomingTransfers = paymentTransferRepository
-                                                .sumActiveTransfersToVendedorInMonth(vendedor.getId(), month, year);
-                        }
+                // [vendedorId, recaudado]
+                java.util.Map<UUID, BigDecimal> collected = new java.util.HashMap<>();
+                for (Object[] row : paymentRepository.sumCollectedGroupedByVendedorBetween(prevStart, start, payEndDate)) {
+                        collected.put((UUID) row[0], (BigDecimal) row[1]);
                 }
 
-                return sold.add(incomingTransfers);
+                List<SaleGoal> goals = saleGoalRepository.findByMonthAndYear(month, year);
+                java.util.Map<UUID, BigDecimal> goalTargets = goals.stream()
+                                .collect(Collectors.toMap(g -> g.getVendedor().getId(), SaleGoal::getTargetAmount,
+                                                (a, b) -> a));
+                BigDecimal totalGlobalGoals = goals.stream()
+                                .map(SaleGoal::getTargetAmount)
+                                .reduce(BigDecimal.ZERO, BigDecimal::add);
+
+                return new PayrollMonthTotals(sold, transfers, prevNetSold, prevTransfers, collected,
+                                bodegaIds, goalTargets, totalGlobalGoals);
+        }
+
+        private void markBodega(Set<UUID> bodegaIds, UUID vendedorId, String username) {
+                if (username != null && EXCLUDED_BODEGA_VENDORS.contains(username.trim().toLowerCase())) {
+                        bodegaIds.add(vendedorId);
+                }
         }
 
         /**
-         * Ventas empresa = suma del Total Base de Nomina de todos los vendedores
-         * (ventas brutas + transferencias), excluyendo bodegas.
+         * Total vendido por el vendedor en el mes de nómina (rango calendario
+         * exacto, órdenes COMPLETADAS) más las transferencias de pago ACTIVAS
+         * recibidas en el mes, que afectan también el cumplimiento de meta y
+         * comisiones. Para vendedores especiales se excluyen las ventas de bodegas.
          */
-        private BigDecimal calculateTotalCompanyBaseNomina(int month, int year) {
-                LocalDateTime start = LocalDateTime.of(year, month, 1, 0, 0, 0);
-                LocalDateTime end = start.plusMonths(1);
-
-                List<UUID> vendorIds = userRepository.findAll().stream()
-                                .filter(u -> u.getUsername() != null)
-                                .filter(u -> !EXCLUDED_BODEGA_VENDORS.contains(
-                                                u.getUsername().trim().toLowerCase()))
-                                .map(User::getId)
-                                .distinct()
-                                .toList();
+        private BigDecimal calculateTotalSold(User vendedor, PayrollMonthTotals totals, int month, int year) {
+                boolean isSpecial = SPECIAL_COMMISSION_VENDORS.contains(vendedor.getUsername());
+                List<UUID> vendedorIds = userGroupResolver.idsOf(vendedor.getId());
 
-                if (vendorIds.isEmpty()) {
-                        return BigDecimal.ZERO;
-                }
+                BigDecimal sold = totals.sum(totals.sold(), vendedorIds, isSpecial);
+                BigDecimal incomingTransfers = totals.sum(totals.transfers(), vendedorIds, false);
 
-                BigDecimal grossSales = ordenRepository.sumTotalSoldByVendedorIdsBetween(
-                                vendorIds, start, end);
-                BigDecimal transfers = paymentTransferRepository.sumActiveTransfersToVendedorIdsInMonth(
-                                vendorIds, month, year);
+                BigDecimal totalSold = sold.add(incomingTransfers);
+                if (incomingTransfers.compareTo(BigDecimal.ZERO) > 0 || isSpecial) {
+                        log.info("[Transferencias] Vendedor={} {}/{}: ventas propias=${} + transferencias=${} = total=${} (Special={})",
+                                        vendedor.getUsername(), month, year, sold, incomingTransfers, totalSold,
+                                        isSpecial);
+                }
+                return totalSold;
+        }
 
-                return grossSales.add(transfers);
+        /**
+         * Total Base de Nómina = ventas BRUTAS + transferencias.
+         * Para vendedores especiales, excluye vendedores bodegas en las ventas
+         * para evitar doble conteo.
+         */
+        private BigDecimal calculateTotalBaseNomina(User vendedor, PayrollMonthTotals totals) {
+                boolean isSpecial = SPECIAL_COMMISSION_VENDORS.contains(vendedor.getUsername());
+                List<UUID> vendedorIds = userGroupResolver.idsOf(vendedor.getId());
+                return totals.sum(totals.sold(), vendedorIds, isSpecial)
+                                .add(totals.sum(totals.transfers(), vendedorIds, false));
         }
 
         /**
-         * Calcula el total NETO vendido por el vendedor en un mes/año dado.
-         * Utilizado como base para el cálculo del % de recaudo.
+         * Total NETO vendido por el vendedor en el mes ANTERIOR al de nómina, más
+         * las transferencias de ese mes. Base para el cálculo del % de recaudo.
          * También aplica exclusión de bodegas si es vendedor especial.
          */
-        private BigDecimal calculateNetTotalSold(User vendedor, int month, int year) {
-                LocalDateTime start = LocalDateTime.of(year, month, 1, 0, 0, 0);
-                LocalDateTime end = start.plusMonths(1);
-
-                BigDecimal sold;
-                BigDecimal incomingTransfers;
-
+        private BigDecimal calculateNetTotalSold(User vendedor, PayrollMonthTotals totals) {
                 boolean isSpecial = SPECIAL_COMMISSION_VENDORS.contains(vendedor.getUsername());
-
-                if (UserUnificationUtil.isSharedUser(vendedor.getUsername())) {
-                        List<String> sharedUsernames = UserUnificationUtil.getSharedUsernames(vendedor.getUsername());
-                        List<UUID> sharedIds = userRepository.findAll().stream()
-                                        .filter(u -> sharedUsernames.contains(u.getUsername()))
-                                        .map(User::getId)
-                                        .collect(Collectors.toList());
-
-                        if (isSpecial) {
-                                sold = ordenRepository.sumNetTotalSoldByVendedorIdsBetweenExcludingVendors(
-                                                sharedIds, start, end, EXCLUDED_BODEGA_VENDORS);
-                                incomingTransfers = paymentTransferRepository
-                                                .sumActiveTransfersToVendedorIdsInMonth(sharedIds, month, year);
-                        } else {
-                                sold = ordenRepository.sumNetTotalSoldByVendedorIdsBetween(sharedIds, start, end);
-                                incomingTransfers = paymentTransferRepository
-                                                .sumActiveTransfersToVendedorIdsInMonth(sharedIds, month, year);
-                        }
-                } else {
-                        if (isSpecial) {
-                                sold = ordenRepository.sumNetTotalSoldByVendedorBetweenExcludingVendors(
-                                                vendedor.getId(), start, end, EXCLUDED_BODEGA_VENDORS);
-                                incomingTransfers = paymentTransferRepository
-                                                .sumActiveTransfersToVendedorInMonth(vendedor.getId(), month, year);
-                        } else {
-                                sold = ordenRepository.sumNetTotalSoldByVendedorBetween(vendedor.getId(), start, end);
-                                incomingTransfers = paymentTransferRepository
-                                                .sumActiveTransfersToVendedorInMonth(vendedor.getId(), month, year);
-                        }
-                }
-
-                return sold.add(incomingTransfers);
+                List<UUID> vendedorIds = userGroupResolver.idsOf(vendedor.getId());
+                return totals.sum(totals.prevNetSold(), vendedorIds, isSpecial)
+                                .add(totals.sum(totals.prevTransfers(), vendedorIds, false));
         }
 
         /**
-         * Calcula el total recaudado de órdenes cuya fecha cae en el mes indicado
-         * (orderMonth/orderYear), filtrando únicamente pagos cuya fecha real
-         * (actualPaymentDate) sea estrictamente anterior al inicio del mes siguiente
-         * al mes de la nómina (paymentMonth/paymentYear).
+         * Total recaudado de órdenes cuya fecha cae en el mes ANTERIOR al de
+         * nómina, contando únicamente pagos cuya fecha real (actualPaymentDate)
+         * sea estrictamente anterior al inicio del mes siguiente al de nómina.
          *
          * Reglas:
          *   - Factura de enero pagada en enero   → recaudo de febrero ✔
@@ -597,25 +619,8 @@ public class PayrollServiceImpl implements PayrollService {
          * Rango de orden:  [1-ene-2026 00:00 , 1-feb-2026 00:00)
          * Límite de pago: actualPaymentDate < 1-mar-2026
          */
-        private BigDecimal calculateTotalCollected(User vendedor,
-                        int orderMonth, int orderYear,
-                        int paymentMonth, int paymentYear) {
-                LocalDateTime orderStart = LocalDateTime.of(orderYear, orderMonth, 1, 0, 0, 0);
-                LocalDateTime orderEnd = orderStart.plusMonths(1); // exclusivo
-                // Límite superior: primer día del mes SIGUIENTE al mes de nómina
-                java.time.LocalDate payEndDate = java.time.LocalDate.of(paymentYear, paymentMonth, 1).plusMonths(1);
-
-                if (UserUnificationUtil.isSharedUser(vendedor.getUsername())) {
-                        List<String> sharedUsernames = UserUnificationUtil.getSharedUsernames(vendedor.getUsername());
-                        List<UUID> sharedIds = userRepository.findAll().stream()
-                                        .filter(u -> sharedUsernames.contains(u.getUsername()))
-                                        .map(User::getId)
-                                        .collect(Collectors.toList());
-                        return paymentRepository.sumCollectedByVendedorIdsBetween(
-                                        sharedIds, orderStart, orderEnd, payEndDate);
-                }
-                return paymentRepository.sumCollectedByVendedorBetween(
-                                vendedor.getId(), orderStart, orderEnd, payEndDate);
+        private BigDecimal calculateTotalCollected(User vendedor, PayrollMonthTotals totals) {
+                return totals.sum(totals.collected(), userGroupResolver.idsOf(vendedor.getId()), false);
         }
 
         // ─────────────────────────────────────────────────────────────────────────
@@ -0,0 +1,257 @@
+package org.example.sistema_gestion_vitalexa.service.impl;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.example.sistema_gestion_vitalexa.dto.ProductImageStatusResponse;
+import org.example.sistema_gestion_vitalexa.entity.Product;
+import org.example.sistema_gestion_vitalexa.enums.ImageUploadStatus;
+import org.example.sistema_gestion_vitalexa.exceptions.BusinessExeption;
+import org.example.sistema_gestion_vitalexa.repository.ProductImageRepository;
+import org.example.sistema_gestion_vitalexa.repository.ProductRepository;
+import org.example.sistema_gestion_vitalexa.service.CatalogSnapshotService;
+import org.example.sistema_gestion_vitalexa.service.NotificationService;
+import org.example.sistema_gestion_vitalexa.service.ProductImageIngestionService;
+import org.example.sistema_gestion_vitalexa.service.ProductImageService;
+import org.example.sistema_gestion_vitalexa.util.ContentHashes;
+import org.example.sistema_gestion_vitalexa.util.TransactionCallbacks;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Base64;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Subida de imágenes de producto en segundo plano.
+ *
+ * - stage() solo decodifica, calcula el SHA-256 y registra la imagen en
+ *   product_images (una fila por contenido: la misma imagen enviada para
+ *   varios productos se sube una sola vez). El producto guarda el id de la
+ *   imagen pendiente.
+ * - Tras el commit, un pool acotado de hilos sube la imagen con
+ *   ProductImageService (Cloudinary en prod, disco local en el resto) y
+ *   actualiza image_url de todos los productos que la esperaban. Ninguna
+ *   conexión queda tomada mientras dura la subida.
+ * - Si la subida falla, la imagen vuelve a PENDING hasta agotar maxAttempts
+ *   (luego FAILED). Una tarea periódica reencola las pendientes, incluidas las
+ *   que no entraron en la cola o quedaron colgadas por un reinicio.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class ProductImageIngestionServiceImpl implements ProductImageIngestionService {
+
+    private static final Object PENDING_KEY = ProductImageIngestionServiceImpl.class.getName() + ".pending";
+
+    private final ProductImageRepository imageRepository;
+    private final ProductRepository productRepository;
+    private final ProductImageService imageService;
+    private final CatalogSnapshotService catalogSnapshotService;
+    private final NotificationService notificationService;
+    private final TransactionTemplate transactionTemplate;
+
+    @Value("${product-images.upload.workers:2}")
+    private int workers;
+
+    @Value("${product-images.upload.queue-capacity:500}")
+    private int queueCapacity;
+
+    @Value("${product-images.upload.max-attempts:3}")
+    private int maxAttempts;
+
+    @Value("${product-images.upload.stuck-after-ms:600000}")
+    private long stuckAfterMillis;
+
+    private ThreadPoolExecutor uploader;
+
+    // Imágenes ya en la cola del pool (evita encolar dos veces la misma)
+    private final Set<UUID> queued = ConcurrentHashMap.newKeySet();
+
+    @PostConstruct
+    void init() {
+        uploader = new ThreadPoolExecutor(workers, workers, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "product-image-upload");
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                (task, executor) -> {
+                    // Queda PENDING: la tarea periódica la vuelve a encolar
+                    queued.remove(((UploadTask) task).imageId);
+                    log.warn("⚠️ Cola de subida de imágenes llena ({}), se reintentará más tarde", queueCapacity);
+                });
+    }
+
+    @PreDestroy
+    void shutdown() throws InterruptedException {
+        uploader.shutdown();
+        if (!uploader.awaitTermination(10, TimeUnit.SECONDS)) {
+            uploader.shutdownNow();
+        }
+    }
+
+    @Override
+    public boolean stage(Product product, String base64Image, String originalFilename) {
+        byte[] data = decode(base64Image);
+        if (data == null) {
+            return false;
+        }
+        String hash = ContentHashes.sha256Hex(data);
+        String filename = originalFilename != null ? originalFilename : "image.jpg";
+
+        List<Object[]> state = imageRepository.findStateByContentHash(hash);
+        if (state.isEmpty()) {
+            imageRepository.insertIfAbsent(UUID.randomUUID(), hash, filename, data.length, data);
+            state = imageRepository.findStateByContentHash(hash);
+        }
+
+        Object[] row = state.get(0);
+        UUID imageId = (UUID) row[0];
+        ImageUploadStatus status = (ImageUploadStatus) row[1];
+
+        if (status == ImageUploadStatus.READY) {
+            // Misma imagen ya subida: no hay nada que esperar
+            product.setImageUrl((String) row[2]);
+            product.setPendingImageId(null);
+            log.debug("Imagen {} reutilizada (hash {})", imageId, hash);
+            return true;
+        }
+        if (status == ImageUploadStatus.FAILED) {
+            imageRepository.retry(imageId);
+        }
+
+        product.setPendingImageId(imageId);
+        submitAfterCommit(imageId);
+        return true;
+    }
+
+    @Override
+    public ProductImageStatusResponse getStatus(UUID imageId) {
+        return imageRepository.findStatusById(imageId)
+                .orElseThrow(() -> new BusinessExeption("Imagen no encontrada"));
+    }
+
+    /**
+     * Reencola las imágenes pendientes y corrige los productos que quedaron
+     * apuntando a una imagen ya subida.
+     */
+    @Scheduled(fixedDelayString = "${product-images.recovery.delay-ms:60000}",
+            initialDelayString = "${product-images.recovery.initial-delay-ms:30000}")
+    public void recoverPendingUploads() {
+        int released = imageRepository.releaseStuckUploads(LocalDateTime.now().minus(Duration.ofMillis(stuckAfterMillis)));
+        int applied = productRepository.applyReadyImages();
+        if (applied > 0) {
+            catalogSnapshotService.invalidate();
+        }
+
+        List<UUID> pending = imageRepository.findIdsByStatus(ImageUploadStatus.PENDING,
+                PageRequest.of(0, queueCapacity));
+        pending.forEach(this::submit);
+
+        if (released > 0 || applied > 0 || !pending.isEmpty()) {
+            log.info("🖼️ Imágenes: {} pendientes reencoladas, {} subidas colgadas liberadas, {} productos corregidos",
+                    pending.size(), released, applied);
+        }
+    }
+
+    /**
+     * Una sola sincronización por transacción con todas las imágenes
+     * (submit ignora las que ya están en cola).
+     */
+    private void submitAfterCommit(UUID imageId) {
+        TransactionCallbacks.afterCommit(PENDING_KEY, imageId, imageIds -> imageIds.forEach(this::submit));
+    }
+
+    private void submit(UUID imageId) {
+        if (uploader.isShutdown() || !queued.add(imageId)) {
+            return;
+        }
+        uploader.execute(new UploadTask(imageId));
+    }
+
+    private final class UploadTask implements Runnable {
+
+        private final UUID imageId;
+
+        private UploadTask(UUID imageId) {
+            this.imageId = imageId;
+        }
+
+        @Override
+        public void run() {
+            try {
+                upload(imageId);
+            } catch (Exception e) {
+                log.error("❌ Error inesperado subiendo imagen {}", imageId, e);
+            } finally {
+                queued.remove(imageId);
+            }
+        }
+    }
+
+    private void upload(UUID imageId) {
+        if (imageRepository.claim(imageId) == 0) {
+            return;
+        }
+        List<Object[]> content = imageRepository.findContentById(imageId);
+        if (content.isEmpty() || content.get(0)[0] == null) {
+            imageRepository.markFailed(imageId, ImageUploadStatus.FAILED, "La imagen no tiene contenido");
+            return;
+        }
+        byte[] data = (byte[]) content.get(0)[0];
+        String filename = (String) content.get(0)[1];
+        int attempts = (Integer) content.get(0)[2];
+
+        String url;
+        try {
+            url = imageService.saveImage(data, filename);
+        } catch (Exception e) {
+            ImageUploadStatus status = attempts >= maxAttempts ? ImageUploadStatus.FAILED : ImageUploadStatus.PENDING;
+            imageRepository.markFailed(imageId, status, e.getMessage());
+            log.error("❌ Error subiendo imagen {} (intento {}/{}): {}", imageId, attempts, maxAttempts, e.getMessage());
+            return;
+        }
+
+        List<UUID> productIds = transactionTemplate.execute(tx -> {
+            imageRepository.markReady(imageId, url);
+            List<UUID> ids = productRepository.findIdsByPendingImageId(imageId);
+            productRepository.applyPendingImage(imageId, url);
+            return ids;
+        });
+
+        log.info("🖼️ Imagen {} subida: {} ({} producto(s))", imageId, url, productIds.size());
+        if (!productIds.isEmpty()) {
+            catalogSnapshotService.invalidate();
+            productIds.forEach(id -> notificationService.sendInventoryUpdate(id.toString(), "PRODUCT_UPDATED"));
+        }
+    }
+
+    private byte[] decode(String base64Image) {
+        if (base64Image == null || base64Image.isBlank()) {
+            return null;
+        }
+        try {
+            // Remover prefijo data:image/...;base64, si existe
+            String base64Data = base64Image.contains(",") ? base64Image.split(",")[1] : base64Image;
+            byte[] data = Base64.getDecoder().decode(base64Data.trim());
+            return data.length > 0 ? data : null;
+        } catch (IllegalArgumentException e) {
+            // No fallamos el guardado del producto por una imagen, pero logueamos
+            log.error("Error al procesar imagen Base64: {}", e.getMessage());
+            return null;
+        }
+    }
+}
@@ -5,16 +5,14 @@ import lombok.RequiredArgsConstructor;
 import org.example.sistema_gestion_vitalexa.dto.*;
 import org.example.sistema_gestion_vitalexa.entity.Product;
 import org.example.sistema_gestion_vitalexa.entity.SpecialProduct;
-import org.example.sistema_gestion_vitalexa.enums.OrdenStatus;
 import org.example.sistema_gestion_vitalexa.exceptions.BusinessExeption;
 import org.example.sistema_gestion_vitalexa.mapper.ProductMapper;
-import org.example.sistema_gestion_vitalexa.repository.OrdenItemRepository;
 import org.example.sistema_gestion_vitalexa.repository.ProductRepository;
 import org.example.sistema_gestion_vitalexa.service.InventoryMovementService;
 import org.example.sistema_gestion_vitalexa.service.NotificationService;
-import org.example.sistema_gestion_vitalexa.service.ProductImageService;
 import org.example.sistema_gestion_vitalexa.service.ProductService;
 import org.example.sistema_gestion_vitalexa.service.ProductTagService;
+import org.example.sistema_gestion_vitalexa.util.TransactionCallbacks;
 import org.example.sistema_gestion_vitalexa.entity.enums.InventoryMovementType;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -31,48 +29,26 @@ public class ProductServiceImpl implements ProductService {
 
     static final Logger log = LoggerFactory.getLogger(ProductServiceImpl.class);
 
+    private static final Object PENDING_STOCK_KEY = ProductServiceImpl.class.getName() + ".pendingStock";
+
     private final ProductRepository repository;
     private final ProductMapper mapper;
     private final NotificationService notificationService;
     private final ProductTagService productTagService;
-    private final ProductImageService imageService;
+    private final org.example.sistema_gestion_vitalexa.service.ProductImageIngestionService imageIngestionService;
     private final InventoryMovementService movementService;
     private final org.example.sistema_gestion_vitalexa.repository.SpecialProductRepository specialProductRepository;
-    private final OrdenItemRepository ordenItemRepository;
-
-    // Helper para decodificar y guardar imagen Base64
-    private String handleBase64Image(String base64Image, String originalFilename) {
-        if (base64Image == null || base64Image.isEmpty()) {
-            return null;
-        }
-        try {
-            // Remover prefijo data:image/...;base64, si existe
-            String base64Data = base64Image;
-            if (base64Image.contains(",")) {
-                base64Data = base64Image.split(",")[1];
-            }
-
-            byte[] imageBytes = java.util.Base64.getDecoder().decode(base64Data);
-            return imageService.saveImage(imageBytes,
-                    originalFilename != null ? originalFilename : "image.jpg");
-        } catch (Exception e) {
-            log.error("Error al procesar imagen Base64", e);
-            // No fallamos la transacción completa por una imagen, pero logueamos
-            return null;
-        }
-    }
+    private final org.example.sistema_gestion_vitalexa.service.CatalogSnapshotService catalogSnapshotService;
 
     @Override
+    @Transactional
     public ProductResponse create(CreateProductRequest request) {
         Product product = mapper.toEntity(request);
 
-        // Procesar imagen Base64 si existe (prioridad sobre imageUrl existente si se
-        // envía)
+        // Imagen Base64 (prioridad sobre imageUrl si se envía): se sube después
+        // del commit; mientras tanto el producto queda con pendingImageId
         if (request.imageBase64() != null && !request.imageBase64().isBlank()) {
-            String savedUrl = handleBase64Image(request.imageBase64(), request.imageFileName());
-            if (savedUrl != null) {
-                product.setImageUrl(savedUrl);
-            }
+            imageIngestionService.stage(product, request.imageBase64(), request.imageFileName());
         }
 
         // Asignar tag si se proporciona
@@ -87,34 +63,97 @@ public class ProductServiceImpl implements ProductService {
                 "Creación inicial", null);
 
         // NOTIFICAR CREACIÓN
+        catalogSnapshotService.invalidate();
         notificationService.sendInventoryUpdate(saved.getId().toString(), "PRODUCT_CREATED");
 
         return mapper.toResponse(saved);
     }
 
+    /**
+     * Alta masiva: las etiquetas se resuelven en una consulta y los productos
+     * y sus movimientos se insertan por lotes (hibernate.jdbc.batch_size) al
+     * final de la transacción, en lugar de una ronda completa por producto.
+     */
     @Override
     @Transactional
     public List<ProductResponse> createBulk(List<CreateProductRequest> requests) {
-        return requests.stream()
-                .map(this::create)
-                .toList();
+        java.util.Map<UUID, org.example.sistema_gestion_vitalexa.entity.ProductTag> tags = productTagService
+                .findEntitiesByIds(requests.stream()
+                        .map(CreateProductRequest::tagId)
+                        .filter(java.util.Objects::nonNull)
+                        .collect(java.util.stream.Collectors.toSet()));
+
+        List<Product> products = new java.util.ArrayList<>(requests.size());
+        for (CreateProductRequest request : requests) {
+            Product product = mapper.toEntity(request);
+            if (request.imageBase64() != null && !request.imageBase64().isBlank()) {
+                imageIngestionService.stage(product, request.imageBase64(), request.imageFileName());
+            }
+            if (request.tagId() != null) {
+                product.setTag(requireTag(tags, request.tagId()));
+            }
+            products.add(product);
+        }
+
+        List<Product> saved = repository.saveAll(products);
+        for (Product product : saved) {
+            movementService.logMovement(product, InventoryMovementType.CREATION, product.getStock(), 0,
+                    product.getStock(), "Creación inicial", null);
+            notificationService.sendInventoryUpdate(product.getId().toString(), "PRODUCT_CREATED");
+        }
+        catalogSnapshotService.invalidate();
+
+        return saved.stream().map(mapper::toResponse).toList();
     }
 
+    /**
+     * Actualización masiva (listas de precios de miles de filas).
+     *
+     * - Productos, especiales y etiquetas se resuelven con tres consultas IN
+     *   antes del ciclo; el ciclo solo aplica cambios en memoria.
+     * - Los UPDATE de productos y los INSERT de movimientos salen por lotes en
+     *   el flush final (hibernate.jdbc.batch_size / order_updates).
+     * - Las alertas de stock se revisan una vez, al terminar.
+     * Una fila con error se reporta en failures y no modifica su producto.
+     */
     @Override
     @Transactional
     public BulkProductUpdateResult updateBulk(List<UpdateProductBulkRequest> requests) {
         java.util.List<ProductResponse> successfulUpdates = new java.util.ArrayList<>();
         java.util.List<BulkProductUpdateResult.BulkError> failures = new java.util.ArrayList<>();
+        java.util.List<Product> updatedProducts = new java.util.ArrayList<>();
+
+        java.util.Set<UUID> ids = requests.stream()
+                .map(UpdateProductBulkRequest::id)
+                .filter(java.util.Objects::nonNull)
+                .collect(java.util.stream.Collectors.toSet());
+        // Bloquear en orden de id antes de leer el stock que se va a ajustar
+        lockStock(ids);
+        java.util.Map<UUID, Product> productsById = ids.isEmpty()
+                ? java.util.Map.of()
+                : repository.findAllForBulkUpdateByIdIn(ids).stream()
+                        .collect(java.util.stream.Collectors.toMap(Product::getId, p -> p));
+        java.util.Set<UUID> missingIds = ids.stream()
+                .filter(id -> !productsById.containsKey(id))
+                .collect(java.util.stream.Collectors.toSet());
+        java.util.Set<UUID> specialIds = missingIds.isEmpty()
+                ? java.util.Set.of()
+                : new java.util.HashSet<>(specialProductRepository.findExistingIdsIn(missingIds));
+        java.util.Map<UUID, org.example.sistema_gestion_vitalexa.entity.ProductTag> tags = productTagService
+                .findEntitiesByIds(requests.stream()
+                        .map(UpdateProductBulkRequest::tagId)
+                        .filter(java.util.Objects::nonNull)
+                        .collect(java.util.stream.Collectors.toSet()));
 
         for (UpdateProductBulkRequest req : requests) {
             String productName = "ID: " + req.id();
             try {
-                // 1. Intentar buscar en productos normales
-                java.util.Optional<Product> productOpt = repository.findById(req.id());
+                // 1. Buscar en productos normales
+                Product product = productsById.get(req.id());
 
-                if (productOpt.isEmpty()) {
+                if (product == null) {
                     // 2. Si no es normal, verificar si es Especial
-                    if (specialProductRepository.existsById(req.id())) {
+                    if (specialIds.contains(req.id())) {
                         log.info("Saltando actualización masiva para Producto Especial ID: {}", req.id());
                         continue; // SALTAR SILENCIOSAMENTE
                     }
@@ -122,46 +161,50 @@ public class ProductServiceImpl implements ProductService {
                     throw new BusinessExeption("Producto no encontrado: " + req.id());
                 }
 
-                Product product = productOpt.get();
                 productName = product.getNombre();
 
+                // Validar la etiqueta antes de tocar el producto
+                org.example.sistema_gestion_vitalexa.entity.ProductTag tag = req.tagId() != null
+                        ? requireTag(tags, req.tagId())
+                        : null;
+
                 // Capture old state for logging
                 Integer oldStock = product.getStock();
                 boolean stockChanged = false;
 
                 mapper.updateEntity(req, product);
 
-                if (req.stock() != null && !req.stock().equals(oldStock)) {
-                    stockChanged = true;
-                }
-
-                // Procesar imagen Base64
+                // Imagen Base64: se sube después del commit. Una url explícita
+                // descarta la imagen que estuviera pendiente.
                 if (req.imageBase64() != null && !req.imageBase64().isBlank()) {
-                    String savedUrl = handleBase64Image(req.imageBase64(), req.imageFileName());
-                    if (savedUrl != null) {
-                        product.setImageUrl(savedUrl);
-                    }
+                    imageIngestionService.stage(product, req.imageBase64(), req.imageFileName());
+                } else if (req.imageUrl() != null) {
+                    product.setPendingImageId(null);
                 }
 
-                if (req.tagId() != null) {
-                    product.setTag(productTagService.findEntityById(req.tagId()));
+                if (tag != null) {
+                    product.setTag(tag);
                 }
 
-                checkStockLevels(product); // Verificar niveles de stock individualmente
-
-                Product saved = repository.save(product);
+                // El stock va por el ledger (UPDATE atómico), no por el flush
+                if (req.stock() != null && !req.stock().equals(oldStock)) {
+                    stockChanged = true;
+                    adjustStock(product, req.stock() - (oldStock != null ? oldStock : 0));
+                }
 
-                // LOG MOVEMENT
+                // LOG MOVEMENT (sin save: el producto está administrado y su
+                // UPDATE sale en el flush por lotes)
                 if (stockChanged) {
-                    int diff = Math.abs(saved.getStock() - oldStock);
-                    movementService.logMovement(saved, InventoryMovementType.STOCK_ADJUSTMENT, diff, oldStock,
-                            saved.getStock(), "Ajuste masivo de stock", null);
+                    int diff = Math.abs(product.getStock() - oldStock);
+                    movementService.logMovement(product, InventoryMovementType.STOCK_ADJUSTMENT, diff, oldStock,
+                            product.getStock(), "Ajuste masivo de stock", null);
                 } else {
-                    movementService.logMovement(saved, InventoryMovementType.UPDATE, 0, oldStock, saved.getStock(),
-                            "Actualización masiva de información", null);
+                    movementService.logMovement(product, InventoryMovementType.UPDATE, 0, oldStock,
+                            product.getStock(), "Actualización masiva de información", null);
                 }
 
-                successfulUpdates.add(mapper.toResponse(saved));
+                updatedProducts.add(product);
+                successfulUpdates.add(mapper.toResponse(product));
 
             } catch (BusinessExeption | jakarta.persistence.EntityNotFoundException e) {
                 log.warn("Error actualizando producto en bulk (ID: {}): {}", req.id(), e.getMessage());
@@ -173,13 +216,31 @@ public class ProductServiceImpl implements ProductService {
             }
         }
 
+        // Verificar niveles de stock una sola vez, al final
+        updatedProducts.forEach(this::checkStockLevels);
+        if (!updatedProducts.isEmpty()) {
+            catalogSnapshotService.invalidate();
+        }
+
         return new BulkProductUpdateResult(successfulUpdates, failures);
     }
 
+    private static org.example.sistema_gestion_vitalexa.entity.ProductTag requireTag(
+            java.util.Map<UUID, org.example.sistema_gestion_vitalexa.entity.ProductTag> tags, UUID tagId) {
+        org.example.sistema_gestion_vitalexa.entity.ProductTag tag = tags.get(tagId);
+        if (tag == null) {
+            throw new BusinessExeption("Etiqueta no encontrada");
+        }
+        return tag;
+    }
+
     @Override
     @Transactional
     public ProductResponse update(UUID id, UpdateProductRequest request) {
 
+        // Bloquear la fila antes de leerla: el stock leído es el vigente y el
+        // ajuste manual no pisa una venta concurrente
+        lockStock(List.of(id));
         Product product = repository.findById(id)
                 .orElseThrow(() -> new BusinessExeption("Producto no encontrado"));
 
@@ -199,14 +260,13 @@ public class ProductServiceImpl implements ProductService {
         if (request.precio() != null) {
             product.setPrecio(request.precio());
         }
-        if (request.stock() != null) {
-            if (!request.stock().equals(oldStock)) {
-                stockChanged = true;
-            }
-            product.setStock(request.stock());
+        if (request.stock() != null && !request.stock().equals(oldStock)) {
+            stockChanged = true;
+            adjustStock(product, request.stock() - (oldStock != null ? oldStock : 0));
         }
         if (request.imageUrl() != null) {
             product.setImageUrl(request.imageUrl());
+            product.setPendingImageId(null);
         }
         if (request.active() != null) {
             product.setActive(request.active());
@@ -233,6 +293,7 @@ public class ProductServiceImpl implements ProductService {
         checkStockLevels(updated);
 
         // NOTIFICAR ACTUALIZACIÓN
+        catalogSnapshotService.invalidate();
         notificationService.sendInventoryUpdate(updated.getId().toString(), "PRODUCT_UPDATED");
 
         return mapper.toResponse(updated);
@@ -256,6 +317,7 @@ public class ProductServiceImpl implements ProductService {
                 product.getStock(), "Eliminación Lógica (Soft Delete)", null);
 
         // NOTIFICAR ELIMINACIÓN
+        catalogSnapshotService.invalidate();
         notificationService.sendInventoryUpdate(id.toString(), "PRODUCT_DELETED");
 
         log.info("Producto eliminado (soft delete) correctamente: {}", id);
@@ -275,6 +337,7 @@ public class ProductServiceImpl implements ProductService {
         repository.deleteById(id);
 
         // NOTIFICAR ELIMINACIÓN
+        catalogSnapshotService.invalidate();
         notificationService.sendInventoryUpdate(id.toString(), "PRODUCT_DELETED");
 
         log.info("Producto eliminado físicamente: {}", id);
@@ -309,6 +372,7 @@ public class ProductServiceImpl implements ProductService {
         repository.save(product);
 
         // NOTIFICAR CAMBIO DE ESTADO
+        catalogSnapshotService.invalidate();
         notificationService.sendInventoryUpdate(productId.toString(), "PRODUCT_STATUS_CHANGED");
     }
 
@@ -408,28 +472,26 @@ public class ProductServiceImpl implements ProductService {
             throw new BusinessExeption("La cantidad a agregar debe ser mayor a 0");
         }
 
-        Integer oldStock = product.getStock();
-        if (oldStock == null)
-            oldStock = 0;
-
-        product.setStock(oldStock + quantity);
-        Product saved = repository.save(product);
+        // UPDATE atómico: dos llegadas (o una llegada y una venta) simultáneas
+        // sobre el mismo producto no se pisan
+        int newStock = increaseStock(product, quantity);
+        int oldStock = newStock - quantity;
 
         // LOG MOVEMENT and RETURN
         org.example.sistema_gestion_vitalexa.entity.InventoryMovement movement = movementService.logMovement(
-                saved,
+                product,
                 InventoryMovementType.RESTOCK,
                 quantity,
                 oldStock,
-                saved.getStock(),
+                newStock,
                 logReason != null && !logReason.isBlank() ? logReason : "Llegada de mercancía",
                 username);
 
         // NOTIFICAR ACTUALIZACIÓN
-        notificationService.sendInventoryUpdate(saved.getId().toString(), "PRODUCT_UPDATED");
+        notificationService.sendInventoryUpdate(product.getId().toString(), "PRODUCT_UPDATED");
 
         log.info("Stock agregado a producto {}: +{} (Nuevo stock: {}). Razón: {}",
-                product.getNombre(), quantity, saved.getStock(), logReason);
+                product.getNombre(), quantity, newStock, logReason);
 
         return movement;
     }
@@ -449,6 +511,12 @@ public class ProductServiceImpl implements ProductService {
 
         java.util.List<org.example.sistema_gestion_vitalexa.entity.InventoryMovement> movements = new java.util.ArrayList<>();
 
+        // Bloquear todas las filas en orden de id antes de recorrer la lista
+        lockStock(request.items().stream()
+                .map(org.example.sistema_gestion_vitalexa.dto.StockArrivalItemDTO::productId)
+                .filter(java.util.Objects::nonNull)
+                .toList());
+
         for (org.example.sistema_gestion_vitalexa.dto.StockArrivalItemDTO item : request.items()) {
             try {
                 movements.add(addStock(item.productId(), item.quantity(), reason, username));
@@ -460,6 +528,104 @@ public class ProductServiceImpl implements ProductService {
         return movements;
     }
 
+    @Override
+    @Transactional
+    public int decreaseStock(Product product, int quantity) {
+        if (quantity <= 0) {
+            throw new IllegalArgumentException("Cantidad inválida");
+        }
+        return adjustStock(product, -quantity);
+    }
+
+    @Override
+    @Transactional
+    public int increaseStock(Product product, int quantity) {
+        if (quantity <= 0) {
+            throw new IllegalArgumentException("Cantidad inválida");
+        }
+        return adjustStock(product, quantity);
+    }
+
+    @Override
+    @Transactional
+    public int decreaseLockedStock(Product product, int quantity) {
+        if (quantity <= 0) {
+            throw new IllegalArgumentException("Cantidad inválida");
+        }
+        return adjustLockedStock(product, -quantity);
+    }
+
+    @Override
+    @Transactional
+    public int increaseLockedStock(Product product, int quantity) {
+        if (quantity <= 0) {
+            throw new IllegalArgumentException("Cantidad inválida");
+        }
+        return adjustLockedStock(product, quantity);
+    }
+
+    @Override
+    public void flushLockedStock() {
+        TransactionCallbacks.flush(PENDING_STOCK_KEY);
+    }
+
+    @Override
+    @Transactional
+    public void lockStock(java.util.Collection<UUID> productIds) {
+        if (productIds == null || productIds.isEmpty()) {
+            return;
+        }
+        repository.lockStockRows(new java.util.HashSet<>(productIds));
+    }
+
+    /**
+     * Aplica el delta en BD (UPDATE atómico, la fila queda bloqueada) y deja
+     * la entidad con el valor real, para que los logs y cálculos posteriores
+     * no usen un stock leído antes de que otra transacción lo modificara.
+     */
+    private int adjustStock(Product product, int delta) {
+        // Los ajustes diferidos de la transacción van primero: si no, la
+        // lectura de abajo vería un stock sin ellos
+        flushLockedStock();
+        if (repository.adjustStock(product.getId(), delta) == 0) {
+            throw new BusinessExeption("Producto no encontrado");
+        }
+        int newStock = repository.findStockById(product.getId());
+        product.setStock(newStock);
+        // El catálogo de las vendedoras solo relee el stock, no se reconstruye
+        catalogSnapshotService.stockChanged();
+        return newStock;
+    }
+
+    /**
+     * La fila ya está bloqueada y la entidad tiene su stock: el resultado se
+     * calcula en memoria (mismo COALESCE que adjustStock) y el delta se escribe
+     * antes del commit, todavía dentro de la transacción.
+     */
+    private int adjustLockedStock(Product product, int delta) {
+        int newStock = (product.getStock() != null ? product.getStock() : 0) + delta;
+        product.setStock(newStock);
+        TransactionCallbacks.beforeCommit(PENDING_STOCK_KEY, new StockDelta(product.getId(), delta),
+                this::applyStockDeltas);
+        return newStock;
+    }
+
+    private record StockDelta(UUID productId, int delta) {
+    }
+
+    /**
+     * Suma los deltas por producto y los escribe con un solo UPDATE (en orden
+     * de id, igual que los bloqueos).
+     */
+    private void applyStockDeltas(List<StockDelta> deltas) {
+        java.util.Map<UUID, Integer> byProduct = new java.util.TreeMap<>();
+        deltas.forEach(d -> byProduct.merge(d.productId(), d.delta(), Integer::sum));
+        repository.adjustStockBatch(byProduct.keySet().toArray(UUID[]::new),
+                byProduct.values().toArray(Integer[]::new));
+        catalogSnapshotService.stockChanged();
+        log.debug("Stock ajustado en lote para {} producto(s)", byProduct.size());
+    }
+
     @Override
     public byte[] exportInventoryToExcel() {
         try (org.apache.poi.ss.usermodel.Workbook workbook = new org.apache.poi.xssf.usermodel.XSSFWorkbook();
@@ -611,180 +777,201 @@ public class ProductServiceImpl implements ProductService {
     @Override
     public byte[] exportInventoryToPdf() {
         try (java.io.ByteArrayOutputStream out = new java.io.ByteArrayOutputStream()) {
-            com.itextpdf.kernel.pdf.PdfWriter writer = new com.itextpdf.kernel.pdf.PdfWriter(out);
-            com.itextpdf.kernel.pdf.PdfDocument pdf = new com.itextpdf.kernel.pdf.PdfDocument(writer);
-            com.itextpdf.layout.Document document = new com.itextpdf.layout.Document(pdf,
-                    com.itextpdf.kernel.geom.PageSize.A4.rotate());
-            document.setMargins(20, 20, 20, 20);
-
-            // Colores
-            com.itextpdf.kernel.colors.DeviceRgb headerBg  = new com.itextpdf.kernel.colors.DeviceRgb(52, 73, 94);
-            com.itextpdf.kernel.colors.DeviceRgb rowAlt     = new com.itextpdf.kernel.colors.DeviceRgb(245, 245, 245);
-            com.itextpdf.kernel.colors.DeviceRgb alertRed   = new com.itextpdf.kernel.colors.DeviceRgb(231, 76, 60);
-            com.itextpdf.kernel.colors.DeviceRgb alertRedBg = new com.itextpdf.kernel.colors.DeviceRgb(255, 235, 235);
-            com.itextpdf.kernel.colors.DeviceRgb groupBg    = new com.itextpdf.kernel.colors.DeviceRgb(189, 195, 199);
-            com.itextpdf.kernel.colors.Color    white       = com.itextpdf.kernel.colors.ColorConstants.WHITE;
-
-            // ---- Título ----
-            document.add(new com.itextpdf.layout.element.Paragraph("Reporte de Inventario — Vitalexa")
-                    .setFontSize(18).setBold()
-                    .setFontColor(headerBg)
-                    .setTextAlignment(com.itextpdf.layout.properties.TextAlignment.CENTER)
-                    .setMarginBottom(4));
-
-            document.add(new com.itextpdf.layout.element.Paragraph(
-                    "Generado: " + java.time.LocalDateTime.now()
-                            .format(java.time.format.DateTimeFormatter.ofPattern("dd/MM/yyyy HH:mm:ss")))
-                    .setFontSize(9)
-                    .setFontColor(com.itextpdf.kernel.colors.ColorConstants.GRAY)
-                    .setTextAlignment(com.itextpdf.layout.properties.TextAlignment.RIGHT)
-                    .setMarginBottom(14));
-
-            // ---- Tabla ----
-            // Columnas: # | Nombre | Precio | En Bodega | En Pedidos | Sistema | Activo
-            float[] colWidths = { 1f, 5f, 2f, 2f, 2f, 2f, 1.5f };
-            com.itextpdf.layout.element.Table table = new com.itextpdf.layout.element.Table(
-                    com.itextpdf.layout.properties.UnitValue.createPercentArray(colWidths))
-                    .setWidth(com.itextpdf.layout.properties.UnitValue.createPercentValue(100));
-
-            String[] headers = { "#", "Nombre", "Precio", "En Bodega", "En Pedidos", "Sistema", "Activo" };
-            for (String h : headers) {
-                table.addHeaderCell(new com.itextpdf.layout.element.Cell()
-                        .add(new com.itextpdf.layout.element.Paragraph(h).setBold().setFontSize(9).setFontColor(white))
-                        .setBackgroundColor(headerBg)
-                        .setTextAlignment(com.itextpdf.layout.properties.TextAlignment.CENTER)
-                        .setPadding(4));
-            }
-
-            // ---- Datos ----
-            List<StockSummaryDTO> stockData = getStockReport();
-            java.util.Map<UUID, StockSummaryDTO> stockMap = new java.util.HashMap<>();
-            for (StockSummaryDTO s : stockData) {
-                stockMap.put(s.productId(), s);
-            }
+            streamInventoryToPdf().writeTo(out);
+            return out.toByteArray();
+        } catch (java.io.IOException e) {
+            throw new java.io.UncheckedIOException(e);
+        }
+    }
 
-            List<ProductResponse> products = new java.util.ArrayList<>(findAllAdmin());
-            products.sort((p1, p2) -> {
-                String n1 = p1.nombre() != null ? p1.nombre() : "";
-                String n2 = p2.nombre() != null ? p2.nombre() : "";
-                return n1.compareToIgnoreCase(n2);
-            });
+    /**
+     * Inventario en PDF escrito directo a la respuesta HTTP. Los datos se
+     * cargan al llamar el método; la tabla usa el modo de tablas grandes de
+     * iText y se vuelca al PDF al cerrar cada grupo de letra (las celdas de
+     * letra abarcan todo su grupo, así que solo ahí la fila está completa).
+     */
+    @Override
+    public org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody streamInventoryToPdf() {
+        // ---- Datos ----
+        List<StockSummaryDTO> stockData = getStockReport();
+        java.util.Map<UUID, StockSummaryDTO> stockMap = new java.util.HashMap<>();
+        for (StockSummaryDTO s : stockData) {
+            stockMap.put(s.productId(), s);
+        }
 
-            java.util.Map<Character, Integer> groupCounts = new java.util.HashMap<>();
-            for (ProductResponse p : products) {
-                String nm = p.nombre() != null ? p.nombre().trim() : "";
-                char fc = nm.isEmpty() ? '#' : Character.toUpperCase(nm.charAt(0));
-                groupCounts.put(fc, groupCounts.getOrDefault(fc, 0) + 1);
-            }
+        List<ProductResponse> products = new java.util.ArrayList<>(findAllAdmin());
+        products.sort((p1, p2) -> {
+            String n1 = p1.nombre() != null ? p1.nombre() : "";
+            String n2 = p2.nombre() != null ? p2.nombre() : "";
+            return n1.compareToIgnoreCase(n2);
+        });
 
-            char currentLetter = '\0';
-            int rowNum = 0;
+        return out -> {
+            try {
+                com.itextpdf.kernel.pdf.PdfWriter writer = new com.itextpdf.kernel.pdf.PdfWriter(out);
+                // El stream es de la respuesta: lo cierra el contenedor, no iText
+                writer.setCloseStream(false);
+                com.itextpdf.kernel.pdf.PdfDocument pdf = new com.itextpdf.kernel.pdf.PdfDocument(writer);
+                com.itextpdf.layout.Document document = new com.itextpdf.layout.Document(pdf,
+                        com.itextpdf.kernel.geom.PageSize.A4.rotate());
+                document.setMargins(20, 20, 20, 20);
+
+                // Colores
+                com.itextpdf.kernel.colors.DeviceRgb headerBg  = new com.itextpdf.kernel.colors.DeviceRgb(52, 73, 94);
+                com.itextpdf.kernel.colors.DeviceRgb rowAlt     = new com.itextpdf.kernel.colors.DeviceRgb(245, 245, 245);
+                com.itextpdf.kernel.colors.DeviceRgb alertRed   = new com.itextpdf.kernel.colors.DeviceRgb(231, 76, 60);
+                com.itextpdf.kernel.colors.DeviceRgb alertRedBg = new com.itextpdf.kernel.colors.DeviceRgb(255, 235, 235);
+                com.itextpdf.kernel.colors.DeviceRgb groupBg    = new com.itextpdf.kernel.colors.DeviceRgb(189, 195, 199);
+                com.itextpdf.kernel.colors.Color    white       = com.itextpdf.kernel.colors.ColorConstants.WHITE;
+
+                // ---- Título ----
+                document.add(new com.itextpdf.layout.element.Paragraph("Reporte de Inventario — Vitalexa")
+                        .setFontSize(18).setBold()
+                        .setFontColor(headerBg)
+                        .setTextAlignment(com.itextpdf.layout.properties.TextAlignment.CENTER)
+                        .setMarginBottom(4));
+
+                document.add(new com.itextpdf.layout.element.Paragraph(
+                        "Generado: " + java.time.LocalDateTime.now()
+                                .format(java.time.format.DateTimeFormatter.ofPattern("dd/MM/yyyy HH:mm:ss")))
+                        .setFontSize(9)
+                        .setFontColor(com.itextpdf.kernel.colors.ColorConstants.GRAY)
+                        .setTextAlignment(com.itextpdf.layout.properties.TextAlignment.RIGHT)
+                        .setMarginBottom(14));
+
+                // ---- Tabla ----
+                // Columnas: # | Nombre | Precio | En Bodega | En Pedidos | Sistema | Activo
+                float[] colWidths = { 1f, 5f, 2f, 2f, 2f, 2f, 1.5f };
+                com.itextpdf.layout.element.Table table = new com.itextpdf.layout.element.Table(
+                        com.itextpdf.layout.properties.UnitValue.createPercentArray(colWidths), true)
+                        .setWidth(com.itextpdf.layout.properties.UnitValue.createPercentValue(100));
+
+                String[] headers = { "#", "Nombre", "Precio", "En Bodega", "En Pedidos", "Sistema", "Activo" };
+                for (String h : headers) {
+                    table.addHeaderCell(new com.itextpdf.layout.element.Cell()
+                            .add(new com.itextpdf.layout.element.Paragraph(h).setBold().setFontSize(9).setFontColor(white))
+                            .setBackgroundColor(headerBg)
+                            .setTextAlignment(com.itextpdf.layout.properties.TextAlignment.CENTER)
+                            .setPadding(4));
+                }
 
-            for (ProductResponse product : products) {
-                StockSummaryDTO stock = stockMap.get(product.id());
+                document.add(table);
 
-                int enBodega  = stock != null ? stock.stockFisicoReal() : (product.stock() != null ? product.stock() : 0);
-                int enPedidos = stock != null && stock.stockComprometido() != null ? stock.stockComprometido() : 0;
-                int sistema   = stock != null && stock.stockEnBD()         != null ? stock.stockEnBD()         : (product.stock() != null ? product.stock() : 0);
-                boolean alerta = sistema < 0;
+                java.util.Map<Character, Integer> groupCounts = new java.util.HashMap<>();
+                for (ProductResponse p : products) {
+                    String nm = p.nombre() != null ? p.nombre().trim() : "";
+                    char fc = nm.isEmpty() ? '#' : Character.toUpperCase(nm.charAt(0));
+                    groupCounts.put(fc, groupCounts.getOrDefault(fc, 0) + 1);
+                }
 
-                String nm = product.nombre() != null ? product.nombre().trim() : "";
-                char firstChar = nm.isEmpty() ? '#' : Character.toUpperCase(nm.charAt(0));
+                char currentLetter = '\0';
+                int rowNum = 0;
+
+                for (ProductResponse product : products) {
+                    StockSummaryDTO stock = stockMap.get(product.id());
+
+                    int enBodega  = stock != null ? stock.stockFisicoReal() : (product.stock() != null ? product.stock() : 0);
+                    int enPedidos = stock != null && stock.stockComprometido() != null ? stock.stockComprometido() : 0;
+                    int sistema   = stock != null && stock.stockEnBD()         != null ? stock.stockEnBD()         : (product.stock() != null ? product.stock() : 0);
+                    boolean alerta = sistema < 0;
+
+                    String nm = product.nombre() != null ? product.nombre().trim() : "";
+                    char firstChar = nm.isEmpty() ? '#' : Character.toUpperCase(nm.charAt(0));
+
+                    // Celda de letra de grupo (con rowspan)
+                    if (firstChar != currentLetter) {
+                        // El grupo anterior quedó completo: volcarlo al PDF
+                        table.flush();
+                        currentLetter = firstChar;
+                        int span = groupCounts.getOrDefault(currentLetter, 1);
+                        table.addCell(new com.itextpdf.layout.element.Cell(span, 1)
+                                .add(new com.itextpdf.layout.element.Paragraph(String.valueOf(currentLetter))
+                                        .setBold().setFontSize(13))
+                                .setBackgroundColor(groupBg)
+                                .setVerticalAlignment(com.itextpdf.layout.properties.VerticalAlignment.MIDDLE)
+                                .setTextAlignment(com.itextpdf.layout.properties.TextAlignment.CENTER)
+                                .setPadding(3));
+                    }
 
-                // Celda de letra de grupo (con rowspan)
-                if (firstChar != currentLetter) {
-                    currentLetter = firstChar;
-                    int span = groupCounts.getOrDefault(currentLetter, 1);
-                    table.addCell(new com.itextpdf.layout.element.Cell(span, 1)
-                            .add(new com.itextpdf.layout.element.Paragraph(String.valueOf(currentLetter))
-                                    .setBold().setFontSize(13))
-                            .setBackgroundColor(groupBg)
-                            .setVerticalAlignment(com.itextpdf.layout.properties.VerticalAlignment.MIDDLE)
-                            .setTextAlignment(com.itextpdf.layout.properties.TextAlignment.CENTER)
-                            .setPadding(3));
+                    com.itextpdf.kernel.colors.Color rowBg = alerta ? alertRedBg : (rowNum % 2 == 0 ? white : rowAlt);
+                    rowNum++;
+
+                    // helper lambda para crear celda de datos
+                    java.util.function.BiFunction<String, com.itextpdf.layout.properties.TextAlignment, com.itextpdf.layout.element.Cell> mkCell =
+                        (text, align) -> new com.itextpdf.layout.element.Cell()
+                            .add(new com.itextpdf.layout.element.Paragraph(text).setFontSize(9))
+                            .setBackgroundColor(rowBg)
+                            .setTextAlignment(align)
+                            .setPadding(3);
+
+                    table.addCell(mkCell.apply(product.nombre() != null ? product.nombre() : "", com.itextpdf.layout.properties.TextAlignment.LEFT));
+                    table.addCell(mkCell.apply(String.format("$%.2f", product.precio() != null ? product.precio().doubleValue() : 0.0), com.itextpdf.layout.properties.TextAlignment.RIGHT));
+
+                    // En Bodega
+                    table.addCell(new com.itextpdf.layout.element.Cell()
+                            .add(new com.itextpdf.layout.element.Paragraph(String.valueOf(enBodega)).setFontSize(9).setBold())
+                            .setBackgroundColor(rowBg)
+                            .setTextAlignment(com.itextpdf.layout.properties.TextAlignment.CENTER).setPadding(3));
+
+                    // En Pedidos
+                    table.addCell(new com.itextpdf.layout.element.Cell()
+                            .add(new com.itextpdf.layout.element.Paragraph(String.valueOf(enPedidos)).setFontSize(9))
+                            .setBackgroundColor(rowBg)
+                            .setTextAlignment(com.itextpdf.layout.properties.TextAlignment.CENTER).setPadding(3));
+
+                    // Sistema (rojo si negativo)
+                    com.itextpdf.layout.element.Paragraph sistemaP = new com.itextpdf.layout.element.Paragraph(String.valueOf(sistema))
+                            .setFontSize(9).setBold();
+                    if (alerta) sistemaP.setFontColor(alertRed);
+                    table.addCell(new com.itextpdf.layout.element.Cell()
+                            .add(sistemaP)
+                            .setBackgroundColor(rowBg)
+                            .setTextAlignment(com.itextpdf.layout.properties.TextAlignment.CENTER).setPadding(3));
+
+                    // Activo
+                    table.addCell(mkCell.apply(product.active() ? "Sí" : "No", com.itextpdf.layout.properties.TextAlignment.CENTER));
                 }
 
-                com.itextpdf.kernel.colors.Color rowBg = alerta ? alertRedBg : (rowNum % 2 == 0 ? white : rowAlt);
-                rowNum++;
-
-                // helper lambda para crear celda de datos
-                java.util.function.BiFunction<String, com.itextpdf.layout.properties.TextAlignment, com.itextpdf.layout.element.Cell> mkCell =
-                    (text, align) -> new com.itextpdf.layout.element.Cell()
-                        .add(new com.itextpdf.layout.element.Paragraph(text).setFontSize(9))
-                        .setBackgroundColor(rowBg)
-                        .setTextAlignment(align)
-                        .setPadding(3);
-
-                table.addCell(mkCell.apply(product.nombre() != null ? product.nombre() : "", com.itextpdf.layout.properties.TextAlignment.LEFT));
-                table.addCell(mkCell.apply(String.format("$%.2f", product.precio() != null ? product.precio().doubleValue() : 0.0), com.itextpdf.layout.properties.TextAlignment.RIGHT));
-
-                // En Bodega
-                table.addCell(new com.itextpdf.layout.element.Cell()
-                        .add(new com.itextpdf.layout.element.Paragraph(String.valueOf(enBodega)).setFontSize(9).setBold())
-                        .setBackgroundColor(rowBg)
-                        .setTextAlignment(com.itextpdf.layout.properties.TextAlignment.CENTER).setPadding(3));
-
-                // En Pedidos
-                table.addCell(new com.itextpdf.layout.element.Cell()
-                        .add(new com.itextpdf.layout.element.Paragraph(String.valueOf(enPedidos)).setFontSize(9))
-                        .setBackgroundColor(rowBg)
-                        .setTextAlignment(com.itextpdf.layout.properties.TextAlignment.CENTER).setPadding(3));
-
-                // Sistema (rojo si negativo)
-                com.itextpdf.layout.element.Paragraph sistemaP = new com.itextpdf.layout.element.Paragraph(String.valueOf(sistema))
-                        .setFontSize(9).setBold();
-                if (alerta) sistemaP.setFontColor(alertRed);
-                table.addCell(new com.itextpdf.layout.element.Cell()
-                        .add(sistemaP)
-                        .setBackgroundColor(rowBg)
-                        .setTextAlignment(com.itextpdf.layout.properties.TextAlignment.CENTER).setPadding(3));
-
-                // Activo
-                table.addCell(mkCell.apply(product.active() ? "Sí" : "No", com.itextpdf.layout.properties.TextAlignment.CENTER));
-            }
-
-            document.add(table);
+                table.complete();
 
-            // ---- Resumen y leyenda ----
-            long alertCount = products.stream().filter(p -> {
-                StockSummaryDTO s = stockMap.get(p.id());
-                return s != null && s.stockEnBD() != null && s.stockEnBD() < 0;
-            }).count();
+                // ---- Resumen y leyenda ----
+                long alertCount = products.stream().filter(p -> {
+                    StockSummaryDTO s = stockMap.get(p.id());
+                    return s != null && s.stockEnBD() != null && s.stockEnBD() < 0;
+                }).count();
 
-            document.add(new com.itextpdf.layout.element.Paragraph(
-                    "\nTotal productos: " + products.size() +
-                    (alertCount > 0 ? "     ⚠ Productos con stock negativo: " + alertCount : ""))
-                    .setFontSize(10).setBold().setMarginTop(10));
+                document.add(new com.itextpdf.layout.element.Paragraph(
+                        "\nTotal productos: " + products.size() +
+                        (alertCount > 0 ? "     ⚠ Productos con stock negativo: " + alertCount : ""))
+                        .setFontSize(10).setBold().setMarginTop(10));
 
-            document.add(new com.itextpdf.layout.element.Paragraph(
-                    "Leyenda  |  En Bodega: unidades físicas reales en almacén  " +
-                    "|  En Pedidos: comprometidas en pedidos activos (no despachados)  " +
-                    "|  Sistema: stock en BD (rojo = negativo)")
-                    .setFontSize(8)
-                    .setFontColor(com.itextpdf.kernel.colors.ColorConstants.GRAY)
-                    .setMarginTop(4));
+                document.add(new com.itextpdf.layout.element.Paragraph(
+                        "Leyenda  |  En Bodega: unidades físicas reales en almacén  " +
+                        "|  En Pedidos: comprometidas en pedidos activos (no despachados)  " +
+                        "|  Sistema: stock en BD (rojo = negativo)")
+                        .setFontSize(8)
+                        .setFontColor(com.itextpdf.kernel.colors.ColorConstants.GRAY)
+                        .setMarginTop(4));
 
-            document.close();
-            return out.toByteArray();
-        } catch (Exception e) {
-            log.error("Error generando PDF de inventario", e);
-            throw new BusinessExeption("Error generando el PDF de inventario: " + e.getMessage());
-        }
+                document.close();
+            } catch (Exception e) {
+                log.error("Error generando PDF de inventario", e);
+                throw new BusinessExeption("Error generando el PDF de inventario: " + e.getMessage());
+            }
+        };
     }
 
     // =====================================================================
     // STOCK COMPROMETIDO (Stock Real vs Stock en Pedidos Activos)
     // =====================================================================
 
-    private static final List<OrdenStatus> ESTADOS_FINALES = List.of(
-            OrdenStatus.COMPLETADO,
-            OrdenStatus.CANCELADO,
-            OrdenStatus.ANULADA,
-            OrdenStatus.PENDING_PROMOTION_COMPLETION);
-
+    /**
+     * El comprometido es products.committed_stock, mantenido por triggers
+     * (V48) y conciliado por CommittedStockService.
+     */
     @Override
     public List<StockSummaryDTO> getStockReport() {
-        return ordenItemRepository.findStockSummaryWithCommitted(ESTADOS_FINALES);
+        return repository.findStockSummary();
     }
 
     @Override
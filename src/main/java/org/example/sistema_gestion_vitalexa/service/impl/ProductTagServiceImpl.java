@@ -170,6 +170,15 @@ public class ProductTagServiceImpl implements ProductTagService {
                 .orElseThrow(() -> new BusinessExeption("Etiqueta no encontrada"));
     }
 
+    @Override
+    public java.util.Map<UUID, ProductTag> findEntitiesByIds(java.util.Collection<UUID> ids) {
+        if (ids.isEmpty()) {
+            return java.util.Map.of();
+        }
+        return tagRepository.findAllById(ids).stream()
+                .collect(java.util.stream.Collectors.toMap(ProductTag::getId, tag -> tag));
+    }
+
     // ========================
     // PRIVATE HELPERS
     // ========================
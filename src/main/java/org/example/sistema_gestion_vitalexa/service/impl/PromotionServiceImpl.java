@@ -26,6 +26,7 @@ public class PromotionServiceImpl implements PromotionService {
     private final PromotionRepository repository;
     private final PromotionMapper mapper;
     private final ProductService productService;
+    private final org.example.sistema_gestion_vitalexa.service.CatalogSnapshotService catalogSnapshotService;
 
     @Override
     @Transactional
@@ -67,6 +68,7 @@ public class PromotionServiceImpl implements PromotionService {
         }
 
         Promotion saved = repository.save(promotion);
+        catalogSnapshotService.invalidate();
         log.info("Promoción creada con ID: {}", saved.getId());
 
         return mapper.toResponse(saved);
@@ -125,6 +127,7 @@ public class PromotionServiceImpl implements PromotionService {
         }
 
         Promotion updated = repository.save(promotion);
+        catalogSnapshotService.invalidate();
         log.info("Promoción actualizada: {}", id);
 
         return mapper.toResponse(updated);
@@ -136,6 +139,7 @@ public class PromotionServiceImpl implements PromotionService {
         log.info("Eliminando promoción ID: {}", id);
         Promotion promotion = findEntityById(id);
         repository.delete(promotion);
+        catalogSnapshotService.invalidate();
         log.info("Promoción eliminada: {}", id);
     }
 
@@ -146,6 +150,7 @@ public class PromotionServiceImpl implements PromotionService {
         Promotion promotion = findEntityById(id);
         promotion.setActive(active);
         repository.save(promotion);
+        catalogSnapshotService.invalidate();
         log.info("Estado actualizado para promoción: {}", id);
     }
 
@@ -14,7 +14,6 @@ import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.poi.ss.usermodel.*;
 import org.apache.poi.ss.usermodel.Cell;
-import org.apache.poi.xssf.usermodel.XSSFWorkbook;
 import org.example.sistema_gestion_vitalexa.dto.*;
 import org.example.sistema_gestion_vitalexa.entity.PaymentTransfer;
 import org.example.sistema_gestion_vitalexa.entity.User;
@@ -23,8 +22,9 @@ import org.example.sistema_gestion_vitalexa.repository.UserRepository;
 import org.example.sistema_gestion_vitalexa.service.ClientBalanceService;
 import org.example.sistema_gestion_vitalexa.service.ReportExportService;
 import org.example.sistema_gestion_vitalexa.service.ReportService;
-import org.example.sistema_gestion_vitalexa.util.UserUnificationUtil;
+import org.example.sistema_gestion_vitalexa.util.StreamingExcelWorkbook;
 import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.io.ByteArrayOutputStream;
 import java.io.StringWriter;
@@ -42,44 +42,57 @@ public class ReportExportServiceImpl implements ReportExportService {
     private final ReportService reportService;
     private final ClientBalanceService clientBalanceService;
     private final UserRepository userRepository;
+    private final org.example.sistema_gestion_vitalexa.service.UserGroupResolver userGroupResolver;
     private final PaymentTransferRepository paymentTransferRepository;
     private static final DateTimeFormatter DATE_FORMATTER = DateTimeFormatter.ofPattern("dd/MM/yyyy");
+    private static final int CLIENT_SUMMARY_COL = 13; // Columna después de "Total Día"
 
     // =============================================
     // EXPORTAR REPORTE COMPLETO A PDF
     // =============================================
     @Override
     public byte[] exportReportToPdf(ReportDTO report, LocalDate startDate, LocalDate endDate) {
-        try (ByteArrayOutputStream baos = new ByteArrayOutputStream()) {
-            PdfWriter writer = new PdfWriter(baos);
-            PdfDocument pdf = new PdfDocument(writer);
-            Document document = new Document(pdf);
+        return toBytes(streamReportToPdf(report, startDate, endDate));
+    }
 
-            // HEADER
-            addPdfHeader(document, "REPORTE GENERAL DE GESTIÓN", startDate, endDate);
+    /**
+     * Igual que exportReportToPdf pero escrito directo al OutputStream (la
+     * respuesta HTTP), sin armar el PDF completo en memoria.
+     */
+    @Override
+    public StreamingResponseBody streamReportToPdf(ReportDTO report, LocalDate startDate, LocalDate endDate) {
+        return outputStream -> {
+            try {
+                PdfWriter writer = new PdfWriter(outputStream);
+                // El stream es de la respuesta: lo cierra el contenedor, no iText
+                writer.setCloseStream(false);
+                PdfDocument pdf = new PdfDocument(writer);
+                Document document = new Document(pdf);
 
-            // SECCIÓN 1: VENTAS
-            addSalesSection(document, report.salesReport());
+                // HEADER
+                addPdfHeader(document, "REPORTE GENERAL DE GESTIÓN", startDate, endDate);
 
-            // SECCIÓN 2: PRODUCTOS
-            addProductSection(document, report.productReport());
+                // SECCIÓN 1: VENTAS
+                addSalesSection(document, report.salesReport());
 
-            // SECCIÓN 3: VENDEDORES
-            addVendorSection(document, report.vendorReport());
+                // SECCIÓN 2: PRODUCTOS
+                addProductSection(document, report.productReport());
 
-            // SECCIÓN 4: CLIENTES
-            addClientSection(document, report.clientReport());
+                // SECCIÓN 3: VENDEDORES
+                addVendorSection(document, report.vendorReport());
 
-            // FOOTER
-            addPdfFooter(document);
+                // SECCIÓN 4: CLIENTES
+                addClientSection(document, report.clientReport());
 
-            document.close();
-            return baos.toByteArray();
+                // FOOTER
+                addPdfFooter(document);
 
-        } catch (Exception e) {
-            log.error("Error generando PDF completo", e);
-            throw new RuntimeException("Error al generar reporte PDF", e);
-        }
+                document.close();
+            } catch (Exception e) {
+                log.error("Error generando PDF completo", e);
+                throw new RuntimeException("Error al generar reporte PDF", e);
+            }
+        };
     }
 
     // =============================================
@@ -118,8 +131,22 @@ public class ReportExportServiceImpl implements ReportExportService {
     @Override
     public byte[] exportReportToExcel(ReportDTO report, LocalDate startDate, LocalDate endDate,
             java.util.UUID vendorId) {
-        try (Workbook workbook = new XSSFWorkbook();
-                ByteArrayOutputStream baos = new ByteArrayOutputStream()) {
+        return toBytes(streamReportToExcel(report, startDate, endDate, vendorId));
+    }
+
+    @Override
+    public StreamingResponseBody streamReportToExcel(ReportDTO report, LocalDate startDate, LocalDate endDate,
+            java.util.UUID vendorId) {
+        // Los datos se cargan antes de empezar a escribir la respuesta, así los
+        // errores de negocio siguen llegando como una respuesta HTTP normal
+        List<VendorDailySalesDTO> vendorSalesReports = resolveVendorSalesReports(startDate, endDate, vendorId);
+        List<ClientBalanceDTO> clientBalances = vendorId != null
+                ? clientBalanceService.getClientBalancesByVendedor(vendorId)
+                : clientBalanceService.getAllClientBalances();
+        java.util.Map<VendorDailySalesDTO, List<PaymentTransfer>> transfersByReport = loadPeriodTransfers(
+                vendorSalesReports);
+
+        return streamWorkbook("Error generando Excel completo", "Error al generar reporte Excel", workbook -> {
 
             // Crear estilos
             CellStyle headerStyle = createHeaderStyle(workbook);
@@ -143,70 +170,15 @@ public class ReportExportServiceImpl implements ReportExportService {
             createTopClientsSheet(workbook, report.clientReport(), headerStyle, dataStyle, currencyStyle);
 
             // HOJA 6: VENTAS DIARIAS DESGLOSADAS
-            List<VendorDailySalesDTO> vendorSalesReports;
-            if (vendorId != null) {
-                // Get vendor to check if it's a shared user
-                User vendor = userRepository.findById(vendorId)
-                        .orElseThrow(() -> new org.example.sistema_gestion_vitalexa.exceptions.BusinessExeption(
-                                "Vendedor no encontrado"));
-
-                // For shared users, get both usernames
-                List<String> matchUsernames;
-                if (UserUnificationUtil.isSharedUser(vendor.getUsername())) {
-                    matchUsernames = UserUnificationUtil.getSharedUsernames(vendor.getUsername());
-                } else {
-                    matchUsernames = List.of(vendor.getUsername());
-                }
-
-                // Filter by any of the shared usernames
-                List<VendorDailySalesDTO> matchingReports = reportService.getVendorDailySalesReport(startDate, endDate)
-                        .stream()
-                        .filter(v -> matchUsernames.contains(v.vendedorName()))
-                        .toList();
-
-                if (matchingReports.isEmpty()) {
-                    throw new org.example.sistema_gestion_vitalexa.exceptions.BusinessExeption(
-                            "No se encontraron ventas para este vendedor");
-                }
-
-                // If there are multiple reports (shared users), merge them
-                if (matchingReports.size() > 1) {
-                    // Merge all daily groups from both users
-                    List<VendorDailyGroupDTO> mergedDailyGroups = new java.util.ArrayList<>();
-                    BigDecimal totalPeriod = BigDecimal.ZERO;
-                    for (VendorDailySalesDTO vendorReport : matchingReports) {
-                        mergedDailyGroups.addAll(vendorReport.dailyGroups());
-                        totalPeriod = totalPeriod.add(vendorReport.totalPeriod());
-                    }
-
-                    // Create unified report with canonical name (first shared username - Nina)
-                    // Use the first report's vendorId, startDate, endDate
-                    VendorDailySalesDTO firstReport = matchingReports.get(0);
-                    VendorDailySalesDTO unifiedReport = new VendorDailySalesDTO(
-                            firstReport.vendedorId(),
-                            matchUsernames.get(0), // Use canonical name (NinaTorres)
-                            firstReport.startDate(),
-                            firstReport.endDate(),
-                            mergedDailyGroups,
-                            totalPeriod);
-                    vendorSalesReports = List.of(unifiedReport);
-                } else {
-                    vendorSalesReports = matchingReports;
-                }
-            } else {
-                vendorSalesReports = reportService.getVendorDailySalesReport(startDate, endDate);
-            }
-            createVendorDailySalesSheets(workbook, vendorSalesReports, headerStyle, dataStyle, currencyStyle);
+            writeVendorDailySalesSheets(workbook, vendorSalesReports, transfersByReport, headerStyle, dataStyle,
+                    currencyStyle);
 
             // HOJA 7: SALDO POR CLIENTE (GENERAL Y POR VENDEDOR)
-            List<ClientBalanceDTO> clientBalances;
             if (vendorId != null) {
-                clientBalances = clientBalanceService.getClientBalancesByVendedor(vendorId);
                 // Si es reporte de un vendedor específico, solo una hoja
                 createClientBalanceSheetInternal(workbook, "Saldo " + getVendorNameSafe(workbook, clientBalances),
                         clientBalances, headerStyle, dataStyle, currencyStyle);
             } else {
-                clientBalances = clientBalanceService.getAllClientBalances();
                 // 1. Hoja General
                 createClientBalanceSheetInternal(workbook, "Saldo General", clientBalances, headerStyle, dataStyle,
                         currencyStyle);
@@ -216,8 +188,8 @@ public class ReportExportServiceImpl implements ReportExportService {
                 java.util.Map<String, java.util.List<ClientBalanceDTO>> balancesByVendor = clientBalances.stream()
                         .collect(java.util.stream.Collectors.groupingBy(b -> {
                             String vName = b.vendedorAsignadoName() != null ? b.vendedorAsignadoName() : "Sin Asignar";
-                            if (UserUnificationUtil.isSharedUser(vName)) {
-                                return UserUnificationUtil.getSharedUsernames(vName).get(0);
+                            if (userGroupResolver.isGrouped(vName)) {
+                                return userGroupResolver.primaryUsername(vName);
                             }
                             return vName;
                         }));
@@ -232,14 +204,66 @@ public class ReportExportServiceImpl implements ReportExportService {
                     }
                 }
             }
+        });
+    }
 
-            workbook.write(baos);
-            return baos.toByteArray();
+    /**
+     * Ventas diarias desglosadas para la hoja 6: todas las vendedoras, o solo la
+     * indicada (unificando las cuentas compartidas en un único reporte).
+     */
+    private List<VendorDailySalesDTO> resolveVendorSalesReports(LocalDate startDate, LocalDate endDate,
+            java.util.UUID vendorId) {
+        if (vendorId == null) {
+            return reportService.getVendorDailySalesReport(startDate, endDate);
+        }
 
-        } catch (Exception e) {
-            log.error("Error generando Excel completo", e);
-            throw new RuntimeException("Error al generar reporte Excel", e);
+        // Get vendor to check if it's a shared user
+        User vendor = userRepository.findById(vendorId)
+                .orElseThrow(() -> new org.example.sistema_gestion_vitalexa.exceptions.BusinessExeption(
+                        "Vendedor no encontrado"));
+
+        // For shared users, get both usernames
+        List<String> matchUsernames;
+        if (userGroupResolver.isGrouped(vendor.getUsername())) {
+            matchUsernames = userGroupResolver.usernamesOf(vendor.getUsername());
+        } else {
+            matchUsernames = List.of(vendor.getUsername());
         }
+
+        // Filter by any of the shared usernames
+        List<VendorDailySalesDTO> matchingReports = reportService.getVendorDailySalesReport(startDate, endDate)
+                .stream()
+                .filter(v -> matchUsernames.contains(v.vendedorName()))
+                .toList();
+
+        if (matchingReports.isEmpty()) {
+            throw new org.example.sistema_gestion_vitalexa.exceptions.BusinessExeption(
+                    "No se encontraron ventas para este vendedor");
+        }
+
+        // If there are multiple reports (shared users), merge them
+        if (matchingReports.size() > 1) {
+            // Merge all daily groups from both users
+            List<VendorDailyGroupDTO> mergedDailyGroups = new java.util.ArrayList<>();
+            BigDecimal totalPeriod = BigDecimal.ZERO;
+            for (VendorDailySalesDTO vendorReport : matchingReports) {
+                mergedDailyGroups.addAll(vendorReport.dailyGroups());
+                totalPeriod = totalPeriod.add(vendorReport.totalPeriod());
+            }
+
+            // Create unified report with canonical name (first shared username - Nina)
+            // Use the first report's vendorId, startDate, endDate
+            VendorDailySalesDTO firstReport = matchingReports.get(0);
+            VendorDailySalesDTO unifiedReport = new VendorDailySalesDTO(
+                    firstReport.vendedorId(),
+                    matchUsernames.get(0), // Use canonical name (NinaTorres)
+                    firstReport.startDate(),
+                    firstReport.endDate(),
+                    mergedDailyGroups,
+                    totalPeriod);
+            return List.of(unifiedReport);
+        }
+        return matchingReports;
     }
 
     // =============================================
@@ -247,24 +271,52 @@ public class ReportExportServiceImpl implements ReportExportService {
     // =============================================
     @Override
     public byte[] exportProductReportToExcel() {
-        try (Workbook workbook = new XSSFWorkbook();
-                ByteArrayOutputStream baos = new ByteArrayOutputStream()) {
+        return toBytes(streamProductReportToExcel());
+    }
 
-            ProductReportDTO productReport = reportService.getProductReport();
+    @Override
+    public StreamingResponseBody streamProductReportToExcel() {
+        ProductReportDTO productReport = reportService.getProductReport();
+
+        return streamWorkbook("Error generando Excel de productos", "Error al generar reporte de productos Excel",
+                workbook -> {
+                    CellStyle headerStyle = createHeaderStyle(workbook);
+                    CellStyle dataStyle = createDataStyle(workbook);
+                    CellStyle currencyStyle = createCurrencyStyle(workbook);
+
+                    createTopProductsSheet(workbook, productReport, headerStyle, dataStyle, currencyStyle);
+                    createLowStockSheet(workbook, productReport, headerStyle, dataStyle);
+                });
+    }
 
-            CellStyle headerStyle = createHeaderStyle(workbook);
-            CellStyle dataStyle = createDataStyle(workbook);
-            CellStyle currencyStyle = createCurrencyStyle(workbook);
+    // =============================================
+    // ESCRITURA DE EXCEL EN STREAMING
+    // =============================================
 
-            createTopProductsSheet(workbook, productReport, headerStyle, dataStyle, currencyStyle);
-            createLowStockSheet(workbook, productReport, headerStyle, dataStyle);
+    /**
+     * Arma las hojas sobre un {@link StreamingExcelWorkbook} y lo escribe
+     * directo al OutputStream (la respuesta HTTP), sin copiar el archivo
+     * completo a un byte[] intermedio.
+     */
+    private StreamingResponseBody streamWorkbook(String logMessage, String errorMessage,
+            java.util.function.Consumer<Workbook> sheetsBuilder) {
+        return outputStream -> {
+            try (StreamingExcelWorkbook workbook = new StreamingExcelWorkbook()) {
+                sheetsBuilder.accept(workbook);
+                workbook.write(outputStream);
+            } catch (Exception e) {
+                log.error(logMessage, e);
+                throw new RuntimeException(errorMessage, e);
+            }
+        };
+    }
 
-            workbook.write(baos);
+    private byte[] toBytes(StreamingResponseBody body) {
+        try (ByteArrayOutputStream baos = new ByteArrayOutputStream()) {
+            body.writeTo(baos);
             return baos.toByteArray();
-
-        } catch (Exception e) {
-            log.error("Error generando Excel de productos", e);
-            throw new RuntimeException("Error al generar reporte de productos Excel", e);
+        } catch (java.io.IOException e) {
+            throw new java.io.UncheckedIOException(e);
         }
     }
 
@@ -645,7 +697,7 @@ public class ReportExportServiceImpl implements ReportExportService {
                 currencyStyle);
 
         for (int i = 0; i < 2; i++) {
-            sheet.autoSizeColumn(i);
+            StreamingExcelWorkbook.autoSizeColumn(sheet, i);
         }
     }
 
@@ -692,7 +744,7 @@ public class ReportExportServiceImpl implements ReportExportService {
         }
 
         for (int i = 0; i < headers.length; i++) {
-            sheet.autoSizeColumn(i);
+            StreamingExcelWorkbook.autoSizeColumn(sheet, i);
         }
     }
 
@@ -720,7 +772,7 @@ public class ReportExportServiceImpl implements ReportExportService {
         }
 
         for (int i = 0; i < headers.length; i++) {
-            sheet.autoSizeColumn(i);
+            StreamingExcelWorkbook.autoSizeColumn(sheet, i);
         }
     }
 
@@ -745,7 +797,7 @@ public class ReportExportServiceImpl implements ReportExportService {
         }
 
         for (int i = 0; i < headers.length; i++) {
-            sheet.autoSizeColumn(i);
+            StreamingExcelWorkbook.autoSizeColumn(sheet, i);
         }
     }
 
@@ -776,7 +828,7 @@ public class ReportExportServiceImpl implements ReportExportService {
         }
 
         for (int i = 0; i < headers.length; i++) {
-            sheet.autoSizeColumn(i);
+            StreamingExcelWorkbook.autoSizeColumn(sheet, i);
         }
     }
 
@@ -805,7 +857,7 @@ public class ReportExportServiceImpl implements ReportExportService {
         }
 
         for (int i = 0; i < headers.length; i++) {
-            sheet.autoSizeColumn(i);
+            StreamingExcelWorkbook.autoSizeColumn(sheet, i);
         }
     }
 
@@ -819,6 +871,69 @@ public class ReportExportServiceImpl implements ReportExportService {
     public void createVendorDailySalesSheets(Workbook workbook,
             List<VendorDailySalesDTO> vendorSalesReports,
             CellStyle headerStyle, CellStyle dataStyle, CellStyle currencyStyle) {
+        writeVendorDailySalesSheets(workbook, vendorSalesReports, loadPeriodTransfers(vendorSalesReports),
+                headerStyle, dataStyle, currencyStyle);
+    }
+
+    /**
+     * Transferencias recibidas (activas) en el periodo de cada reporte, en una
+     * sola consulta para todas las vendedoras. Se llama antes de devolver el
+     * StreamingResponseBody: al escribir la respuesta ya no se consulta la base
+     * (ni hay transacción abierta) y las asociaciones que se imprimen vienen
+     * cargadas.
+     */
+    private java.util.Map<VendorDailySalesDTO, List<PaymentTransfer>> loadPeriodTransfers(
+            List<VendorDailySalesDTO> vendorSalesReports) {
+        java.util.Map<VendorDailySalesDTO, List<String>> usernamesByReport = new java.util.IdentityHashMap<>();
+        java.util.Set<String> allUsernames = new java.util.HashSet<>();
+        for (VendorDailySalesDTO vendor : vendorSalesReports) {
+            // Si es un shared user, las transferencias de todas las cuentas del grupo suman juntas
+            List<String> usernames = userGroupResolver.isGrouped(vendor.vendedorName())
+                    ? userGroupResolver.usernamesOf(vendor.vendedorName())
+                    : List.of(vendor.vendedorName());
+            usernamesByReport.put(vendor, usernames);
+            allUsernames.addAll(usernames);
+        }
+
+        java.util.Map<VendorDailySalesDTO, List<PaymentTransfer>> transfersByReport = new java.util.IdentityHashMap<>();
+        if (allUsernames.isEmpty()) {
+            return transfersByReport;
+        }
+        List<PaymentTransfer> received = paymentTransferRepository.findActiveReceivedByDestUsernameIn(allUsernames);
+
+        for (VendorDailySalesDTO vendor : vendorSalesReports) {
+            List<String> usernames = usernamesByReport.get(vendor);
+            java.time.YearMonth reportStartMonth = java.time.YearMonth.from(vendor.startDate());
+            java.time.YearMonth reportEndMonth = java.time.YearMonth.from(vendor.endDate());
+
+            List<PaymentTransfer> periodTransfers = new java.util.ArrayList<>();
+            for (PaymentTransfer t : received) {
+                if (!usernames.contains(t.getDestVendedor().getUsername())) {
+                    continue;
+                }
+                // Determinar el Mes/Año al que pertenece la transferencia
+                java.time.YearMonth transferMonth;
+                if (t.getTargetMonth() != null && t.getTargetYear() != null) {
+                    transferMonth = java.time.YearMonth.of(t.getTargetYear(), t.getTargetMonth());
+                } else if (t.getCreatedAt() != null) {
+                    transferMonth = java.time.YearMonth.from(t.getCreatedAt());
+                } else {
+                    continue;
+                }
+                // Dentro del rango inclusivo [reportStartMonth, reportEndMonth]
+                if (!transferMonth.isBefore(reportStartMonth) && !transferMonth.isAfter(reportEndMonth)) {
+                    periodTransfers.add(t);
+                }
+            }
+            transfersByReport.put(vendor, periodTransfers);
+        }
+        return transfersByReport;
+    }
+
+    private void writeVendorDailySalesSheets(Workbook workbook,
+            List<VendorDailySalesDTO> vendorSalesReports,
+            java.util.Map<VendorDailySalesDTO, List<PaymentTransfer>> transfersByReport,
+            CellStyle headerStyle, CellStyle dataStyle, CellStyle currencyStyle) {
 
         // Crear estilos para estados de pago
         CellStyle paidStyle = workbook.createCellStyle();
@@ -846,10 +961,63 @@ public class ReportExportServiceImpl implements ReportExportService {
             String sheetName = org.apache.poi.ss.util.WorkbookUtil.createSafeSheetName(vendor.vendedorName());
             Sheet sheet = workbook.createSheet(sheetName);
 
+            // ========================================
+            // PRIMERA PASADA: TOTALES Y CARTERA POR CLIENTE
+            // ========================================
+            // Se calculan antes de escribir filas: el resumen de cartera va a la
+            // derecha de la tabla principal y, en modo streaming, una fila ya
+            // volcada no se puede volver a editar.
+            BigDecimal totalPendingPeriod = BigDecimal.ZERO;
+            BigDecimal totalPaidPeriod = BigDecimal.ZERO;
+
+            BigDecimal totalBrutoPeriod = BigDecimal.ZERO;
+            BigDecimal totalNetoPeriod = BigDecimal.ZERO;
+
+            // Mapa para facturas pendientes por cliente: Cliente -> List de [InvoiceNum,
+            // Fecha, Amount]
+            java.util.Map<String, java.util.List<Object[]>> clientPendingInvoices = new java.util.LinkedHashMap<>();
+
+            for (VendorDailyGroupDTO dailyGroup : vendor.dailyGroups()) {
+                for (ClientDailyGroupDTO clientGroup : dailyGroup.clientGroups()) {
+                    for (VendorInvoiceRowDTO inv : clientGroup.facturas()) {
+                        totalPendingPeriod = totalPendingPeriod.add(inv.pendingAmount());
+                        totalPaidPeriod = totalPaidPeriod.add(inv.paidAmount());
+
+                        totalBrutoPeriod = totalBrutoPeriod.add(inv.valorOriginal() != null ? inv.valorOriginal() : BigDecimal.ZERO);
+                        totalNetoPeriod = totalNetoPeriod.add(inv.valorFinal() != null ? inv.valorFinal() : BigDecimal.ZERO);
+
+                        // Agregar factura si tiene saldo pendiente
+                        if (inv.pendingAmount().compareTo(BigDecimal.ZERO) > 0) {
+                            String clientKey = inv.numeroCliente();
+                            clientPendingInvoices.computeIfAbsent(clientKey, k -> new java.util.ArrayList<>())
+                                    .add(new Object[] { inv.numeroFactura(), inv.fecha(), inv.pendingAmount() });
+                        }
+                    }
+                }
+            }
+
+            // Resumen de cartera (a la derecha): la línea i va en la fila summaryStartRow + i
+            int summaryStartRow = 3; // Misma fila de los encabezados de la tabla principal
+            List<java.util.function.Consumer<Row>> summaryLines = buildClientPortfolioSummaryLines(
+                    clientPendingInvoices, totalPendingPeriod, headerStyle, dataStyle, currencyStyle);
+            sheet.addMergedRegion(new org.apache.poi.ss.util.CellRangeAddress(
+                    summaryStartRow, summaryStartRow, CLIENT_SUMMARY_COL, CLIENT_SUMMARY_COL + 3));
+
+            // Todas las filas se crean aquí y en orden, agregando la línea del
+            // resumen que les corresponda
+            java.util.function.IntFunction<Row> createRow = r -> {
+                Row row = sheet.createRow(r);
+                int summaryLine = r - summaryStartRow;
+                if (summaryLine >= 0 && summaryLine < summaryLines.size()) {
+                    summaryLines.get(summaryLine).accept(row);
+                }
+                return row;
+            };
+
             int rowNum = 0;
 
             // Título
-            Row titleRow = sheet.createRow(rowNum++);
+            Row titleRow = createRow.apply(rowNum++);
             Cell titleCell = titleRow.createCell(0);
             titleCell.setCellValue("VENTAS DIARIAS - " + vendor.vendedorName().toUpperCase());
             titleCell.setCellStyle(headerStyle);
@@ -857,7 +1025,7 @@ public class ReportExportServiceImpl implements ReportExportService {
                     titleRow.getRowNum(), titleRow.getRowNum(), 0, 5));
 
             // Período
-            Row periodRow = sheet.createRow(rowNum++);
+            Row periodRow = createRow.apply(rowNum++);
             periodRow.createCell(0).setCellValue("Período:");
             periodRow.createCell(1).setCellValue(
                     vendor.startDate().format(DATE_FORMATTER) + " a " +
@@ -865,7 +1033,7 @@ public class ReportExportServiceImpl implements ReportExportService {
             rowNum++;
 
             // Encabezados - con columnas de descuento y saldo pendiente
-            Row headerRow = sheet.createRow(rowNum++);
+            Row headerRow = createRow.apply(rowNum++);
             String[] headers = { "Fecha", "# Factura", "# Cliente", "Valor Original", "Dto%", "Valor Final",
                     "Pagado", "Pendiente", "Subtotal Cliente", "VALOR A COBRAR", "Total Día" }; // Added VALOR A COBRAR
             for (int i = 0; i < headers.length; i++) {
@@ -874,16 +1042,6 @@ public class ReportExportServiceImpl implements ReportExportService {
                 cell.setCellStyle(headerStyle);
             }
 
-            BigDecimal totalPendingPeriod = BigDecimal.ZERO;
-            BigDecimal totalPaidPeriod = BigDecimal.ZERO;
-            
-            BigDecimal totalBrutoPeriod = BigDecimal.ZERO;
-            BigDecimal totalNetoPeriod = BigDecimal.ZERO;
-
-            // Mapa para facturas pendientes por cliente: Cliente -> List de [InvoiceNum,
-            // Fecha, Amount]
-            java.util.Map<String, java.util.List<Object[]>> clientPendingInvoices = new java.util.LinkedHashMap<>();
-
             // Datos: iterar por cada día
             for (VendorDailyGroupDTO dailyGroup : vendor.dailyGroups()) {
                 int clientIndex = 0;
@@ -896,23 +1054,11 @@ public class ReportExportServiceImpl implements ReportExportService {
                     // Calcular pendiente del cliente para este día
                     for (VendorInvoiceRowDTO inv : clientGroup.facturas()) {
                         clientTotalPending = clientTotalPending.add(inv.pendingAmount());
-                        totalPendingPeriod = totalPendingPeriod.add(inv.pendingAmount());
-                        totalPaidPeriod = totalPaidPeriod.add(inv.paidAmount());
-
-                        totalBrutoPeriod = totalBrutoPeriod.add(inv.valorOriginal() != null ? inv.valorOriginal() : BigDecimal.ZERO);
-                        totalNetoPeriod = totalNetoPeriod.add(inv.valorFinal() != null ? inv.valorFinal() : BigDecimal.ZERO);
-
-                        // Agregar factura si tiene saldo pendiente
-                        if (inv.pendingAmount().compareTo(BigDecimal.ZERO) > 0) {
-                            String clientKey = inv.numeroCliente();
-                            clientPendingInvoices.computeIfAbsent(clientKey, k -> new java.util.ArrayList<>())
-                                    .add(new Object[] { inv.numeroFactura(), inv.fecha(), inv.pendingAmount() });
-                        }
                     }
 
                     // Por cada factura del cliente
                     for (VendorInvoiceRowDTO invoice : clientGroup.facturas()) {
-                        Row row = sheet.createRow(rowNum++);
+                        Row row = createRow.apply(rowNum++);
 
                         // Determinar estilo según estado de pago (Logica explícita)
                         CellStyle rowDataStyle = dataStyle;
@@ -1006,77 +1152,18 @@ public class ReportExportServiceImpl implements ReportExportService {
             }
 
             // ========================================
-            // PRE-CÁLCULO DE TRANSFERENCIAS
+            // TRANSFERENCIAS DEL PERIODO (precargadas)
             // ========================================
-            BigDecimal totalTransferred = BigDecimal.ZERO;
-            List<PaymentTransfer> periodTransfers = new java.util.ArrayList<>();
-            
-            // Si es un shared user, traer todas las cuentas asociadas para que las transferencias sumen juntas
-            List<User> userList = userRepository.findAll();
-            List<User> destVendedores = new java.util.ArrayList<>();
-            
-            if (org.example.sistema_gestion_vitalexa.util.UserUnificationUtil.isSharedUser(vendor.vendedorName())) {
-                List<String> sharedNames = org.example.sistema_gestion_vitalexa.util.UserUnificationUtil.getSharedUsernames(vendor.vendedorName());
-                for (User u : userList) {
-                    if (sharedNames.contains(u.getUsername())) {
-                        destVendedores.add(u);
-                    }
-                }
-            } else {
-                for (User u : userList) {
-                    if (u.getUsername().equals(vendor.vendedorName())) {
-                        destVendedores.add(u);
-                        break;
-                    }
-                }
-            }
-
-            if (!destVendedores.isEmpty()) {
-                java.time.YearMonth reportStartMonth = java.time.YearMonth.from(vendor.startDate());
-                java.time.YearMonth reportEndMonth = java.time.YearMonth.from(vendor.endDate());
-                
-                for (User destU : destVendedores) {
-                    List<PaymentTransfer> transfers = paymentTransferRepository
-                            .findByDestVendedorIdOrderByCreatedAtDesc(destU.getId());
-                    
-                    for (PaymentTransfer t : transfers) {
-                        if (t.getIsRevoked()) {
-                            continue;
-                        }
-                        
-                        // Determinar el Mes/Año al que pertenece la transferencia
-                        java.time.YearMonth transferMonth;
-                        if (t.getTargetMonth() != null && t.getTargetYear() != null) {
-                            transferMonth = java.time.YearMonth.of(t.getTargetYear(), t.getTargetMonth());
-                        } else if (t.getCreatedAt() != null) {
-                            transferMonth = java.time.YearMonth.from(t.getCreatedAt());
-                        } else {
-                            continue;
-                        }
-                        
-                        // Verificar si transferMonth está dentro del rango inclusivo [reportStartMonth, reportEndMonth]
-                        boolean matchesTargetMonth = !transferMonth.isBefore(reportStartMonth) && !transferMonth.isAfter(reportEndMonth);
-                        
-                        if (matchesTargetMonth) {
-                            if (!periodTransfers.contains(t)) {
-                                periodTransfers.add(t);
-                                totalTransferred = totalTransferred.add(t.getAmount());
-                            }
-                        }
-                    }
-                }
-            }
-            // Ordenar finalmente por createdAt descendente
-            periodTransfers.sort((a, b) -> {
-                if (a.getCreatedAt() == null || b.getCreatedAt() == null) return 0;
-                return b.getCreatedAt().compareTo(a.getCreatedAt());
-            });
+            List<PaymentTransfer> periodTransfers = transfersByReport.getOrDefault(vendor, List.of());
+            BigDecimal totalTransferred = periodTransfers.stream()
+                    .map(PaymentTransfer::getAmount)
+                    .reduce(BigDecimal.ZERO, BigDecimal::add);
 
             // ========================================
             // IMPRESIÓN DE TOTALES GLOBALES (Alineados a la derecha)
             // ========================================
-            rowNum++;
-            Row totalBrutoRow = sheet.createRow(rowNum++);
+            createRow.apply(rowNum++);
+            Row totalBrutoRow = createRow.apply(rowNum++);
             Cell totalBrutoLabelCell = totalBrutoRow.createCell(9); // Shifted
             totalBrutoLabelCell.setCellValue("TOTAL BRUTO VENDIDO:");
             totalBrutoLabelCell.setCellStyle(headerStyle);
@@ -1084,7 +1171,7 @@ public class ReportExportServiceImpl implements ReportExportService {
             totalBrutoValueCell.setCellValue(totalBrutoPeriod.doubleValue());
             totalBrutoValueCell.setCellStyle(currencyStyle);
 
-            Row totalNetoRow = sheet.createRow(rowNum++);
+            Row totalNetoRow = createRow.apply(rowNum++);
             Cell totalNetoLabelCell = totalNetoRow.createCell(9); // Shifted
             totalNetoLabelCell.setCellValue("TOTAL NETO VENDIDO:");
             totalNetoLabelCell.setCellStyle(headerStyle);
@@ -1092,7 +1179,7 @@ public class ReportExportServiceImpl implements ReportExportService {
             totalNetoValueCell.setCellValue(totalNetoPeriod.doubleValue());
             totalNetoValueCell.setCellStyle(currencyStyle);
             
-            Row tTotalRow = sheet.createRow(rowNum++);
+            Row tTotalRow = createRow.apply(rowNum++);
             Cell tTotalLabel = tTotalRow.createCell(9);
             tTotalLabel.setCellValue("TRANSFERENCIAS RECIBIDAS:");
             tTotalLabel.setCellStyle(headerStyle);
@@ -1100,7 +1187,7 @@ public class ReportExportServiceImpl implements ReportExportService {
             tTotalValue.setCellValue(totalTransferred.doubleValue());
             tTotalValue.setCellStyle(currencyStyle);
 
-            Row tGrandTotalRow = sheet.createRow(rowNum++);
+            Row tGrandTotalRow = createRow.apply(rowNum++);
             Cell tGrandLabel = tGrandTotalRow.createCell(9);
             tGrandLabel.setCellValue("TOTAL BASE NÓMINA (Bruto + Transf):");
             tGrandLabel.setCellStyle(headerStyle);
@@ -1108,7 +1195,7 @@ public class ReportExportServiceImpl implements ReportExportService {
             tGrandValue.setCellValue(totalBrutoPeriod.add(totalTransferred).doubleValue());
             tGrandValue.setCellStyle(currencyStyle);
 
-            Row portfolioRow = sheet.createRow(rowNum++);
+            Row portfolioRow = createRow.apply(rowNum++);
             Cell portfolioLabel = portfolioRow.createCell(9);
             portfolioLabel.setCellValue("TOTAL CARTERA:");
             portfolioLabel.setCellStyle(headerStyle);
@@ -1116,7 +1203,7 @@ public class ReportExportServiceImpl implements ReportExportService {
             portfolioValue.setCellValue(totalPendingPeriod.doubleValue());
             portfolioValue.setCellStyle(currencyStyle);
 
-            Row collectedRow = sheet.createRow(rowNum++);
+            Row collectedRow = createRow.apply(rowNum++);
             Cell collectedLabel = collectedRow.createCell(9);
             collectedLabel.setCellValue("TOTAL COBRADO:");
             collectedLabel.setCellStyle(headerStyle);
@@ -1127,10 +1214,10 @@ public class ReportExportServiceImpl implements ReportExportService {
             // ========================================
             // SECCIÓN: TABLA DETALLE DE TRANSFERENCIAS RECIBIDAS
             // ========================================
-            if (!destVendedores.isEmpty() && !periodTransfers.isEmpty()) {
-                rowNum++;
+            if (!periodTransfers.isEmpty()) {
+                createRow.apply(rowNum++);
                 // Encabezado de sección
-                Row transferHeaderRow = sheet.createRow(rowNum++);
+                Row transferHeaderRow = createRow.apply(rowNum++);
                 Cell transferSectionTitle = transferHeaderRow.createCell(0);
                 transferSectionTitle.setCellValue(
                         "DETALLE DE TRANSFERENCIAS RECIBIDAS (Pagos de otros vendedores asignados a esta vendedora)");
@@ -1141,7 +1228,7 @@ public class ReportExportServiceImpl implements ReportExportService {
                 // Headers de la tabla de transferencias
                 String[] tHeaders = { "Fecha Transferencia", "Vendedora Origen",
                         "Orden / Factura", "Monto Transferido", "Mes Destino", "Año", "Motivo", "Registrado por" };
-                Row tHeaderRow = sheet.createRow(rowNum++);
+                Row tHeaderRow = createRow.apply(rowNum++);
                 for (int i = 0; i < tHeaders.length; i++) {
                     Cell hc = tHeaderRow.createCell(i);
                     hc.setCellValue(tHeaders[i]);
@@ -1152,7 +1239,7 @@ public class ReportExportServiceImpl implements ReportExportService {
                         "Julio", "Agosto", "Septiembre", "Octubre", "Noviembre", "Diciembre" };
 
                 for (PaymentTransfer t : periodTransfers) {
-                    Row tRow = sheet.createRow(rowNum++);
+                    Row tRow = createRow.apply(rowNum++);
 
                     // Fecha de la transferencia
                     tRow.createCell(0).setCellValue(
@@ -1195,135 +1282,119 @@ public class ReportExportServiceImpl implements ReportExportService {
                 }
             }
 
-            // ========================================
-            // TABLA RESUMEN: CARTERA POR CLIENTE (a la derecha)
-            // ========================================
-            int summaryStartRow = 3; // Comenzar después del título y período
-            int summaryCol = 13; // Columna después de "Total Día"
-
-            // Título del resumen
-            Row summaryTitleRow = sheet.getRow(summaryStartRow);
-            if (summaryTitleRow == null) {
-                summaryTitleRow = sheet.createRow(summaryStartRow);
+            // Filas restantes del resumen de cartera (cuando es más largo que la hoja)
+            int summaryEndRow = summaryStartRow + summaryLines.size();
+            while (rowNum < summaryEndRow) {
+                createRow.apply(rowNum++);
             }
-            Cell summaryTitleCell = summaryTitleRow.createCell(summaryCol);
-            summaryTitleCell.setCellValue("RESUMEN CARTERA POR CLIENTE");
-            summaryTitleCell.setCellStyle(headerStyle);
-            sheet.addMergedRegion(new org.apache.poi.ss.util.CellRangeAddress(
-                    summaryStartRow, summaryStartRow, summaryCol, summaryCol + 3));
 
-            // Encabezados del resumen (ahora 4 columnas)
-            int summaryHeaderRow = summaryStartRow + 1;
-            Row clientSummaryHeaderRow = sheet.getRow(summaryHeaderRow);
-            if (clientSummaryHeaderRow == null) {
-                clientSummaryHeaderRow = sheet.createRow(summaryHeaderRow);
+            // Ajustar ancho de columnas del resumen
+            for (int i = CLIENT_SUMMARY_COL; i <= CLIENT_SUMMARY_COL + 3; i++) {
+                StreamingExcelWorkbook.autoSizeColumn(sheet, i);
             }
 
-            Cell clientHeaderCell = clientSummaryHeaderRow.createCell(summaryCol);
-            clientHeaderCell.setCellValue("Cliente");
-            clientHeaderCell.setCellStyle(headerStyle);
-
-            Cell invoiceHeaderCell = clientSummaryHeaderRow.createCell(summaryCol + 1);
-            invoiceHeaderCell.setCellValue("# Factura");
-            invoiceHeaderCell.setCellStyle(headerStyle);
+            // Ajustar ancho de columnas
+            for (int i = 0; i < headers.length; i++) {
+                StreamingExcelWorkbook.autoSizeColumn(sheet, i);
+            }
+        }
+    }
 
-            Cell dateHeaderCell = clientSummaryHeaderRow.createCell(summaryCol + 2);
-            dateHeaderCell.setCellValue("Fecha");
-            dateHeaderCell.setCellStyle(headerStyle);
+    /**
+     * Arma el resumen de cartera por cliente (facturas con deuda, subtotal por
+     * cliente y total general) como una lista de líneas. Cada línea llena sus
+     * celdas en la fila que le toque, sin volver a leer filas ya escritas.
+     */
+    private List<java.util.function.Consumer<Row>> buildClientPortfolioSummaryLines(
+            java.util.Map<String, java.util.List<Object[]>> clientPendingInvoices, BigDecimal totalPending,
+            CellStyle headerStyle, CellStyle dataStyle, CellStyle currencyStyle) {
+        int summaryCol = CLIENT_SUMMARY_COL;
+        List<java.util.function.Consumer<Row>> lines = new java.util.ArrayList<>();
 
-            Cell debtHeaderCell = clientSummaryHeaderRow.createCell(summaryCol + 3);
-            debtHeaderCell.setCellValue("Debe");
-            debtHeaderCell.setCellStyle(headerStyle);
+        // Título del resumen
+        lines.add(row -> {
+            Cell summaryTitleCell = row.createCell(summaryCol);
+            summaryTitleCell.setCellValue("RESUMEN CARTERA POR CLIENTE");
+            summaryTitleCell.setCellStyle(headerStyle);
+        });
 
-            // Datos del resumen: Listar facturas con deuda > 0, agrupadas por cliente
-            int summaryDataRow = summaryHeaderRow + 1;
+        // Encabezados del resumen (4 columnas)
+        lines.add(row -> {
+            String[] summaryHeaders = { "Cliente", "# Factura", "Fecha", "Debe" };
+            for (int i = 0; i < summaryHeaders.length; i++) {
+                Cell headerCell = row.createCell(summaryCol + i);
+                headerCell.setCellValue(summaryHeaders[i]);
+                headerCell.setCellStyle(headerStyle);
+            }
+        });
 
-            for (java.util.Map.Entry<String, java.util.List<Object[]>> entry : clientPendingInvoices.entrySet()) {
-                String clientName = entry.getKey();
-                java.util.List<Object[]> clientInvoices = entry.getValue();
+        // Datos del resumen: Listar facturas con deuda > 0, agrupadas por cliente
+        for (java.util.Map.Entry<String, java.util.List<Object[]>> entry : clientPendingInvoices.entrySet()) {
+            String clientName = entry.getKey();
+            java.util.List<Object[]> clientInvoices = entry.getValue();
 
-                // Ordenar por fecha (índice 1 del array)
-                clientInvoices.sort((a, b) -> ((LocalDate) a[1]).compareTo((LocalDate) b[1]));
+            // Ordenar por fecha (índice 1 del array)
+            clientInvoices.sort((a, b) -> ((LocalDate) a[1]).compareTo((LocalDate) b[1]));
 
-                for (int i = 0; i < clientInvoices.size(); i++) {
-                    Object[] inv = clientInvoices.get(i);
-                    Row clientRow = sheet.getRow(summaryDataRow);
-                    if (clientRow == null) {
-                        clientRow = sheet.createRow(summaryDataRow);
-                    }
+            for (int i = 0; i < clientInvoices.size(); i++) {
+                Object[] inv = clientInvoices.get(i);
+                boolean firstOfClient = i == 0;
 
+                lines.add(row -> {
                     // Mostrar nombre del cliente solo en la primera fila
-                    Cell clientNameCell = clientRow.createCell(summaryCol);
-                    if (i == 0) {
+                    Cell clientNameCell = row.createCell(summaryCol);
+                    if (firstOfClient) {
                         clientNameCell.setCellValue(clientName);
                     }
                     clientNameCell.setCellStyle(dataStyle);
 
                     // # Factura
-                    Cell invoiceNumCell = clientRow.createCell(summaryCol + 1);
+                    Cell invoiceNumCell = row.createCell(summaryCol + 1);
                     invoiceNumCell.setCellValue((String) inv[0]);
                     invoiceNumCell.setCellStyle(dataStyle);
 
                     // Fecha
-                    Cell dateCell = clientRow.createCell(summaryCol + 2);
+                    Cell dateCell = row.createCell(summaryCol + 2);
                     dateCell.setCellValue(((LocalDate) inv[1]).format(DATE_FORMATTER));
                     dateCell.setCellStyle(dataStyle);
 
                     // Debe
-                    Cell debtCell = clientRow.createCell(summaryCol + 3);
+                    Cell debtCell = row.createCell(summaryCol + 3);
                     debtCell.setCellValue(((BigDecimal) inv[2]).doubleValue());
                     debtCell.setCellStyle(currencyStyle);
+                });
+            }
 
-                    summaryDataRow++;
-                }
-
-                // Línea de subtotal por cliente si tiene más de una factura
-                if (clientInvoices.size() > 1) {
-                    Row subtotalRow = sheet.getRow(summaryDataRow);
-                    if (subtotalRow == null) {
-                        subtotalRow = sheet.createRow(summaryDataRow);
-                    }
+            // Línea de subtotal por cliente si tiene más de una factura
+            if (clientInvoices.size() > 1) {
+                BigDecimal clientTotal = clientInvoices.stream()
+                        .map(a -> (BigDecimal) a[2])
+                        .reduce(BigDecimal.ZERO, BigDecimal::add);
 
-                    Cell subtotalLabelCell = subtotalRow.createCell(summaryCol + 2);
+                lines.add(row -> {
+                    Cell subtotalLabelCell = row.createCell(summaryCol + 2);
                     subtotalLabelCell.setCellValue("Subtotal:");
                     subtotalLabelCell.setCellStyle(headerStyle);
 
-                    BigDecimal clientTotal = clientInvoices.stream()
-                            .map(a -> (BigDecimal) a[2])
-                            .reduce(BigDecimal.ZERO, BigDecimal::add);
-
-                    Cell subtotalValueCell = subtotalRow.createCell(summaryCol + 3);
+                    Cell subtotalValueCell = row.createCell(summaryCol + 3);
                     subtotalValueCell.setCellValue(clientTotal.doubleValue());
                     subtotalValueCell.setCellStyle(currencyStyle);
-
-                    summaryDataRow++;
-                }
+                });
             }
+        }
 
-            // Total del resumen
-            Row summaryTotalRow = sheet.getRow(summaryDataRow);
-            if (summaryTotalRow == null) {
-                summaryTotalRow = sheet.createRow(summaryDataRow);
-            }
-            Cell summaryTotalLabel = summaryTotalRow.createCell(summaryCol + 2);
+        // Total del resumen
+        lines.add(row -> {
+            Cell summaryTotalLabel = row.createCell(summaryCol + 2);
             summaryTotalLabel.setCellValue("TOTAL:");
             summaryTotalLabel.setCellStyle(headerStyle);
 
-            Cell summaryTotalValue = summaryTotalRow.createCell(summaryCol + 3);
-            summaryTotalValue.setCellValue(totalPendingPeriod.doubleValue());
+            Cell summaryTotalValue = row.createCell(summaryCol + 3);
+            summaryTotalValue.setCellValue(totalPending.doubleValue());
             summaryTotalValue.setCellStyle(currencyStyle);
+        });
 
-            // Ajustar ancho de columnas del resumen
-            sheet.autoSizeColumn(summaryCol);
-            sheet.autoSizeColumn(summaryCol + 1);
-            sheet.autoSizeColumn(summaryCol + 2);
-            sheet.autoSizeColumn(summaryCol + 3);
-
-            // Ajustar ancho de columnas
-            for (int i = 0; i < headers.length; i++) {
-                sheet.autoSizeColumn(i);
-            }
-        }
+        return lines;
     }
 
     // =============================================
@@ -1337,8 +1408,8 @@ public class ReportExportServiceImpl implements ReportExportService {
             return "Sin Asignar";
         }
         // If this is a shared user, use the canonical name (NinaTorres)
-        if (UserUnificationUtil.isSharedUser(vName)) {
-            return UserUnificationUtil.getSharedUsernames(vName).get(0);
+        if (userGroupResolver.isGrouped(vName)) {
+            return userGroupResolver.primaryUsername(vName);
         }
         return vName;
     }
@@ -1426,8 +1497,8 @@ public class ReportExportServiceImpl implements ReportExportService {
             Cell vendorCell = row.createCell(colNum++);
             String displayVendorName = balance.vendedorAsignadoName() != null ? balance.vendedorAsignadoName() : "-";
             // If this is a shared user, use the canonical name (NinaTorres)
-            if (!"-".equals(displayVendorName) && UserUnificationUtil.isSharedUser(displayVendorName)) {
-                displayVendorName = UserUnificationUtil.getSharedUsernames(displayVendorName).get(0);
+            if (!"-".equals(displayVendorName) && userGroupResolver.isGrouped(displayVendorName)) {
+                displayVendorName = userGroupResolver.primaryUsername(displayVendorName);
             }
             vendorCell.setCellValue(displayVendorName);
             vendorCell.setCellStyle(rowDataStyle);
@@ -1483,7 +1554,7 @@ public class ReportExportServiceImpl implements ReportExportService {
 
         // Ajustar ancho de columnas
         for (int i = 0; i < headers.length; i++) {
-            sheet.autoSizeColumn(i);
+            StreamingExcelWorkbook.autoSizeColumn(sheet, i);
         }
     }
 
@@ -1492,23 +1563,25 @@ public class ReportExportServiceImpl implements ReportExportService {
      */
     @Override
     public byte[] exportVendorReportExcel(VendorDailySalesDTO vendorReport) {
-        try (Workbook workbook = new XSSFWorkbook();
-                ByteArrayOutputStream baos = new ByteArrayOutputStream()) {
-
-            CellStyle headerStyle = createHeaderStyle(workbook);
-            CellStyle dataStyle = createDataStyle(workbook);
-            CellStyle currencyStyle = createCurrencyStyle(workbook);
-
-            // Crear solo UNA hoja para este vendedor
-            java.util.List<VendorDailySalesDTO> singleVendorList = java.util.List.of(vendorReport);
-            createVendorDailySalesSheets(workbook, singleVendorList, headerStyle, dataStyle, currencyStyle);
+        return toBytes(streamVendorReportExcel(vendorReport));
+    }
 
-            workbook.write(baos);
-            return baos.toByteArray();
-        } catch (Exception e) {
-            log.error("Error generando Excel para vendedor: {}", vendorReport.vendedorName(), e);
-            throw new RuntimeException("Error al generar reporte de vendedor Excel", e);
-        }
+    @Override
+    public StreamingResponseBody streamVendorReportExcel(VendorDailySalesDTO vendorReport) {
+        java.util.List<VendorDailySalesDTO> singleVendorList = java.util.List.of(vendorReport);
+        java.util.Map<VendorDailySalesDTO, List<PaymentTransfer>> transfersByReport = loadPeriodTransfers(
+                singleVendorList);
+
+        return streamWorkbook("Error generando Excel para vendedor: " + vendorReport.vendedorName(),
+                "Error al generar reporte de vendedor Excel", workbook -> {
+                    CellStyle headerStyle = createHeaderStyle(workbook);
+                    CellStyle dataStyle = createDataStyle(workbook);
+                    CellStyle currencyStyle = createCurrencyStyle(workbook);
+
+                    // Crear solo UNA hoja para este vendedor
+                    writeVendorDailySalesSheets(workbook, singleVendorList, transfersByReport, headerStyle, dataStyle,
+                            currencyStyle);
+                });
     }
 
     /**
@@ -3,19 +3,15 @@ package org.example.sistema_gestion_vitalexa.service.impl;
 import lombok.RequiredArgsConstructor;
 import org.example.sistema_gestion_vitalexa.dto.*;
 import org.example.sistema_gestion_vitalexa.entity.Order;
-import org.example.sistema_gestion_vitalexa.entity.OrderItem;
-import org.example.sistema_gestion_vitalexa.entity.Product;
-import org.example.sistema_gestion_vitalexa.entity.Client;
 import org.example.sistema_gestion_vitalexa.entity.User;
-import org.example.sistema_gestion_vitalexa.enums.OrdenStatus;
 import org.example.sistema_gestion_vitalexa.repository.ClientRepository;
+import org.example.sistema_gestion_vitalexa.repository.OrdenItemRepository;
 import org.example.sistema_gestion_vitalexa.repository.OrdenRepository;
 import org.example.sistema_gestion_vitalexa.repository.ProductRepository;
 import org.example.sistema_gestion_vitalexa.repository.UserRepository;
 import org.example.sistema_gestion_vitalexa.repository.PaymentRepository;
 import org.example.sistema_gestion_vitalexa.repository.PaymentTransferRepository;
 import org.example.sistema_gestion_vitalexa.service.ReportService;
-import org.example.sistema_gestion_vitalexa.util.UserUnificationUtil;
 import org.springframework.stereotype.Service;
 
 import java.math.BigDecimal;
@@ -25,6 +21,7 @@ import java.time.LocalDateTime;
 import java.time.YearMonth;
 import java.time.format.TextStyle;
 import java.util.*;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 @Service
@@ -32,9 +29,11 @@ import java.util.stream.Collectors;
 public class ReportServiceImpl implements ReportService {
 
         private final OrdenRepository ordenRepository;
+        private final OrdenItemRepository ordenItemRepository;
         private final ProductRepository productRepository;
         private final ClientRepository clientRepository;
         private final UserRepository userRepository;
+        private final org.example.sistema_gestion_vitalexa.service.UserGroupResolver userGroupResolver;
         private final PaymentRepository paymentRepository;
         private final PaymentTransferRepository paymentTransferRepository;
 
@@ -67,8 +66,10 @@ public class ReportServiceImpl implements ReportService {
         public SalesReportDTO getSalesReport(LocalDate startDate, LocalDate endDate) {
                 LocalDateTime start = startDate.atStartOfDay();
                 LocalDateTime end = endDate.atTime(23, 59, 59);
-                List<Order> orders = ordenRepository.findCompletedByCompletedAtBetween(start, end);
-                return buildCompanySalesReport(filterExcludedVendors(orders), startDate, endDate);
+                List<OrderSalesAggregateDTO> rows = ordenRepository.aggregateCompletedSalesByVendorAndDay(start, end);
+                return buildCompanySalesReport(
+                                filterExcludedVendors(rows, OrderSalesAggregateDTO::vendedorUsername),
+                                startDate, endDate);
         }
 
         @Override
@@ -76,213 +77,131 @@ public class ReportServiceImpl implements ReportService {
                 LocalDateTime start = startDate.atStartOfDay();
                 LocalDateTime end = endDate.atTime(23, 59, 59);
 
-                User vendor = userRepository.findById(vendorId)
-                                .orElseThrow(() -> new RuntimeException("Vendedor no encontrado"));
+                User vendor = findVendor(vendorId);
 
-                List<Order> orders;
-                if (UserUnificationUtil.isSharedUser(vendor.getUsername())) {
-                        List<String> sharedUsernames = UserUnificationUtil.getSharedUsernames(vendor.getUsername());
-                        orders = ordenRepository.findCompletedByCompletedAtBetween(start, end)
-                                        .stream()
-                                        .filter(o -> o.getVendedor() != null &&
-                                                        sharedUsernames.contains(o.getVendedor().getUsername()))
-                                        .toList();
-                } else {
-                        orders = ordenRepository.findCompletedByCompletedAtBetween(start, end)
-                                        .stream()
-                                        .filter(o -> o.getVendedor() != null
-                                                        && o.getVendedor().getId().equals(vendorId))
-                                        .toList();
-                }
+                List<OrderSalesAggregateDTO> rows = filterByVendor(
+                                ordenRepository.aggregateCompletedSalesByVendorAndDay(start, end), vendor,
+                                OrderSalesAggregateDTO::vendedorId, OrderSalesAggregateDTO::vendedorUsername);
 
-                return buildSalesReport(filterExcludedVendors(orders));
+                return buildSalesReport(filterExcludedVendors(rows, OrderSalesAggregateDTO::vendedorUsername));
         }
         //rebuild
-        private SalesReportDTO buildSalesReport(List<Order> orders) {
-                // Calcular métricas básicas
-                BigDecimal totalRevenue = orders.stream()
-                                .filter(o -> o.getEstado() == OrdenStatus.COMPLETADO)
-                                .map(Order::getTotal)
-                                .reduce(BigDecimal.ZERO, BigDecimal::add);
+        private SalesReportDTO buildSalesReport(List<OrderSalesAggregateDTO> rows) {
+                // Las filas agregadas solo contienen órdenes COMPLETADAS
+                BigDecimal totalRevenue = sumRevenue(rows);
+                int completedOrders = countOrders(rows);
 
-                long completedCount = orders.stream()
-                                .filter(o -> o.getEstado() == OrdenStatus.COMPLETADO)
-                                .count();
-
-                BigDecimal averageOrderValue = completedCount > 0
-                                ? totalRevenue.divide(BigDecimal.valueOf(completedCount), 2, RoundingMode.HALF_UP)
+                BigDecimal averageOrderValue = completedOrders > 0
+                                ? totalRevenue.divide(BigDecimal.valueOf(completedOrders), 2, RoundingMode.HALF_UP)
                                 : BigDecimal.ZERO;
 
-                int totalOrders = orders.size();
-                int completedOrders = (int) completedCount;
-                int pendingOrders = (int) orders.stream()
-                                .filter(o -> o.getEstado() == OrdenStatus.PENDIENTE
-                                                || o.getEstado() == OrdenStatus.CONFIRMADO)
-                                .count();
-                int canceledOrders = (int) orders.stream()
-                                .filter(o -> o.getEstado() == OrdenStatus.CANCELADO)
-                                .count();
-
                 // Ventas diarias
-                List<DailySalesDTO> dailySales = calculateDailySales(orders);
+                List<DailySalesDTO> dailySales = calculateDailySales(rows);
 
                 // Ventas mensuales
-                List<MonthlySalesDTO> monthlySales = calculateMonthlySales(orders);
+                List<MonthlySalesDTO> monthlySales = calculateMonthlySales(rows);
 
                 return new SalesReportDTO(
                                 totalRevenue,
                                 averageOrderValue,
-                                totalOrders,
                                 completedOrders,
-                                pendingOrders,
-                                canceledOrders,
+                                completedOrders,
+                                0,
+                                0,
                                 dailySales,
                                 monthlySales);
         }
 
-        private SalesReportDTO buildCompanySalesReport(List<Order> orders, LocalDate startDate, LocalDate endDate) {
-                BigDecimal orderRevenue = orders.stream()
-                                .filter(o -> o.getEstado() == OrdenStatus.COMPLETADO)
-                                .map(Order::getTotal)
-                                .reduce(BigDecimal.ZERO, BigDecimal::add);
-
-                long completedCount = orders.stream()
-                                .filter(o -> o.getEstado() == OrdenStatus.COMPLETADO)
-                                .count();
+        private SalesReportDTO buildCompanySalesReport(List<OrderSalesAggregateDTO> rows, LocalDate startDate,
+                        LocalDate endDate) {
+                BigDecimal orderRevenue = sumRevenue(rows);
+                int completedOrders = countOrders(rows);
 
-                BigDecimal averageOrderValue = completedCount > 0
-                                ? orderRevenue.divide(BigDecimal.valueOf(completedCount), 2, RoundingMode.HALF_UP)
+                BigDecimal averageOrderValue = completedOrders > 0
+                                ? orderRevenue.divide(BigDecimal.valueOf(completedOrders), 2, RoundingMode.HALF_UP)
                                 : BigDecimal.ZERO;
 
-                int totalOrders = orders.size();
-                int completedOrders = (int) completedCount;
-                int pendingOrders = (int) orders.stream()
-                                .filter(o -> o.getEstado() == OrdenStatus.PENDIENTE
-                                                || o.getEstado() == OrdenStatus.CONFIRMADO)
-                                .count();
-                int canceledOrders = (int) orders.stream()
-                                .filter(o -> o.getEstado() == OrdenStatus.CANCELADO)
-                                .count();
-
-                List<DailySalesDTO> dailySales = calculateDailySales(orders);
+                List<DailySalesDTO> dailySales = calculateDailySales(rows);
                 Map<YearMonth, BigDecimal> transfersByMonth = calculateTransfersByMonthForCompanyVendors(
                                 startDate, endDate);
-                List<MonthlySalesDTO> monthlySales = calculateMonthlySales(orders, transfersByMonth);
+                List<MonthlySalesDTO> monthlySales = calculateMonthlySales(rows, transfersByMonth);
 
                 BigDecimal totalRevenue = calculateCompanyBaseNomina(startDate, endDate);
 
                 return new SalesReportDTO(
                                 totalRevenue,
                                 averageOrderValue,
-                                totalOrders,
                                 completedOrders,
-                                pendingOrders,
-                                canceledOrders,
+                                completedOrders,
+                                0,
+                                0,
                                 dailySales,
                                 monthlySales);
         }
 
         @Override
         public ProductReportDTO getProductReport() {
-                // Producto general: todos los productos
-                List<Product> products = productRepository.findAll();
-                List<Order> completedOrders = ordenRepository.findByEstado(OrdenStatus.COMPLETADO);
-                return buildProductReport(products, completedOrders);
+                // Producto general: todo el histórico de órdenes completadas
+                return buildProductReport(ordenItemRepository.aggregateCompletedSalesByProductAndVendor());
         }
 
         @Override
         public ProductReportDTO getProductReport(UUID vendorId) {
-                List<Product> products = productRepository.findAll();
+                User vendor = findVendor(vendorId);
 
-                // Get vendor user to check if it's a shared user
-                User vendor = userRepository.findById(vendorId)
-                                .orElseThrow(() -> new RuntimeException("Vendedor no encontrado"));
-
-                List<Order> vendorOrders;
-                if (UserUnificationUtil.isSharedUser(vendor.getUsername())) {
-                        // Get orders for both shared users
-                        List<String> sharedUsernames = UserUnificationUtil.getSharedUsernames(vendor.getUsername());
-                        vendorOrders = ordenRepository.findByEstado(OrdenStatus.COMPLETADO)
-                                        .stream()
-                                        .filter(o -> o.getVendedor() != null &&
-                                                        sharedUsernames.contains(o.getVendedor().getUsername()))
-                                        .toList();
-                } else {
-                        vendorOrders = ordenRepository.findByEstado(OrdenStatus.COMPLETADO)
-                                        .stream()
-                                        .filter(o -> o.getVendedor() != null
-                                                        && o.getVendedor().getId().equals(vendorId))
-                                        .toList();
-                }
+                List<ProductSalesAggregateDTO> rows = filterByVendor(
+                                ordenItemRepository.aggregateCompletedSalesByProductAndVendor(), vendor,
+                                ProductSalesAggregateDTO::vendedorId, ProductSalesAggregateDTO::vendedorUsername);
 
-                return buildProductReport(products, filterExcludedVendors(vendorOrders));
+                return buildProductReport(filterExcludedVendors(rows, ProductSalesAggregateDTO::vendedorUsername));
         }
 
         @Override
         public ProductReportDTO getProductReport(LocalDate startDate, LocalDate endDate) {
                 // Productos general filtered by date
-                List<Product> products = productRepository.findAll();
                 LocalDateTime start = startDate.atStartOfDay();
                 LocalDateTime end = endDate.atTime(23, 59, 59);
-                List<Order> completedOrders = ordenRepository.findCompletedByCompletedAtBetween(start, end);
-                return buildProductReport(products, filterExcludedVendors(completedOrders));
+                List<ProductSalesAggregateDTO> rows = ordenItemRepository
+                                .aggregateCompletedSalesByProductAndVendorBetween(start, end);
+                return buildProductReport(filterExcludedVendors(rows, ProductSalesAggregateDTO::vendedorUsername));
         }
 
         @Override
         public ProductReportDTO getProductReport(LocalDate startDate, LocalDate endDate, UUID vendorId) {
-                List<Product> products = productRepository.findAll();
                 LocalDateTime start = startDate.atStartOfDay();
                 LocalDateTime end = endDate.atTime(23, 59, 59);
 
-                User vendor = userRepository.findById(vendorId)
-                                .orElseThrow(() -> new RuntimeException("Vendedor no encontrado"));
-
-                List<Order> vendorOrders = ordenRepository.findCompletedByCompletedAtBetween(start, end);
+                User vendor = findVendor(vendorId);
 
-                if (UserUnificationUtil.isSharedUser(vendor.getUsername())) {
-                        // Filter for both shared users
-                        List<String> sharedUsernames = UserUnificationUtil.getSharedUsernames(vendor.getUsername());
-                        vendorOrders = vendorOrders.stream()
-                                        .filter(o -> o.getVendedor() != null &&
-                                                        sharedUsernames.contains(o.getVendedor().getUsername()))
-                                        .toList();
-                } else {
-                        vendorOrders = vendorOrders.stream()
-                                        .filter(o -> o.getVendedor() != null
-                                                        && o.getVendedor().getId().equals(vendorId))
-                                        .toList();
-                }
+                List<ProductSalesAggregateDTO> rows = filterByVendor(
+                                ordenItemRepository.aggregateCompletedSalesByProductAndVendorBetween(start, end),
+                                vendor,
+                                ProductSalesAggregateDTO::vendedorId, ProductSalesAggregateDTO::vendedorUsername);
 
-                return buildProductReport(products, filterExcludedVendors(vendorOrders));
+                return buildProductReport(filterExcludedVendors(rows, ProductSalesAggregateDTO::vendedorUsername));
         }
 
-        private ProductReportDTO buildProductReport(List<Product> products, List<Order> ordersForStats) {
-                int totalProducts = products.size();
-                int activeProducts = (int) products.stream().filter(Product::isActive).count();
+        private ProductReportDTO buildProductReport(List<ProductSalesAggregateDTO> salesRows) {
+                // Conteos y valor de inventario calculados en BD (sin cargar el catálogo)
+                int totalProducts = (int) productRepository.count();
+                int activeProducts = (int) productRepository.countByActiveTrue();
                 int inactiveProducts = totalProducts - activeProducts;
-                int lowStockProducts = (int) products.stream()
-                                .filter(p -> p.getStock() < 10 && p.isActive())
-                                .count();
+                int lowStockProducts = (int) productRepository.countByActiveTrueAndStockLessThan(10);
 
                 // Valor total del inventario
-                BigDecimal totalInventoryValue = products.stream()
-                                .filter(Product::isActive)
-                                .map(p -> p.getPrecio().multiply(BigDecimal.valueOf(p.getStock())))
-                                .reduce(BigDecimal.ZERO, BigDecimal::add);
+                BigDecimal totalInventoryValue = productRepository.sumActiveInventoryValue();
 
                 // Top productos más vendidos (Basado en las órdenes pasadas)
-                List<TopProductDTO> topProducts = calculateTopSellingProducts(ordersForStats);
+                List<TopProductDTO> topProducts = calculateTopSellingProducts(salesRows);
 
                 // Productos con stock bajo
-                List<LowStockProductDTO> lowStockDetails = products.stream()
-                                .filter(p -> p.getStock() < 10 && p.isActive())
+                List<LowStockProductDTO> lowStockDetails = productRepository
+                                .findTop10ByActiveTrueAndStockLessThanOrderByStockAsc(10).stream()
                                 .map(p -> new LowStockProductDTO(
                                                 p.getId().toString(),
                                                 p.getNombre(),
                                                 p.getStock(),
                                                 p.getStock() == 0 ? "SIN STOCK" : "STOCK BAJO"))
-                                .sorted(Comparator.comparingInt(LowStockProductDTO::currentStock))
-                                .limit(10)
                                 .toList();
 
                 return new ProductReportDTO(
@@ -300,42 +219,44 @@ public class ReportServiceImpl implements ReportService {
                 LocalDateTime start = startDate.atStartOfDay();
                 LocalDateTime end = endDate.atTime(23, 59, 59);
 
-                List<Order> orders = filterExcludedVendors(
-                                ordenRepository.findCompletedByCompletedAtBetween(start, end));
+                List<OrderSalesAggregateDTO> rows = filterExcludedVendors(
+                                ordenRepository.aggregateCompletedSalesByVendorAndDay(start, end),
+                                OrderSalesAggregateDTO::vendedorUsername);
 
-                int startMonth = startDate.getMonthValue();
-                int startYear = startDate.getYear();
-                int endMonth = endDate.getMonthValue();
-                int endYear = endDate.getYear();
+                // 1. Transferencias de todos los vendedores en una sola consulta
+                Map<UUID, BigDecimal> transfersByVendor = paymentTransferRepository
+                                .sumActiveTransfersByVendedorInRange(
+                                                startDate.getMonthValue(), startDate.getYear(),
+                                                endDate.getMonthValue(), endDate.getYear())
+                                .stream()
+                                .collect(Collectors.toMap(VendorTransferTotalDTO::vendedorId,
+                                                t -> t.amount() != null ? t.amount() : BigDecimal.ZERO));
 
                 // 2. Agrupar por vendedor (unificando usuarios compartidos)
-                Map<String, List<Order>> ordersByVendor = orders.stream()
-                                .collect(Collectors.groupingBy(o -> getVendorGroupKey(o.getVendedor())));
+                Map<String, List<OrderSalesAggregateDTO>> rowsByVendor = rows.stream()
+                                .collect(Collectors.groupingBy(
+                                                r -> getVendorGroupKey(r.vendedorId(), r.vendedorUsername())));
 
-                Map<String, Set<UUID>> vendorIdsByGroup = userRepository.findAll().stream()
+                List<User> users = userRepository.findAll();
+                Map<String, Set<UUID>> vendorIdsByGroup = users.stream()
                                 .filter(u -> u.getUsername() != null)
-                                .filter(u -> !EXCLUDED_BODEGA_VENDORS.contains(
-                                                u.getUsername().trim().toLowerCase()))
+                                .filter(u -> !isExcludedVendor(u.getUsername()))
                                 .collect(Collectors.groupingBy(
-                                                this::getVendorGroupKey,
+                                                u -> getVendorGroupKey(u.getId(), u.getUsername()),
                                                 Collectors.mapping(User::getId, Collectors.toSet())));
 
                 List<VendorPerformanceDTO> topVendors = vendorIdsByGroup.entrySet().stream()
                                 .map(entry -> {
                                         String groupKey = entry.getKey();
                                         Set<UUID> vendorIds = entry.getValue();
-                                        List<Order> vendorOrders = ordersByVendor.getOrDefault(groupKey, List.of());
+                                        List<OrderSalesAggregateDTO> vendorRows = rowsByVendor.getOrDefault(groupKey,
+                                                        List.of());
 
-                                        int totalOrders = vendorOrders.size();
-                                        BigDecimal orderRevenue = vendorOrders.stream()
-                                                        .map(Order::getTotal)
-                                                        .reduce(BigDecimal.ZERO, BigDecimal::add);
+                                        int totalOrders = countOrders(vendorRows);
+                                        BigDecimal orderRevenue = sumRevenue(vendorRows);
 
                                         BigDecimal transferRevenue = vendorIds.stream()
-                                                        .map(id -> paymentTransferRepository
-                                                                        .sumActiveTransfersToVendedorInRange(
-                                                                                        id, startMonth, startYear,
-                                                                                        endMonth, endYear))
+                                                        .map(id -> transfersByVendor.getOrDefault(id, BigDecimal.ZERO))
                                                         .reduce(BigDecimal.ZERO, BigDecimal::add);
 
                                         BigDecimal totalRevenue = orderRevenue.add(transferRevenue);
@@ -344,7 +265,7 @@ public class ReportServiceImpl implements ReportService {
                                                                         RoundingMode.HALF_UP)
                                                         : BigDecimal.ZERO;
 
-                                        String vendorName = resolveVendorName(groupKey, vendorOrders, vendorIds);
+                                        String vendorName = resolveVendorName(groupKey, vendorRows, vendorIds, users);
 
                                         return new VendorPerformanceDTO(
                                                         groupKey,
@@ -364,58 +285,34 @@ public class ReportServiceImpl implements ReportService {
 
         @Override
         public ClientReportDTO getClientReport() {
-                List<Client> clients = clientRepository.findAll();
-                // Calcular top basado en transacciones globales (o totales históricos del
-                // cliente)
-                // Para simplificar y consistencia, usamos findAll y lógica en memoria, o
-                // queries personalizadas.
-                // Aquí usamos la lógica existente.
-                return buildClientReport(clients);
+                // Top basado en todas las órdenes (histórico completo del cliente)
+                return buildClientReport(
+                                (int) clientRepository.count(),
+                                (int) clientRepository.countByActiveTrue(),
+                                ordenRepository.aggregateSalesByClientAndVendor());
         }
 
         @Override
         public ClientReportDTO getClientReport(UUID vendorId) {
-                // Get vendor user to check if it's a shared user
-                User vendor = userRepository.findById(vendorId)
-                                .orElseThrow(() -> new RuntimeException("Vendedor no encontrado"));
-
-                List<Client> allClients = clientRepository.findAll();
-                List<Order> vendorOrders;
-
-                if (UserUnificationUtil.isSharedUser(vendor.getUsername())) {
-                        // Get orders for both shared users
-                        List<String> sharedUsernames = UserUnificationUtil.getSharedUsernames(vendor.getUsername());
-                        vendorOrders = ordenRepository.findAll().stream()
-                                        .filter(o -> o.getVendedor() != null &&
-                                                        sharedUsernames.contains(o.getVendedor().getUsername()))
-                                        .toList();
-                } else {
-                        vendorOrders = ordenRepository.findAll().stream()
-                                        .filter(o -> o.getVendedor() != null
-                                                        && o.getVendedor().getId().equals(vendorId))
-                                        .toList();
-                }
+                User vendor = findVendor(vendorId);
 
-                List<Order> filteredVendorOrders = filterExcludedVendors(vendorOrders);
+                List<ClientSalesAggregateDTO> rows = filterByVendor(
+                                ordenRepository.aggregateSalesByClientAndVendor(), vendor,
+                                ClientSalesAggregateDTO::vendedorId, ClientSalesAggregateDTO::vendedorUsername);
 
-                Set<UUID> vendorClientIds = filteredVendorOrders.stream()
-                                .map(o -> o.getCliente().getId())
-                                .collect(Collectors.toSet());
-
-                List<Client> vendorClients = allClients.stream()
-                                .filter(c -> vendorClientIds.contains(c.getId()))
-                                .toList();
-
-                return buildClientReport(vendorClients, filteredVendorOrders);
+                return buildVendorClientReport(filterExcludedVendors(rows, ClientSalesAggregateDTO::vendedorUsername));
         }
 
         @Override
         public ClientReportDTO getClientReport(LocalDate startDate, LocalDate endDate) {
-                List<Client> clients = clientRepository.findAll();
                 LocalDateTime start = startDate.atStartOfDay();
                 LocalDateTime end = endDate.atTime(23, 59, 59);
-                List<Order> ordersInPeriod = ordenRepository.findCompletedByCompletedAtBetween(start, end);
-                return buildClientReport(clients, filterExcludedVendors(ordersInPeriod));
+                List<ClientSalesAggregateDTO> rows = ordenRepository.aggregateCompletedSalesByClientAndVendor(start,
+                                end);
+                return buildClientReport(
+                                (int) clientRepository.count(),
+                                (int) clientRepository.countByActiveTrue(),
+                                filterExcludedVendors(rows, ClientSalesAggregateDTO::vendedorUsername));
         }
 
         @Override
@@ -423,73 +320,46 @@ public class ReportServiceImpl implements ReportService {
                 LocalDateTime start = startDate.atStartOfDay();
                 LocalDateTime end = endDate.atTime(23, 59, 59);
 
-                User vendor = userRepository.findById(vendorId)
-                                .orElseThrow(() -> new RuntimeException("Vendedor no encontrado"));
-
-                List<Client> allClients = clientRepository.findAll();
-                List<Order> vendorOrders = ordenRepository.findCompletedByCompletedAtBetween(start, end);
-
-                if (UserUnificationUtil.isSharedUser(vendor.getUsername())) {
-                        // Filter for both shared users
-                        List<String> sharedUsernames = UserUnificationUtil.getSharedUsernames(vendor.getUsername());
-                        vendorOrders = vendorOrders.stream()
-                                        .filter(o -> o.getVendedor() != null &&
-                                                        sharedUsernames.contains(o.getVendedor().getUsername()))
-                                        .toList();
-                } else {
-                        vendorOrders = vendorOrders.stream()
-                                        .filter(o -> o.getVendedor() != null
-                                                        && o.getVendedor().getId().equals(vendorId))
-                                        .toList();
-                }
-
-                List<Order> filteredVendorOrders = filterExcludedVendors(vendorOrders);
-
-                Set<UUID> vendorClientIds = filteredVendorOrders.stream()
-                                .map(o -> o.getCliente().getId())
-                                .collect(Collectors.toSet());
+                User vendor = findVendor(vendorId);
 
-                List<Client> vendorClients = allClients.stream()
-                                .filter(c -> vendorClientIds.contains(c.getId()))
-                                .toList();
-
-                return buildClientReport(vendorClients, filteredVendorOrders);
-        }
+                List<ClientSalesAggregateDTO> rows = filterByVendor(
+                                ordenRepository.aggregateCompletedSalesByClientAndVendor(start, end), vendor,
+                                ClientSalesAggregateDTO::vendedorId, ClientSalesAggregateDTO::vendedorUsername);
 
-        private ClientReportDTO buildClientReport(List<Client> clients) {
-                return buildClientReport(clients, ordenRepository.findAll());
+                return buildVendorClientReport(filterExcludedVendors(rows, ClientSalesAggregateDTO::vendedorUsername));
         }
 
-        private ClientReportDTO buildClientReport(List<Client> clients, List<Order> contextOrders) {
-                int totalClients = clients.size();
-                int activeClients = (int) clients.stream().filter(Client::isActive).count();
+        /**
+         * Reporte de clientes limitado a los clientes que aparecen en las órdenes
+         * del vendedor.
+         */
+        private ClientReportDTO buildVendorClientReport(List<ClientSalesAggregateDTO> rows) {
+                Map<UUID, Boolean> vendorClients = new HashMap<>();
+                rows.forEach(r -> vendorClients.put(r.clientId(), Boolean.TRUE.equals(r.clientActive())));
 
-                // Optimización: Map de conteos y totales pre-calculado del contexto
-                Map<UUID, Long> orderCounts = contextOrders.stream()
-                                .collect(Collectors.groupingBy(o -> o.getCliente().getId(), Collectors.counting()));
+                int activeClients = (int) vendorClients.values().stream().filter(Boolean::booleanValue).count();
+                return buildClientReport(vendorClients.size(), activeClients, rows);
+        }
 
-                Map<UUID, BigDecimal> orderTotals = contextOrders.stream()
-                                .collect(Collectors.groupingBy(
-                                                o -> o.getCliente().getId(),
-                                                Collectors.mapping(Order::getTotal, Collectors.reducing(BigDecimal.ZERO,
-                                                                BigDecimal::add))));
+        private ClientReportDTO buildClientReport(int totalClients, int activeClients,
+                        List<ClientSalesAggregateDTO> rows) {
+                // Unificar filas cliente/vendedor en totales por cliente
+                Map<UUID, ClientSalesData> salesByClient = new HashMap<>();
+                rows.forEach(r -> salesByClient
+                                .computeIfAbsent(r.clientId(), k -> new ClientSalesData(r))
+                                .add(r.totalSpent(), r.orders()));
 
                 // Top clientes
-                List<TopClientDTO> topClients = clients.stream()
-                                .filter(c -> orderTotals.getOrDefault(c.getId(), BigDecimal.ZERO)
-                                                .compareTo(BigDecimal.ZERO) > 0)
-                                .sorted(Comparator.comparing(
-                                                (Client c) -> orderTotals.getOrDefault(c.getId(), BigDecimal.ZERO))
-                                                .reversed())
+                List<TopClientDTO> topClients = salesByClient.values().stream()
+                                .filter(c -> c.totalSpent.compareTo(BigDecimal.ZERO) > 0)
+                                .sorted(Comparator.comparing((ClientSalesData c) -> c.totalSpent).reversed())
                                 .limit(10)
-                                .map(c -> {
-                                        return new TopClientDTO(
-                                                        c.getId().toString(),
-                                                        c.getNombre(),
-                                                        c.getTelefono(),
-                                                        orderTotals.getOrDefault(c.getId(), BigDecimal.ZERO),
-                                                        orderCounts.getOrDefault(c.getId(), 0L).intValue());
-                                })
+                                .map(c -> new TopClientDTO(
+                                                c.clientId.toString(),
+                                                c.clientName,
+                                                c.clientPhone,
+                                                c.totalSpent,
+                                                (int) c.orders))
                                 .toList();
 
                 return new ClientReportDTO(totalClients, activeClients, topClients);
@@ -504,39 +374,63 @@ public class ReportServiceImpl implements ReportService {
                 return o.getCompletedAt() != null ? o.getCompletedAt() : o.getFecha();
         }
 
-        private List<Order> filterExcludedVendors(List<Order> orders) {
-                return orders.stream()
-                                .filter(o -> {
-                                        if (o.getVendedor() == null || o.getVendedor().getUsername() == null) {
-                                                return true;
-                                        }
-                                        String normalized = o.getVendedor().getUsername().trim().toLowerCase();
-                                        return !EXCLUDED_BODEGA_VENDORS.contains(normalized);
-                                })
+        private User findVendor(UUID vendorId) {
+                return userRepository.findById(vendorId)
+                                .orElseThrow(() -> new RuntimeException("Vendedor no encontrado"));
+        }
+
+        private boolean isExcludedVendor(String username) {
+                return username != null && EXCLUDED_BODEGA_VENDORS.contains(username.trim().toLowerCase());
+        }
+
+        /**
+         * Quita las filas de las bodegas. Las filas sin vendedor se conservan.
+         */
+        private <T> List<T> filterExcludedVendors(List<T> rows, Function<T, String> username) {
+                return rows.stream()
+                                .filter(r -> !isExcludedVendor(username.apply(r)))
+                                .toList();
+        }
+
+        /**
+         * Deja solo las filas del vendedor. Para usuarios compartidos se aceptan
+         * las filas de ambas cuentas (por username), si no se compara por id.
+         */
+        private <T> List<T> filterByVendor(List<T> rows, User vendor, Function<T, UUID> vendedorId,
+                        Function<T, String> vendedorUsername) {
+                if (userGroupResolver.isGrouped(vendor.getUsername())) {
+                        List<String> sharedUsernames = userGroupResolver.usernamesOf(vendor.getUsername());
+                        return rows.stream()
+                                        .filter(r -> vendedorId.apply(r) != null
+                                                        && sharedUsernames.contains(vendedorUsername.apply(r)))
+                                        .toList();
+                }
+                return rows.stream()
+                                .filter(r -> vendor.getId().equals(vendedorId.apply(r)))
                                 .toList();
         }
 
-        private String getVendorGroupKey(User vendedor) {
-                if (vendedor == null || vendedor.getUsername() == null) {
+        private String getVendorGroupKey(UUID vendedorId, String username) {
+                if (vendedorId == null || username == null) {
                         return "unknown";
                 }
-                String username = vendedor.getUsername();
-                if (UserUnificationUtil.isSharedUser(username)) {
-                        return UserUnificationUtil.getSharedUsernames(username).get(0);
+                if (userGroupResolver.isGrouped(username)) {
+                        return userGroupResolver.primaryUsername(username);
                 }
-                return vendedor.getId().toString();
+                return vendedorId.toString();
         }
 
-        private String resolveVendorName(String groupKey, List<Order> vendorOrders, Set<UUID> vendorIds) {
-                if (!vendorOrders.isEmpty()) {
-                        String username = vendorOrders.get(0).getVendedor().getUsername();
-                        if (UserUnificationUtil.isSharedUser(username)) {
-                                return UserUnificationUtil.getSharedUsernames(username).get(0);
+        private String resolveVendorName(String groupKey, List<OrderSalesAggregateDTO> vendorRows,
+                        Set<UUID> vendorIds, List<User> users) {
+                if (!vendorRows.isEmpty()) {
+                        String username = vendorRows.get(0).vendedorUsername();
+                        if (userGroupResolver.isGrouped(username)) {
+                                return userGroupResolver.primaryUsername(username);
                         }
                         return username;
                 }
 
-                return userRepository.findAll().stream()
+                return users.stream()
                                 .filter(u -> vendorIds.contains(u.getId()))
                                 .map(User::getUsername)
                                 .filter(Objects::nonNull)
@@ -544,44 +438,50 @@ public class ReportServiceImpl implements ReportService {
                                 .orElse(groupKey);
         }
 
-        private List<DailySalesDTO> calculateDailySales(List<Order> orders) {
-                Map<LocalDate, List<Order>> ordersByDate = orders.stream()
-                                .filter(o -> o.getEstado() == OrdenStatus.COMPLETADO)
-                                .collect(Collectors.groupingBy(o -> getOrderDate(o).toLocalDate()));
+        private BigDecimal sumRevenue(List<OrderSalesAggregateDTO> rows) {
+                return rows.stream()
+                                .map(OrderSalesAggregateDTO::revenue)
+                                .filter(Objects::nonNull)
+                                .reduce(BigDecimal.ZERO, BigDecimal::add);
+        }
 
-                return ordersByDate.entrySet().stream()
-                                .map(entry -> {
-                                        BigDecimal dailyRevenue = entry.getValue().stream()
-                                                        .map(Order::getTotal)
-                                                        .reduce(BigDecimal.ZERO, BigDecimal::add);
-                                        return new DailySalesDTO(
-                                                        entry.getKey(),
-                                                        dailyRevenue,
-                                                        entry.getValue().size());
-                                })
+        private int countOrders(List<OrderSalesAggregateDTO> rows) {
+                return (int) rows.stream().mapToLong(OrderSalesAggregateDTO::orders).sum();
+        }
+
+        private LocalDate rowDate(OrderSalesAggregateDTO row) {
+                return LocalDate.of(row.year(), row.month(), row.day());
+        }
+
+        private List<DailySalesDTO> calculateDailySales(List<OrderSalesAggregateDTO> rows) {
+                Map<LocalDate, List<OrderSalesAggregateDTO>> rowsByDate = rows.stream()
+                                .collect(Collectors.groupingBy(this::rowDate));
+
+                return rowsByDate.entrySet().stream()
+                                .map(entry -> new DailySalesDTO(
+                                                entry.getKey(),
+                                                sumRevenue(entry.getValue()),
+                                                countOrders(entry.getValue())))
                                 .sorted(Comparator.comparing(DailySalesDTO::date))
                                 .toList();
         }
 
-        private List<MonthlySalesDTO> calculateMonthlySales(List<Order> orders) {
-                return calculateMonthlySales(orders, Collections.emptyMap());
+        private List<MonthlySalesDTO> calculateMonthlySales(List<OrderSalesAggregateDTO> rows) {
+                return calculateMonthlySales(rows, Collections.emptyMap());
         }
 
-        private List<MonthlySalesDTO> calculateMonthlySales(List<Order> orders,
+        private List<MonthlySalesDTO> calculateMonthlySales(List<OrderSalesAggregateDTO> rows,
                         Map<YearMonth, BigDecimal> transfersByMonth) {
-                Map<YearMonth, List<Order>> ordersByMonth = orders.stream()
-                                .filter(o -> o.getEstado() == OrdenStatus.COMPLETADO)
-                                .collect(Collectors.groupingBy(o -> YearMonth.from(getOrderDate(o))));
+                Map<YearMonth, List<OrderSalesAggregateDTO>> rowsByMonth = rows.stream()
+                                .collect(Collectors.groupingBy(r -> YearMonth.of(r.year(), r.month())));
 
-                Set<YearMonth> allMonths = new HashSet<>(ordersByMonth.keySet());
+                Set<YearMonth> allMonths = new HashSet<>(rowsByMonth.keySet());
                 allMonths.addAll(transfersByMonth.keySet());
 
                 return allMonths.stream()
                                 .map(ym -> {
-                                        List<Order> monthOrders = ordersByMonth.getOrDefault(ym, List.of());
-                                        BigDecimal monthlyRevenue = monthOrders.stream()
-                                                        .map(Order::getTotal)
-                                                        .reduce(BigDecimal.ZERO, BigDecimal::add)
+                                        List<OrderSalesAggregateDTO> monthRows = rowsByMonth.getOrDefault(ym, List.of());
+                                        BigDecimal monthlyRevenue = sumRevenue(monthRows)
                                                         .add(transfersByMonth.getOrDefault(ym, BigDecimal.ZERO));
 
                                         String monthName = java.time.Month.of(ym.getMonthValue())
@@ -592,7 +492,7 @@ public class ReportServiceImpl implements ReportService {
                                                         ym.getMonthValue(),
                                                         ym.getYear(),
                                                         monthlyRevenue,
-                                                        monthOrders.size());
+                                                        countOrders(monthRows));
                                 })
                                 .sorted(Comparator.comparing(MonthlySalesDTO::year)
                                                 .thenComparingInt(MonthlySalesDTO::monthNumber))
@@ -658,25 +558,14 @@ public class ReportServiceImpl implements ReportService {
                                 .toList();
         }
 
-        private List<TopProductDTO> calculateTopSellingProducts(List<Order> orders) {
-                // Usamos las órdenes pasadas como contexto (pueden ser todas o filtradas)
-                // Filtrar solo completadas si no vienen ya filtradas?
-                // Asumimos que el caller pasa órdenes relevantes (idealmente completadas).
-                // Pero `ordersForStats` en `buildProductReport` viene de `completedOrders`.
-                // Sin embargo, aseguramos que sean completadas por si acaso, o confiamos en el
-                // caller.
-                // En `buildProductReport` lines 121 y 134 filtramos por COMPUTADO.
-                // Así que iteramos directo.
-
-                Map<String, ProductSalesData> productSales = new HashMap<>();
+        private List<TopProductDTO> calculateTopSellingProducts(List<ProductSalesAggregateDTO> rows) {
+                // Las filas vienen agrupadas por producto y vendedor: se unifican por producto
+                Map<UUID, ProductSalesData> productSales = new HashMap<>();
 
-                orders.forEach(order -> order.getItems().forEach(item -> {
-                        String productId = item.getProduct().getId().toString();
-                        productSales.computeIfAbsent(productId, k -> new ProductSalesData(
-                                        productId,
-                                        item.getProduct().getNombre(),
-                                        item.getProduct().getImageUrl())).add(item.getCantidad(), item.getSubTotal());
-                }));
+                rows.forEach(r -> productSales.computeIfAbsent(r.productId(), k -> new ProductSalesData(
+                                r.productId().toString(),
+                                r.productName(),
+                                r.imageUrl())).add(r.quantitySold(), r.revenue()));
 
                 return productSales.values().stream()
                                 .sorted(Comparator.comparing(ProductSalesData::getQuantitySold).reversed())
@@ -704,9 +593,13 @@ public class ReportServiceImpl implements ReportService {
                         this.imageUrl = imageUrl;
                 }
 
-                void add(int quantity, BigDecimal amount) {
-                        this.quantitySold += quantity;
-                        this.revenue = this.revenue.add(amount);
+                void add(Long quantity, BigDecimal amount) {
+                        if (quantity != null) {
+                                this.quantitySold += quantity.intValue();
+                        }
+                        if (amount != null) {
+                                this.revenue = this.revenue.add(amount);
+                        }
                 }
 
                 int getQuantitySold() {
@@ -714,6 +607,30 @@ public class ReportServiceImpl implements ReportService {
                 }
         }
 
+        // Clase auxiliar para agrupar datos de compras por cliente
+        private static class ClientSalesData {
+                UUID clientId;
+                String clientName;
+                String clientPhone;
+                BigDecimal totalSpent = BigDecimal.ZERO;
+                long orders = 0;
+
+                ClientSalesData(ClientSalesAggregateDTO row) {
+                        this.clientId = row.clientId();
+                        this.clientName = row.clientName();
+                        this.clientPhone = row.clientPhone();
+                }
+
+                void add(BigDecimal amount, Long count) {
+                        if (amount != null) {
+                                this.totalSpent = this.totalSpent.add(amount);
+                        }
+                        if (count != null) {
+                                this.orders += count;
+                        }
+                }
+        }
+
         @Override
         public List<VendorDailySalesDTO> getVendorDailySalesReport(LocalDate startDate, LocalDate endDate) {
                 LocalDateTime start = startDate.atStartOfDay();
@@ -728,9 +645,9 @@ public class ReportServiceImpl implements ReportService {
                                 .collect(Collectors.groupingBy(o -> {
                                         String username = o.getVendedor().getUsername();
                                         // If this is a shared user, use a unified key
-                                        if (UserUnificationUtil.isSharedUser(username)) {
+                                        if (userGroupResolver.isGrouped(username)) {
                                                 // Use the first shared username as the canonical key
-                                                return UserUnificationUtil.getSharedUsernames(username).get(0);
+                                                return userGroupResolver.primaryUsername(username);
                                         }
                                         return o.getVendedor().getId().toString();
                                 }));
@@ -745,9 +662,8 @@ public class ReportServiceImpl implements ReportService {
 
                                         // If this is a shared user, use the canonical name (NinaTorres)
                                         String vendedorName;
-                                        if (UserUnificationUtil.isSharedUser(actualUsername)) {
-                                                vendedorName = UserUnificationUtil.getSharedUsernames(actualUsername)
-                                                                .get(0);
+                                        if (userGroupResolver.isGrouped(actualUsername)) {
+                                                vendedorName = userGroupResolver.primaryUsername(actualUsername);
                                         } else {
                                                 vendedorName = actualUsername;
                                         }
@@ -6,7 +6,6 @@ import org.example.sistema_gestion_vitalexa.dto.CreateSaleGoalRequest;
 import org.example.sistema_gestion_vitalexa.dto.SaleGoalResponse;
 import org.example.sistema_gestion_vitalexa.dto.UpdateSaleGoalRequest;
 import org.example.sistema_gestion_vitalexa.dto.VendedorWithGoalResponse;
-import org.example.sistema_gestion_vitalexa.entity.Order;
 import org.example.sistema_gestion_vitalexa.entity.SaleGoal;
 import org.example.sistema_gestion_vitalexa.entity.User;
 import org.example.sistema_gestion_vitalexa.enums.Role;
@@ -17,12 +16,13 @@ import org.example.sistema_gestion_vitalexa.repository.PaymentTransferRepository
 import org.example.sistema_gestion_vitalexa.repository.SaleGoalRepository;
 import org.example.sistema_gestion_vitalexa.repository.UserRepository;
 import org.example.sistema_gestion_vitalexa.service.SaleGoalService;
-import org.example.sistema_gestion_vitalexa.util.UserUnificationUtil;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.math.BigDecimal;
 import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
 import java.util.List;
 import java.util.UUID;
 import java.util.stream.Collectors;
@@ -38,6 +38,7 @@ public class SaleGoalServiceImpl implements SaleGoalService {
         private final SaleGoalMapper saleGoalMapper;
         private final OrdenRepository orderRepository;
         private final PaymentTransferRepository paymentTransferRepository;
+        private final org.example.sistema_gestion_vitalexa.service.UserGroupResolver userGroupResolver;
 
         // =============================================
         // ADMIN/OWNER - GESTIÓN DE METAS
@@ -112,46 +113,17 @@ public class SaleGoalServiceImpl implements SaleGoalService {
          */
         private BigDecimal calculateExistingSalesForMonth(UUID vendedorId, int month, int year) {
                 try {
-                        List<Order> orders;
-
-                        // Check for shared user
-                        User vendedor = userRepository.findById(vendedorId).orElse(null);
-                        BigDecimal transfersTotal;
-
-                        if (vendedor != null && UserUnificationUtil.isSharedUser(vendedor.getUsername())) {
-                                // Get all shared user IDs
-                                List<String> sharedUsernames = UserUnificationUtil
-                                                .getSharedUsernames(vendedor.getUsername());
-                                List<UUID> sharedIds = userRepository.findAll().stream()
-                                                .filter(u -> sharedUsernames.contains(u.getUsername()))
-                                                .map(User::getId)
-                                                .collect(Collectors.toList());
-
-                                log.info("Calculando ventas para usuarios compartidos {}: IDs {}", sharedUsernames,
-                                                sharedIds);
-
-                                orders = orderRepository.findCompletedOrdersByVendedorIdsAndMonthYear(
-                                                sharedIds, month, year);
-
-                                // ✅ Transferencias activas recibidas (usuarios compartidos)
-                                transfersTotal = paymentTransferRepository
-                                                .sumActiveTransfersToVendedorIdsInMonth(sharedIds, month, year);
-                        } else {
-                                // Standard single user calculation
-                                orders = orderRepository.findCompletedOrdersByVendedorAndMonthYear(
-                                                vendedorId, month, year);
-
-                                // ✅ Transferencias activas recibidas
-                                transfersTotal = paymentTransferRepository
-                                                .sumActiveTransfersToVendedorInMonth(vendedorId, month, year);
-                        }
-
-                        // Sumar los totales usando discountedTotal si existe (igual que el Excel)
-                        BigDecimal ordersTotal = orders.stream()
-                                        .map(o -> o.getDiscountedTotal() != null
-                                                        ? o.getDiscountedTotal()
-                                                        : o.getTotal())
-                                        .reduce(BigDecimal.ZERO, BigDecimal::add);
+                        // Usuarios compartidos (NinaTorres/YicelaSandoval) suman las ventas de ambos
+                        List<UUID> vendedorIds = goalOwnersFor(vendedorId);
+                        LocalDateTime start = YearMonth.of(year, month).atDay(1).atStartOfDay();
+
+                        // Una sola consulta SUM (discountedTotal si existe, igual que el Excel)
+                        BigDecimal ordersTotal = orderRepository.sumNetTotalSoldByVendedorIdsBetween(
+                                        vendedorIds, start, start.plusMonths(1));
+
+                        // ✅ Transferencias activas recibidas
+                        BigDecimal transfersTotal = paymentTransferRepository
+                                        .sumActiveTransfersToVendedorIdsInMonth(vendedorIds, month, year);
 
                         BigDecimal total = ordersTotal.add(transfersTotal);
 
@@ -305,115 +277,37 @@ public class SaleGoalServiceImpl implements SaleGoalService {
 
         @Override
         public void updateGoalProgress(UUID vendedorId, BigDecimal saleAmount, int month, int year) {
-                User vendedor = userRepository.findById(vendedorId)
-                                .orElseThrow(() -> new BusinessExeption("Vendedor no encontrado"));
-
-                // Update the vendedor's own goal
-                saleGoalRepository.findByVendedorAndMonthAndYear(vendedor, month, year)
-                                .ifPresent(saleGoal -> {
-                                        saleGoal.addSale(saleAmount);
-                                        saleGoalRepository.save(saleGoal);
-                                        log.info("Progreso de meta actualizado para {}: +${} (Total: ${}/{})",
-                                                        vendedor.getUsername(), saleAmount,
-                                                        saleGoal.getCurrentAmount(), saleGoal.getTargetAmount());
-                                });
-
-                // If this is a shared user (NinaTorres/YicelaSandoval), sync progress to the
-                // other user's goal
-                if (UserUnificationUtil.isSharedUser(vendedor.getUsername())) {
-                        List<UUID> sharedUserIds = UserUnificationUtil.getSharedUserIds(
-                                        vendedorId,
-                                        vendedor.getUsername(),
-                                        userRepository.findByUsername(
-                                                        vendedor.getUsername().equals(UserUnificationUtil.NINA_TORRES)
-                                                                        ? UserUnificationUtil.YICELA_SANDOVAL
-                                                                        : UserUnificationUtil.NINA_TORRES)
-                                                        .map(User::getId)
-                                                        .orElse(null));
-
-                        // Update the other shared user's goal as well
-                        for (UUID sharedUserId : sharedUserIds) {
-                                if (!sharedUserId.equals(vendedorId)) {
-                                        userRepository.findById(sharedUserId).ifPresent(otherVendedor -> {
-                                                saleGoalRepository
-                                                                .findByVendedorAndMonthAndYear(otherVendedor, month,
-                                                                                year)
-                                                                .ifPresent(otherGoal -> {
-                                                                        otherGoal.addSale(saleAmount);
-                                                                        saleGoalRepository.save(otherGoal);
-                                                                        log.info("[Unificación] Progreso sincronizado a {}: +${} (Total: ${}/{})",
-                                                                                        otherVendedor.getUsername(),
-                                                                                        saleAmount,
-                                                                                        otherGoal.getCurrentAmount(),
-                                                                                        otherGoal.getTargetAmount());
-                                                                });
-                                        });
-                                }
-                        }
-                }
+                // Un UPDATE atómico por meta; los usuarios compartidos
+                // (NinaTorres/YicelaSandoval) avanzan juntos
+                List<UUID> vendedorIds = goalOwnersFor(vendedorId);
+                int updated = saleGoalRepository.addToCurrentAmount(vendedorIds, month, year, saleAmount);
+                log.info("Progreso de meta actualizado para vendedor(es) {} en {}/{}: +${} ({} meta(s))",
+                                vendedorIds, month, year, saleAmount, updated);
         }
 
         @Override
         public void recalculateGoalForVendorMonth(UUID vendedorId, int month, int year) {
-                User vendedor = userRepository.findById(vendedorId)
-                                .orElseThrow(() -> new BusinessExeption("Vendedor no encontrado"));
-
-                // Buscar la meta para este vendedor/mes/año
-                saleGoalRepository.findByVendedorAndMonthAndYear(vendedor, month, year)
-                                .ifPresent(saleGoal -> {
-                                        // Recalcular desde cero
-                                        BigDecimal actualSales = calculateExistingSalesForMonth(
-                                                        vendedorId, month, year);
-
-                                        saleGoal.setCurrentAmount(actualSales);
-                                        saleGoalRepository.save(saleGoal);
-
-                                        log.info("Meta recalculada para {} en {}/{}: ${}/{}",
-                                                        vendedor.getUsername(), month, year,
-                                                        actualSales, saleGoal.getTargetAmount());
-                                });
-
-                // If this is a shared user, also recalculate for the other shared user
-                if (UserUnificationUtil.isSharedUser(vendedor.getUsername())) {
-                        List<UUID> sharedUserIds = UserUnificationUtil.getSharedUserIds(
-                                        vendedorId,
-                                        vendedor.getUsername(),
-                                        userRepository.findByUsername(
-                                                        vendedor.getUsername().equals(UserUnificationUtil.NINA_TORRES)
-                                                                        ? UserUnificationUtil.YICELA_SANDOVAL
-                                                                        : UserUnificationUtil.NINA_TORRES)
-                                                        .map(User::getId)
-                                                        .orElse(null));
-
-                        for (UUID sharedUserId : sharedUserIds) {
-                                if (!sharedUserId.equals(vendedorId)) {
-                                        userRepository.findById(sharedUserId).ifPresent(otherVendedor -> {
-                                                saleGoalRepository
-                                                                .findByVendedorAndMonthAndYear(otherVendedor, month,
-                                                                                year)
-                                                                .ifPresent(otherGoal -> {
-                                                                        BigDecimal actualSales = calculateExistingSalesForMonth(
-                                                                                        sharedUserId, month, year);
-
-                                                                        otherGoal.setCurrentAmount(actualSales);
-                                                                        saleGoalRepository.save(otherGoal);
-
-                                                                        log.info("[Unificación] Meta recalculada para {} en {}/{}: ${}/{}",
-                                                                                        otherVendedor.getUsername(),
-                                                                                        month, year,
-                                                                                        actualSales,
-                                                                                        otherGoal.getTargetAmount());
-                                                                });
-                                        });
-                                }
-                        }
-                }
+                // Recalcular desde cero: una consulta SUM y un UPDATE. Para usuarios
+                // compartidos la suma ya incluye a ambos y se fija en las dos metas.
+                List<UUID> vendedorIds = goalOwnersFor(vendedorId);
+                BigDecimal actualSales = calculateExistingSalesForMonth(vendedorId, month, year);
+                int updated = saleGoalRepository.setCurrentAmount(vendedorIds, month, year, actualSales);
+                log.info("Meta recalculada para vendedor(es) {} en {}/{}: ${} ({} meta(s))",
+                                vendedorIds, month, year, actualSales, updated);
         }
 
         // =============================================
         // UTILIDADES
         // =============================================
 
+        /**
+         * Vendedores cuya meta se mueve con una venta de vendedorId: él mismo, o
+         * todos los miembros de su grupo compartido.
+         */
+        private List<UUID> goalOwnersFor(UUID vendedorId) {
+                return userGroupResolver.idsOf(vendedorId);
+        }
+
         /**
          * Recalcula el currentAmount de una meta en vivo y lo persiste si cambió.
          * Siempre normaliza la escala a 2 decimales para serialización consistente.
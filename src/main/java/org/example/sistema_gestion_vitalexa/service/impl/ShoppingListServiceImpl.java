@@ -158,17 +158,17 @@ public class ShoppingListServiceImpl implements ShoppingListService {
             throw new BusinessExeption("Este cliente no tiene vendedor asignado");
         }
 
-        // 1) Validar stock (fallar completo si alguno no alcanza)
+        // 1) Validar productos activos
         for (ShoppingListItem it : list.getItems()) {
             Product p = it.getProduct();
             if (!p.isActive()) throw new BusinessExeption("Producto inactivo: " + p.getNombre());
-            if (p.getStock() < it.getDefaultQty()) {
-                throw new BusinessExeption("Stock insuficiente para: " + p.getNombre()
-                        + " (Disponible: " + p.getStock() + ", Pedido: " + it.getDefaultQty() + ")");
-            }
         }
 
-        // 2) Crear orden y descontar stock
+        // 2) Crear orden y descontar stock por el ledger, con las filas
+        // bloqueadas en orden de id. Si alguno no alcanza se lanza y el
+        // rollback deshace todo (fallar completo)
+        productService.lockStock(list.getItems().stream().map(it -> it.getProduct().getId()).toList());
+
         Order order = new Order(client.getVendedorAsignado(), client);
         order.setNotas("Orden generada desde lista: " + list.getName());
 
@@ -176,20 +176,21 @@ public class ShoppingListServiceImpl implements ShoppingListService {
             Product p = it.getProduct();
             int qty = it.getDefaultQty();
 
-            Integer stockAnterior = p.getStock();
-            p.decreaseStock(qty);
-
-            if (p.getStock() != null) {
-                movementService.logMovement(
-                        p,
-                        org.example.sistema_gestion_vitalexa.entity.enums.InventoryMovementType.SALE,
-                        qty,
-                        stockAnterior,
-                        p.getStock(),
-                        "Venta Orden (Lista de Compras)",
-                        username
-                );
+            int stockActual = productService.decreaseStock(p, qty);
+            if (stockActual < 0) {
+                throw new BusinessExeption("Stock insuficiente para: " + p.getNombre()
+                        + " (Disponible: " + (stockActual + qty) + ", Pedido: " + qty + ")");
             }
+
+            movementService.logMovement(
+                    p,
+                    org.example.sistema_gestion_vitalexa.entity.enums.InventoryMovementType.SALE,
+                    qty,
+                    stockActual + qty,
+                    stockActual,
+                    "Venta Orden (Lista de Compras)",
+                    username
+            );
             notificationService.sendInventoryUpdate(p.getId().toString(), "STOCK_UPDATED");
 
             OrderItem orderItem = new OrderItem(p, qty);
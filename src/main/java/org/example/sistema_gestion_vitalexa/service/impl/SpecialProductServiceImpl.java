@@ -36,6 +36,7 @@ public class SpecialProductServiceImpl implements SpecialProductService {
     private final ProductTagRepository productTagRepository;
     private final UserRepository userRepository;
     private final ProductImageService imageService;
+    private final org.example.sistema_gestion_vitalexa.service.CatalogSnapshotService catalogSnapshotService;
 
     // ========================================================
     // CREATE
@@ -85,6 +86,7 @@ public class SpecialProductServiceImpl implements SpecialProductService {
         }
 
         SpecialProduct saved = repository.save(sp);
+        catalogSnapshotService.invalidate();
         log.info("Producto especial creado: '{}' (linked={}, vendors={})",
                 saved.getNombre(), saved.isLinked(), saved.getAllowedVendors().size());
         return toResponse(saved);
@@ -96,6 +98,8 @@ public class SpecialProductServiceImpl implements SpecialProductService {
 
     @Override
     public SpecialProductResponse update(UUID id, UpdateSpecialProductRequest request) {
+        // Bloquear antes de leer: el ajuste de stock parte del valor vigente
+        lockOwnStock(List.of(id));
         SpecialProduct sp = findEntityById(id);
 
         // Si está vinculado, validar que nombre/precio sigan siendo distintos
@@ -118,7 +122,10 @@ public class SpecialProductServiceImpl implements SpecialProductService {
 
         // Stock solo se puede cambiar en standalone
         if (!sp.isLinked() && request.stock() != null) {
-            sp.setOwnStock(request.stock());
+            int current = sp.getOwnStock() != null ? sp.getOwnStock() : 0;
+            if (request.stock() != current) {
+                adjustOwnStock(sp, request.stock() - current);
+            }
         }
 
         // Imagen
@@ -144,10 +151,45 @@ public class SpecialProductServiceImpl implements SpecialProductService {
         }
 
         SpecialProduct saved = repository.save(sp);
+        catalogSnapshotService.invalidate();
         log.info("Producto especial actualizado: '{}'", saved.getNombre());
         return toResponse(saved);
     }
 
+    // ========================================================
+    // STOCK PROPIO (ledger)
+    // ========================================================
+
+    @Override
+    public int decreaseOwnStock(SpecialProduct specialProduct, int quantity) {
+        if (quantity <= 0) {
+            throw new IllegalArgumentException("Cantidad inválida");
+        }
+        return adjustOwnStock(specialProduct, -quantity);
+    }
+
+    @Override
+    public void lockOwnStock(Collection<UUID> specialProductIds) {
+        if (specialProductIds == null || specialProductIds.isEmpty()) {
+            return;
+        }
+        repository.lockOwnStockRows(new HashSet<>(specialProductIds));
+    }
+
+    /**
+     * Aplica el delta en BD y deja la entidad con el valor real (mismo
+     * esquema que ProductServiceImpl.adjustStock).
+     */
+    private int adjustOwnStock(SpecialProduct sp, int delta) {
+        if (sp.isLinked() || repository.adjustOwnStock(sp.getId(), delta) == 0) {
+            throw new RuntimeException("Producto especial independiente no encontrado: " + sp.getId());
+        }
+        int newStock = repository.findOwnStockById(sp.getId());
+        sp.setOwnStock(newStock);
+        catalogSnapshotService.stockChanged();
+        return newStock;
+    }
+
     // ========================================================
     // FIND
     // ========================================================
@@ -203,6 +245,7 @@ public class SpecialProductServiceImpl implements SpecialProductService {
         SpecialProduct sp = findEntityById(id);
         sp.setActive(false);
         repository.save(sp);
+        catalogSnapshotService.invalidate();
         log.info("Producto especial desactivado: '{}'", sp.getNombre());
     }
 
@@ -211,6 +254,7 @@ public class SpecialProductServiceImpl implements SpecialProductService {
         SpecialProduct sp = findEntityById(id);
         sp.setActive(active);
         repository.save(sp);
+        catalogSnapshotService.invalidate();
         log.info("Producto especial '{}' -> active={}", sp.getNombre(), active);
     }
 
@@ -0,0 +1,33 @@
+package org.example.sistema_gestion_vitalexa.service.impl;
+
+import jakarta.persistence.PostPersist;
+import jakarta.persistence.PostRemove;
+import jakarta.persistence.PostUpdate;
+import lombok.RequiredArgsConstructor;
+import org.example.sistema_gestion_vitalexa.entity.User;
+import org.example.sistema_gestion_vitalexa.entity.VendorGroupMember;
+import org.example.sistema_gestion_vitalexa.service.UserGroupResolver;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.stereotype.Component;
+
+/**
+ * Listener JPA de {@link User} y {@link VendorGroupMember}: un alta, cambio
+ * (p. ej. de username) o baja descarta el mapa de grupos de vendedores.
+ *
+ * Hibernate crea este listener mientras arma el EntityManagerFactory; el
+ * resolver (que depende de un repositorio, y éste del EntityManagerFactory)
+ * se obtiene recién al usarlo para no formar un ciclo al arrancar.
+ */
+@Component
+@RequiredArgsConstructor
+public class UserGroupInvalidationListener {
+
+    private final ObjectProvider<UserGroupResolver> userGroupResolver;
+
+    @PostPersist
+    @PostUpdate
+    @PostRemove
+    public void invalidate(Object entity) {
+        userGroupResolver.getObject().invalidate();
+    }
+}
@@ -0,0 +1,153 @@
+package org.example.sistema_gestion_vitalexa.service.impl;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.example.sistema_gestion_vitalexa.repository.VendorGroupMemberRepository;
+import org.example.sistema_gestion_vitalexa.service.UserGroupResolver;
+import org.example.sistema_gestion_vitalexa.util.TransactionCallbacks;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Grupos de vendedores en memoria.
+ *
+ * - El mapa se arma con UNA consulta (vendor_group_members + users) y se
+ *   comparte entre todos los hilos; antes cada cálculo de nómina, meta o
+ *   reporte recorría userRepository.findAll() para encontrar los ids.
+ * - Cualquier alta, cambio o baja de usuario llama a {@link #invalidate()}
+ *   (ver UserGroupInvalidationListener); los cambios hechos directamente en
+ *   vendor_group_members se ven al vencer la antigüedad máxima.
+ * - Misma técnica que CatalogSnapshotServiceImpl: el mapa recuerda el valor
+ *   de changeCounter leído antes de consultar, así una invalidación
+ *   concurrente nunca queda tapada por un mapa viejo.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class UserGroupResolverImpl implements UserGroupResolver {
+
+    private static final Object INVALIDATION_KEY = UserGroupResolverImpl.class.getName() + ".invalidation";
+
+    private final VendorGroupMemberRepository memberRepository;
+
+    @Value("${user-groups.max-age-ms:300000}")
+    private long maxAgeMillis;
+
+    private final AtomicLong changeCounter = new AtomicLong();
+    private final Object rebuildLock = new Object();
+
+    private volatile Groups current;
+
+    private record Group(String name, List<String> usernames, List<UUID> ids) {
+    }
+
+    /**
+     * byUsername usa el username en minúsculas como clave.
+     */
+    private record Groups(Map<String, Group> byUsername, Map<UUID, Group> byId, long changeMark, long builtAt) {
+    }
+
+    @Override
+    public boolean isGrouped(String username) {
+        return groupOf(username) != null;
+    }
+
+    @Override
+    public List<String> usernamesOf(String username) {
+        Group group = groupOf(username);
+        return group != null ? group.usernames() : List.of(username);
+    }
+
+    @Override
+    public List<UUID> idsOf(UUID userId) {
+        if (userId == null) {
+            return List.of();
+        }
+        Group group = groups().byId().get(userId);
+        return group != null ? group.ids() : List.of(userId);
+    }
+
+    @Override
+    public String primaryUsername(String username) {
+        Group group = groupOf(username);
+        return group != null ? group.usernames().get(0) : username;
+    }
+
+    @Override
+    public boolean isSecondaryMember(String username) {
+        Group group = groupOf(username);
+        return group != null && !group.usernames().get(0).equalsIgnoreCase(username);
+    }
+
+    @Override
+    public boolean sameGroup(String username, String otherUsername) {
+        Group group = groupOf(username);
+        return group != null && group == groupOf(otherUsername);
+    }
+
+    @Override
+    public void invalidate() {
+        TransactionCallbacks.afterCommit(INVALIDATION_KEY, Boolean.TRUE, marks -> changeCounter.incrementAndGet());
+    }
+
+    private Group groupOf(String username) {
+        if (username == null) {
+            return null;
+        }
+        return groups().byUsername().get(username.toLowerCase());
+    }
+
+    private Groups groups() {
+        Groups groups = current;
+        if (isFresh(groups)) {
+            return groups;
+        }
+        synchronized (rebuildLock) {
+            groups = current;
+            if (!isFresh(groups)) {
+                groups = load();
+                current = groups;
+            }
+            return groups;
+        }
+    }
+
+    private boolean isFresh(Groups groups) {
+        return groups != null
+                && groups.changeMark() == changeCounter.get()
+                && System.currentTimeMillis() - groups.builtAt() < maxAgeMillis;
+    }
+
+    private Groups load() {
+        long changeMark = changeCounter.get();
+
+        // Filas ordenadas por grupo y posición: la principal queda primera
+        Map<String, List<Object[]>> rowsByGroup = new LinkedHashMap<>();
+        for (Object[] row : memberRepository.findAllMembersWithUsername()) {
+            rowsByGroup.computeIfAbsent((String) row[0], name -> new ArrayList<>()).add(row);
+        }
+
+        Map<String, Group> byUsername = new HashMap<>();
+        Map<UUID, Group> byId = new HashMap<>();
+        rowsByGroup.forEach((name, rows) -> {
+            Group group = new Group(name,
+                    rows.stream().map(row -> (String) row[2]).toList(),
+                    rows.stream().map(row -> (UUID) row[1]).toList());
+            for (Object[] row : rows) {
+                byId.put((UUID) row[1], group);
+                byUsername.put(((String) row[2]).toLowerCase(), group);
+            }
+        });
+
+        log.debug("Grupos de vendedores cargados: {}", rowsByGroup.keySet());
+        return new Groups(Map.copyOf(byUsername), Map.copyOf(byId), changeMark, System.currentTimeMillis());
+    }
+}
@@ -0,0 +1,112 @@
+package org.example.sistema_gestion_vitalexa.service.impl;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.example.sistema_gestion_vitalexa.dto.VendorGroupRequest;
+import org.example.sistema_gestion_vitalexa.dto.VendorGroupResponse;
+import org.example.sistema_gestion_vitalexa.entity.User;
+import org.example.sistema_gestion_vitalexa.entity.VendorGroupMember;
+import org.example.sistema_gestion_vitalexa.enums.Role;
+import org.example.sistema_gestion_vitalexa.exceptions.BusinessExeption;
+import org.example.sistema_gestion_vitalexa.repository.UserRepository;
+import org.example.sistema_gestion_vitalexa.repository.VendorGroupMemberRepository;
+import org.example.sistema_gestion_vitalexa.service.UserGroupResolver;
+import org.example.sistema_gestion_vitalexa.service.VendorGroupService;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class VendorGroupServiceImpl implements VendorGroupService {
+
+    private final VendorGroupMemberRepository memberRepository;
+    private final UserRepository userRepository;
+    private final UserGroupResolver userGroupResolver;
+
+    @Override
+    @Transactional(readOnly = true)
+    public List<VendorGroupResponse> findAll() {
+        // Filas ordenadas por grupo y posición: [groupName, userId, username]
+        Map<String, List<Object[]>> rowsByGroup = new LinkedHashMap<>();
+        for (Object[] row : memberRepository.findAllMembersWithUsername()) {
+            rowsByGroup.computeIfAbsent((String) row[0], name -> new ArrayList<>()).add(row);
+        }
+        return rowsByGroup.entrySet().stream()
+                .map(entry -> new VendorGroupResponse(
+                        entry.getKey(),
+                        entry.getValue().stream().map(row -> (UUID) row[1]).toList(),
+                        entry.getValue().stream().map(row -> (String) row[2]).toList()))
+                .toList();
+    }
+
+    @Override
+    @Transactional
+    public VendorGroupResponse save(String name, VendorGroupRequest request) {
+        String groupName = name != null ? name.trim() : "";
+        if (groupName.isEmpty()) {
+            throw new BusinessExeption("El nombre del grupo es obligatorio");
+        }
+        Set<UUID> memberIds = new LinkedHashSet<>(request.memberIds());
+        if (memberIds.size() < 2) {
+            throw new BusinessExeption("Un grupo necesita al menos 2 vendedores distintos");
+        }
+
+        Map<UUID, User> users = userRepository.findAllById(memberIds).stream()
+                .collect(Collectors.toMap(User::getId, Function.identity()));
+        for (UUID memberId : memberIds) {
+            User user = users.get(memberId);
+            if (user == null) {
+                throw new BusinessExeption("Vendedor no encontrado: " + memberId);
+            }
+            if (user.getRole() != Role.VENDEDOR) {
+                throw new BusinessExeption("Solo se pueden agrupar vendedores: " + user.getUsername());
+            }
+        }
+
+        // Los que salen del grupo; los que entran desde otro grupo se mueven
+        List<VendorGroupMember> removed = memberRepository.findByGroupName(groupName).stream()
+                .filter(member -> !memberIds.contains(member.getUserId()))
+                .toList();
+        memberRepository.deleteAll(removed);
+
+        List<VendorGroupMember> members = new ArrayList<>();
+        int position = 0;
+        for (UUID memberId : memberIds) {
+            VendorGroupMember member = memberRepository.findById(memberId)
+                    .orElseGet(() -> VendorGroupMember.builder().userId(memberId).build());
+            member.setGroupName(groupName);
+            member.setPosition(position++);
+            members.add(member);
+        }
+        memberRepository.saveAll(members);
+        userGroupResolver.invalidate();
+
+        log.info("👥 Grupo de vendedores '{}' guardado con {} miembro(s)", groupName, members.size());
+        return new VendorGroupResponse(groupName,
+                List.copyOf(memberIds),
+                memberIds.stream().map(id -> users.get(id).getUsername()).toList());
+    }
+
+    @Override
+    @Transactional
+    public void delete(String name) {
+        List<VendorGroupMember> members = memberRepository.findByGroupName(name);
+        if (members.isEmpty()) {
+            throw new BusinessExeption("Grupo no encontrado: " + name);
+        }
+        memberRepository.deleteAll(members);
+        userGroupResolver.invalidate();
+        log.info("👥 Grupo de vendedores '{}' eliminado", name);
+    }
+}
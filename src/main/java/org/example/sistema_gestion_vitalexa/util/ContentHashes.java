@@ -0,0 +1,52 @@
+package org.example.sistema_gestion_vitalexa.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+
+/**
+ * SHA-256 en hexadecimal para nombrar y versionar contenido (imágenes,
+ * ETags, deduplicación de cargas).
+ */
+public final class ContentHashes {
+
+    /** 32 caracteres hex (128 bits): basta para que dos contenidos distintos no choquen */
+    public static final int SHORT_HEX_LENGTH = 32;
+
+    public static String sha256Hex(byte[] data) {
+        return HexFormat.of().formatHex(sha256().digest(data));
+    }
+
+    /**
+     * Lee el stream completo sin cargarlo en memoria. No cierra el stream.
+     */
+    public static String sha256Hex(InputStream in) throws IOException {
+        MessageDigest digest = sha256();
+        new DigestInputStream(in, digest).transferTo(OutputStream.nullOutputStream());
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    public static String shortSha256Hex(byte[] data) {
+        return sha256Hex(data).substring(0, SHORT_HEX_LENGTH);
+    }
+
+    public static String shortSha256Hex(InputStream in) throws IOException {
+        return sha256Hex(in).substring(0, SHORT_HEX_LENGTH);
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 no disponible", e);
+        }
+    }
+
+    private ContentHashes() {
+        throw new UnsupportedOperationException("Utility class cannot be instantiated");
+    }
+}
@@ -0,0 +1,65 @@
+package org.example.sistema_gestion_vitalexa.util;
+
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.Expression;
+import jakarta.persistence.criteria.Predicate;
+import org.example.sistema_gestion_vitalexa.exceptions.BusinessExeption;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Base64;
+import java.util.UUID;
+
+/**
+ * Cursores opacos para paginar por keyset en orden (fecha DESC, id DESC).
+ *
+ * El token es la última fila entregada (fecha + id) codificada en Base64 URL;
+ * la página siguiente continúa estrictamente después de ella, así el costo de
+ * una página no crece con la profundidad como con OFFSET. El cliente no debe
+ * interpretar el token, solo devolverlo.
+ */
+public final class KeysetCursor {
+
+    private static final char SEPARATOR = '|';
+
+    /** Posición (fecha, id) de la última fila entregada */
+    public record Position(LocalDateTime sortKey, UUID id) {
+    }
+
+    public static String encode(LocalDateTime sortKey, UUID id) {
+        String raw = sortKey + String.valueOf(SEPARATOR) + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * @return la posición, o null si no hay cursor (primera página)
+     */
+    public static Position decode(String cursor) {
+        if (cursor == null || cursor.isBlank()) {
+            return null;
+        }
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor.trim()), StandardCharsets.UTF_8);
+            int separator = raw.indexOf(SEPARATOR);
+            return new Position(LocalDateTime.parse(raw.substring(0, separator)),
+                    UUID.fromString(raw.substring(separator + 1)));
+        } catch (RuntimeException e) {
+            throw new BusinessExeption("Cursor de paginación inválido");
+        }
+    }
+
+    /**
+     * Filas posteriores a after en orden (sortKey DESC, id DESC):
+     * sortKey &lt; after.sortKey OR (sortKey = after.sortKey AND id &lt; after.id).
+     */
+    public static Predicate after(CriteriaBuilder cb, Expression<LocalDateTime> sortKey, Expression<UUID> id,
+            Position after) {
+        return cb.or(
+                cb.lessThan(sortKey, after.sortKey()),
+                cb.and(cb.equal(sortKey, after.sortKey()), cb.lessThan(id, after.id())));
+    }
+
+    private KeysetCursor() {
+        throw new UnsupportedOperationException("Utility class cannot be instantiated");
+    }
+}
@@ -0,0 +1,182 @@
+package org.example.sistema_gestion_vitalexa.util;
+
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.CellType;
+import org.apache.poi.ss.usermodel.DataFormatter;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.ss.util.CellRangeAddress;
+import org.apache.poi.xssf.streaming.GZIPSheetDataWriter;
+import org.apache.poi.xssf.streaming.SXSSFRow;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
+import org.apache.poi.xssf.streaming.SheetDataWriter;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Workbook de Excel en modo streaming (SXSSF) para exportaciones grandes.
+ * Solo mantiene en memoria una ventana de {@link #ROW_WINDOW} filas; el resto
+ * se vuelca comprimido a un archivo temporal a medida que se escriben filas.
+ *
+ * Como las filas ya volcadas no se pueden medir con autoSizeColumn, el ancho
+ * de columna se calcula con el largo máximo del texto mostrado de cada celda,
+ * registrado al momento de volcar la fila. Usar
+ * {@link #autoSizeColumn(Sheet, int)} en lugar de sheet.autoSizeColumn.
+ */
+public class StreamingExcelWorkbook extends SXSSFWorkbook {
+
+    public static final int ROW_WINDOW = 100;
+
+    private static final int MAX_COLUMN_CHARS = 255;
+    private static final int PADDING_CHARS = 2;
+
+    private final DataFormatter formatter = new DataFormatter();
+
+    // Hoja -> largo máximo (en caracteres) por columna
+    private final Map<Sheet, Map<Integer, Integer>> maxLengths = new HashMap<>();
+
+    // Hoja -> columnas que deben ajustarse al contenido al escribir
+    private final Map<Sheet, Set<Integer>> autoSizedColumns = new HashMap<>();
+
+    // Hoja -> regiones combinadas de varias columnas (no cuentan para el ancho)
+    private final Map<Sheet, List<CellRangeAddress>> mergedRegions = new HashMap<>();
+    private final Map<Sheet, Integer> mergedRegionCount = new HashMap<>();
+
+    public StreamingExcelWorkbook() {
+        super(new XSSFWorkbook(), ROW_WINDOW, true);
+    }
+
+    /**
+     * Marca una columna para ajustar su ancho al contenido. En un workbook
+     * streaming el ancho se aplica al escribir; en cualquier otro se delega en
+     * sheet.autoSizeColumn.
+     */
+    public static void autoSizeColumn(Sheet sheet, int column) {
+        if (sheet.getWorkbook() instanceof StreamingExcelWorkbook workbook) {
+            workbook.autoSizedColumns.computeIfAbsent(sheet, s -> new TreeSet<>()).add(column);
+        } else {
+            sheet.autoSizeColumn(column);
+        }
+    }
+
+    @Override
+    protected SheetDataWriter createSheetDataWriter() throws IOException {
+        return new WidthTrackingSheetDataWriter(getSharedStringSource());
+    }
+
+    /**
+     * Vuelca las filas pendientes, aplica los anchos calculados y escribe el
+     * archivo. Los temporales se eliminan al cerrar el workbook.
+     */
+    @Override
+    public void write(OutputStream stream) throws IOException {
+        flushSheets();
+        applyColumnWidths();
+        super.write(stream);
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            super.close();
+        } finally {
+            dispose();
+        }
+    }
+
+    private void applyColumnWidths() {
+        for (Map.Entry<Sheet, Set<Integer>> entry : autoSizedColumns.entrySet()) {
+            Sheet sheet = entry.getKey();
+            Map<Integer, Integer> lengths = maxLengths.getOrDefault(sheet, Map.of());
+            for (Integer column : entry.getValue()) {
+                Integer length = lengths.get(column);
+                if (length == null) {
+                    continue;
+                }
+                int chars = Math.min(MAX_COLUMN_CHARS, length + PADDING_CHARS);
+                sheet.setColumnWidth(column, chars * 256);
+            }
+        }
+    }
+
+    private void trackRow(SXSSFRow row) {
+        Sheet sheet = row.getSheet();
+        Map<Integer, Integer> lengths = maxLengths.computeIfAbsent(sheet, s -> new HashMap<>());
+        List<CellRangeAddress> merged = multiColumnMergedRegions(sheet);
+
+        for (Cell cell : row) {
+            int length = displayLength(cell);
+            if (length == 0 || isInMergedRegion(merged, cell)) {
+                continue;
+            }
+            lengths.merge(cell.getColumnIndex(), length, Math::max);
+        }
+    }
+
+    private int displayLength(Cell cell) {
+        if (cell.getCellType() == CellType.BLANK || cell.getCellType() == CellType.FORMULA) {
+            return 0;
+        }
+        String text = cell.getCellType() == CellType.STRING
+                ? cell.getStringCellValue()
+                : formatter.formatCellValue(cell);
+        if (text == null || text.isEmpty()) {
+            return 0;
+        }
+        // Celdas multilínea: cuenta la línea más larga
+        int max = 0;
+        for (String line : text.split("\n")) {
+            max = Math.max(max, line.length());
+        }
+        return max;
+    }
+
+    private List<CellRangeAddress> multiColumnMergedRegions(Sheet sheet) {
+        int count = sheet.getNumMergedRegions();
+        if (!Integer.valueOf(count).equals(mergedRegionCount.get(sheet))) {
+            List<CellRangeAddress> regions = new ArrayList<>();
+            for (CellRangeAddress region : sheet.getMergedRegions()) {
+                if (region.getFirstColumn() != region.getLastColumn()) {
+                    regions.add(region);
+                }
+            }
+            mergedRegions.put(sheet, regions);
+            mergedRegionCount.put(sheet, count);
+        }
+        return mergedRegions.get(sheet);
+    }
+
+    private boolean isInMergedRegion(List<CellRangeAddress> regions, Cell cell) {
+        for (CellRangeAddress region : regions) {
+            if (region.isInRange(cell)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Writer que registra el ancho de cada celda justo antes de volcarla al
+     * temporal, que es el último momento en que la fila existe en memoria.
+     */
+    private class WidthTrackingSheetDataWriter extends GZIPSheetDataWriter {
+
+        WidthTrackingSheetDataWriter(org.apache.poi.xssf.model.SharedStringsTable sharedStringsTable)
+                throws IOException {
+            super(sharedStringsTable);
+        }
+
+        @Override
+        public void writeRow(int rownum, SXSSFRow row) throws IOException {
+            trackRow(row);
+            super.writeRow(rownum, row);
+        }
+    }
+}
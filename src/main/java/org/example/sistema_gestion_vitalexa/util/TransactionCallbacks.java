@@ -0,0 +1,166 @@
+package org.example.sistema_gestion_vitalexa.util;
+
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Trabajo diferido al final de la transacción actual (notificaciones,
+ * invalidaciones de caché, escrituras en lote...).
+ *
+ * - Los elementos se acumulan por clave: una sola sincronización por
+ *   transacción y clave, y la acción corre UNA vez con todos los elementos,
+ *   en beforeCommit (todavía dentro de la transacción) o en afterCommit.
+ * - Sin sincronización activa la acción corre de inmediato.
+ * - Lo que llega mientras la acción corre entra en la misma pasada, y lo que
+ *   llega cuando la fase ya pasó (por ejemplo desde el afterCommit de otra
+ *   sincronización) se ejecuta de inmediato en lugar de perderse.
+ * - Si la transacción se revierte, los elementos pendientes van a onRollback
+ *   (si se indicó) y se descartan.
+ * - flush(key) ejecuta ya lo acumulado bajo la clave, para cuando algo en la
+ *   misma transacción necesita ver el resultado antes del commit.
+ */
+public final class TransactionCallbacks {
+
+    private static final Object TASKS_KEY = TransactionCallbacks.class.getName() + ".tasks";
+
+    private enum Phase {
+        BEFORE_COMMIT, AFTER_COMMIT
+    }
+
+    private TransactionCallbacks() {
+    }
+
+    /**
+     * Ejecuta la tarea después del commit (o ya, si no hay transacción).
+     */
+    public static void afterCommit(Runnable task) {
+        afterCommit(TASKS_KEY, task, tasks -> tasks.forEach(Runnable::run));
+    }
+
+    public static <T> void afterCommit(Object key, T item, Consumer<List<T>> action) {
+        afterCommit(key, item, action, null);
+    }
+
+    public static <T> void afterCommit(Object key, T item, Consumer<List<T>> action, Consumer<List<T>> onRollback) {
+        defer(Phase.AFTER_COMMIT, key, item, action, onRollback);
+    }
+
+    /**
+     * Acumula el elemento y ejecuta la acción justo antes del commit, dentro
+     * de la transacción: si la acción falla, se revierte todo.
+     */
+    public static <T> void beforeCommit(Object key, T item, Consumer<List<T>> action) {
+        defer(Phase.BEFORE_COMMIT, key, item, action, null);
+    }
+
+    /**
+     * Ejecuta ya la acción con los elementos acumulados bajo la clave en la
+     * transacción actual. Lo que llegue después se sigue acumulando para la
+     * fase original. Sin elementos pendientes no hace nada.
+     */
+    public static void flush(Object key) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            return;
+        }
+        Pending<?> pending = (Pending<?>) TransactionSynchronizationManager.getResource(key);
+        if (pending != null) {
+            pending.drain();
+        }
+    }
+
+    private static <T> void defer(Phase phase, Object key, T item, Consumer<List<T>> action,
+            Consumer<List<T>> onRollback) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.accept(List.of(item));
+            return;
+        }
+
+        @SuppressWarnings("unchecked")
+        Pending<T> pending = (Pending<T>) TransactionSynchronizationManager.getResource(key);
+        if (pending == null) {
+            pending = new Pending<>(phase, key, action, onRollback);
+            TransactionSynchronizationManager.bindResource(key, pending);
+            TransactionSynchronizationManager.registerSynchronization(pending);
+        }
+        pending.add(item);
+    }
+
+    private static final class Pending<T> implements TransactionSynchronization {
+
+        private final Phase phase;
+        private final Object key;
+        private final Consumer<List<T>> action;
+        private final Consumer<List<T>> onRollback;
+        private final List<T> items = new ArrayList<>();
+        private boolean running;
+        private boolean done;
+
+        private Pending(Phase phase, Object key, Consumer<List<T>> action, Consumer<List<T>> onRollback) {
+            this.phase = phase;
+            this.key = key;
+            this.action = action;
+            this.onRollback = onRollback;
+        }
+
+        private void add(T item) {
+            if (done && !running) {
+                action.accept(List.of(item));
+                return;
+            }
+            items.add(item);
+        }
+
+        private void run() {
+            try {
+                drain();
+            } finally {
+                done = true;
+            }
+        }
+
+        private void drain() {
+            if (running) {
+                return;
+            }
+            running = true;
+            try {
+                while (!items.isEmpty()) {
+                    List<T> batch = new ArrayList<>(items);
+                    items.clear();
+                    action.accept(batch);
+                }
+            } finally {
+                running = false;
+            }
+        }
+
+        @Override
+        public void beforeCommit(boolean readOnly) {
+            if (phase == Phase.BEFORE_COMMIT) {
+                run();
+            }
+        }
+
+        @Override
+        public void afterCommit() {
+            if (phase == Phase.AFTER_COMMIT) {
+                run();
+            }
+        }
+
+        @Override
+        public void afterCompletion(int status) {
+            TransactionSynchronizationManager.unbindResourceIfPossible(key);
+            if (status != STATUS_COMMITTED && !items.isEmpty()) {
+                if (onRollback != null) {
+                    onRollback.accept(List.copyOf(items));
+                }
+                items.clear();
+            }
+        }
+    }
+}
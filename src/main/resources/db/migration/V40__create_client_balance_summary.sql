@@ -0,0 +1,55 @@
+-- V40: Resumen materializado de cartera por cliente
+-- Guarda los totales que antes se recalculaban en Java en cada consulta de
+-- saldos (órdenes completadas, pagos activos, facturas pendientes, último
+-- pago y factura pendiente más antigua). Se actualiza dentro de la misma
+-- transacción que modifica órdenes, descuentos o pagos.
+
+-- 1. Cálculo de referencia (única fuente de verdad para refresco y verificación)
+--    Agrupar también por client_id permite que un filtro por cliente llegue
+--    hasta la subconsulta y use el índice de orders(client_id).
+CREATE OR REPLACE VIEW client_balance_computed AS
+SELECT c.id AS client_id,
+       COALESCE(SUM(o.order_total), 0)::NUMERIC(14, 2)            AS total_orders,
+       COALESCE(SUM(o.paid), 0)::NUMERIC(14, 2)                   AS total_paid,
+       COUNT(o.order_id) FILTER (WHERE o.order_total - o.paid > 0)::INTEGER AS pending_orders_count,
+       MAX(o.last_payment_date)                                   AS last_payment_date,
+       MIN(o.invoice_date) FILTER (WHERE o.order_total - o.paid > 0) AS oldest_pending_invoice_date
+FROM clients c
+LEFT JOIN (
+    SELECT o.id                                      AS order_id,
+           o.client_id                               AS client_id,
+           COALESCE(o.discounted_total, o.total)     AS order_total,
+           COALESCE(SUM(p.amount), 0)                AS paid,
+           MAX(p.actual_payment_date)                AS last_payment_date,
+           CAST(COALESCE(o.completed_at, o.fecha) AS DATE) AS invoice_date
+    FROM orders o
+    LEFT JOIN payments p
+           ON p.order_id = o.id
+          AND (p.is_cancelled = FALSE OR p.is_cancelled IS NULL)
+    WHERE o.estado = 'COMPLETADO'
+    GROUP BY o.id, o.client_id
+) o ON o.client_id = c.id
+GROUP BY c.id;
+
+-- 2. Tabla materializada
+CREATE TABLE IF NOT EXISTS client_balance_summary (
+    client_id                   UUID PRIMARY KEY REFERENCES clients(id) ON DELETE CASCADE,
+    total_orders                NUMERIC(14, 2) NOT NULL DEFAULT 0,
+    total_paid                  NUMERIC(14, 2) NOT NULL DEFAULT 0,
+    pending_orders_count        INTEGER        NOT NULL DEFAULT 0,
+    last_payment_date           DATE,
+    oldest_pending_invoice_date DATE,
+    updated_at                  TIMESTAMP      NOT NULL DEFAULT NOW()
+);
+
+-- 3. Índices para el refresco por cliente
+CREATE INDEX IF NOT EXISTS idx_orders_client_estado ON orders(client_id, estado);
+CREATE INDEX IF NOT EXISTS idx_clients_vendedor_asignado ON clients(vendedor_asignado_id);
+
+-- 4. Carga inicial
+INSERT INTO client_balance_summary (client_id, total_orders, total_paid, pending_orders_count,
+                                    last_payment_date, oldest_pending_invoice_date, updated_at)
+SELECT client_id, total_orders, total_paid, pending_orders_count,
+       last_payment_date, oldest_pending_invoice_date, NOW()
+FROM client_balance_computed
+ON CONFLICT (client_id) DO NOTHING;
@@ -0,0 +1,295 @@
+-- V41: Documento de búsqueda por orden (buscador de órdenes del admin)
+-- Reemplaza los LIKE '%x%' sobre clients/users/order_items/products (con
+-- DISTINCT) por un solo LIKE sobre un texto desnormalizado con índice
+-- trigram, consultado como subconsulta de ids de órdenes.
+
+CREATE EXTENSION IF NOT EXISTS pg_trgm;
+
+-- 1. Texto de búsqueda de cada orden (única fuente para carga y triggers)
+--    Factura, id, cliente (nombre, NIT, teléfono, dirección, representante),
+--    vendedor y nombres de productos, todo en minúsculas.
+CREATE OR REPLACE VIEW order_search_source AS
+SELECT o.id        AS order_id,
+       o.client_id AS client_id,
+       LOWER(CONCAT_WS(' ',
+           o.invoice_number::TEXT,
+           o.id::TEXT,
+           c.nombre,
+           c.nit,
+           c.telefono,
+           c.direccion,
+           c.representante_legal,
+           u.username,
+           (SELECT STRING_AGG(DISTINCT p.nombre, ' ')
+            FROM order_items oi
+            JOIN products p ON p.id = oi.product_id
+            WHERE oi.order_id = o.id)
+       )) AS document
+FROM orders o
+LEFT JOIN clients c ON c.id = o.client_id
+LEFT JOIN users u ON u.id = o.vendedor_id;
+
+-- 2. Tabla de documentos
+CREATE TABLE IF NOT EXISTS order_search_documents (
+    order_id   UUID PRIMARY KEY REFERENCES orders(id) ON DELETE CASCADE,
+    document   TEXT      NOT NULL,
+    updated_at TIMESTAMP NOT NULL DEFAULT NOW()
+);
+
+CREATE INDEX IF NOT EXISTS idx_order_search_documents_trgm
+    ON order_search_documents USING GIN (document gin_trgm_ops);
+
+-- 3. Índice para armar el documento (items de una orden). Los documentos
+--    de un producto renombrado se buscan por idx_order_items_product_order (V42).
+CREATE INDEX IF NOT EXISTS idx_order_items_order ON order_items(order_id);
+
+-- 4. Refresco
+--    Los callbacks JPA de update solo corren en el flush (muchas veces el del
+--    propio commit), así que un refresco desde Java podía perder escrituras;
+--    los triggers corren en la misma transacción que el cambio, venga de
+--    donde venga. Hay dos caminos:
+--    a) Órdenes e items: triggers por sentencia (tablas de transición) que
+--       solo anotan las órdenes tocadas en order_search_pending; un trigger
+--       diferido arma el documento de cada orden UNA vez, al commit. Una
+--       orden de 50 items ya no reconstruye su documento 50 veces.
+--    b) Renombres de cliente, producto o vendedor: pueden tocar miles de
+--       órdenes, así que el trigger solo encola el origen en
+--       order_search_stale_sources y un job (OrderSearchIndexService) rearma
+--       esos documentos fuera de la transacción del renombre.
+CREATE OR REPLACE FUNCTION refresh_order_search_documents(p_order_ids UUID[])
+RETURNS VOID AS $$
+BEGIN
+    IF p_order_ids IS NULL OR array_length(p_order_ids, 1) IS NULL THEN
+        RETURN;
+    END IF;
+    INSERT INTO order_search_documents (order_id, document, updated_at)
+    SELECT order_id, document, NOW()
+    FROM order_search_source
+    WHERE order_id = ANY(p_order_ids)
+    ON CONFLICT (order_id) DO UPDATE SET
+        document = EXCLUDED.document,
+        updated_at = EXCLUDED.updated_at;
+END;
+$$ LANGUAGE plpgsql;
+
+-- 4.1 Órdenes pendientes de la transacción en curso (vacía fuera de ella:
+--     el trigger diferido borra cada fila al procesarla)
+CREATE TABLE IF NOT EXISTS order_search_pending (
+    order_id UUID PRIMARY KEY
+);
+
+CREATE OR REPLACE FUNCTION trg_order_search_pending_flush() RETURNS TRIGGER AS $$
+BEGIN
+    PERFORM refresh_order_search_documents(ARRAY[NEW.order_id]);
+    DELETE FROM order_search_pending WHERE order_id = NEW.order_id;
+    RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
+
+-- Una fila por orden y transacción (ON CONFLICT DO NOTHING al encolar),
+-- así que el trigger diferido corre una vez por orden tocada
+DROP TRIGGER IF EXISTS order_search_pending_flush ON order_search_pending;
+CREATE CONSTRAINT TRIGGER order_search_pending_flush
+    AFTER INSERT ON order_search_pending
+    DEFERRABLE INITIALLY DEFERRED
+    FOR EACH ROW EXECUTE FUNCTION trg_order_search_pending_flush();
+
+-- 4.2 Orden creada o con factura/cliente/vendedor cambiado
+CREATE OR REPLACE FUNCTION trg_order_search_orders_insert() RETURNS TRIGGER AS $$
+BEGIN
+    INSERT INTO order_search_pending (order_id)
+    SELECT DISTINCT id FROM new_rows
+    ON CONFLICT (order_id) DO NOTHING;
+    RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
+
+DROP TRIGGER IF EXISTS order_search_orders_insert ON orders;
+CREATE TRIGGER order_search_orders_insert
+    AFTER INSERT ON orders
+    REFERENCING NEW TABLE AS new_rows
+    FOR EACH STATEMENT EXECUTE FUNCTION trg_order_search_orders_insert();
+
+CREATE OR REPLACE FUNCTION trg_order_search_orders_update() RETURNS TRIGGER AS $$
+BEGIN
+    INSERT INTO order_search_pending (order_id)
+    SELECT DISTINCT n.id
+    FROM new_rows n
+    JOIN old_rows o ON o.id = n.id
+    WHERE o.invoice_number IS DISTINCT FROM n.invoice_number
+       OR o.client_id IS DISTINCT FROM n.client_id
+       OR o.vendedor_id IS DISTINCT FROM n.vendedor_id
+    ON CONFLICT (order_id) DO NOTHING;
+    RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
+
+DROP TRIGGER IF EXISTS order_search_orders_update ON orders;
+CREATE TRIGGER order_search_orders_update
+    AFTER UPDATE ON orders
+    REFERENCING OLD TABLE AS old_rows NEW TABLE AS new_rows
+    FOR EACH STATEMENT EXECUTE FUNCTION trg_order_search_orders_update();
+
+-- 4.3 Items agregados, quitados o movidos de producto/orden
+--     (PostgreSQL no admite tablas de transición en triggers de varios
+--     eventos: un trigger por evento)
+CREATE OR REPLACE FUNCTION trg_order_search_items_insert() RETURNS TRIGGER AS $$
+BEGIN
+    INSERT INTO order_search_pending (order_id)
+    SELECT DISTINCT order_id FROM new_rows WHERE order_id IS NOT NULL
+    ON CONFLICT (order_id) DO NOTHING;
+    RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
+
+DROP TRIGGER IF EXISTS order_search_items_insert_delete ON order_items;
+DROP TRIGGER IF EXISTS order_search_items_insert ON order_items;
+CREATE TRIGGER order_search_items_insert
+    AFTER INSERT ON order_items
+    REFERENCING NEW TABLE AS new_rows
+    FOR EACH STATEMENT EXECUTE FUNCTION trg_order_search_items_insert();
+
+CREATE OR REPLACE FUNCTION trg_order_search_items_delete() RETURNS TRIGGER AS $$
+BEGIN
+    INSERT INTO order_search_pending (order_id)
+    SELECT DISTINCT order_id FROM old_rows WHERE order_id IS NOT NULL
+    ON CONFLICT (order_id) DO NOTHING;
+    RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
+
+DROP TRIGGER IF EXISTS order_search_items_delete ON order_items;
+CREATE TRIGGER order_search_items_delete
+    AFTER DELETE ON order_items
+    REFERENCING OLD TABLE AS old_rows
+    FOR EACH STATEMENT EXECUTE FUNCTION trg_order_search_items_delete();
+
+CREATE OR REPLACE FUNCTION trg_order_search_items_update() RETURNS TRIGGER AS $$
+BEGIN
+    INSERT INTO order_search_pending (order_id)
+    SELECT DISTINCT changed.order_id
+    FROM new_rows n
+    JOIN old_rows o ON o.id = n.id
+    CROSS JOIN LATERAL (VALUES (o.order_id), (n.order_id)) AS changed(order_id)
+    WHERE (o.product_id IS DISTINCT FROM n.product_id
+        OR o.order_id IS DISTINCT FROM n.order_id)
+      AND changed.order_id IS NOT NULL
+    ON CONFLICT (order_id) DO NOTHING;
+    RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
+
+DROP TRIGGER IF EXISTS order_search_items_update ON order_items;
+CREATE TRIGGER order_search_items_update
+    AFTER UPDATE ON order_items
+    REFERENCING OLD TABLE AS old_rows NEW TABLE AS new_rows
+    FOR EACH STATEMENT EXECUTE FUNCTION trg_order_search_items_update();
+
+-- 4.4 Datos del cliente, nombre de producto o username del vendedor:
+--     solo se encola el origen ('client', 'product', 'user')
+CREATE TABLE IF NOT EXISTS order_search_stale_sources (
+    source_type VARCHAR(10) NOT NULL,
+    source_id   UUID        NOT NULL,
+    queued_at   TIMESTAMP   NOT NULL DEFAULT NOW(),
+    PRIMARY KEY (source_type, source_id)
+);
+
+CREATE OR REPLACE FUNCTION trg_order_search_clients() RETURNS TRIGGER AS $$
+BEGIN
+    INSERT INTO order_search_stale_sources (source_type, source_id)
+    SELECT 'client', n.id
+    FROM new_rows n
+    JOIN old_rows o ON o.id = n.id
+    WHERE o.nombre IS DISTINCT FROM n.nombre
+       OR o.nit IS DISTINCT FROM n.nit
+       OR o.telefono IS DISTINCT FROM n.telefono
+       OR o.direccion IS DISTINCT FROM n.direccion
+       OR o.representante_legal IS DISTINCT FROM n.representante_legal
+    ON CONFLICT (source_type, source_id) DO NOTHING;
+    RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
+
+DROP TRIGGER IF EXISTS order_search_clients_update ON clients;
+CREATE TRIGGER order_search_clients_update
+    AFTER UPDATE ON clients
+    REFERENCING OLD TABLE AS old_rows NEW TABLE AS new_rows
+    FOR EACH STATEMENT EXECUTE FUNCTION trg_order_search_clients();
+
+CREATE OR REPLACE FUNCTION trg_order_search_products() RETURNS TRIGGER AS $$
+BEGIN
+    INSERT INTO order_search_stale_sources (source_type, source_id)
+    SELECT 'product', n.id
+    FROM new_rows n
+    JOIN old_rows o ON o.id = n.id
+    WHERE o.nombre IS DISTINCT FROM n.nombre
+    ON CONFLICT (source_type, source_id) DO NOTHING;
+    RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
+
+DROP TRIGGER IF EXISTS order_search_products_update ON products;
+CREATE TRIGGER order_search_products_update
+    AFTER UPDATE ON products
+    REFERENCING OLD TABLE AS old_rows NEW TABLE AS new_rows
+    FOR EACH STATEMENT EXECUTE FUNCTION trg_order_search_products();
+
+CREATE OR REPLACE FUNCTION trg_order_search_users() RETURNS TRIGGER AS $$
+BEGIN
+    INSERT INTO order_search_stale_sources (source_type, source_id)
+    SELECT 'user', n.id
+    FROM new_rows n
+    JOIN old_rows o ON o.id = n.id
+    WHERE o.username IS DISTINCT FROM n.username
+    ON CONFLICT (source_type, source_id) DO NOTHING;
+    RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
+
+DROP TRIGGER IF EXISTS order_search_users_update ON users;
+CREATE TRIGGER order_search_users_update
+    AFTER UPDATE ON users
+    REFERENCING OLD TABLE AS old_rows NEW TABLE AS new_rows
+    FOR EACH STATEMENT EXECUTE FUNCTION trg_order_search_users();
+
+-- 4.5 Procesa hasta p_limit orígenes encolados y devuelve cuántos tomó.
+--     Cada origen se saca de la cola antes de rearmar sus documentos: un
+--     renombre confirmado después lo vuelve a encolar para la siguiente
+--     pasada; SKIP LOCKED deja que dos instancias trabajen a la vez.
+CREATE OR REPLACE FUNCTION process_order_search_stale_sources(p_limit INT)
+RETURNS INT AS $$
+DECLARE
+    v_source RECORD;
+    v_count  INT := 0;
+BEGIN
+    FOR v_source IN
+        DELETE FROM order_search_stale_sources s
+        WHERE (s.source_type, s.source_id) IN (
+            SELECT source_type, source_id
+            FROM order_search_stale_sources
+            ORDER BY queued_at
+            LIMIT p_limit
+            FOR UPDATE SKIP LOCKED)
+        RETURNING s.source_type, s.source_id
+    LOOP
+        IF v_source.source_type = 'client' THEN
+            PERFORM refresh_order_search_documents(
+                ARRAY(SELECT id FROM orders WHERE client_id = v_source.source_id));
+        ELSIF v_source.source_type = 'product' THEN
+            PERFORM refresh_order_search_documents(
+                ARRAY(SELECT DISTINCT order_id FROM order_items WHERE product_id = v_source.source_id));
+        ELSIF v_source.source_type = 'user' THEN
+            PERFORM refresh_order_search_documents(
+                ARRAY(SELECT id FROM orders WHERE vendedor_id = v_source.source_id));
+        END IF;
+        v_count := v_count + 1;
+    END LOOP;
+    RETURN v_count;
+END;
+$$ LANGUAGE plpgsql;
+
+-- 5. Carga inicial
+INSERT INTO order_search_documents (order_id, document, updated_at)
+SELECT order_id, document, NOW()
+FROM order_search_source
+ON CONFLICT (order_id) DO NOTHING;
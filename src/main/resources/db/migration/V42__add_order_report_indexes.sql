@@ -0,0 +1,29 @@
+-- V42: Índices para las consultas calientes de órdenes y reportes
+-- Los filtros de reportes/nómina/metas usan COALESCE(completed_at, fecha)
+-- (antes era un OR entre completed_at y fecha, que ningún índice cubre).
+-- Estos índices de expresión replican exactamente esa expresión.
+
+-- 1. Reportes y agregados: estado = 'COMPLETADO' + rango de fecha efectiva
+--    (findCompletedByCompletedAtBetween, aggregate*, sumTotalRevenue*...)
+CREATE INDEX IF NOT EXISTS idx_orders_estado_effective_date
+    ON orders (estado, (COALESCE(completed_at, fecha)));
+
+-- 2. Nómina y metas por vendedor(es): vendedor + estado + rango
+--    (findCompletedOrdersByVendedor[Ids]Between, sumTotalSoldByVendedor[Ids]Between...)
+CREATE INDEX IF NOT EXISTS idx_orders_vendedor_estado_effective_date
+    ON orders (vendedor_id, estado, (COALESCE(completed_at, fecha)));
+
+-- 3. Orden por defecto del listado de órdenes (COALESCE(completed_at, fecha) DESC)
+CREATE INDEX IF NOT EXISTS idx_orders_effective_date
+    ON orders ((COALESCE(completed_at, fecha)) DESC);
+
+-- 4. Stock comprometido (findStockSummaryWithCommitted / findStockComprometidoByProductId)
+--    y órdenes de un producto renombrado (buscador, V41): product_id +
+--    order_id con cantidad e is_freight_item incluidos, para leer solo el índice.
+CREATE INDEX IF NOT EXISTS idx_order_items_product_order
+    ON order_items (product_id, order_id) INCLUDE (cantidad, is_freight_item);
+
+-- findByClienteInAndEstado ya está cubierto por idx_orders_client_estado (V40).
+
+ANALYZE orders;
+ANALYZE order_items;
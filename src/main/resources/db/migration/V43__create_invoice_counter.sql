@@ -0,0 +1,18 @@
+-- V43: Contador de facturas sin huecos
+-- invoice_number_seq no es transaccional: un nextval dentro de una
+-- transacción que se revierte deja un hueco en la numeración. El contador es
+-- una fila normal: se incrementa en la misma transacción que guarda la orden,
+-- así un rollback devuelve los números y el bloqueo de la fila serializa a
+-- quienes facturan al mismo tiempo.
+
+CREATE TABLE IF NOT EXISTS invoice_counter (
+    id         SMALLINT PRIMARY KEY CHECK (id = 1),
+    next_value BIGINT NOT NULL
+);
+
+-- Arranca donde iba la secuencia (o después de la factura más alta)
+INSERT INTO invoice_counter (id, next_value)
+SELECT 1, GREATEST(
+           (SELECT CASE WHEN is_called THEN last_value + 1 ELSE last_value END FROM invoice_number_seq),
+           (SELECT COALESCE(MAX(invoice_number), 0) + 1 FROM orders))
+ON CONFLICT (id) DO NOTHING;
@@ -0,0 +1,20 @@
+-- V44: Grupos de vendedores que comparten datos (clientes, órdenes, metas,
+-- nómina). Reemplaza la pareja fija NinaTorres/YicelaSandoval de
+-- UserUnificationUtil: cualquier cantidad de grupos, configurados aquí.
+-- position = 0 es la cuenta principal (titular de la nómina y nombre que se
+-- muestra en reportes).
+
+CREATE TABLE IF NOT EXISTS vendor_group_members (
+    user_id    UUID PRIMARY KEY REFERENCES users(id) ON DELETE CASCADE,
+    group_name VARCHAR(100) NOT NULL,
+    position   INTEGER      NOT NULL DEFAULT 0
+);
+
+CREATE INDEX IF NOT EXISTS idx_vendor_group_members_group ON vendor_group_members(group_name);
+
+-- Grupo existente
+INSERT INTO vendor_group_members (user_id, group_name, position)
+SELECT id, 'NinaTorres', CASE WHEN LOWER(username) = 'ninatorres' THEN 0 ELSE 1 END
+FROM users
+WHERE LOWER(username) IN ('ninatorres', 'yicelasandoval')
+ON CONFLICT (user_id) DO NOTHING;
@@ -0,0 +1,9 @@
+-- V45: Índice para recorrer el historial de inventario por cursor
+-- El PDF del historial lee los movimientos en páginas ordenadas por
+-- (timestamp DESC, id DESC) continuando desde la última fila leída. El
+-- índice compuesto cubre ese orden (recorrido hacia atrás) y reemplaza al
+-- índice simple por timestamp de V24.
+
+CREATE INDEX IF NOT EXISTS idx_inventory_movement_timestamp_id
+    ON inventory_movements (timestamp, id);
+DROP INDEX IF EXISTS idx_inventory_movement_timestamp;
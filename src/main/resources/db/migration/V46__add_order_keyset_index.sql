@@ -0,0 +1,12 @@
+-- V46: Índice para el listado de órdenes por cursor
+-- El listado por cursor ordena por (COALESCE(completed_at, fecha), id) DESC y
+-- continúa con una comparación de esa misma tupla. Con el id en el índice la
+-- siguiente página arranca directo en la posición del cursor. Reemplaza al
+-- índice de solo fecha efectiva de V42, que este cubre como prefijo.
+-- (inventory_movements ya tiene (timestamp, id) desde V45.)
+
+CREATE INDEX IF NOT EXISTS idx_orders_effective_date_id
+    ON orders ((COALESCE(completed_at, fecha)) DESC, id DESC);
+DROP INDEX IF EXISTS idx_orders_effective_date;
+
+ANALYZE orders;
@@ -0,0 +1,32 @@
+-- V47: Imágenes de producto en cola de subida
+-- Las imágenes Base64 de crear/actualizar producto ya no se suben dentro de la
+-- transacción: se guardan aquí (deduplicadas por hash del contenido) y el
+-- producto queda apuntando a la imagen pendiente. Tras el commit un pool de
+-- hilos las sube y reemplaza products.image_url.
+
+CREATE TABLE IF NOT EXISTS product_images (
+    id                UUID PRIMARY KEY,
+    content_hash      VARCHAR(64)  NOT NULL,
+    original_filename VARCHAR(255),
+    size_bytes        BIGINT       NOT NULL,
+    status            VARCHAR(20)  NOT NULL,
+    url               VARCHAR(500),
+    error             TEXT,
+    attempts          INTEGER      NOT NULL DEFAULT 0,
+    -- Contenido hasta que se sube; luego se borra
+    data              BYTEA,
+    created_at        TIMESTAMP    NOT NULL DEFAULT NOW(),
+    updated_at        TIMESTAMP    NOT NULL DEFAULT NOW(),
+    CONSTRAINT uk_product_images_content_hash UNIQUE (content_hash)
+);
+
+-- Recuperación periódica: imágenes pendientes o con la subida colgada
+CREATE INDEX IF NOT EXISTS idx_product_images_status
+    ON product_images (status, updated_at);
+
+ALTER TABLE products
+    ADD COLUMN IF NOT EXISTS pending_image_id UUID
+        REFERENCES product_images(id) ON DELETE SET NULL;
+
+CREATE INDEX IF NOT EXISTS idx_products_pending_image
+    ON products (pending_image_id) WHERE pending_image_id IS NOT NULL;
@@ -0,0 +1,180 @@
+-- V48: Stock comprometido por producto como contador
+-- Antes el reporte de stock sumaba, en cada consulta, todos los order_items
+-- de órdenes no finales (LEFT JOIN products x order_items x orders). Ahora
+-- products.committed_stock guarda esa suma y lo mantienen triggers en la
+-- misma transacción que el cambio, venga de donde venga (alta/cambio/baja
+-- de item, anulación, cancelación, completado). CommittedStockService lo
+-- recalcula periódicamente desde committed_stock_source y reporta desfases.
+
+ALTER TABLE products ADD COLUMN IF NOT EXISTS committed_stock INTEGER NOT NULL DEFAULT 0;
+
+-- 1. Estados que ya no comprometen stock (misma lista que el reporte anterior)
+CREATE OR REPLACE FUNCTION order_status_commits_stock(p_estado VARCHAR)
+RETURNS BOOLEAN AS $$
+    SELECT p_estado NOT IN ('COMPLETADO', 'CANCELADO', 'ANULADA', 'PENDING_PROMOTION_COMPLETION');
+$$ LANGUAGE sql IMMUTABLE;
+
+-- 2. Fuente única del valor correcto (carga inicial y conciliación)
+CREATE OR REPLACE VIEW committed_stock_source AS
+SELECT oi.product_id          AS product_id,
+       SUM(oi.cantidad)::INTEGER AS committed
+FROM order_items oi
+JOIN orders o ON o.id = oi.order_id
+WHERE order_status_commits_stock(o.estado)
+  AND (oi.is_freight_item = false OR oi.is_freight_item IS NULL)
+GROUP BY oi.product_id;
+
+-- 3. Aplica deltas agregados por producto: bloquea las filas en orden de id
+--    (igual que ProductRepository.lockStockRows) y hace un solo UPDATE.
+--    Dos transacciones que tocan los mismos productos siempre los toman en
+--    el mismo orden, así que no se cruzan.
+CREATE OR REPLACE FUNCTION apply_committed_stock_deltas(p_product_ids UUID[], p_deltas INTEGER[])
+RETURNS VOID AS $$
+BEGIN
+    IF p_product_ids IS NULL OR array_length(p_product_ids, 1) IS NULL THEN
+        RETURN;
+    END IF;
+
+    PERFORM 1 FROM products
+    WHERE id = ANY(p_product_ids)
+    ORDER BY id
+    FOR UPDATE;
+
+    UPDATE products p
+    SET committed_stock = p.committed_stock + d.delta
+    FROM UNNEST(p_product_ids, p_deltas) AS d(product_id, delta)
+    WHERE p.id = d.product_id;
+END;
+$$ LANGUAGE plpgsql;
+
+-- 4. Items: triggers por sentencia con tablas de transición (PostgreSQL no
+--    las admite en triggers de varios eventos: uno por evento). Cada fila
+--    aporta su cantidad si no es flete y su orden compromete stock; la
+--    sentencia suma por producto y aplica una vez.
+CREATE OR REPLACE FUNCTION trg_committed_stock_items_insert() RETURNS TRIGGER AS $$
+DECLARE
+    v_ids    UUID[];
+    v_deltas INTEGER[];
+BEGIN
+    SELECT ARRAY_AGG(product_id ORDER BY product_id), ARRAY_AGG(delta ORDER BY product_id)
+    INTO v_ids, v_deltas
+    FROM (SELECT n.product_id, SUM(n.cantidad)::INTEGER AS delta
+          FROM new_rows n
+          JOIN orders o ON o.id = n.order_id
+          WHERE order_status_commits_stock(o.estado)
+            AND n.is_freight_item IS NOT TRUE
+          GROUP BY n.product_id
+          HAVING SUM(n.cantidad) <> 0) d;
+
+    PERFORM apply_committed_stock_deltas(v_ids, v_deltas);
+    RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
+
+CREATE OR REPLACE FUNCTION trg_committed_stock_items_delete() RETURNS TRIGGER AS $$
+DECLARE
+    v_ids    UUID[];
+    v_deltas INTEGER[];
+BEGIN
+    SELECT ARRAY_AGG(product_id ORDER BY product_id), ARRAY_AGG(delta ORDER BY product_id)
+    INTO v_ids, v_deltas
+    FROM (SELECT d.product_id, -SUM(d.cantidad)::INTEGER AS delta
+          FROM old_rows d
+          JOIN orders o ON o.id = d.order_id
+          WHERE order_status_commits_stock(o.estado)
+            AND d.is_freight_item IS NOT TRUE
+          GROUP BY d.product_id
+          HAVING SUM(d.cantidad) <> 0) d;
+
+    PERFORM apply_committed_stock_deltas(v_ids, v_deltas);
+    RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
+
+-- Cambio de cantidad, producto, orden o flete: resta lo que aportaba la
+-- fila vieja y suma lo que aporta la nueva (los updates que no tocan esas
+-- columnas dan delta 0 y no bloquean nada)
+CREATE OR REPLACE FUNCTION trg_committed_stock_items_update() RETURNS TRIGGER AS $$
+DECLARE
+    v_ids    UUID[];
+    v_deltas INTEGER[];
+BEGIN
+    SELECT ARRAY_AGG(product_id ORDER BY product_id), ARRAY_AGG(delta ORDER BY product_id)
+    INTO v_ids, v_deltas
+    FROM (SELECT c.product_id, SUM(c.quantity)::INTEGER AS delta
+          FROM (SELECT d.product_id, -d.cantidad AS quantity
+                FROM old_rows d
+                JOIN orders o ON o.id = d.order_id
+                WHERE order_status_commits_stock(o.estado)
+                  AND d.is_freight_item IS NOT TRUE
+                UNION ALL
+                SELECT n.product_id, n.cantidad
+                FROM new_rows n
+                JOIN orders o ON o.id = n.order_id
+                WHERE order_status_commits_stock(o.estado)
+                  AND n.is_freight_item IS NOT TRUE) c
+          GROUP BY c.product_id
+          HAVING SUM(c.quantity) <> 0) d;
+
+    PERFORM apply_committed_stock_deltas(v_ids, v_deltas);
+    RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
+
+DROP TRIGGER IF EXISTS committed_stock_items_insert_delete ON order_items;
+DROP TRIGGER IF EXISTS committed_stock_items_insert ON order_items;
+CREATE TRIGGER committed_stock_items_insert
+    AFTER INSERT ON order_items
+    REFERENCING NEW TABLE AS new_rows
+    FOR EACH STATEMENT EXECUTE FUNCTION trg_committed_stock_items_insert();
+
+DROP TRIGGER IF EXISTS committed_stock_items_delete ON order_items;
+CREATE TRIGGER committed_stock_items_delete
+    AFTER DELETE ON order_items
+    REFERENCING OLD TABLE AS old_rows
+    FOR EACH STATEMENT EXECUTE FUNCTION trg_committed_stock_items_delete();
+
+DROP TRIGGER IF EXISTS committed_stock_items_update ON order_items;
+CREATE TRIGGER committed_stock_items_update
+    AFTER UPDATE ON order_items
+    REFERENCING OLD TABLE AS old_rows NEW TABLE AS new_rows
+    FOR EACH STATEMENT EXECUTE FUNCTION trg_committed_stock_items_update();
+
+-- 5. Órdenes que entran o salen de un estado final: suman o restan todos
+--    sus items (una sentencia puede cambiar el estado de varias órdenes)
+CREATE OR REPLACE FUNCTION trg_committed_stock_orders() RETURNS TRIGGER AS $$
+DECLARE
+    v_ids    UUID[];
+    v_deltas INTEGER[];
+BEGIN
+    SELECT ARRAY_AGG(product_id ORDER BY product_id), ARRAY_AGG(delta ORDER BY product_id)
+    INTO v_ids, v_deltas
+    FROM (SELECT oi.product_id,
+                 SUM(CASE WHEN order_status_commits_stock(t.new_estado) THEN oi.cantidad
+                          ELSE -oi.cantidad END)::INTEGER AS delta
+          FROM (SELECT n.id, n.estado AS new_estado
+                FROM new_rows n
+                JOIN old_rows o ON o.id = n.id
+                WHERE order_status_commits_stock(o.estado) <> order_status_commits_stock(n.estado)) t
+          JOIN order_items oi ON oi.order_id = t.id
+          WHERE oi.is_freight_item IS NOT TRUE
+          GROUP BY oi.product_id
+          HAVING SUM(CASE WHEN order_status_commits_stock(t.new_estado) THEN oi.cantidad
+                          ELSE -oi.cantidad END) <> 0) d;
+
+    PERFORM apply_committed_stock_deltas(v_ids, v_deltas);
+    RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
+
+DROP TRIGGER IF EXISTS committed_stock_orders_update ON orders;
+CREATE TRIGGER committed_stock_orders_update
+    AFTER UPDATE ON orders
+    REFERENCING OLD TABLE AS old_rows NEW TABLE AS new_rows
+    FOR EACH STATEMENT EXECUTE FUNCTION trg_committed_stock_orders();
+
+-- 6. Carga inicial
+UPDATE products p
+SET committed_stock = s.committed
+FROM committed_stock_source s
+WHERE p.id = s.product_id;
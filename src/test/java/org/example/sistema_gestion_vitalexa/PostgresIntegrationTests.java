@@ -0,0 +1,37 @@
+package org.example.sistema_gestion_vitalexa;
+
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+/**
+ * Base de las pruebas que necesitan PostgreSQL real (triggers, índices,
+ * bloqueos FOR UPDATE). Solo corren si se indica una base dedicada a pruebas:
+ *
+ * mvn test -Dmaven.test.skip=false -Dtest.postgres.url=jdbc:postgresql://localhost:5432/vitalexa_test
+ *
+ * (usuario y clave con -Dtest.postgres.user / -Dtest.postgres.password).
+ * Flyway migra la base al arrancar y Hibernate valida el esquema. Cada prueba
+ * crea sus propios datos con nombres únicos, así que pueden repetirse sobre
+ * la misma base.
+ *
+ * Cada subclase lleva {@link PostgresTest}, que es la que las salta cuando
+ * no hay base de pruebas.
+ */
+@SpringBootTest
+public abstract class PostgresIntegrationTests {
+
+    @DynamicPropertySource
+    static void postgres(DynamicPropertyRegistry registry) {
+        registry.add("spring.datasource.url", () -> System.getProperty("test.postgres.url"));
+        registry.add("spring.datasource.username", () -> System.getProperty("test.postgres.user", "postgres"));
+        registry.add("spring.datasource.password", () -> System.getProperty("test.postgres.password", "postgres"));
+        registry.add("spring.jpa.hibernate.ddl-auto", () -> "validate");
+        registry.add("spring.jpa.show-sql", () -> "false");
+        registry.add("spring.datasource.hikari.maximum-pool-size", () -> "20");
+        registry.add("spring.jpa.properties.hibernate.session_factory.statement_inspector",
+                SqlStatementCounter.class::getName);
+        // Las pruebas llaman al job del buscador cuando lo necesitan
+        registry.add("order-search.refresh.initial-delay-ms", () -> "3600000");
+    }
+}
@@ -0,0 +1,24 @@
+package org.example.sistema_gestion_vitalexa;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marca una prueba de PostgresIntegrationTests: solo corre si se indica
+ * -Dtest.postgres.url. Va en cada clase concreta porque JUnit no hereda las
+ * condiciones de la clase base; sin ella la prueba intenta levantar el
+ * contexto contra la base por defecto y falla en lugar de saltarse.
+ */
+@Target(ElementType.TYPE)
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+@Tag("postgres")
+@EnabledIfSystemProperty(named = "test.postgres.url", matches = ".+")
+public @interface PostgresTest {
+}
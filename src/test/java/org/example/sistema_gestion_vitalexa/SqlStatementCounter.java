@@ -0,0 +1,42 @@
+package org.example.sistema_gestion_vitalexa;
+
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Registra las sentencias SQL que prepara Hibernate en el hilo actual mientras
+ * corre {@link #capture(Runnable)}. Se instala en PostgresIntegrationTests
+ * (hibernate.session_factory.statement_inspector); los jobs de fondo corren en
+ * otros hilos y no se cuentan. Las consultas con JdbcTemplate tampoco.
+ */
+public class SqlStatementCounter implements StatementInspector {
+
+    private static final ThreadLocal<List<String>> STATEMENTS = new ThreadLocal<>();
+
+    /**
+     * Ejecuta la acción y devuelve las sentencias preparadas durante ella, en
+     * orden.
+     */
+    public static List<String> capture(Runnable action) {
+        List<String> previous = STATEMENTS.get();
+        List<String> statements = new ArrayList<>();
+        STATEMENTS.set(statements);
+        try {
+            action.run();
+        } finally {
+            STATEMENTS.set(previous);
+        }
+        return statements;
+    }
+
+    @Override
+    public String inspect(String sql) {
+        List<String> statements = STATEMENTS.get();
+        if (statements != null) {
+            statements.add(sql);
+        }
+        return sql;
+    }
+}
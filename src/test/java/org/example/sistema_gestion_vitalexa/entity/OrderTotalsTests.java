@@ -0,0 +1,156 @@
+package org.example.sistema_gestion_vitalexa.entity;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+import java.util.stream.LongStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Propiedad: después de cualquier secuencia de addItem/addItems/removeItem/
+ * removeItems/clearItems (y de cambios hechos directamente sobre items), el
+ * total incremental es igual al que da recalculateTotal() sobre los mismos
+ * items en una orden nueva. Cada semilla genera una secuencia distinta y
+ * reproducible.
+ */
+class OrderTotalsTests {
+
+    private static final int OPERATIONS_PER_SEQUENCE = 80;
+
+    // Pocas instancias y pocos precios: se repiten instancias y aparecen packs
+    // con precios distintos entre sus items (el caso que obliga a recalcular)
+    private static final List<UUID> PROMO_INSTANCES = List.of(UUID.randomUUID(), UUID.randomUUID(), UUID.randomUUID());
+    private static final List<BigDecimal> PACK_PRICES = List.of(
+            new BigDecimal("45000.00"), new BigDecimal("45000.00"), new BigDecimal("52000.50"));
+
+    static LongStream seeds() {
+        return LongStream.range(0, 300);
+    }
+
+    @ParameterizedTest
+    @MethodSource("seeds")
+    void incrementalTotalMatchesRecalculation(long seed) {
+        Random random = new Random(seed);
+        Order order = new Order();
+        List<String> history = new ArrayList<>();
+
+        for (int step = 0; step < OPERATIONS_PER_SEQUENCE; step++) {
+            int op = random.nextInt(100);
+            if (op < 35) {
+                order.addItem(randomItem(random));
+                history.add("addItem");
+            } else if (op < 55) {
+                List<OrderItem> batch = new ArrayList<>();
+                for (int i = random.nextInt(5); i >= 0; i--) {
+                    batch.add(randomItem(random));
+                }
+                order.addItems(batch);
+                history.add("addItems(" + batch.size() + ")");
+            } else if (op < 75 && !order.getItems().isEmpty()) {
+                order.removeItem(order.getItems().get(random.nextInt(order.getItems().size())));
+                history.add("removeItem");
+            } else if (op < 90) {
+                List<OrderItem> removed = new ArrayList<>();
+                for (OrderItem item : order.getItems()) {
+                    if (random.nextInt(3) == 0) {
+                        removed.add(item);
+                    }
+                }
+                // Un item que no pertenece a la orden no debe alterar el total
+                removed.add(randomItem(random));
+                order.removeItems(removed);
+                history.add("removeItems(" + removed.size() + ")");
+            } else if (op < 95) {
+                // Cambio por fuera de addItem: el siguiente uso debe reconstruir
+                order.getItems().add(randomItem(random));
+                order.addItems(List.of());
+                history.add("items.add+addItems()");
+            } else {
+                order.clearItems();
+                history.add("clearItems");
+            }
+
+            assertThat(order.getTotal())
+                    .as("semilla %d, operaciones %s", seed, history)
+                    .isEqualByComparingTo(recalculated(order.getItems()));
+        }
+    }
+
+    @Test
+    void builderDoesNotExposeRunningTotals() {
+        assertThat(Arrays.stream(Order.OrderBuilder.class.getDeclaredMethods()).map(m -> m.getName()))
+                .doesNotContain("running", "runningTotal", "runningPromoInstances", "trackedItemCount");
+    }
+
+    @Test
+    void builtOrderStartsFromItsItems() {
+        OrderItem existing = normalItem(new BigDecimal("1000.00"), 3);
+        Order order = Order.builder()
+                .items(new ArrayList<>(List.of(existing)))
+                .total(BigDecimal.ZERO)
+                .build();
+
+        order.addItem(normalItem(new BigDecimal("500.00"), 2));
+
+        assertThat(order.getTotal()).isEqualByComparingTo("4000.00");
+    }
+
+    @Test
+    void builtOrderWithoutItemsAcceptsNewItems() {
+        Order order = Order.builder().build();
+
+        order.addItem(normalItem(new BigDecimal("2500.00"), 2));
+
+        assertThat(order.getTotal()).isEqualByComparingTo("5000.00");
+    }
+
+    private static BigDecimal recalculated(List<OrderItem> items) {
+        Order reference = new Order();
+        reference.setItems(new ArrayList<>(items));
+        reference.recalculateTotal();
+        return reference.getTotal();
+    }
+
+    private static OrderItem randomItem(Random random) {
+        int kind = random.nextInt(10);
+        if (kind < 5) {
+            return normalItem(BigDecimal.valueOf(100 + random.nextInt(50_000), 2), 1 + random.nextInt(12));
+        }
+        if (kind < 9) {
+            BigDecimal packPrice = PACK_PRICES.get(random.nextInt(PACK_PRICES.size()));
+            return OrderItem.builder()
+                    .cantidad(1 + random.nextInt(6))
+                    .precioUnitario(BigDecimal.ZERO)
+                    .subTotal(packPrice)
+                    .isPromotionItem(true)
+                    .promotionInstanceId(PROMO_INSTANCES.get(random.nextInt(PROMO_INSTANCES.size())))
+                    .promotionPackPrice(packPrice)
+                    .build();
+        }
+        // Item de promoción sin precio de pack (regalo): suma su subtotal
+        return OrderItem.builder()
+                .cantidad(1 + random.nextInt(3))
+                .precioUnitario(BigDecimal.ZERO)
+                .subTotal(BigDecimal.ZERO)
+                .isPromotionItem(true)
+                .isFreeItem(true)
+                .promotionInstanceId(PROMO_INSTANCES.get(random.nextInt(PROMO_INSTANCES.size())))
+                .build();
+    }
+
+    private static OrderItem normalItem(BigDecimal price, int quantity) {
+        return OrderItem.builder()
+                .cantidad(quantity)
+                .precioUnitario(price)
+                .subTotal(price.multiply(BigDecimal.valueOf(quantity)))
+                .build();
+    }
+}
@@ -0,0 +1,175 @@
+package org.example.sistema_gestion_vitalexa.repository;
+
+import jakarta.persistence.EntityManager;
+import org.example.sistema_gestion_vitalexa.PostgresIntegrationTests;
+import org.example.sistema_gestion_vitalexa.PostgresTest;
+import org.example.sistema_gestion_vitalexa.dto.StockSummaryDTO;
+import org.example.sistema_gestion_vitalexa.enums.OrdenStatus;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * El reporte de stock leído de products.committed_stock (triggers de V48)
+ * coincide con la consulta que sumaba los items de órdenes activas en cada
+ * llamada (findStockSummaryWithCommitted, copiada abajo tal cual), después
+ * de una secuencia reproducible de altas, cambios y bajas de items y de
+ * cambios de estado de órdenes, incluidas sentencias que tocan varias filas.
+ */
+@PostgresTest
+class CommittedStockTests extends PostgresIntegrationTests {
+
+    private static final int PRODUCTS = 12;
+    private static final int ORDERS = 30;
+    private static final int OPERATIONS = 400;
+    private static final List<String> STATES = List.of(
+            "PENDIENTE", "CONFIRMADO", "COMPLETADO", "CANCELADO", "ANULADA", "PENDING_PROMOTION_COMPLETION");
+
+    /** Consulta anterior del reporte (OrdenItemRepository, antes de V48). */
+    private static final String STOCK_SUMMARY_WITH_COMMITTED = """
+            SELECT new org.example.sistema_gestion_vitalexa.dto.StockSummaryDTO(
+                p.id,
+                p.nombre,
+                p.stock,
+                CAST(COALESCE(SUM(
+                    CASE
+                        WHEN oi.id IS NOT NULL
+                             AND o.estado NOT IN (:estadosFinales)
+                             AND (oi.isFreightItem = false OR oi.isFreightItem IS NULL)
+                        THEN oi.cantidad
+                        ELSE 0
+                    END
+                ), 0) AS integer),
+                CAST(p.stock + COALESCE(SUM(
+                    CASE
+                        WHEN oi.id IS NOT NULL
+                             AND o.estado NOT IN (:estadosFinales)
+                             AND (oi.isFreightItem = false OR oi.isFreightItem IS NULL)
+                        THEN oi.cantidad
+                        ELSE 0
+                    END
+                ), 0) AS integer)
+            )
+            FROM Product p
+            LEFT JOIN OrderItem oi ON oi.product.id = p.id
+            LEFT JOIN oi.order o
+            WHERE (p.isHidden = false OR p.isHidden IS NULL)
+            GROUP BY p.id, p.nombre, p.stock
+            ORDER BY p.nombre ASC
+            """;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Autowired
+    private JdbcTemplate jdbc;
+
+    @ParameterizedTest
+    @ValueSource(longs = { 1, 2, 3, 4, 5 })
+    void stockSummaryMatchesPreviousAggregation(long seed) {
+        Random random = new Random(seed);
+        String tag = UUID.randomUUID().toString().substring(0, 8);
+        UUID vendor = UUID.randomUUID();
+        // Sin rol: el CHECK de UpdateRoleConstraint no acepta los valores del enum
+        jdbc.update("INSERT INTO users (id, username, password, active) VALUES (?, ?, 'x', true)",
+                vendor, "vend-committed-" + tag);
+
+        List<UUID> products = new ArrayList<>();
+        for (int i = 0; i < PRODUCTS; i++) {
+            UUID id = UUID.randomUUID();
+            jdbc.update("""
+                    INSERT INTO products (id, nombre, precio, stock, active, is_hidden, created_at, updated_at)
+                    VALUES (?, ?, 1000, ?, true, false, now(), now())
+                    """, id, "Comprometido " + tag + " " + i, random.nextInt(200) - 50);
+            products.add(id);
+        }
+        List<UUID> orders = new ArrayList<>();
+        for (int i = 0; i < ORDERS; i++) {
+            UUID id = UUID.randomUUID();
+            jdbc.update("INSERT INTO orders (id, fecha, total, estado, vendedor_id) VALUES (?, now(), 0, ?, ?)",
+                    id, pick(random, STATES), vendor);
+            orders.add(id);
+        }
+
+        for (int step = 0; step < OPERATIONS; step++) {
+            int op = random.nextInt(100);
+            UUID item = randomItem(random, orders);
+            if (op < 40 || item == null) {
+                jdbc.update("""
+                        INSERT INTO order_items (id, cantidad, precio_unitario, sub_total, order_id, product_id, is_freight_item)
+                        VALUES (?, ?, 1000, 1000, ?, ?, ?)
+                        """, UUID.randomUUID(), 1 + random.nextInt(9), pick(random, orders),
+                        pick(random, products), random.nextInt(8) == 0);
+            } else if (op < 55) {
+                jdbc.update("UPDATE order_items SET cantidad = ? WHERE id = ?", 1 + random.nextInt(9), item);
+            } else if (op < 62) {
+                jdbc.update("UPDATE order_items SET product_id = ? WHERE id = ?", pick(random, products), item);
+            } else if (op < 67) {
+                jdbc.update("UPDATE order_items SET order_id = ? WHERE id = ?", pick(random, orders), item);
+            } else if (op < 70) {
+                jdbc.update("UPDATE order_items SET is_freight_item = NOT COALESCE(is_freight_item, false) WHERE id = ?",
+                        item);
+            } else if (op < 80) {
+                jdbc.update("DELETE FROM order_items WHERE id = ?", item);
+            } else if (op < 95) {
+                jdbc.update("UPDATE orders SET estado = ? WHERE id = ?", pick(random, STATES), pick(random, orders));
+            } else {
+                // Varias órdenes y varios items en una sola sentencia, elegidos
+                // por hash del id para no depender de random() de la base
+                String salt = Integer.toString(random.nextInt());
+                jdbc.update("UPDATE orders SET estado = ? WHERE vendedor_id = ? AND abs(hashtext(id::text || ?)) % 10 < 3",
+                        pick(random, STATES), vendor, salt);
+                jdbc.update("""
+                        UPDATE order_items SET cantidad = cantidad + 1
+                        WHERE order_id IN (SELECT id FROM orders WHERE vendedor_id = ?)
+                          AND abs(hashtext(id::text || ?)) % 10 < 3
+                        """, vendor, salt);
+                jdbc.update("""
+                        DELETE FROM order_items
+                        WHERE order_id IN (SELECT id FROM orders WHERE vendedor_id = ?)
+                          AND abs(hashtext(id::text || ?)) % 10 = 9
+                        """, vendor, salt);
+            }
+        }
+
+        Set<UUID> seeded = Set.copyOf(products);
+        List<StockSummaryDTO> expected = entityManager
+                .createQuery(STOCK_SUMMARY_WITH_COMMITTED, StockSummaryDTO.class)
+                .setParameter("estadosFinales", List.of(OrdenStatus.COMPLETADO, OrdenStatus.CANCELADO,
+                        OrdenStatus.ANULADA, OrdenStatus.PENDING_PROMOTION_COMPLETION))
+                .getResultList().stream()
+                .filter(row -> seeded.contains(row.productId()))
+                .toList();
+        List<StockSummaryDTO> actual = productRepository.findStockSummary().stream()
+                .filter(row -> seeded.contains(row.productId()))
+                .toList();
+
+        assertThat(actual).as("semilla %d", seed).hasSize(PRODUCTS).isEqualTo(expected);
+        assertThat(productRepository.findCommittedStockDriftIn(products)).as("semilla %d", seed).isEmpty();
+    }
+
+    private UUID randomItem(Random random, List<UUID> orders) {
+        List<UUID> items = jdbc.queryForList(
+                "SELECT id FROM order_items WHERE order_id IN (" + String.join(", ", Collections.nCopies(orders.size(), "?"))
+                        + ") ORDER BY id",
+                UUID.class, orders.toArray());
+        return items.isEmpty() ? null : items.get(random.nextInt(items.size()));
+    }
+
+    private static <T> T pick(Random random, List<T> values) {
+        return values.get(random.nextInt(values.size()));
+    }
+}
@@ -0,0 +1,239 @@
+package org.example.sistema_gestion_vitalexa.repository;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.example.sistema_gestion_vitalexa.PostgresIntegrationTests;
+import org.example.sistema_gestion_vitalexa.PostgresTest;
+import org.example.sistema_gestion_vitalexa.SqlStatementCounter;
+import org.example.sistema_gestion_vitalexa.enums.OrdenStatus;
+import org.example.sistema_gestion_vitalexa.service.OrdenService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Las consultas calientes de órdenes y reportes usan los índices de V42 (y el
+ * de V46, que reemplazó al de solo fecha efectiva para el listado). Cada
+ * prueba llama al repositorio real, toma el SQL que generó Hibernate y le
+ * corre EXPLAIN con los mismos parámetros; falla si el plan no usa el índice
+ * o si recorre completa la tabla de ese índice.
+ *
+ * Con pocas filas PostgreSQL prefiere el Seq Scan aunque exista el índice,
+ * así que la primera corrida siembra 20.000 órdenes (2001-2005) y sus items
+ * bajo vendedores "vend-planes-*"; las siguientes corridas reutilizan esos
+ * datos. El ANALYZE se repite antes de cada prueba porque las demás pruebas
+ * insertan órdenes y con estadísticas viejas el plan cambia de índice.
+ */
+@PostgresTest
+class OrderIndexPlansTests extends PostgresIntegrationTests {
+
+    private static final int VENDORS = 40;
+    private static final int ORDERS = 20_000;
+    private static final LocalDateTime START = LocalDate.of(2003, 6, 1).atStartOfDay();
+    private static final LocalDateTime END = START.plusMonths(1);
+
+    @Autowired
+    private OrdenRepository ordenRepository;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private ClientRepository clientRepository;
+
+    @Autowired
+    private OrdenService ordenService;
+
+    @Autowired
+    private JdbcTemplate jdbc;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @BeforeEach
+    void seed() {
+        Integer seeded = jdbc.queryForObject(
+                "SELECT COUNT(*) FROM users WHERE username LIKE 'vend-planes-%'", Integer.class);
+        if (seeded == null || seeded == 0) {
+            seedOrders();
+        }
+        jdbc.execute("ANALYZE users");
+        jdbc.execute("ANALYZE clients");
+        jdbc.execute("ANALYZE products");
+        jdbc.execute("ANALYZE orders");
+        jdbc.execute("ANALYZE order_items");
+    }
+
+    private void seedOrders() {
+        // Sin rol: el CHECK de UpdateRoleConstraint no acepta los valores del enum
+        jdbc.update("""
+                INSERT INTO users (id, username, password, active)
+                SELECT gen_random_uuid(), 'vend-planes-' || lpad(v::text, 2, '0'), 'x', true
+                FROM generate_series(1, ?) v
+                """, VENDORS);
+        jdbc.update("""
+                INSERT INTO clients (id, nombre, telefono, active)
+                SELECT gen_random_uuid(), 'Cliente planes ' || c, '3000000000', true
+                FROM generate_series(1, 200) c
+                """);
+        jdbc.update("""
+                INSERT INTO products (id, nombre, precio, stock, active, is_hidden, created_at, updated_at)
+                SELECT gen_random_uuid(), 'Producto planes ' || p, 1000, 100000, true, false, now(), now()
+                FROM generate_series(1, 200) p
+                """);
+        // Una orden cada 2 horas desde 2001; 8 de cada 10 completadas al día siguiente
+        jdbc.update("""
+                WITH v AS (SELECT array_agg(id ORDER BY username) AS ids FROM users
+                           WHERE username LIKE 'vend-planes-%'),
+                     c AS (SELECT array_agg(id ORDER BY nombre) AS ids FROM clients
+                           WHERE nombre LIKE 'Cliente planes %')
+                INSERT INTO orders (id, fecha, completed_at, total, estado, vendedor_id, client_id)
+                SELECT gen_random_uuid(),
+                       TIMESTAMP '2001-01-01' + i * INTERVAL '2 hours',
+                       CASE WHEN i % 10 >= 2 THEN TIMESTAMP '2001-01-02' + i * INTERVAL '2 hours' END,
+                       1000 + (i % 50) * 100,
+                       CASE i % 10 WHEN 0 THEN 'PENDIENTE' WHEN 1 THEN 'CANCELADO' ELSE 'COMPLETADO' END,
+                       v.ids[i % array_length(v.ids, 1) + 1],
+                       c.ids[i % array_length(c.ids, 1) + 1]
+                FROM generate_series(1, ?) i, v, c
+                """, ORDERS);
+        jdbc.update("""
+                WITH p AS (SELECT array_agg(id ORDER BY nombre) AS ids FROM products
+                           WHERE nombre LIKE 'Producto planes %')
+                INSERT INTO order_items (id, cantidad, precio_unitario, sub_total, order_id, product_id)
+                SELECT gen_random_uuid(), 1 + k, 500, 500 * (1 + k), o.id,
+                       p.ids[(abs(hashtext(o.id::text)) + k) % array_length(p.ids, 1) + 1]
+                FROM orders o
+                JOIN users u ON u.id = o.vendedor_id AND u.username LIKE 'vend-planes-%'
+                CROSS JOIN generate_series(0, 1) k, p
+                """);
+    }
+
+    @Test
+    void completedOrdersInRangeUseEstadoIndex() {
+        String sql = single(() -> ordenRepository.findCompletedByCompletedAtBetween(START, END));
+
+        // Con la mayoría de órdenes completadas el planificador puede preferir
+        // el rango sobre el índice de V46 y filtrar el estado: ambos sirven
+        assertUsesIndex(sql, List.of("idx_orders_estado_effective_date", "idx_orders_effective_date_id"),
+                START, END);
+    }
+
+    @Test
+    void vendorPayrollQueriesUseVendedorIndex() {
+        List<UUID> vendors = vendorIds(2);
+
+        String orders = single(() -> ordenRepository.findCompletedOrdersByVendedorIdsAndMonthYear(
+                vendors, START.getMonthValue(), START.getYear()));
+        assertUsesIndex(orders, "idx_orders_vendedor_estado_effective_date", vendors.get(0), vendors.get(1),
+                START, END);
+
+        String sold = single(() -> ordenRepository.sumTotalSoldByVendedorIdsBetween(vendors, START, END));
+        assertUsesIndex(sold, "idx_orders_vendedor_estado_effective_date", vendors.get(0), vendors.get(1),
+                START, END);
+    }
+
+    @Test
+    void clientOrdersByEstadoUseClientIndex() {
+        List<UUID> clients = jdbc.queryForList(
+                "SELECT id FROM clients WHERE nombre IN ('Cliente planes 1', 'Cliente planes 2') ORDER BY id",
+                UUID.class);
+
+        String sql = single(() -> ordenRepository.findByClienteInAndEstado(
+                clientRepository.findAllById(clients), OrdenStatus.PENDIENTE), "from orders");
+
+        List<Object> args = new ArrayList<>(clients);
+        args.add(OrdenStatus.PENDIENTE.name());
+        assertUsesIndex(sql, "idx_orders_client_estado", args.toArray());
+    }
+
+    @Test
+    void cursorListingUsesKeysetIndex() {
+        String sql = single(() -> ordenService.findAllByCursor(null, 20, null, null, null, null, false),
+                "order by");
+
+        assertUsesIndex(sql, "idx_orders_effective_date_id", 21);
+    }
+
+    @Test
+    void committedStockByProductUsesItemsIndex() {
+        List<UUID> products = jdbc.queryForList(
+                "SELECT id FROM products WHERE nombre IN ('Producto planes 1', 'Producto planes 2') ORDER BY id",
+                UUID.class);
+
+        String sql = single(() -> productRepository.findCommittedStockDriftIn(products));
+
+        List<Object> args = new ArrayList<>(products);
+        args.addAll(products);
+        assertUsesIndex(sql, "idx_order_items_product_order", args.toArray());
+    }
+
+    private List<UUID> vendorIds(int count) {
+        return jdbc.queryForList(
+                "SELECT id FROM users WHERE username LIKE 'vend-planes-%' ORDER BY username LIMIT ?",
+                UUID.class, count);
+    }
+
+    private static String single(Runnable call) {
+        return single(call, "");
+    }
+
+    /**
+     * SQL de la única sentencia de la llamada que contiene el fragmento
+     * indicado (las llamadas de servicio también cargan asociaciones).
+     */
+    private static String single(Runnable call, String fragment) {
+        List<String> statements = SqlStatementCounter.capture(call).stream()
+                .filter(sql -> sql.toLowerCase().contains(fragment))
+                .toList();
+        assertThat(statements).as("sentencias con '%s'", fragment).hasSize(1);
+        return statements.get(0);
+    }
+
+    /**
+     * Corre EXPLAIN con los parámetros en el orden en que aparecen en el SQL
+     * y revisa que el plan use el índice y no recorra completa la tabla del
+     * índice. Las demás tablas del join quedan a criterio del planificador.
+     */
+    private void assertUsesIndex(String sql, String index, Object... args) {
+        assertUsesIndex(sql, List.of(index), args);
+    }
+
+    /** Igual que el anterior, pero acepta cualquiera de los índices indicados. */
+    private void assertUsesIndex(String sql, List<String> indexes, Object... args) {
+        String json = jdbc.queryForObject("EXPLAIN (FORMAT JSON) " + sql, String.class, args);
+        List<JsonNode> nodes = new ArrayList<>();
+        try {
+            collect(objectMapper.readTree(json).get(0).get("Plan"), nodes);
+        } catch (com.fasterxml.jackson.core.JsonProcessingException e) {
+            throw new IllegalStateException(e);
+        }
+
+        String table = nodes.stream()
+                .filter(node -> indexes.contains(node.path("Index Name").asText()))
+                .map(node -> node.path("Relation Name").asText())
+                .findFirst()
+                .orElse(null);
+        assertThat(table).as("índice %s en el plan de %s%n%s", indexes, sql, json).isNotNull();
+        assertThat(nodes)
+                .as("plan de %s%n%s", sql, json)
+                .noneMatch(node -> "Seq Scan".equals(node.path("Node Type").asText())
+                        && table.equals(node.path("Relation Name").asText()));
+    }
+
+    private static void collect(JsonNode plan, List<JsonNode> nodes) {
+        nodes.add(plan);
+        for (JsonNode child : plan.path("Plans")) {
+            collect(child, nodes);
+        }
+    }
+}
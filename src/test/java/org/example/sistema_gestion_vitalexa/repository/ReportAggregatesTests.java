@@ -0,0 +1,277 @@
+package org.example.sistema_gestion_vitalexa.repository;
+
+import org.example.sistema_gestion_vitalexa.PostgresIntegrationTests;
+import org.example.sistema_gestion_vitalexa.PostgresTest;
+import org.example.sistema_gestion_vitalexa.entity.Order;
+import org.example.sistema_gestion_vitalexa.entity.Product;
+import org.example.sistema_gestion_vitalexa.enums.OrdenStatus;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Los agregados SQL de ReportServiceImpl dan lo mismo que el cálculo en
+ * memoria que reemplazaron (cargar las órdenes con
+ * findCompletedByCompletedAtBetween / findByEstado / findAll y agruparlas con
+ * streams, una consulta de transferencias por vendedor, findAll de productos).
+ * Los datos sembrados quedan en 2031 y se comparan solo las filas de los
+ * vendedores de la prueba.
+ */
+@PostgresTest
+class ReportAggregatesTests extends PostgresIntegrationTests {
+
+    private static final LocalDateTime START = LocalDate.of(2031, 3, 1).atStartOfDay();
+    private static final LocalDateTime END = LocalDate.of(2031, 4, 30).atTime(23, 59, 59);
+    private static final List<String> STATES = List.of("COMPLETADO", "COMPLETADO", "COMPLETADO", "PENDIENTE",
+            "CONFIRMADO", "CANCELADO");
+
+    @Autowired
+    private OrdenRepository ordenRepository;
+
+    @Autowired
+    private OrdenItemRepository ordenItemRepository;
+
+    @Autowired
+    private PaymentTransferRepository paymentTransferRepository;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private JdbcTemplate jdbc;
+
+    private Set<UUID> vendors;
+
+    @BeforeEach
+    void seed() {
+        Random random = new Random(7);
+        String tag = UUID.randomUUID().toString().substring(0, 8);
+        List<UUID> vendorIds = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            UUID id = UUID.randomUUID();
+            // Sin rol: el CHECK de UpdateRoleConstraint no acepta los valores del enum
+            jdbc.update("INSERT INTO users (id, username, password, active) VALUES (?, ?, 'x', true)",
+                    id, "vend-report-" + i + "-" + tag);
+            vendorIds.add(id);
+        }
+        vendors = Set.copyOf(vendorIds);
+
+        List<UUID> clients = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            UUID id = UUID.randomUUID();
+            jdbc.update("INSERT INTO clients (id, nombre, telefono, active) VALUES (?, ?, ?, ?)",
+                    id, "Cliente reporte " + i + " " + tag, "300" + i, i != 4);
+            clients.add(id);
+        }
+        List<UUID> products = new ArrayList<>();
+        for (int i = 0; i < 6; i++) {
+            UUID id = UUID.randomUUID();
+            jdbc.update("""
+                    INSERT INTO products (id, nombre, precio, stock, active, is_hidden, created_at, updated_at)
+                    VALUES (?, ?, ?, ?, ?, false, now(), now())
+                    """, id, "Producto reporte " + i + " " + tag, 1000 + i * 250, random.nextInt(30), i != 5);
+            products.add(id);
+        }
+
+        for (int i = 0; i < 80; i++) {
+            UUID order = UUID.randomUUID();
+            UUID vendor = vendorIds.get(random.nextInt(vendorIds.size()));
+            // Febrero a mayo: parte de las órdenes cae fuera del rango
+            LocalDateTime fecha = LocalDate.of(2031, 2, 1).atTime(9, 0)
+                    .plusDays(random.nextInt(110)).plusMinutes(random.nextInt(600));
+            String estado = STATES.get(random.nextInt(STATES.size()));
+            // Históricas sin completedAt: el reporte usa fecha
+            LocalDateTime completedAt = "COMPLETADO".equals(estado) && random.nextInt(4) > 0
+                    ? fecha.plusDays(random.nextInt(3)).plusHours(random.nextInt(20))
+                    : null;
+            BigDecimal total = BigDecimal.ZERO;
+            List<Object[]> items = new ArrayList<>();
+            for (int j = random.nextInt(4); j >= 0; j--) {
+                int cantidad = 1 + random.nextInt(6);
+                BigDecimal subTotal = BigDecimal.valueOf(1000 + random.nextInt(9000)).multiply(BigDecimal.valueOf(cantidad));
+                items.add(new Object[] { UUID.randomUUID(), cantidad, subTotal, order,
+                        products.get(random.nextInt(products.size())) });
+                total = total.add(subTotal);
+            }
+            jdbc.update("""
+                    INSERT INTO orders (id, fecha, total, estado, vendedor_id, client_id, completed_at)
+                    VALUES (?, ?, ?, ?, ?, ?, ?)
+                    """, order, fecha, total, estado, vendor, clients.get(random.nextInt(clients.size())),
+                    completedAt);
+            for (Object[] item : items) {
+                jdbc.update("""
+                        INSERT INTO order_items (id, cantidad, precio_unitario, sub_total, order_id, product_id)
+                        VALUES (?, ?, 0, ?, ?, ?)
+                        """, item);
+            }
+
+            if (random.nextInt(3) == 0) {
+                UUID payment = UUID.randomUUID();
+                jdbc.update("INSERT INTO payments (id, order_id, amount, registered_by) VALUES (?, ?, 1000, ?)",
+                        payment, order, vendor);
+                jdbc.update("""
+                        INSERT INTO payment_transfers (payment_id, origin_vendedor_id, dest_vendedor_id, amount,
+                                                       target_month, target_year, is_revoked, created_by)
+                        VALUES (?, ?, ?, ?, ?, 2031, ?, ?)
+                        """, payment, vendor, vendorIds.get(random.nextInt(vendorIds.size())),
+                        BigDecimal.valueOf(100 + random.nextInt(900)), 2 + random.nextInt(4),
+                        random.nextInt(5) == 0, vendor);
+            }
+        }
+    }
+
+    @Test
+    void salesByVendorAndDayMatchLoadedOrders() {
+        Map<String, String> expected = transactionTemplate.execute(tx -> seeded(
+                ordenRepository.findCompletedByCompletedAtBetween(START, END)).stream()
+                .collect(Collectors.groupingBy(
+                        o -> o.getVendedor().getId() + " " + effectiveDate(o).toLocalDate(),
+                        TreeMap::new,
+                        Collectors.collectingAndThen(Collectors.toList(),
+                                orders -> totals(sum(orders, Order::getTotal), orders.size())))));
+
+        Map<String, String> actual = ordenRepository.aggregateCompletedSalesByVendorAndDay(START, END).stream()
+                .filter(r -> vendors.contains(r.vendedorId()))
+                .collect(Collectors.toMap(
+                        r -> r.vendedorId() + " " + LocalDate.of(r.year(), r.month(), r.day()),
+                        r -> totals(r.revenue(), r.orders()), (a, b) -> a + " duplicado", TreeMap::new));
+
+        assertThat(actual).isNotEmpty().isEqualTo(expected);
+    }
+
+    @Test
+    void salesByProductAndVendorMatchLoadedItems() {
+        Map<String, String> expectedBetween = transactionTemplate.execute(tx -> itemTotals(
+                seeded(ordenRepository.findCompletedByCompletedAtBetween(START, END))));
+        Map<String, String> expectedAllTime = transactionTemplate.execute(tx -> itemTotals(
+                seeded(ordenRepository.findByEstado(OrdenStatus.COMPLETADO))));
+
+        assertThat(productTotals(ordenItemRepository.aggregateCompletedSalesByProductAndVendorBetween(START, END)))
+                .isNotEmpty().isEqualTo(expectedBetween);
+        assertThat(productTotals(ordenItemRepository.aggregateCompletedSalesByProductAndVendor()))
+                .isNotEmpty().isEqualTo(expectedAllTime);
+    }
+
+    @Test
+    void salesByClientAndVendorMatchLoadedOrders() {
+        Map<String, String> expectedAllTime = transactionTemplate.execute(tx -> clientTotals(
+                seeded(ordenRepository.findAll())));
+        Map<String, String> expectedBetween = transactionTemplate.execute(tx -> clientTotals(
+                seeded(ordenRepository.findCompletedByCompletedAtBetween(START, END))));
+
+        assertThat(aggregatedClientTotals(ordenRepository.aggregateSalesByClientAndVendor()))
+                .isNotEmpty().isEqualTo(expectedAllTime);
+        assertThat(aggregatedClientTotals(ordenRepository.aggregateCompletedSalesByClientAndVendor(START, END)))
+                .isNotEmpty().isEqualTo(expectedBetween);
+    }
+
+    @Test
+    void transfersByVendorMatchOneQueryPerVendor() {
+        Map<UUID, String> expected = new TreeMap<>();
+        for (UUID vendor : vendors) {
+            BigDecimal amount = paymentTransferRepository.sumActiveTransfersToVendedorInRange(vendor, 3, 2031, 4, 2031);
+            if (amount.signum() != 0) {
+                expected.put(vendor, amount.stripTrailingZeros().toPlainString());
+            }
+        }
+
+        Map<UUID, String> actual = paymentTransferRepository.sumActiveTransfersByVendedorInRange(3, 2031, 4, 2031)
+                .stream()
+                .filter(t -> vendors.contains(t.vendedorId()))
+                .collect(Collectors.toMap(t -> t.vendedorId(), t -> t.amount().stripTrailingZeros().toPlainString(),
+                        (a, b) -> a + " duplicado", TreeMap::new));
+
+        assertThat(actual).isNotEmpty().isEqualTo(expected);
+    }
+
+    @Test
+    void productCountsMatchLoadedCatalog() {
+        List<Product> all = productRepository.findAll();
+        List<Product> lowStock = all.stream().filter(p -> p.getStock() < 10 && p.isActive()).toList();
+
+        assertThat(productRepository.count()).isEqualTo(all.size());
+        assertThat(productRepository.countByActiveTrue()).isEqualTo(all.stream().filter(Product::isActive).count());
+        assertThat(productRepository.countByActiveTrueAndStockLessThan(10)).isEqualTo(lowStock.size());
+        assertThat(productRepository.sumActiveInventoryValue()).isEqualByComparingTo(
+                sum(all.stream().filter(Product::isActive).toList(),
+                        p -> p.getPrecio().multiply(BigDecimal.valueOf(p.getStock()))));
+        // Empates de stock: se compara la secuencia de stocks, no los ids
+        assertThat(productRepository.findTop10ByActiveTrueAndStockLessThanOrderByStockAsc(10).stream()
+                .map(Product::getStock).toList())
+                .isEqualTo(lowStock.stream().map(Product::getStock).sorted().limit(10).toList());
+    }
+
+    private List<Order> seeded(List<Order> orders) {
+        return orders.stream()
+                .filter(o -> o.getVendedor() != null && vendors.contains(o.getVendedor().getId()))
+                .toList();
+    }
+
+    private Map<String, String> itemTotals(List<Order> orders) {
+        return orders.stream()
+                .flatMap(o -> o.getItems().stream())
+                .collect(Collectors.groupingBy(
+                        i -> i.getProduct().getId() + " " + i.getOrder().getVendedor().getId(),
+                        TreeMap::new,
+                        Collectors.collectingAndThen(Collectors.toList(),
+                                items -> totals(sum(items, i -> i.getSubTotal()),
+                                        items.stream().mapToLong(i -> i.getCantidad()).sum()))));
+    }
+
+    private Map<String, String> productTotals(
+            List<org.example.sistema_gestion_vitalexa.dto.ProductSalesAggregateDTO> rows) {
+        return rows.stream()
+                .filter(r -> vendors.contains(r.vendedorId()))
+                .collect(Collectors.toMap(r -> r.productId() + " " + r.vendedorId(),
+                        r -> totals(r.revenue(), r.quantitySold()), (a, b) -> a + " duplicado", TreeMap::new));
+    }
+
+    private Map<String, String> clientTotals(List<Order> orders) {
+        return orders.stream()
+                .collect(Collectors.groupingBy(
+                        o -> o.getCliente().getId() + " " + o.getVendedor().getId(),
+                        TreeMap::new,
+                        Collectors.collectingAndThen(Collectors.toList(),
+                                list -> totals(sum(list, Order::getTotal), list.size()))));
+    }
+
+    private Map<String, String> aggregatedClientTotals(
+            List<org.example.sistema_gestion_vitalexa.dto.ClientSalesAggregateDTO> rows) {
+        return rows.stream()
+                .filter(r -> vendors.contains(r.vendedorId()))
+                .collect(Collectors.toMap(r -> r.clientId() + " " + r.vendedorId(),
+                        r -> totals(r.totalSpent(), r.orders()), (a, b) -> a + " duplicado", TreeMap::new));
+    }
+
+    private static LocalDateTime effectiveDate(Order order) {
+        return order.getCompletedAt() != null ? order.getCompletedAt() : order.getFecha();
+    }
+
+    private static <T> BigDecimal sum(List<T> values, Function<T, BigDecimal> amount) {
+        return values.stream().map(amount).reduce(BigDecimal.ZERO, BigDecimal::add);
+    }
+
+    private static String totals(BigDecimal amount, long count) {
+        return amount.stripTrailingZeros().toPlainString() + " / " + count;
+    }
+}
@@ -0,0 +1,82 @@
+package org.example.sistema_gestion_vitalexa.security.jwt;
+
+import org.example.sistema_gestion_vitalexa.entity.User;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Un cambio del usuario invalida sus sesiones cacheadas, incluidas las del
+ * nombre anterior cuando se renombra. Sin transacción la invalidación
+ * diferida corre de inmediato.
+ */
+class UserPrincipalEvictionListenerTests {
+
+    private AuthenticatedPrincipalCache cache;
+    private UserPrincipalEvictionListener listener;
+
+    @BeforeEach
+    void setUp() {
+        cache = new AuthenticatedPrincipalCache();
+        ReflectionTestUtils.setField(cache, "ttlMillis", 300_000L);
+        ReflectionTestUtils.setField(cache, "maxSize", 100);
+        listener = new UserPrincipalEvictionListener(cache);
+    }
+
+    @Test
+    void renameEvictsSessionsOfThePreviousUsername() {
+        User user = loaded("ana");
+        cache("token-ana", "ana");
+        cache("token-otro", "otro");
+
+        user.setUsername("ana.gomez");
+        listener.evict(user);
+
+        assertThat(cache.get("token-ana")).isNull();
+        assertThat(cache.get("token-otro")).isNotNull();
+        assertThat(user.getLoadedUsername()).isEqualTo("ana.gomez");
+    }
+
+    @Test
+    void laterChangeEvictsUnderTheNewUsername() {
+        User user = loaded("luis");
+        user.setUsername("luis.r");
+        listener.evict(user);
+        cache("token-nuevo", "luis.r");
+
+        user.setActive(false);
+        listener.evict(user);
+
+        assertThat(cache.get("token-nuevo")).isNull();
+    }
+
+    @Test
+    void changeWithoutRenameEvictsCurrentUsername() {
+        User user = loaded("marta");
+        cache("token-marta", "marta");
+
+        user.setActive(false);
+        listener.evict(user);
+
+        assertThat(cache.get("token-marta")).isNull();
+    }
+
+    private User loaded(String username) {
+        User user = User.builder().id(UUID.randomUUID()).username(username).password("x").active(true).build();
+        listener.remember(user);
+        return user;
+    }
+
+    private void cache(String token, String username) {
+        UserDetails details = new org.springframework.security.core.userdetails.User(username, "x", List.of());
+        cache.put(token, details, new Date(System.currentTimeMillis() + 60_000), cache.generation());
+        assertThat(cache.get(token)).isNotNull();
+    }
+}
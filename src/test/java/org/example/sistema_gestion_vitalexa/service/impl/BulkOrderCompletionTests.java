@@ -0,0 +1,134 @@
+package org.example.sistema_gestion_vitalexa.service.impl;
+
+import org.example.sistema_gestion_vitalexa.PostgresIntegrationTests;
+import org.example.sistema_gestion_vitalexa.PostgresTest;
+import org.example.sistema_gestion_vitalexa.dto.BulkCompleteOrdersRequest;
+import org.example.sistema_gestion_vitalexa.dto.BulkCompleteOrdersResult;
+import org.example.sistema_gestion_vitalexa.dto.BulkCompleteOrdersResult.OrderResult;
+import org.example.sistema_gestion_vitalexa.service.OrdenService;
+import org.example.sistema_gestion_vitalexa.service.SaleGoalService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.mock.mockito.SpyBean;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+/**
+ * Cierre del día con completeOrdersBulk: los ids que no se pueden completar
+ * se reportan en el orden del request, las facturas salen consecutivas en
+ * ese mismo orden, un id repetido se completa una sola vez y la meta recibe
+ * una actualización por vendedor/mes con el monto sumado.
+ */
+@PostgresTest
+class BulkOrderCompletionTests extends PostgresIntegrationTests {
+
+    private static final int MONTH = 6;
+    private static final int YEAR = 2033;
+
+    @Autowired
+    private OrdenService ordenService;
+
+    @SpyBean
+    private SaleGoalService saleGoalService;
+
+    @Autowired
+    private JdbcTemplate jdbc;
+
+    private UUID vendorA;
+    private UUID vendorB;
+    private UUID first;
+    private UUID second;
+    private UUID third;
+    private UUID alreadyCompleted;
+
+    @BeforeEach
+    void seed() {
+        String tag = UUID.randomUUID().toString().substring(0, 8);
+        vendorA = vendor("vend-cierre-a-" + tag);
+        vendorB = vendor("vend-cierre-b-" + tag);
+        UUID clientId = UUID.randomUUID();
+        jdbc.update("INSERT INTO clients (id, nombre, telefono, active) VALUES (?, ?, '3000000000', true)",
+                clientId, "Cliente cierre " + tag);
+
+        first = order(vendorA, clientId, "PENDIENTE", 1000, null);
+        second = order(vendorB, clientId, "CONFIRMADO", 2000, null);
+        // La meta usa el total con descuento cuando lo hay
+        third = order(vendorA, clientId, "PENDIENTE", 3000, new BigDecimal("2700"));
+        alreadyCompleted = order(vendorA, clientId, "COMPLETADO", 500, null);
+    }
+
+    private UUID vendor(String username) {
+        UUID id = UUID.randomUUID();
+        jdbc.update("INSERT INTO users (id, username, password, active) VALUES (?, ?, 'x', true)", id, username);
+        return id;
+    }
+
+    private UUID order(UUID vendor, UUID clientId, String estado, int total, BigDecimal discountedTotal) {
+        UUID id = UUID.randomUUID();
+        jdbc.update("""
+                INSERT INTO orders (id, fecha, total, discounted_total, estado, vendedor_id, client_id)
+                VALUES (?, ?, ?, ?, ?, ?, ?)
+                """, id, LocalDateTime.now().minusDays(1), total, discountedTotal, estado, vendor, clientId);
+        return id;
+    }
+
+    @Test
+    void completesInRequestOrderAndReportsFailures() {
+        UUID missing = UUID.randomUUID();
+
+        BulkCompleteOrdersResult result = ordenService.completeOrdersBulk(new BulkCompleteOrdersRequest(
+                List.of(first, missing, second, alreadyCompleted, first, third),
+                YEAR + "-0" + MONTH + "-15", "Cierre de prueba"), "admin-cierre");
+
+        assertThat(result.completed()).isEqualTo(3);
+        assertThat(result.failed()).isEqualTo(2);
+        // Un resultado por id distinto, en el orden del request
+        assertThat(result.results()).extracting(OrderResult::orderId)
+                .containsExactly(first, missing, second, alreadyCompleted, third);
+        assertThat(result.results()).extracting(OrderResult::completed)
+                .containsExactly(true, false, true, false, true);
+        assertThat(result.results().get(1).message()).isEqualTo("Orden no encontrada");
+        assertThat(result.results().get(3).message()).isEqualTo("La orden ya está completada");
+
+        // Facturas consecutivas en el orden del request
+        long invoice = result.results().get(0).invoiceNumber();
+        assertThat(result.results().get(2).invoiceNumber()).isEqualTo(invoice + 1);
+        assertThat(result.results().get(4).invoiceNumber()).isEqualTo(invoice + 2);
+        assertThat(result.results().get(1).invoiceNumber()).isNull();
+        assertThat(result.results().get(3).invoiceNumber()).isNull();
+
+        // El id repetido se completó una sola vez: una factura y una nota
+        Map<String, Object> stored = jdbc.queryForMap(
+                "SELECT estado, invoice_number, notas, completed_at FROM orders WHERE id = ?", first);
+        assertThat(stored.get("estado")).isEqualTo("COMPLETADO");
+        assertThat(((Number) stored.get("invoice_number")).longValue()).isEqualTo(invoice);
+        assertThat(stored.get("notas").toString().split("COMPLETADO el", -1)).hasSize(2);
+        assertThat(stored.get("completed_at").toString()).startsWith(YEAR + "-0" + MONTH + "-15");
+        assertThat(jdbc.queryForObject("SELECT invoice_number FROM orders WHERE id = ?", Long.class,
+                alreadyCompleted)).isNull();
+
+        // Una actualización de meta por vendedor/mes, con el monto sumado
+        verify(saleGoalService, times(1)).updateGoalProgress(eq(vendorA), any(), anyInt(), anyInt());
+        verify(saleGoalService).updateGoalProgress(eq(vendorA), amount("3700"), eq(MONTH), eq(YEAR));
+        verify(saleGoalService, times(1)).updateGoalProgress(eq(vendorB), any(), anyInt(), anyInt());
+        verify(saleGoalService).updateGoalProgress(eq(vendorB), amount("2000"), eq(MONTH), eq(YEAR));
+    }
+
+    private static BigDecimal amount(String expected) {
+        return argThat(actual -> actual != null && actual.compareTo(new BigDecimal(expected)) == 0);
+    }
+}
@@ -0,0 +1,130 @@
+package org.example.sistema_gestion_vitalexa.service.impl;
+
+import org.example.sistema_gestion_vitalexa.PostgresIntegrationTests;
+import org.example.sistema_gestion_vitalexa.PostgresTest;
+import org.example.sistema_gestion_vitalexa.SqlStatementCounter;
+import org.example.sistema_gestion_vitalexa.dto.ClientBalanceDTO;
+import org.example.sistema_gestion_vitalexa.dto.OrderPendingDTO;
+import org.example.sistema_gestion_vitalexa.service.ClientBalanceService;
+import org.example.sistema_gestion_vitalexa.service.ClientBalanceSummaryService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Los listados de cartera se leen solo de client_balance_summary (sin tocar
+ * orders ni payments) y el detalle de facturas se pide por cliente. Cada
+ * cliente sembrado tiene dos facturas completadas, una de ellas con un abono
+ * y un pago anulado.
+ */
+@PostgresTest
+class ClientBalanceListingTests extends PostgresIntegrationTests {
+
+    private static final int CLIENTS = 3;
+
+    @Autowired
+    private ClientBalanceService clientBalanceService;
+
+    @Autowired
+    private ClientBalanceSummaryService clientBalanceSummaryService;
+
+    @Autowired
+    private JdbcTemplate jdbc;
+
+    private UUID vendedorId;
+    private final List<UUID> clients = new ArrayList<>();
+
+    @BeforeEach
+    void seed() {
+        String tag = UUID.randomUUID().toString().substring(0, 8);
+        vendedorId = UUID.randomUUID();
+        jdbc.update("INSERT INTO users (id, username, password, active) VALUES (?, ?, 'x', true)",
+                vendedorId, "vend-cartera-" + tag);
+
+        LocalDateTime completedAt = LocalDateTime.now().minusDays(10);
+        for (int i = 0; i < CLIENTS; i++) {
+            UUID clientId = UUID.randomUUID();
+            jdbc.update("""
+                    INSERT INTO clients (id, nombre, telefono, active, vendedor_asignado_id)
+                    VALUES (?, ?, '3000000000', true, ?)
+                    """, clientId, "Cliente cartera " + tag + " " + i, vendedorId);
+            clients.add(clientId);
+
+            UUID older = order(clientId, completedAt.minusDays(5), 1000);
+            order(clientId, completedAt, 2500);
+            jdbc.update("INSERT INTO payments (id, order_id, amount, registered_by) VALUES (?, ?, 400, ?)",
+                    UUID.randomUUID(), older, vendedorId);
+            jdbc.update("""
+                    INSERT INTO payments (id, order_id, amount, registered_by, is_cancelled)
+                    VALUES (?, ?, 600, ?, true)
+                    """, UUID.randomUUID(), older, vendedorId);
+
+            // Sin transacción el resumen se recalcula de inmediato
+            clientBalanceSummaryService.refreshOnCommit(clientId);
+        }
+    }
+
+    private UUID order(UUID clientId, LocalDateTime completedAt, int total) {
+        UUID id = UUID.randomUUID();
+        jdbc.update("""
+                INSERT INTO orders (id, fecha, completed_at, total, estado, vendedor_id, client_id)
+                VALUES (?, ?, ?, ?, 'COMPLETADO', ?, ?)
+                """, id, completedAt.minusDays(1), completedAt, total, vendedorId, clientId);
+        return id;
+    }
+
+    @Test
+    void listingReadsOnlyTheSummary() {
+        AtomicReference<List<ClientBalanceDTO>> result = new AtomicReference<>();
+        List<String> statements = SqlStatementCounter.capture(
+                () -> result.set(clientBalanceService.getClientBalancesByVendedor(vendedorId)));
+
+        assertThat(statements).noneMatch(sql -> sql.contains(" orders ") || sql.contains(" payments "));
+        assertThat(result.get()).hasSize(CLIENTS).allSatisfy(balance -> {
+            assertThat(balance.totalOrders()).isEqualByComparingTo("3500");
+            assertThat(balance.totalPaid()).isEqualByComparingTo("400");
+            assertThat(balance.pendingBalance()).isEqualByComparingTo("3100");
+            assertThat(balance.pendingOrdersCount()).isEqualTo(2);
+            assertThat(balance.daysOverdue()).isEqualTo(15);
+            assertThat(balance.pendingOrders()).isEmpty();
+        });
+    }
+
+    @Test
+    void invoiceDetailIsLoadedPerClient() {
+        UUID clientId = clients.get(0);
+
+        AtomicReference<List<OrderPendingDTO>> result = new AtomicReference<>();
+        List<String> statements = SqlStatementCounter.capture(
+                () -> result.set(clientBalanceService.getAllInvoicesByClient(clientId, null, null)));
+
+        // Cliente y facturas con sus pagos, sin una consulta por factura
+        assertThat(statements).hasSize(2);
+        List<OrderPendingDTO> invoices = result.get();
+        assertThat(invoices).extracting(OrderPendingDTO::total)
+                .usingElementComparator(BigDecimal::compareTo)
+                .containsExactly(new BigDecimal("2500"), new BigDecimal("1000"));
+        assertThat(invoices.get(1).paidAmount()).isEqualByComparingTo("400");
+        assertThat(invoices.get(1).payments()).hasSize(1);
+
+        // El detalle de un cliente cuadra con su fila del listado
+        ClientBalanceDTO detail = clientBalanceService.getClientBalance(clientId);
+        ClientBalanceDTO listed = clientBalanceService.getClientBalancesByVendedor(vendedorId).stream()
+                .filter(b -> b.clientId().equals(clientId))
+                .findFirst()
+                .orElseThrow();
+        assertThat(detail.pendingOrders()).hasSize(2);
+        assertThat(detail.pendingBalance()).isEqualByComparingTo(listed.pendingBalance());
+        assertThat(detail.pendingOrdersCount()).isEqualTo(listed.pendingOrdersCount());
+    }
+}
@@ -0,0 +1,95 @@
+package org.example.sistema_gestion_vitalexa.service.impl;
+
+import org.example.sistema_gestion_vitalexa.PostgresIntegrationTests;
+import org.example.sistema_gestion_vitalexa.PostgresTest;
+import org.example.sistema_gestion_vitalexa.repository.OrdenRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.transaction.IllegalTransactionStateException;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.LongStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Varias facturaciones simultáneas, algunas revertidas: los números
+ * confirmados no se repiten y forman un bloque sin huecos desde el valor que
+ * tenía el contador.
+ */
+@PostgresTest
+class InvoiceNumberAllocatorTests extends PostgresIntegrationTests {
+
+    private static final int TRANSACTIONS = 60;
+    private static final int THREADS = 8;
+
+    @Autowired
+    private InvoiceNumberAllocator allocator;
+
+    @Autowired
+    private OrdenRepository ordenRepository;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Test
+    void concurrentReservationsAreUniqueAndContiguous() throws Exception {
+        long start = transactionTemplate.execute(tx -> ordenRepository.findNextInvoiceNumber());
+
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch ready = new CountDownLatch(1);
+        List<Future<List<Long>>> results = new ArrayList<>();
+        try {
+            for (int i = 0; i < TRANSACTIONS; i++) {
+                int count = 1 + i % 3;
+                boolean rollback = i % 5 == 4;
+                Callable<List<Long>> task = () -> {
+                    ready.await();
+                    return transactionTemplate.execute(tx -> {
+                        List<Long> numbers;
+                        if (count == 1) {
+                            numbers = List.of(allocator.next());
+                        } else {
+                            InvoiceNumberAllocator.Range range = allocator.reserve(count);
+                            numbers = LongStream.rangeClosed(range.first(), range.last()).boxed().toList();
+                        }
+                        if (rollback) {
+                            // Los números vuelven al contador
+                            tx.setRollbackOnly();
+                            return List.of();
+                        }
+                        return numbers;
+                    });
+                };
+                results.add(pool.submit(task));
+            }
+            ready.countDown();
+
+            List<Long> committed = new ArrayList<>();
+            for (Future<List<Long>> result : results) {
+                committed.addAll(result.get(60, TimeUnit.SECONDS));
+            }
+            long end = transactionTemplate.execute(tx -> ordenRepository.findNextInvoiceNumber());
+
+            assertThat(committed).doesNotHaveDuplicates();
+            assertThat(committed).containsExactlyInAnyOrderElementsOf(
+                    LongStream.range(start, end).boxed().toList());
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    @Test
+    void reservationRequiresTransaction() {
+        assertThatThrownBy(() -> allocator.next()).isInstanceOf(IllegalTransactionStateException.class);
+    }
+}
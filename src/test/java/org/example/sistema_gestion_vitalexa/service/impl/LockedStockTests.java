@@ -0,0 +1,109 @@
+package org.example.sistema_gestion_vitalexa.service.impl;
+
+import org.example.sistema_gestion_vitalexa.PostgresIntegrationTests;
+import org.example.sistema_gestion_vitalexa.PostgresTest;
+import org.example.sistema_gestion_vitalexa.entity.Product;
+import org.example.sistema_gestion_vitalexa.repository.ProductRepository;
+import org.example.sistema_gestion_vitalexa.service.ProductService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Los descuentos de decreaseLockedStock se escriben antes del commit, pero
+ * decreaseStock/increaseStock y flushLockedStock los aplican primero: en la
+ * misma transacción ningún camino lee un stock que no los incluya.
+ */
+@PostgresTest
+class LockedStockTests extends PostgresIntegrationTests {
+
+    private static final int INITIAL_STOCK = 10;
+
+    @Autowired
+    private ProductService productService;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private JdbcTemplate jdbc;
+
+    private UUID productId;
+
+    @BeforeEach
+    void seed() {
+        productId = UUID.randomUUID();
+        jdbc.update("""
+                INSERT INTO products (id, nombre, precio, stock, active, is_hidden, created_at, updated_at)
+                VALUES (?, ?, 1000, ?, true, false, now(), now())
+                """, productId, "Stock diferido " + productId, INITIAL_STOCK);
+    }
+
+    @Test
+    void immediatePathAppliesPendingLockedDeltasFirst() {
+        transactionTemplate.executeWithoutResult(status -> {
+            Product product = lockedProduct();
+
+            assertThat(productService.decreaseLockedStock(product, 4)).isEqualTo(6);
+            assertThat(productService.decreaseStock(product, 3)).isEqualTo(3);
+            assertThat(product.getStock()).isEqualTo(3);
+            assertThat(productService.increaseStock(product, 1)).isEqualTo(4);
+
+            // Después del camino inmediato el diferido sigue desde el valor real
+            assertThat(productService.decreaseLockedStock(product, 2)).isEqualTo(2);
+        });
+
+        assertThat(stock()).isEqualTo(2);
+    }
+
+    @Test
+    void flushMakesPendingDeltasVisibleToDatabaseReads() {
+        transactionTemplate.executeWithoutResult(status -> {
+            Product product = lockedProduct();
+            productService.decreaseLockedStock(product, 4);
+            assertThat(stock()).isEqualTo(INITIAL_STOCK);
+
+            productService.flushLockedStock();
+            assertThat(stock()).isEqualTo(6);
+
+            // Lo que llega después del flush se escribe igual al commit, una vez
+            productService.decreaseLockedStock(product, 1);
+            productService.flushLockedStock();
+            productService.flushLockedStock();
+        });
+
+        assertThat(stock()).isEqualTo(5);
+    }
+
+    @Test
+    void rollbackDiscardsPendingDeltas() {
+        transactionTemplate.executeWithoutResult(status -> {
+            productService.decreaseLockedStock(lockedProduct(), 4);
+            status.setRollbackOnly();
+        });
+
+        assertThat(stock()).isEqualTo(INITIAL_STOCK);
+    }
+
+    /** Bloquea la fila y deja en la entidad su stock, como OrderResolutionContext. */
+    private Product lockedProduct() {
+        List<Object[]> rows = productRepository.lockStockRowsWithStock(List.of(productId));
+        Product product = productRepository.findById(productId).orElseThrow();
+        product.setStock((Integer) rows.get(0)[1]);
+        return product;
+    }
+
+    private int stock() {
+        return jdbc.queryForObject("SELECT stock FROM products WHERE id = ?", Integer.class, productId);
+    }
+}
@@ -0,0 +1,102 @@
+package org.example.sistema_gestion_vitalexa.service.impl;
+
+import org.example.sistema_gestion_vitalexa.PostgresIntegrationTests;
+import org.example.sistema_gestion_vitalexa.PostgresTest;
+import org.example.sistema_gestion_vitalexa.SqlStatementCounter;
+import org.example.sistema_gestion_vitalexa.dto.OrderCreationResult;
+import org.example.sistema_gestion_vitalexa.dto.OrderItemRequestDTO;
+import org.example.sistema_gestion_vitalexa.dto.OrderRequestDto;
+import org.example.sistema_gestion_vitalexa.service.OrdenService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Crear una orden de 50 items cuesta las mismas sentencias SQL que una de 5:
+ * OrderResolutionContext carga y bloquea todos los productos con consultas
+ * IN, los descuentos de stock salen en un solo UPDATE antes del commit y las
+ * inserciones van en lotes JDBC (hibernate.jdbc.batch_size). Antes cada item
+ * hacía su propio findById, UPDATE de stock y lectura del stock resultante.
+ */
+@PostgresTest
+class OrderCreationQueryCountTests extends PostgresIntegrationTests {
+
+    private static final int PRODUCTS = 50;
+
+    @Autowired
+    private OrdenService ordenService;
+
+    @Autowired
+    private JdbcTemplate jdbc;
+
+    private String vendedor;
+    private UUID clientId;
+    private final List<UUID> products = new ArrayList<>();
+
+    @BeforeEach
+    void seed() {
+        String tag = UUID.randomUUID().toString().substring(0, 8);
+        vendedor = "vend-creacion-" + tag;
+        jdbc.update("INSERT INTO users (id, username, password, active) VALUES (?, ?, 'x', true)",
+                UUID.randomUUID(), vendedor);
+        clientId = UUID.randomUUID();
+        jdbc.update("INSERT INTO clients (id, nombre, telefono, active) VALUES (?, ?, '3000000000', true)",
+                clientId, "Cliente creacion " + tag);
+        for (int i = 0; i < PRODUCTS; i++) {
+            UUID id = UUID.randomUUID();
+            jdbc.update("""
+                    INSERT INTO products (id, nombre, precio, stock, active, is_hidden, created_at, updated_at)
+                    VALUES (?, ?, 1000, 100, true, false, now(), now())
+                    """, id, "Producto creacion " + tag + " " + i);
+            products.add(id);
+        }
+    }
+
+    @Test
+    void statementsDoNotGrowWithItemCount() {
+        // La primera orden carga los cachés en memoria (grupos, catálogo)
+        create(1);
+
+        List<String> small = statements(5);
+        List<String> large = statements(PRODUCTS);
+
+        assertThat(large).as("sentencias con %d items", PRODUCTS).hasSameSizeAs(small);
+        assertThat(large.stream().filter(sql -> sql.startsWith("select")).count())
+                .as("consultas con %d items", PRODUCTS)
+                .isEqualTo(small.stream().filter(sql -> sql.startsWith("select")).count());
+
+        // Los descuentos diferidos llegan a la base: 2 unidades por orden
+        assertThat(stock(0)).isEqualTo(100 - 3 * 2);
+        assertThat(stock(4)).isEqualTo(100 - 2 * 2);
+        assertThat(stock(PRODUCTS - 1)).isEqualTo(100 - 2);
+    }
+
+    private int stock(int product) {
+        return jdbc.queryForObject("SELECT stock FROM products WHERE id = ?", Integer.class, products.get(product));
+    }
+
+    private List<String> statements(int items) {
+        AtomicReference<OrderCreationResult> result = new AtomicReference<>();
+        List<String> statements = SqlStatementCounter.capture(() -> result.set(create(items)));
+
+        assertThat(result.get().orders()).hasSize(1);
+        assertThat(result.get().orders().get(0).items()).hasSize(items);
+        return statements;
+    }
+
+    private OrderCreationResult create(int items) {
+        List<OrderItemRequestDTO> lines = products.subList(0, items).stream()
+                .map(id -> new OrderItemRequestDTO(id, 2, false, null, false, null, null))
+                .toList();
+        return ordenService.createOrder(
+                new OrderRequestDto(clientId, lines, null, null, null, false, null, false, null, null), vendedor);
+    }
+}
@@ -0,0 +1,127 @@
+package org.example.sistema_gestion_vitalexa.service.impl;
+
+import org.example.sistema_gestion_vitalexa.PostgresIntegrationTests;
+import org.example.sistema_gestion_vitalexa.PostgresTest;
+import org.example.sistema_gestion_vitalexa.dto.CursorPage;
+import org.example.sistema_gestion_vitalexa.dto.OrderResponse;
+import org.example.sistema_gestion_vitalexa.exceptions.BusinessExeption;
+import org.example.sistema_gestion_vitalexa.service.OrdenService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Listado por cursor sobre órdenes de un solo vendedor, la mayoría con la
+ * misma fecha efectiva: recorrer todas las páginas entrega cada orden una
+ * vez, en orden (fecha DESC, id DESC), y el total solo se calcula en la
+ * primera página.
+ */
+@PostgresTest
+class OrderCursorPagingTests extends PostgresIntegrationTests {
+
+    private static final int PAGE_SIZE = 3;
+
+    @Autowired
+    private OrdenService ordenService;
+
+    @Autowired
+    private JdbcTemplate jdbc;
+
+    private String vendedor;
+    private List<UUID> expected;
+
+    @BeforeEach
+    void seed() {
+        String tag = UUID.randomUUID().toString().substring(0, 8);
+        vendedor = "vend-cursor-" + tag;
+        UUID vendedorId = UUID.randomUUID();
+        jdbc.update("INSERT INTO users (id, username, password, active) VALUES (?, ?, 'x', true)",
+                vendedorId, vendedor);
+
+        // Siete órdenes empatadas en fecha (tres completadas con ese completed_at)
+        // entre una más nueva y dos más viejas
+        LocalDateTime tie = LocalDateTime.now().withNano(0).minusDays(2);
+        List<Object[]> orders = new ArrayList<>();
+        orders.add(new Object[] { UUID.randomUUID(), tie.plusHours(1), null });
+        for (int i = 0; i < 7; i++) {
+            orders.add(i < 3
+                    ? new Object[] { UUID.randomUUID(), tie.minusDays(5), tie }
+                    : new Object[] { UUID.randomUUID(), tie, null });
+        }
+        orders.add(new Object[] { UUID.randomUUID(), tie.minusHours(1), null });
+        orders.add(new Object[] { UUID.randomUUID(), tie.minusHours(2), null });
+        for (Object[] order : orders) {
+            jdbc.update("""
+                    INSERT INTO orders (id, fecha, completed_at, total, estado, vendedor_id)
+                    VALUES (?, ?, ?, 1000, ?, ?)
+                    """, order[0], order[1], order[2], order[2] != null ? "COMPLETADO" : "PENDIENTE", vendedorId);
+        }
+
+        expected = orders.stream()
+                .sorted(Comparator.comparing((Object[] o) -> (LocalDateTime) (o[2] != null ? o[2] : o[1]))
+                        .thenComparing(o -> (UUID) o[0], OrderCursorPagingTests::compareAsPostgres)
+                        .reversed())
+                .map(o -> (UUID) o[0])
+                .toList();
+    }
+
+    @Test
+    void pagesCoverTiedOrdersOnceInOrder() {
+        List<UUID> seen = new ArrayList<>();
+        String cursor = null;
+        int pages = 0;
+        do {
+            CursorPage<OrderResponse> page = ordenService.findAllByCursor(
+                    cursor, PAGE_SIZE, null, null, vendedor, null, true);
+            pages++;
+            page.content().forEach(order -> seen.add(order.id()));
+            assertThat(page.hasNext()).isEqualTo(page.nextCursor() != null);
+
+            // El total solo en la primera página
+            if (pages == 1) {
+                assertThat(page.estimatedTotal()).isEqualTo(expected.size());
+            } else {
+                assertThat(page.estimatedTotal()).isNull();
+            }
+            cursor = page.nextCursor();
+        } while (cursor != null);
+
+        assertThat(pages).isEqualTo((expected.size() + PAGE_SIZE - 1) / PAGE_SIZE);
+        assertThat(seen).containsExactlyElementsOf(expected);
+    }
+
+    @Test
+    void totalIsSkippedWhenNotRequested() {
+        CursorPage<OrderResponse> page = ordenService.findAllByCursor(
+                null, PAGE_SIZE, null, null, vendedor, null, false);
+
+        assertThat(page.content()).hasSize(PAGE_SIZE);
+        assertThat(page.estimatedTotal()).isNull();
+    }
+
+    @Test
+    void malformedCursorIsBusinessError() {
+        assertThatThrownBy(() -> ordenService.findAllByCursor(
+                "no-es-un-cursor", PAGE_SIZE, null, null, vendedor, null, true))
+                .isInstanceOf(BusinessExeption.class)
+                .hasMessage("Cursor de paginación inválido");
+    }
+
+    /**
+     * PostgreSQL compara uuid byte a byte (sin signo); UUID.compareTo compara
+     * los dos long con signo.
+     */
+    private static int compareAsPostgres(UUID a, UUID b) {
+        return a.toString().compareTo(b.toString());
+    }
+}
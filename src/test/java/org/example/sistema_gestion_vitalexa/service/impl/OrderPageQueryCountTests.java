@@ -0,0 +1,133 @@
+package org.example.sistema_gestion_vitalexa.service.impl;
+
+import org.example.sistema_gestion_vitalexa.PostgresIntegrationTests;
+import org.example.sistema_gestion_vitalexa.PostgresTest;
+import org.example.sistema_gestion_vitalexa.SqlStatementCounter;
+import org.example.sistema_gestion_vitalexa.dto.OrderResponse;
+import org.example.sistema_gestion_vitalexa.service.OrdenService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Page;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Los listados paginados de órdenes cuestan las mismas sentencias SQL con
+ * páginas de 5 que de 25 órdenes: la página (más su COUNT) y una sola carga
+ * en lote de las asociaciones que lee OrderMapper (findAllForResponseByIdIn).
+ * Cada orden sembrada tiene un item de producto con etiqueta, uno de producto
+ * especial con etiqueta y uno de promoción.
+ */
+@PostgresTest
+class OrderPageQueryCountTests extends PostgresIntegrationTests {
+
+    private static final int ORDERS = 30;
+
+    @Autowired
+    private OrdenService ordenService;
+
+    @Autowired
+    private JdbcTemplate jdbc;
+
+    private String vendedor;
+
+    @BeforeEach
+    void seed() {
+        String tag = UUID.randomUUID().toString().substring(0, 8);
+        vendedor = "vend-paginas-" + tag;
+        UUID vendedorId = UUID.randomUUID();
+        jdbc.update("INSERT INTO users (id, username, password, active) VALUES (?, ?, 'x', true)", vendedorId, vendedor);
+
+        UUID clientId = UUID.randomUUID();
+        jdbc.update("INSERT INTO clients (id, nombre, telefono, active) VALUES (?, ?, '3000000000', true)",
+                clientId, "Cliente paginas " + tag);
+        UUID productTag = UUID.randomUUID();
+        jdbc.update("INSERT INTO product_tags (id, name) VALUES (?, ?)", productTag, "Etiqueta " + tag);
+        UUID product = UUID.randomUUID();
+        jdbc.update("""
+                INSERT INTO products (id, nombre, precio, stock, active, is_hidden, product_tag_id, created_at, updated_at)
+                VALUES (?, ?, 1000, 100, true, false, ?, now(), now())
+                """, product, "Producto paginas " + tag, productTag);
+        UUID specialProduct = UUID.randomUUID();
+        jdbc.update("""
+                INSERT INTO special_products (id, nombre, precio, active, product_tag_id, parent_product_id)
+                VALUES (?, ?, 900, true, ?, ?)
+                """, specialProduct, "Especial paginas " + tag, productTag, product);
+        UUID promotion = UUID.randomUUID();
+        jdbc.update("""
+                INSERT INTO promotions (id, nombre, type, buy_quantity, pack_price, main_product_id)
+                VALUES (?, ?, 'PACK', 2, 1500, ?)
+                """, promotion, "Promo paginas " + tag, product);
+
+        LocalDateTime fecha = LocalDateTime.now().minusDays(1);
+        for (int i = 0; i < ORDERS; i++) {
+            UUID order = UUID.randomUUID();
+            jdbc.update("""
+                    INSERT INTO orders (id, fecha, total, estado, vendedor_id, client_id)
+                    VALUES (?, ?, 3000, 'PENDIENTE', ?, ?)
+                    """, order, fecha.minusMinutes(i), vendedorId, clientId);
+            jdbc.update("""
+                    INSERT INTO order_items (id, cantidad, precio_unitario, sub_total, order_id, product_id)
+                    VALUES (?, 1, 1000, 1000, ?, ?)
+                    """, UUID.randomUUID(), order, product);
+            jdbc.update("""
+                    INSERT INTO order_items (id, cantidad, precio_unitario, sub_total, order_id, product_id,
+                                             special_product_id)
+                    VALUES (?, 1, 900, 900, ?, ?, ?)
+                    """, UUID.randomUUID(), order, product, specialProduct);
+            jdbc.update("""
+                    INSERT INTO order_items (id, cantidad, precio_unitario, sub_total, order_id, product_id,
+                                             promotion_id, is_promotion_item, promotion_instance_id)
+                    VALUES (?, 2, 550, 1100, ?, ?, ?, true, ?)
+                    """, UUID.randomUUID(), order, product, promotion, UUID.randomUUID());
+        }
+    }
+
+    @Test
+    void adminListingStatementsDoNotGrowWithPageSize() {
+        List<String> small = statements(() -> ordenService.findAllPaginated(
+                0, 5, null, null, vendedor, null, null, null), 5);
+        List<String> large = statements(() -> ordenService.findAllPaginated(
+                0, 25, null, null, vendedor, null, null, null), 25);
+
+        // Página, COUNT y carga en lote
+        assertThat(small).hasSize(3);
+        assertThat(large).hasSameSizeAs(small);
+    }
+
+    @Test
+    void vendorListingStatementsDoNotGrowWithPageSize() {
+        // La primera llamada carga en memoria los grupos de vendedores
+        ordenService.findMyOrdersPaginated(vendedor, 0, 1, "pending", null, null);
+
+        List<String> small = statements(() -> ordenService.findMyOrdersPaginated(
+                vendedor, 0, 5, "pending", null, null), 5);
+        List<String> large = statements(() -> ordenService.findMyOrdersPaginated(
+                vendedor, 0, 25, "pending", null, null), 25);
+
+        // Usuario, página, COUNT y carga en lote
+        assertThat(small).hasSize(4);
+        assertThat(large).hasSameSizeAs(small);
+    }
+
+    private static List<String> statements(Supplier<Page<OrderResponse>> listing, int expectedOrders) {
+        AtomicReference<Page<OrderResponse>> page = new AtomicReference<>();
+        List<String> statements = SqlStatementCounter.capture(() -> page.set(listing.get()));
+
+        assertThat(page.get().getContent()).hasSize(expectedOrders);
+        assertThat(page.get().getTotalElements()).isEqualTo(ORDERS);
+        assertThat(page.get().getContent()).allSatisfy(order -> {
+            assertThat(order.items()).hasSize(3);
+            assertThat(order.promotionIds()).hasSize(1);
+        });
+        return statements;
+    }
+}
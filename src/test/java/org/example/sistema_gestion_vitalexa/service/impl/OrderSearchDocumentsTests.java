@@ -0,0 +1,209 @@
+package org.example.sistema_gestion_vitalexa.service.impl;
+
+import org.example.sistema_gestion_vitalexa.PostgresIntegrationTests;
+import org.example.sistema_gestion_vitalexa.PostgresTest;
+import org.example.sistema_gestion_vitalexa.service.OrderSearchIndexService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Triggers del buscador de órdenes (V41): los cambios de órdenes e items
+ * arman el documento una vez por orden al commit; los renombres solo se
+ * encolan y los procesa OrderSearchIndexService.
+ */
+@PostgresTest
+class OrderSearchDocumentsTests extends PostgresIntegrationTests {
+
+    private static final Logger log = LoggerFactory.getLogger(OrderSearchDocumentsTests.class);
+
+    @Autowired
+    private JdbcTemplate jdbc;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private OrderSearchIndexService orderSearchIndexService;
+
+    private String tag;
+    private UUID vendor;
+    private UUID client;
+
+    @BeforeEach
+    void seed() {
+        tag = UUID.randomUUID().toString().substring(0, 8);
+        vendor = UUID.randomUUID();
+        client = UUID.randomUUID();
+        jdbc.update("INSERT INTO users (id, username, password, active) VALUES (?, ?, 'x', true)",
+                vendor, "vend-search-" + tag);
+        jdbc.update("INSERT INTO clients (id, nombre, active) VALUES (?, ?, true)", client, "Cliente " + tag);
+    }
+
+    @Test
+    void orderWithManyItemsGetsItsDocumentAtCommit() {
+        List<UUID> products = insertProducts(50, "Busqueda");
+        UUID order = transactionTemplate.execute(status -> insertOrder(products));
+
+        assertThat(document(order))
+                .contains("cliente " + tag, "vend-search-" + tag)
+                .contains("busqueda 0 " + tag, "busqueda 49 " + tag);
+        assertThat(jdbc.queryForObject("SELECT COUNT(*) FROM order_search_pending", Integer.class)).isZero();
+
+        // Quitar un item también actualiza el documento
+        jdbc.update("DELETE FROM order_items WHERE order_id = ? AND product_id = ?", order, products.get(49));
+        assertThat(document(order)).doesNotContain("busqueda 49 " + tag);
+    }
+
+    @Test
+    void renamesAreQueuedAndRefreshedOutsideTheirTransaction() {
+        List<UUID> products = insertProducts(2, "Renombre");
+        UUID order = transactionTemplate.execute(status -> insertOrder(products));
+
+        jdbc.update("UPDATE products SET nombre = ? WHERE id = ?", "Nuevo nombre " + tag, products.get(0));
+        jdbc.update("UPDATE clients SET nombre = ? WHERE id = ?", "Cliente renombrado " + tag, client);
+
+        // El renombre no reescribe las órdenes en su propia transacción
+        assertThat(document(order)).contains("renombre 0 " + tag).doesNotContain("nuevo nombre " + tag);
+        assertThat(queued(products.get(0))).isTrue();
+
+        orderSearchIndexService.refreshStaleDocuments();
+
+        assertThat(document(order))
+                .contains("nuevo nombre " + tag, "cliente renombrado " + tag)
+                .doesNotContain("renombre 0 " + tag);
+        assertThat(queued(products.get(0))).isFalse();
+    }
+
+    /**
+     * Benchmark con 200k órdenes: una orden de 50 items, el renombre de un
+     * producto presente en todas las órdenes y el job que rearma sus
+     * documentos. Ejecutar con:
+     * mvn test -Dmaven.test.skip=false -Dbenchmarks=true -Dtest.postgres.url=... -Dtest=OrderSearchDocumentsTests
+     */
+    @Test
+    @Tag("benchmark")
+    @EnabledIfSystemProperty(named = "benchmarks", matches = "true")
+    void benchmarkWith200kOrders() {
+        int orders = 200_000;
+        List<UUID> products = insertProducts(50, "Bench");
+        UUID popular = products.get(0);
+
+        long started = System.nanoTime();
+        seedOrdersWithoutTriggers(orders, popular, products.get(1));
+        log.info("📊 Carga de {} órdenes (sin triggers): {} ms", orders, millisSince(started));
+
+        started = System.nanoTime();
+        UUID order = transactionTemplate.execute(status -> insertOrder(products));
+        long insertMillis = millisSince(started);
+
+        started = System.nanoTime();
+        jdbc.update("UPDATE products SET nombre = ? WHERE id = ?", "Bench renombrado " + tag, popular);
+        long renameMillis = millisSince(started);
+
+        started = System.nanoTime();
+        orderSearchIndexService.refreshStaleDocuments();
+        long refreshMillis = millisSince(started);
+
+        log.info("📊 Orden de 50 items: {} ms · renombre (en la transacción del usuario): {} ms · "
+                + "job que rearma {} documentos: {} ms", insertMillis, renameMillis, orders + 1, refreshMillis);
+
+        assertThat(document(order)).contains("bench renombrado " + tag);
+        assertThat(jdbc.queryForObject("""
+                SELECT COUNT(*) FROM order_search_documents d
+                JOIN orders o ON o.id = d.order_id
+                WHERE o.client_id = ? AND d.document NOT LIKE ?
+                """, Integer.class, client, "%bench renombrado " + tag + "%")).isZero();
+        // El renombre solo encola: no depende de cuántas órdenes tiene el producto
+        assertThat(renameMillis).isLessThan(refreshMillis);
+    }
+
+    private List<UUID> insertProducts(int count, String prefix) {
+        List<UUID> ids = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            UUID id = UUID.randomUUID();
+            jdbc.update("""
+                    INSERT INTO products (id, nombre, precio, stock, active, is_hidden, created_at, updated_at)
+                    VALUES (?, ?, 1000, 100, true, false, now(), now())
+                    """, id, prefix + " " + i + " " + tag);
+            ids.add(id);
+        }
+        return ids;
+    }
+
+    /** Orden e items en lote, como los inserta Hibernate (una sentencia por fila). */
+    private UUID insertOrder(List<UUID> products) {
+        UUID order = UUID.randomUUID();
+        jdbc.update("""
+                INSERT INTO orders (id, fecha, total, estado, vendedor_id, client_id)
+                VALUES (?, now(), 0, 'COMPLETADO', ?, ?)
+                """, order, vendor, client);
+        jdbc.batchUpdate("""
+                INSERT INTO order_items (id, cantidad, precio_unitario, sub_total, order_id, product_id)
+                VALUES (?, 1, 1000, 1000, ?, ?)
+                """, products.stream()
+                .map(product -> new Object[] { UUID.randomUUID(), order, product })
+                .toList());
+        return order;
+    }
+
+    private void seedOrdersWithoutTriggers(int orders, UUID popular, UUID other) {
+        jdbc.execute((ConnectionCallback<Void>) con -> {
+            boolean autoCommit = con.getAutoCommit();
+            con.setAutoCommit(false);
+            try (var st = con.createStatement()) {
+                st.execute("SET LOCAL session_replication_role = replica");
+                st.execute("CREATE TEMP TABLE bench_orders ON COMMIT DROP AS SELECT gen_random_uuid() AS id "
+                        + "FROM generate_series(1, " + orders + ")");
+                st.execute("INSERT INTO orders (id, fecha, total, estado, vendedor_id, client_id) "
+                        + "SELECT id, now(), 0, 'COMPLETADO', '" + vendor + "', '" + client + "' FROM bench_orders");
+                st.execute("INSERT INTO order_items (cantidad, precio_unitario, sub_total, order_id, product_id) "
+                        + "SELECT 1, 1000, 1000, id, p FROM bench_orders "
+                        + "CROSS JOIN (VALUES ('" + popular + "'::uuid), ('" + other + "'::uuid)) AS v(p)");
+                st.execute("INSERT INTO order_search_documents (order_id, document, updated_at) "
+                        + "SELECT s.order_id, s.document, now() FROM order_search_source s "
+                        + "JOIN bench_orders b ON b.id = s.order_id");
+                con.commit();
+            } catch (Exception e) {
+                con.rollback();
+                throw e;
+            } finally {
+                con.setAutoCommit(autoCommit);
+            }
+            try (var st = con.createStatement()) {
+                st.execute("ANALYZE orders");
+                st.execute("ANALYZE order_items");
+            }
+            return null;
+        });
+    }
+
+    private String document(UUID order) {
+        return jdbc.queryForObject("SELECT document FROM order_search_documents WHERE order_id = ?",
+                String.class, order);
+    }
+
+    private boolean queued(UUID product) {
+        return jdbc.queryForObject("""
+                SELECT COUNT(*) FROM order_search_stale_sources
+                WHERE source_type = 'product' AND source_id = ?
+                """, Integer.class, product) > 0;
+    }
+
+    private static long millisSince(long started) {
+        return (System.nanoTime() - started) / 1_000_000;
+    }
+}
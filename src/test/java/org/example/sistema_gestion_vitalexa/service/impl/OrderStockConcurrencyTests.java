@@ -0,0 +1,138 @@
+package org.example.sistema_gestion_vitalexa.service.impl;
+
+import org.example.sistema_gestion_vitalexa.PostgresIntegrationTests;
+import org.example.sistema_gestion_vitalexa.PostgresTest;
+import org.example.sistema_gestion_vitalexa.dto.OrderCreationResult;
+import org.example.sistema_gestion_vitalexa.dto.OrderItemRequestDTO;
+import org.example.sistema_gestion_vitalexa.dto.OrderRequestDto;
+import org.example.sistema_gestion_vitalexa.service.OrdenService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * N vendedoras venden y anulan a la vez sobre los mismos productos, listados
+ * en órdenes distintas: ninguna actualización de stock se pierde y ninguna
+ * transacción termina en deadlock (las filas se bloquean en orden de id).
+ */
+@PostgresTest
+class OrderStockConcurrencyTests extends PostgresIntegrationTests {
+
+    private static final int ORDERS = 24;
+    private static final int THREADS = 8;
+    private static final int INITIAL_STOCK = 1_000;
+
+    @Autowired
+    private OrdenService orderService;
+
+    @Autowired
+    private JdbcTemplate jdbc;
+
+    private String vendor;
+    private List<UUID> products;
+
+    @BeforeEach
+    void seed() {
+        vendor = "vend-stock-" + UUID.randomUUID();
+        // Sin rol: el CHECK que instala UpdateRoleConstraint usa valores ROLE_*
+        // que no coinciden con el enum; la venta no depende del rol
+        jdbc.update("INSERT INTO users (id, username, password, active) VALUES (?, ?, 'x', true)",
+                UUID.randomUUID(), vendor);
+        products = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            UUID id = UUID.randomUUID();
+            jdbc.update("""
+                    INSERT INTO products (id, nombre, precio, stock, active, is_hidden, created_at, updated_at)
+                    VALUES (?, ?, 1000, ?, true, false, now(), now())
+                    """, id, "Stock concurrente " + i + " " + id, INITIAL_STOCK);
+            products.add(id);
+        }
+    }
+
+    @Test
+    void parallelOrdersAndAnnulmentsKeepStockExact() throws Exception {
+        // Cada orden lista los productos en un orden distinto
+        List<Callable<UUID>> sales = new ArrayList<>();
+        for (int i = 0; i < ORDERS; i++) {
+            List<UUID> order = rotate(products, i);
+            sales.add(() -> {
+                OrderCreationResult result = orderService.createOrder(request(order), vendor);
+                return result.orders().get(0).id();
+            });
+        }
+        List<UUID> orderIds = runConcurrently(sales);
+
+        assertThat(orderIds).doesNotHaveDuplicates().hasSize(ORDERS);
+        // Item i de cada orden pide (i + 1) unidades
+        for (int p = 0; p < products.size(); p++) {
+            assertThat(stock(products.get(p))).isEqualTo(INITIAL_STOCK - ORDERS * (p + 1));
+        }
+
+        List<Callable<UUID>> annulments = orderIds.stream()
+                .<Callable<UUID>>map(id -> () -> {
+                    orderService.annulOrder(id, "Prueba de concurrencia");
+                    return id;
+                })
+                .toList();
+        runConcurrently(annulments);
+
+        for (UUID product : products) {
+            assertThat(stock(product)).isEqualTo(INITIAL_STOCK);
+        }
+    }
+
+    private OrderRequestDto request(List<UUID> productOrder) {
+        List<OrderItemRequestDTO> items = productOrder.stream()
+                .map(id -> new OrderItemRequestDTO(id, products.indexOf(id) + 1, true, null, null, null, null))
+                .toList();
+        return new OrderRequestDto(null, items, null, null, null, false, null, null, null, null);
+    }
+
+    private int stock(UUID productId) {
+        return jdbc.queryForObject("SELECT stock FROM products WHERE id = ?", Integer.class, productId);
+    }
+
+    private static List<UUID> rotate(List<UUID> ids, int by) {
+        List<UUID> rotated = new ArrayList<>(ids);
+        java.util.Collections.rotate(rotated, by);
+        if (by % 2 == 1) {
+            java.util.Collections.reverse(rotated);
+        }
+        return rotated;
+    }
+
+    private static <T> List<T> runConcurrently(List<Callable<T>> tasks) throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        try {
+            List<Future<T>> futures = new ArrayList<>();
+            for (Callable<T> task : tasks) {
+                futures.add(pool.submit(() -> {
+                    start.await();
+                    return task.call();
+                }));
+            }
+            start.countDown();
+            List<T> results = new ArrayList<>();
+            for (Future<T> future : futures) {
+                results.add(future.get(2, TimeUnit.MINUTES));
+            }
+            return results;
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,311 @@
+package org.example.sistema_gestion_vitalexa.service.impl;
+
+import jakarta.persistence.EntityManager;
+import org.example.sistema_gestion_vitalexa.PostgresIntegrationTests;
+import org.example.sistema_gestion_vitalexa.PostgresTest;
+import org.example.sistema_gestion_vitalexa.dto.CalculatePayrollRequest;
+import org.example.sistema_gestion_vitalexa.dto.PayrollResponse;
+import org.example.sistema_gestion_vitalexa.entity.SaleGoal;
+import org.example.sistema_gestion_vitalexa.entity.User;
+import org.example.sistema_gestion_vitalexa.repository.OrdenRepository;
+import org.example.sistema_gestion_vitalexa.repository.PaymentTransferRepository;
+import org.example.sistema_gestion_vitalexa.repository.SaleGoalRepository;
+import org.example.sistema_gestion_vitalexa.repository.UserRepository;
+import org.example.sistema_gestion_vitalexa.service.PayrollService;
+import org.example.sistema_gestion_vitalexa.service.UserGroupResolver;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.UUID;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Las nóminas armadas con los totales agrupados del mes (loadMonthTotals)
+ * dan los mismos totales que el cálculo anterior, que hacía una consulta por
+ * vendedor (o por grupo compartido) y sumaba la empresa recorriendo
+ * userRepository.findAll(). Cubre un vendedor suelto, un grupo compartido,
+ * un vendedor especial agrupado con una bodega y una bodega suelta, con
+ * fechas alrededor de los bordes de mes, descuentos, pagos anulados o tardíos
+ * y transferencias revocadas. Los datos quedan en 2032.
+ */
+@PostgresTest
+class PayrollTotalsTests extends PostgresIntegrationTests {
+
+    private static final int YEAR = 2032;
+    private static final int MONTH = 6;
+    private static final LocalDateTime START = LocalDate.of(YEAR, MONTH, 1).atStartOfDay();
+    private static final List<String> STATES = List.of("COMPLETADO", "COMPLETADO", "COMPLETADO", "PENDIENTE",
+            "CANCELADO", "ANULADA");
+    private static final List<String> EXCLUDED_BODEGA_VENDORS = List.of("bodegamaicao", "bodegavalledupar");
+
+    // Consultas anteriores de nómina (OrdenRepository / PaymentRepository).
+    // Las variantes de un solo vendedor solo cambiaban IN :vendedorIds por
+    // = :vendedorId.
+
+    private static final String SOLD_EXCLUDING_VENDORS = """
+            SELECT COALESCE(SUM(o.total), 0)
+            FROM Order o
+            WHERE o.vendedor.id IN :vendedorIds
+            AND o.estado = 'COMPLETADO'
+            AND (o.vendedor IS NULL OR LOWER(TRIM(o.vendedor.username)) NOT IN :excludedVendorUsernames)
+            AND COALESCE(o.completedAt, o.fecha) >= :start AND COALESCE(o.completedAt, o.fecha) < :end
+            """;
+
+    private static final String NET_SOLD_EXCLUDING_VENDORS = """
+            SELECT COALESCE(SUM(
+                CASE WHEN o.discountedTotal IS NOT NULL THEN o.discountedTotal ELSE o.total END
+            ), 0)
+            FROM Order o
+            WHERE o.vendedor.id IN :vendedorIds
+            AND o.estado = 'COMPLETADO'
+            AND (o.vendedor IS NULL OR LOWER(TRIM(o.vendedor.username)) NOT IN :excludedVendorUsernames)
+            AND COALESCE(o.completedAt, o.fecha) >= :start AND COALESCE(o.completedAt, o.fecha) < :end
+            """;
+
+    private static final String COLLECTED = """
+            SELECT COALESCE(SUM(p.amount), 0)
+            FROM Payment p
+            WHERE p.order.vendedor.id IN :vendedorIds
+            AND (p.isCancelled = false OR p.isCancelled IS NULL)
+            AND p.order.fecha >= :orderStart
+            AND p.order.fecha < :orderEnd
+            AND (p.actualPaymentDate IS NULL OR p.actualPaymentDate < :payEndDate)
+            """;
+
+    @Autowired
+    private PayrollService payrollService;
+
+    @Autowired
+    private UserGroupResolver userGroupResolver;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private OrdenRepository ordenRepository;
+
+    @Autowired
+    private PaymentTransferRepository paymentTransferRepository;
+
+    @Autowired
+    private SaleGoalRepository saleGoalRepository;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Autowired
+    private JdbcTemplate jdbc;
+
+    private record Totals(BigDecimal salesGoalTarget, BigDecimal totalSold, BigDecimal prevMonthTotalSold,
+            BigDecimal totalCollected, BigDecimal totalCompanySales) {
+    }
+
+    @Test
+    void payrollTotalsMatchPreviousPerVendorQueries() {
+        // UpdateRoleConstraint vuelve a crear el CHECK de roles con valores
+        // ROLE_*, que el enum (VENDEDOR) no cumple; en una base con usuarios el
+        // ADD falla y el CHECK no existe, igual que aquí
+        jdbc.execute("ALTER TABLE users DROP CONSTRAINT IF EXISTS users_role_check");
+
+        Random random = new Random(18);
+        String tag = UUID.randomUUID().toString().substring(0, 8);
+        UUID single = vendedor("nomina-suelto-" + tag);
+        UUID primary = vendedor("nomina-principal-" + tag);
+        UUID secondary = vendedor("nomina-secundario-" + tag);
+        // Los usuarios especiales y de bodega se reconocen por username fijo:
+        // se reutilizan entre ejecuciones
+        UUID special = vendedor("ArnoldVentas");
+        UUID bodegaInGroup = vendedor("bodegamaicao");
+        UUID bodega = vendedor("bodegavalledupar");
+        groupMember(primary, "nomina-" + tag, 0);
+        groupMember(secondary, "nomina-" + tag, 1);
+        groupMember(special, "nomina-especial-pruebas", 0);
+        groupMember(bodegaInGroup, "nomina-especial-pruebas", 1);
+        userGroupResolver.invalidate();
+
+        List<UUID> vendors = List.of(single, primary, secondary, special, bodegaInGroup, bodega);
+        List<UUID> payments = new ArrayList<>();
+        for (UUID vendor : vendors) {
+            for (int i = 0; i < 14; i++) {
+                payments.addAll(order(random, vendor));
+            }
+        }
+        for (UUID vendor : vendors) {
+            for (int i = 0; i < 4; i++) {
+                UUID origin = vendors.get(random.nextInt(vendors.size()));
+                jdbc.update("""
+                        INSERT INTO payment_transfers (id, payment_id, origin_vendedor_id, dest_vendedor_id, amount,
+                                                       target_month, target_year, is_revoked, created_by)
+                        VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)
+                        """, UUID.randomUUID(), payments.get(random.nextInt(payments.size())), origin, vendor,
+                        amount(random), MONTH - 1 + random.nextInt(3), YEAR, random.nextInt(4) == 0, single);
+            }
+        }
+        for (UUID vendor : List.of(single, primary, special)) {
+            jdbc.update("""
+                    INSERT INTO vendor_payroll_configs (id, vendedor_id, general_commission_enabled)
+                    VALUES (?, ?, true)
+                    ON CONFLICT (vendedor_id) DO UPDATE SET general_commission_enabled = true
+                    """, UUID.randomUUID(), vendor);
+        }
+        jdbc.update("""
+                INSERT INTO sale_goals (id, vendedor_id, target_amount, current_amount, month, year, created_at, updated_at)
+                VALUES (?, ?, 250000, 0, ?, ?, now(), now())
+                """, UUID.randomUUID(), single, MONTH, YEAR);
+
+        // El secundario del grupo resuelve a la nómina del principal
+        Map<UUID, PayrollResponse> calculated = new java.util.HashMap<>();
+        for (UUID vendor : List.of(single, secondary, special, bodega)) {
+            PayrollResponse response = payrollService.calculatePayroll(
+                    new CalculatePayrollRequest(vendor, MONTH, YEAR, null, null), single);
+            calculated.put(response.vendedorId(), response);
+        }
+        assertThat(calculated).containsOnlyKeys(single, primary, special, bodega);
+
+        Map<UUID, PayrollResponse> all = payrollService.calculateAllPayrolls(MONTH, YEAR, single).stream()
+                .collect(Collectors.toMap(PayrollResponse::vendedorId, Function.identity()));
+
+        for (UUID vendor : calculated.keySet()) {
+            Totals expected = previousTotals(userRepository.findById(vendor).orElseThrow());
+            assertTotals(calculated.get(vendor), expected);
+            assertTotals(all.get(vendor), expected);
+        }
+    }
+
+    private void assertTotals(PayrollResponse actual, Totals expected) {
+        String vendor = actual.vendedorUsername();
+        assertThat(actual.salesGoalTarget()).as("meta %s", vendor).isEqualByComparingTo(expected.salesGoalTarget());
+        assertThat(actual.totalSold()).as("vendido %s", vendor).isEqualByComparingTo(expected.totalSold());
+        assertThat(actual.prevMonthTotalSold()).as("vendido mes anterior %s", vendor)
+                .isEqualByComparingTo(expected.prevMonthTotalSold());
+        assertThat(actual.totalCollected()).as("recaudado %s", vendor)
+                .isEqualByComparingTo(expected.totalCollected());
+        assertThat(actual.totalCompanySales()).as("ventas empresa %s", vendor)
+                .isEqualByComparingTo(expected.totalCompanySales());
+    }
+
+    /**
+     * Mismas fórmulas que calculateTotalSold / calculateNetTotalSold /
+     * calculateTotalCollected / calculateTotalCompanyBaseNomina antes de los
+     * totales agrupados.
+     */
+    private Totals previousTotals(User vendedor) {
+        LocalDateTime end = START.plusMonths(1);
+        LocalDateTime prevStart = START.minusMonths(1);
+        boolean isSpecial = vendedor.getUsername().equals("ArnoldVentas");
+        List<UUID> ids = userGroupResolver.idsOf(vendedor.getId());
+
+        BigDecimal sold = isSpecial
+                ? sum(SOLD_EXCLUDING_VENDORS, ids, START, end)
+                : ordenRepository.sumTotalSoldByVendedorIdsBetween(ids, START, end);
+        BigDecimal totalSold = sold.add(
+                paymentTransferRepository.sumActiveTransfersToVendedorIdsInMonth(ids, MONTH, YEAR));
+
+        BigDecimal prevNetSold = isSpecial
+                ? sum(NET_SOLD_EXCLUDING_VENDORS, ids, prevStart, START)
+                : ordenRepository.sumNetTotalSoldByVendedorIdsBetween(ids, prevStart, START);
+        BigDecimal prevMonthTotalSold = prevNetSold.add(
+                paymentTransferRepository.sumActiveTransfersToVendedorIdsInMonth(ids, MONTH - 1, YEAR));
+
+        BigDecimal totalCollected = (BigDecimal) entityManager.createQuery(COLLECTED)
+                .setParameter("vendedorIds", ids)
+                .setParameter("orderStart", prevStart)
+                .setParameter("orderEnd", START)
+                .setParameter("payEndDate", end.toLocalDate())
+                .getSingleResult();
+
+        BigDecimal totalCompanySales = BigDecimal.ZERO;
+        boolean generalEnabled = jdbc.queryForList(
+                "SELECT general_commission_enabled FROM vendor_payroll_configs WHERE vendedor_id = ?",
+                Boolean.class, vendedor.getId()).stream().anyMatch(Boolean.TRUE::equals);
+        if (generalEnabled) {
+            List<UUID> companyIds = userRepository.findAll().stream()
+                    .filter(u -> u.getUsername() != null)
+                    .filter(u -> !EXCLUDED_BODEGA_VENDORS.contains(u.getUsername().trim().toLowerCase()))
+                    .map(User::getId)
+                    .toList();
+            totalCompanySales = ordenRepository.sumTotalSoldByVendedorIdsBetween(companyIds, START, end)
+                    .add(paymentTransferRepository.sumActiveTransfersToVendedorIdsInMonth(companyIds, MONTH, YEAR));
+        }
+
+        BigDecimal salesGoalTarget = saleGoalRepository.findByVendedorAndMonthAndYear(vendedor, MONTH, YEAR)
+                .map(SaleGoal::getTargetAmount)
+                .orElse(BigDecimal.ZERO);
+
+        return new Totals(salesGoalTarget, totalSold, prevMonthTotalSold, totalCollected, totalCompanySales);
+    }
+
+    private BigDecimal sum(String jpql, List<UUID> ids, LocalDateTime start, LocalDateTime end) {
+        return (BigDecimal) entityManager.createQuery(jpql)
+                .setParameter("vendedorIds", ids)
+                .setParameter("start", start)
+                .setParameter("end", end)
+                .setParameter("excludedVendorUsernames", EXCLUDED_BODEGA_VENDORS)
+                .getSingleResult();
+    }
+
+    /**
+     * Orden alrededor del mes de nómina y de su mes anterior, con 0 a 2 pagos.
+     * Devuelve los ids de los pagos.
+     */
+    private List<UUID> order(Random random, UUID vendor) {
+        LocalDateTime fecha = START.minusDays(40).plusMinutes(random.nextInt(80 * 24 * 60));
+        LocalDateTime completedAt = random.nextInt(3) == 0 ? null : fecha.plusHours(random.nextInt(10 * 24));
+        BigDecimal total = amount(random);
+        BigDecimal discounted = random.nextBoolean() ? null : total.multiply(new BigDecimal("0.90"));
+        UUID id = UUID.randomUUID();
+        jdbc.update("""
+                INSERT INTO orders (id, fecha, total, discounted_total, estado, vendedor_id, completed_at)
+                VALUES (?, ?, ?, ?, ?, ?, ?)
+                """, id, fecha, total, discounted, STATES.get(random.nextInt(STATES.size())), vendor, completedAt);
+
+        List<UUID> payments = new ArrayList<>();
+        for (int i = random.nextInt(3); i > 0; i--) {
+            UUID payment = UUID.randomUUID();
+            Boolean cancelled = switch (random.nextInt(4)) {
+                case 0 -> null;
+                case 1 -> true;
+                default -> false;
+            };
+            LocalDate actualPaymentDate = random.nextInt(4) == 0
+                    ? null
+                    : START.toLocalDate().minusDays(30).plusDays(random.nextInt(100));
+            jdbc.update("""
+                    INSERT INTO payments (id, order_id, amount, registered_by, is_cancelled, actual_payment_date)
+                    VALUES (?, ?, ?, ?, ?, ?)
+                    """, payment, id, amount(random), vendor, cancelled, actualPaymentDate);
+            payments.add(payment);
+        }
+        return payments;
+    }
+
+    private UUID vendedor(String username) {
+        return jdbc.queryForObject("""
+                INSERT INTO users (id, username, password, role, active) VALUES (?, ?, 'x', 'VENDEDOR', true)
+                ON CONFLICT (username) DO UPDATE SET role = 'VENDEDOR', active = true
+                RETURNING id
+                """, UUID.class, UUID.randomUUID(), username);
+    }
+
+    private void groupMember(UUID userId, String groupName, int position) {
+        jdbc.update("""
+                INSERT INTO vendor_group_members (user_id, group_name, position) VALUES (?, ?, ?)
+                ON CONFLICT (user_id) DO NOTHING
+                """, userId, groupName, position);
+    }
+
+    private static BigDecimal amount(Random random) {
+        return BigDecimal.valueOf(1000 + random.nextInt(500_000), 2);
+    }
+}
@@ -0,0 +1,138 @@
+package org.example.sistema_gestion_vitalexa.service.impl;
+
+import org.example.sistema_gestion_vitalexa.PostgresIntegrationTests;
+import org.example.sistema_gestion_vitalexa.PostgresTest;
+import org.example.sistema_gestion_vitalexa.dto.CreateProductRequest;
+import org.example.sistema_gestion_vitalexa.dto.ProductResponse;
+import org.example.sistema_gestion_vitalexa.entity.Product;
+import org.example.sistema_gestion_vitalexa.enums.ImageUploadStatus;
+import org.example.sistema_gestion_vitalexa.repository.ProductImageRepository;
+import org.example.sistema_gestion_vitalexa.repository.ProductRepository;
+import org.example.sistema_gestion_vitalexa.service.ProductImageService;
+import org.example.sistema_gestion_vitalexa.service.ProductService;
+import org.example.sistema_gestion_vitalexa.util.ContentHashes;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import javax.imageio.ImageIO;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Base64;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Recorrido completo de una imagen Base64 con almacenamiento local (sin
+ * Cloudinary): stage() la registra con el producto pendiente, después del
+ * commit el pool la escribe en disco con sus derivados y applyPendingImage
+ * deja la url en todos los productos que la esperaban.
+ */
+@PostgresTest
+class ProductImageIngestionTests extends PostgresIntegrationTests {
+
+    private static final Path UPLOAD_DIR = createUploadDir();
+
+    @DynamicPropertySource
+    static void localStorage(DynamicPropertyRegistry registry) {
+        registry.add("app.upload.dir", UPLOAD_DIR::toString);
+        registry.add("product-images.recovery.initial-delay-ms", () -> "3600000");
+    }
+
+    @Autowired
+    private ProductService productService;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private ProductImageRepository imageRepository;
+
+    @Test
+    void stagedImageIsUploadedLocallyAndAppliedToEveryWaitingProduct() throws Exception {
+        String tag = UUID.randomUUID().toString().substring(0, 8);
+        byte[] shared = png(Color.RED, tag);
+        byte[] other = png(Color.BLUE, tag);
+
+        List<ProductResponse> created = productService.createBulk(List.of(
+                request("Imagen compartida A " + tag, shared),
+                request("Imagen compartida B " + tag, shared),
+                request("Imagen propia " + tag, other)));
+
+        // Al responder la imagen sigue pendiente: la subida corre después del commit
+        assertThat(created).allSatisfy(response -> assertThat(response.pendingImageId()).isNotNull());
+        assertThat(created.get(0).pendingImageId()).isEqualTo(created.get(1).pendingImageId());
+        assertThat(created.get(2).pendingImageId()).isNotEqualTo(created.get(0).pendingImageId());
+
+        List<Product> products = awaitImagesApplied(created.stream().map(ProductResponse::id).toList());
+
+        String sharedName = ContentHashes.shortSha256Hex(shared) + ".png";
+        assertThat(products.get(0).getImageUrl()).isEqualTo("/uploads/products/" + sharedName);
+        assertThat(products.get(1).getImageUrl()).isEqualTo(products.get(0).getImageUrl());
+        assertThat(products.get(2).getImageUrl())
+                .isEqualTo("/uploads/products/" + ContentHashes.shortSha256Hex(other) + ".png");
+
+        assertThat(UPLOAD_DIR.resolve(sharedName)).exists().hasBinaryContent(shared);
+        for (String size : ProductImageService.DERIVATIVE_SIZES.keySet()) {
+            assertThat(UPLOAD_DIR.resolve(ProductImageService.derivativeName(sharedName, size))).exists();
+        }
+        assertThat(imageRepository.findStatusById(created.get(0).pendingImageId()))
+                .hasValueSatisfying(status -> assertThat(status.status()).isEqualTo(ImageUploadStatus.READY));
+
+        // La misma imagen en un producto nuevo reutiliza la url sin esperar
+        ProductResponse reused = productService.create(request("Imagen reutilizada " + tag, shared));
+        assertThat(reused.pendingImageId()).isNull();
+        assertThat(reused.imageUrl()).isEqualTo(products.get(0).getImageUrl());
+    }
+
+    private List<Product> awaitImagesApplied(List<UUID> ids) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 15_000;
+        while (true) {
+            List<Product> products = ids.stream()
+                    .map(id -> productRepository.findById(id).orElseThrow())
+                    .toList();
+            if (products.stream().allMatch(p -> p.getPendingImageId() == null)) {
+                return products;
+            }
+            assertThat(System.currentTimeMillis()).as("imágenes sin aplicar").isLessThan(deadline);
+            Thread.sleep(100);
+        }
+    }
+
+    private static CreateProductRequest request(String nombre, byte[] image) {
+        return new CreateProductRequest(nombre, null, new BigDecimal("1000"), 10, null, null,
+                "data:image/png;base64," + Base64.getEncoder().encodeToString(image), "foto.png", null);
+    }
+
+    /** PNG único por prueba (el texto cambia el hash), legible por ImageIO */
+    private static byte[] png(Color color, String text) throws IOException {
+        BufferedImage image = new BufferedImage(400, 300, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = image.createGraphics();
+        g.setColor(color);
+        g.fillRect(0, 0, 400, 300);
+        g.setColor(Color.WHITE);
+        g.drawString(text, 20, 150);
+        g.dispose();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(image, "png", out);
+        return out.toByteArray();
+    }
+
+    private static Path createUploadDir() {
+        try {
+            return Files.createTempDirectory("vitalexa-images-");
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,202 @@
+package org.example.sistema_gestion_vitalexa.service.impl;
+
+import org.example.sistema_gestion_vitalexa.dto.ClientDailyGroupDTO;
+import org.example.sistema_gestion_vitalexa.dto.VendorDailyGroupDTO;
+import org.example.sistema_gestion_vitalexa.dto.VendorDailySalesDTO;
+import org.example.sistema_gestion_vitalexa.dto.VendorInvoiceRowDTO;
+import org.example.sistema_gestion_vitalexa.entity.Order;
+import org.example.sistema_gestion_vitalexa.entity.Payment;
+import org.example.sistema_gestion_vitalexa.entity.PaymentTransfer;
+import org.example.sistema_gestion_vitalexa.entity.User;
+import org.example.sistema_gestion_vitalexa.repository.PaymentTransferRepository;
+import org.example.sistema_gestion_vitalexa.repository.UserRepository;
+import org.example.sistema_gestion_vitalexa.service.ClientBalanceService;
+import org.example.sistema_gestion_vitalexa.service.ReportService;
+import org.example.sistema_gestion_vitalexa.service.UserGroupResolver;
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.CellType;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoMoreInteractions;
+import static org.mockito.Mockito.when;
+
+class ReportExportServiceImplTests {
+
+    private static final Logger log = LoggerFactory.getLogger(ReportExportServiceImplTests.class);
+
+    private static final LocalDate START = LocalDate.of(2026, 3, 1);
+    private static final LocalDate END = LocalDate.of(2026, 3, 31);
+
+    private PaymentTransferRepository paymentTransferRepository;
+    private UserRepository userRepository;
+    private UserGroupResolver userGroupResolver;
+    private ReportExportServiceImpl service;
+
+    @BeforeEach
+    void setUp() {
+        paymentTransferRepository = mock(PaymentTransferRepository.class);
+        userRepository = mock(UserRepository.class);
+        userGroupResolver = mock(UserGroupResolver.class);
+        when(userGroupResolver.isGrouped(anyString())).thenReturn(false);
+        service = new ReportExportServiceImpl(mock(ReportService.class), mock(ClientBalanceService.class),
+                userRepository, userGroupResolver, paymentTransferRepository);
+    }
+
+    @Test
+    void vendorReportLoadsTransfersBeforeStreaming() throws Exception {
+        User vendor = User.builder().id(UUID.randomUUID()).username("vendedora1").build();
+        when(paymentTransferRepository.findActiveReceivedByDestUsernameIn(any())).thenReturn(List.of(
+                transfer(vendor, "150000", 3, 2026),
+                transfer(vendor, "999999", 1, 2026)));
+
+        StreamingResponseBody body = service.streamVendorReportExcel(vendorReport("vendedora1", 20));
+
+        verify(paymentTransferRepository).findActiveReceivedByDestUsernameIn(any());
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        body.writeTo(out);
+        // Escribir la respuesta no vuelve a consultar la base
+        verifyNoMoreInteractions(paymentTransferRepository, userRepository);
+
+        try (XSSFWorkbook workbook = new XSSFWorkbook(new ByteArrayInputStream(out.toByteArray()))) {
+            Sheet sheet = workbook.getSheet("vendedora1");
+            assertThat(transferredTotal(sheet)).isEqualTo(150000d);
+        }
+    }
+
+    /**
+     * Benchmark: reporte de vendedora con 100k facturas escrito en streaming.
+     * Imprime tiempo y pico de heap. Ejecutar con:
+     * mvn test -Dmaven.test.skip=false -Dbenchmarks=true -Dtest=ReportExportServiceImplTests
+     */
+    @Test
+    @Tag("benchmark")
+    @EnabledIfSystemProperty(named = "benchmarks", matches = "true")
+    void benchmarkVendorReportWith100kRows() throws Exception {
+        when(paymentTransferRepository.findActiveReceivedByDestUsernameIn(any())).thenReturn(List.of());
+        VendorDailySalesDTO report = vendorReport("vendedora1", 100_000);
+
+        System.gc();
+        long baseline = usedHeap();
+        ManagementFactory.getMemoryPoolMXBeans().forEach(MemoryPoolMXBean::resetPeakUsage);
+
+        long started = System.nanoTime();
+        CountingOutputStream out = new CountingOutputStream();
+        service.streamVendorReportExcel(report).writeTo(out);
+        long elapsedMillis = (System.nanoTime() - started) / 1_000_000;
+        long peakAboveBaseline = peakHeap() - baseline;
+
+        log.info("📊 100k filas: {} ms, {} KB escritos, pico de heap sobre la base {} MB",
+                elapsedMillis, out.count / 1024, peakAboveBaseline / (1024 * 1024));
+
+        assertThat(out.count).isPositive();
+        // SXSSF mantiene una ventana de filas: el pico no crece con el archivo
+        assertThat(peakAboveBaseline).isLessThan(256L * 1024 * 1024);
+    }
+
+    private static VendorDailySalesDTO vendorReport(String vendorName, int invoices) {
+        List<VendorDailyGroupDTO> days = new ArrayList<>();
+        int perDay = Math.max(1, invoices / END.getDayOfMonth());
+        int written = 0;
+        BigDecimal totalPeriod = BigDecimal.ZERO;
+        for (LocalDate day = START; written < invoices; day = day.isBefore(END) ? day.plusDays(1) : END) {
+            List<ClientDailyGroupDTO> clients = new ArrayList<>();
+            BigDecimal totalDay = BigDecimal.ZERO;
+            for (int c = 0; c < perDay && written < invoices; c += 5) {
+                List<VendorInvoiceRowDTO> rows = new ArrayList<>();
+                BigDecimal subtotal = BigDecimal.ZERO;
+                for (int i = 0; i < 5 && written < invoices; i++, written++) {
+                    BigDecimal value = BigDecimal.valueOf(10_000 + written % 5_000);
+                    BigDecimal paid = written % 3 == 0 ? value : BigDecimal.ZERO;
+                    rows.add(new VendorInvoiceRowDTO(day, String.valueOf(written), "Cliente " + (written / 5),
+                            value, BigDecimal.ZERO, value, paid, value.subtract(paid),
+                            paid.signum() > 0 ? "PAID" : "PENDING", UUID.randomUUID().toString()));
+                    subtotal = subtotal.add(value);
+                }
+                clients.add(new ClientDailyGroupDTO("Cliente " + c, rows, subtotal));
+                totalDay = totalDay.add(subtotal);
+            }
+            days.add(new VendorDailyGroupDTO(day, clients, totalDay));
+            totalPeriod = totalPeriod.add(totalDay);
+        }
+        return new VendorDailySalesDTO(UUID.randomUUID().toString(), vendorName, START, END, days, totalPeriod);
+    }
+
+    private static PaymentTransfer transfer(User dest, String amount, int month, int year) {
+        User origin = User.builder().id(UUID.randomUUID()).username("origen").build();
+        Order order = Order.builder().id(UUID.randomUUID()).invoiceNumber(1234L).build();
+        return PaymentTransfer.builder()
+                .id(UUID.randomUUID())
+                .destVendedor(dest)
+                .originVendedor(origin)
+                .createdBy(origin)
+                .payment(Payment.builder().id(UUID.randomUUID()).order(order).build())
+                .amount(new BigDecimal(amount))
+                .targetMonth(month)
+                .targetYear(year)
+                .createdAt(LocalDateTime.of(year, month, 10, 9, 0))
+                .build();
+    }
+
+    private static double transferredTotal(Sheet sheet) {
+        for (Row row : sheet) {
+            Cell label = row.getCell(9);
+            if (label != null && label.getCellType() == CellType.STRING
+                    && "TRANSFERENCIAS RECIBIDAS:".equals(label.getStringCellValue())) {
+                return row.getCell(10).getNumericCellValue();
+            }
+        }
+        throw new AssertionError("Fila de transferencias no encontrada");
+    }
+
+    private static long usedHeap() {
+        return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+    }
+
+    private static long peakHeap() {
+        return ManagementFactory.getMemoryPoolMXBeans().stream()
+                .filter(pool -> pool.getType() == MemoryType.HEAP)
+                .mapToLong(pool -> pool.getPeakUsage().getUsed())
+                .sum();
+    }
+
+    private static final class CountingOutputStream extends OutputStream {
+        private long count;
+
+        @Override
+        public void write(int b) {
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            count += len;
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package org.example.sistema_gestion_vitalexa.util;
+
+import org.example.sistema_gestion_vitalexa.exception.GlobalExceptionHandler;
+import org.example.sistema_gestion_vitalexa.exceptions.BusinessExeption;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.springframework.http.HttpStatus;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Base64;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.catchThrowableOfType;
+
+/**
+ * El cursor vuelve a la misma posición (fecha + id) y un token alterado se
+ * rechaza como error de negocio (400), no como error interno.
+ */
+class KeysetCursorTests {
+
+    @Test
+    void roundTripsPosition() {
+        LocalDateTime sortKey = LocalDateTime.of(2026, 3, 14, 9, 26, 53, 589_000_000);
+        UUID id = UUID.randomUUID();
+
+        String cursor = KeysetCursor.encode(sortKey, id);
+
+        assertThat(cursor).doesNotContain("=", "+", "/");
+        assertThat(KeysetCursor.decode(cursor)).isEqualTo(new KeysetCursor.Position(sortKey, id));
+        assertThat(KeysetCursor.decode(" " + cursor + " ")).isEqualTo(new KeysetCursor.Position(sortKey, id));
+    }
+
+    @Test
+    void missingCursorMeansFirstPage() {
+        assertThat(KeysetCursor.decode(null)).isNull();
+        assertThat(KeysetCursor.decode("  ")).isNull();
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = { "no-es-base64!", "2026-03-14T09:26:53", "2026-03-14T09:26:53|no-es-uuid",
+            "ayer|4f7c1b9e-2d7e-4e3a-9a55-0c4c1e0f8a11", "|" })
+    void rejectsMalformedCursor(String raw) {
+        String cursor = raw.equals("no-es-base64!") ? raw : encoded(raw);
+
+        BusinessExeption error = catchThrowableOfType(() -> KeysetCursor.decode(cursor), BusinessExeption.class);
+
+        assertThat(error).hasMessage("Cursor de paginación inválido");
+        assertThat(new GlobalExceptionHandler().handleBusinessException(error).getStatusCode())
+                .isEqualTo(HttpStatus.BAD_REQUEST);
+    }
+
+    private static String encoded(String raw) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+}